@@ -0,0 +1,59 @@
+package sample.benchmarks;
+
+import sample.AStarPathFinder;
+import sample.AbstractPathFinder;
+import sample.AnytimePathFinder;
+import sample.BidirectionalPathFinder;
+import sample.HierarchicalPathFinder;
+import sample.IncrementalPathFinder;
+import sample.JumpPointPathFinder;
+import sample.PathFinderAlgorithm;
+import sample.QueueStrategy;
+
+/**
+ * Creates the path finders compared by the benchmarks from their class names,
+ * so they can be chosen with a JMH parameter.
+ * @version 1.0
+ */
+final class Engines {
+
+  private Engines() {
+  }
+
+  /**
+   * Creates a path finder.
+   * @param name the simple class name of the path finder
+   * @param queueStrategy the queue strategy of the path finder
+   * @return the new path finder
+   */
+  static AbstractPathFinder create(String name, QueueStrategy queueStrategy) {
+    AbstractPathFinder pathFinder;
+    switch (name) {
+      case "PathFinderAlgorithm":
+        pathFinder = new PathFinderAlgorithm();
+        break;
+      case "AStarPathFinder":
+        pathFinder = new AStarPathFinder();
+        break;
+      case "BidirectionalPathFinder":
+        pathFinder = new BidirectionalPathFinder();
+        break;
+      case "JumpPointPathFinder":
+        pathFinder = new JumpPointPathFinder();
+        break;
+      case "HierarchicalPathFinder":
+        pathFinder = new HierarchicalPathFinder();
+        break;
+      case "IncrementalPathFinder":
+        pathFinder = new IncrementalPathFinder();
+        break;
+      case "AnytimePathFinder":
+        pathFinder = new AnytimePathFinder();
+        break;
+      default:
+        throw new IllegalArgumentException("unknown path finder " + name);
+    }
+    pathFinder.setQueueStrategy(queueStrategy);
+    return pathFinder;
+  }
+}
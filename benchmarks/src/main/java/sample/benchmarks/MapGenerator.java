@@ -0,0 +1,240 @@
+package sample.benchmarks;
+
+import java.util.Random;
+import sample.Coordinate;
+import sample.Material;
+import sample.PaletteTerrainStorage;
+import sample.TerrainMap;
+
+/**
+ * Creates synthetic maps for benchmarks.
+ * The same type, size, density and seed always give the same map, so the
+ * results of different engines and different runs can be compared.
+ * The cells are written as palette indices, so even maps of 4096 x 4096
+ * cells are created within a few seconds.
+ * @version 1.0
+ */
+public final class MapGenerator {
+
+  /**
+   * highest costs of a cell that is no obstacle, the lowest costs are 1.
+   */
+  public static final int MAX_COSTS = 9;
+
+  // distance between the random values of the noise
+  private static final int NOISE_SPACING = 16;
+  // resolution of the histogram that finds the obstacle threshold of the noise
+  private static final int NOISE_LEVELS = 1024;
+
+  private MapGenerator() {
+  }
+
+  /**
+   * Creates a square map.
+   * @param type the kind of terrain
+   * @param size length and height of the map
+   * @param obstacleDensity share of obstacle cells between 0 and 1; for MAZE the share
+   *                        of walls between two corridors that are kept, 1 gives a perfect maze
+   * @param seed seed of the random numbers
+   * @return the new map
+   */
+  public static TerrainMap generate(MapType type, int size, double obstacleDensity, long seed) {
+    if (size < 1) {
+      throw new IllegalArgumentException("size must be at least 1");
+    }
+    if (obstacleDensity < 0 || obstacleDensity > 1) {
+      throw new IllegalArgumentException("obstacle density must be between 0 and 1");
+    }
+    PaletteTerrainStorage storage = new PaletteTerrainStorage(size, size,
+        new Material("costs 1", 1, false));
+    int[] costIndices = new int[MAX_COSTS + 1];
+    for (int costs = 1; costs <= MAX_COSTS; costs++) {
+      costIndices[costs] = storage.intern("costs " + costs, costs, false);
+    }
+    int wallIndex = storage.intern("wall", 1, true);
+    Random random = new Random(seed);
+    switch (type) {
+      case OPEN:
+        generateOpen(storage, costIndices, wallIndex, obstacleDensity, random);
+        break;
+      case MAZE:
+        generateMaze(storage, costIndices, wallIndex, obstacleDensity, random);
+        break;
+      default:
+        generateNoise(storage, costIndices, wallIndex, obstacleDensity, random);
+        break;
+    }
+    return new TerrainMap(storage);
+  }
+
+  /**
+   * Chooses points that are no obstacles.
+   * @param terrainMap the map to choose the points on
+   * @param count the number of points
+   * @param seed seed of the random numbers
+   * @return the points, the same seed gives the same points
+   */
+  public static Coordinate[] freePoints(TerrainMap terrainMap, int count, long seed) {
+    Random random = new Random(seed);
+    int length = terrainMap.getLength();
+    int height = terrainMap.getHeight();
+    Coordinate[] points = new Coordinate[count];
+    for (int i = 0; i < count; i++) {
+      int xvalue;
+      int yvalue;
+      int attempts = 0;
+      do {
+        if (++attempts > 1_000_000) {
+          throw new IllegalArgumentException("map has almost no cells that are no obstacle");
+        }
+        xvalue = random.nextInt(length);
+        yvalue = random.nextInt(height);
+      } while (terrainMap.isObstacleAt(xvalue, yvalue));
+      points[i] = new Coordinate(xvalue, yvalue);
+    }
+    return points;
+  }
+
+  private static void generateOpen(PaletteTerrainStorage storage, int[] costIndices,
+                                   int wallIndex, double obstacleDensity, Random random) {
+    int size = storage.getLength();
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        storage.setPaletteIndex(x, y, random.nextDouble() < obstacleDensity
+            ? wallIndex : costIndices[1 + random.nextInt(MAX_COSTS)]);
+      }
+    }
+  }
+
+  /**
+   * Carves a maze with a randomized depth first search over the cells with
+   * even coordinates, then removes walls between corridors.
+   */
+  private static void generateMaze(PaletteTerrainStorage storage, int[] costIndices,
+                                   int wallIndex, double obstacleDensity, Random random) {
+    int size = storage.getLength();
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        storage.setPaletteIndex(x, y, wallIndex);
+      }
+    }
+    int rooms = (size + 1) / 2;
+    boolean[] visited = new boolean[rooms * rooms];
+    int[] stack = new int[rooms * rooms];
+    int top = 0;
+    stack[top++] = 0;
+    visited[0] = true;
+    carve(storage, costIndices, 0, 0, random);
+    int[] candidates = new int[4];
+    while (top > 0) {
+      int room = stack[top - 1];
+      int roomX = room % rooms;
+      int roomY = room / rooms;
+      int count = 0;
+      if (roomX > 0 && !visited[room - 1]) {
+        candidates[count++] = room - 1;
+      }
+      if (roomX + 1 < rooms && !visited[room + 1]) {
+        candidates[count++] = room + 1;
+      }
+      if (roomY > 0 && !visited[room - rooms]) {
+        candidates[count++] = room - rooms;
+      }
+      if (roomY + 1 < rooms && !visited[room + rooms]) {
+        candidates[count++] = room + rooms;
+      }
+      if (count == 0) {
+        top--;
+        continue;
+      }
+      int next = candidates[random.nextInt(count)];
+      int nextX = next % rooms;
+      int nextY = next / rooms;
+      // the wall between two rooms lies between their cells
+      carve(storage, costIndices, roomX + nextX, roomY + nextY, random);
+      carve(storage, costIndices, 2 * nextX, 2 * nextY, random);
+      visited[next] = true;
+      stack[top++] = next;
+    }
+    // walls between two corridors are removed, the pillars between four rooms stay
+    for (int y = 0; y < size; y++) {
+      for (int x = (y + 1) % 2; x < size; x += 2) {
+        if (storage.getPaletteIndex(x, y) == wallIndex && random.nextDouble() >= obstacleDensity) {
+          carve(storage, costIndices, x, y, random);
+        }
+      }
+    }
+  }
+
+  private static void carve(PaletteTerrainStorage storage, int[] costIndices, int xvalue,
+                            int yvalue, Random random) {
+    storage.setPaletteIndex(xvalue, yvalue, costIndices[1 + random.nextInt(MAX_COSTS)]);
+  }
+
+  /**
+   * Creates two layers of value noise, one for the costs and one for the obstacles.
+   * The obstacle threshold is chosen from a histogram, so the share of obstacles
+   * is close to the density although the noise is not evenly distributed.
+   */
+  private static void generateNoise(PaletteTerrainStorage storage, int[] costIndices,
+                                    int wallIndex, double obstacleDensity, Random random) {
+    int size = storage.getLength();
+    int lattice = size / NOISE_SPACING + 2;
+    float[] costLattice = randomLattice(lattice, random);
+    float[] obstacleLattice = randomLattice(lattice, random);
+    int[] histogram = new int[NOISE_LEVELS];
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        histogram[level(noise(obstacleLattice, lattice, x, y))]++;
+      }
+    }
+    long obstacleCells = Math.round(obstacleDensity * size * size);
+    int threshold = 0;
+    for (long cells = 0; threshold < NOISE_LEVELS && cells + histogram[threshold] <= obstacleCells;
+         threshold++) {
+      cells += histogram[threshold];
+    }
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        if (level(noise(obstacleLattice, lattice, x, y)) < threshold) {
+          storage.setPaletteIndex(x, y, wallIndex);
+        } else {
+          int costs = 1 + (int) (noise(costLattice, lattice, x, y) * MAX_COSTS);
+          storage.setPaletteIndex(x, y, costIndices[Math.min(MAX_COSTS, costs)]);
+        }
+      }
+    }
+  }
+
+  private static float[] randomLattice(int lattice, Random random) {
+    float[] values = new float[lattice * lattice];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextFloat();
+    }
+    return values;
+  }
+
+  /**
+   * Interpolates the random values around a cell with a smooth step.
+   * @return a value between 0 inclusive and 1 exclusive
+   */
+  private static float noise(float[] values, int lattice, int xvalue, int yvalue) {
+    int cellX = xvalue / NOISE_SPACING;
+    int cellY = yvalue / NOISE_SPACING;
+    float fractionX = smooth((xvalue % NOISE_SPACING) / (float) NOISE_SPACING);
+    float fractionY = smooth((yvalue % NOISE_SPACING) / (float) NOISE_SPACING);
+    float top = values[cellY * lattice + cellX] * (1 - fractionX)
+        + values[cellY * lattice + cellX + 1] * fractionX;
+    float bottom = values[(cellY + 1) * lattice + cellX] * (1 - fractionX)
+        + values[(cellY + 1) * lattice + cellX + 1] * fractionX;
+    return Math.min(0.99999f, top * (1 - fractionY) + bottom * fractionY);
+  }
+
+  private static float smooth(float fraction) {
+    return fraction * fraction * (3 - 2 * fraction);
+  }
+
+  private static int level(float noise) {
+    return (int) (noise * NOISE_LEVELS);
+  }
+}
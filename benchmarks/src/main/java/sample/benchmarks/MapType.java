@@ -0,0 +1,22 @@
+package sample.benchmarks;
+
+/**
+ * Enum to specify the kind of terrain a MapGenerator creates.
+ * @version 1.0
+ */
+public enum MapType {
+  /**
+   * random costs per cell and scattered obstacles.
+   */
+  OPEN,
+
+  /**
+   * corridors of one cell between walls, with random costs in the corridors.
+   */
+  MAZE,
+
+  /**
+   * smooth value noise: regions of similar costs and connected obstacle areas.
+   */
+  NOISE
+}
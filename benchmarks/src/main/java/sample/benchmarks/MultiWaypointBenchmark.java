@@ -0,0 +1,85 @@
+package sample.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sample.AbstractPathFinder;
+import sample.Coordinate;
+import sample.Options;
+import sample.QueueStrategy;
+import sample.TerrainMap;
+import sample.WaypointOrderPathFinder;
+
+/**
+ * Time of a query over intermediate points, in the given order and in the
+ * order chosen by WaypointOrderPathFinder.
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class MultiWaypointBenchmark {
+
+  @Param({"PathFinderAlgorithm", "AStarPathFinder", "HierarchicalPathFinder"})
+  public String engine;
+
+  @Param({"256", "1024"})
+  public int size;
+
+  @Param({"OPEN", "NOISE"})
+  public MapType mapType;
+
+  @Param({"0.2"})
+  public double obstacleDensity;
+
+  @Param({"2", "8"})
+  public int waypoints;
+
+  @Param({"COSTS_ONLY", "COSTS_AND_NUMBER_POINTS"})
+  public Options option;
+
+  private TerrainMap terrainMap;
+  private AbstractPathFinder pathFinder;
+  private WaypointOrderPathFinder orderPathFinder;
+  private Coordinate startingPoint;
+  private Coordinate endingPoint;
+  private List<Coordinate> intermediatePoints;
+
+  @Setup
+  public void setUp() throws Exception {
+    terrainMap = MapGenerator.generate(mapType, size, obstacleDensity, 42);
+    pathFinder = Engines.create(engine, QueueStrategy.AUTO);
+    orderPathFinder = new WaypointOrderPathFinder(pathFinder);
+    Coordinate[] points = MapGenerator.freePoints(terrainMap, waypoints + 2, 7);
+    startingPoint = points[0];
+    endingPoint = points[points.length - 1];
+    intermediatePoints = Arrays.asList(points).subList(1, points.length - 1);
+    pathFinder.getPath(terrainMap, startingPoint, endingPoint, option);
+  }
+
+  @Benchmark
+  public Queue<Coordinate> givenOrder() throws Exception {
+    return pathFinder.getPath(terrainMap, startingPoint, endingPoint, intermediatePoints, option);
+  }
+
+  @Benchmark
+  public Queue<Coordinate> optimisedOrder() throws Exception {
+    return orderPathFinder.getPath(terrainMap, startingPoint, endingPoint, intermediatePoints,
+        option);
+  }
+}
@@ -0,0 +1,77 @@
+package sample.benchmarks;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sample.AbstractPathFinder;
+import sample.Coordinate;
+import sample.Options;
+import sample.QueueStrategy;
+import sample.TerrainMap;
+
+/**
+ * Time of a single query between two points for every engine, map and option.
+ * The queries cycle through more point pairs than IncrementalPathFinder keeps
+ * plans, so every query is a complete search.
+ * Subsets are chosen on the command line, for example
+ * {@code java -jar benchmarks.jar PathQueryBenchmark -p size=1024 -p mapType=MAZE}.
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class PathQueryBenchmark {
+
+  // number of point pairs the queries cycle through
+  private static final int PAIRS = 16;
+
+  @Param({"PathFinderAlgorithm", "AStarPathFinder", "BidirectionalPathFinder",
+      "JumpPointPathFinder", "HierarchicalPathFinder", "IncrementalPathFinder",
+      "AnytimePathFinder"})
+  public String engine;
+
+  @Param({"32", "256", "1024", "4096"})
+  public int size;
+
+  @Param({"OPEN", "MAZE", "NOISE"})
+  public MapType mapType;
+
+  @Param({"0.0", "0.2", "0.35"})
+  public double obstacleDensity;
+
+  @Param({"COSTS_ONLY", "COSTS_AND_NUMBER_POINTS"})
+  public Options option;
+
+  private TerrainMap terrainMap;
+  private AbstractPathFinder pathFinder;
+  private Coordinate[] points;
+  private int pair;
+
+  @Setup
+  public void setUp() throws Exception {
+    terrainMap = MapGenerator.generate(mapType, size, obstacleDensity, 42);
+    pathFinder = Engines.create(engine, QueueStrategy.AUTO);
+    points = MapGenerator.freePoints(terrainMap, 2 * PAIRS, 7);
+    // builds the cluster graph of HierarchicalPathFinder before the measurement
+    pathFinder.getPath(terrainMap, points[0], points[1], option);
+  }
+
+  @Benchmark
+  public Queue<Coordinate> singleQuery() throws Exception {
+    pair = (pair + 1) % PAIRS;
+    return pathFinder.getPath(terrainMap, points[2 * pair], points[2 * pair + 1], option);
+  }
+}
@@ -0,0 +1,75 @@
+package sample.benchmarks;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sample.AbstractPathFinder;
+import sample.Coordinate;
+import sample.Options;
+import sample.QueueStrategy;
+import sample.TerrainMap;
+
+/**
+ * Compares the open-set queues of the searches: the 4-ary heap, the radix
+ * heap, Dial's buckets and the automatic choice between them.
+ * The gradient option spreads the costs widely, so it shows where AUTO
+ * leaves Dial's buckets for the radix heap.
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class QueueStrategyBenchmark {
+
+  // number of point pairs the queries cycle through
+  private static final int PAIRS = 16;
+
+  @Param({"D_ARY_HEAP", "RADIX_HEAP", "DIAL_BUCKETS", "AUTO"})
+  public QueueStrategy queueStrategy;
+
+  @Param({"PathFinderAlgorithm", "AStarPathFinder"})
+  public String engine;
+
+  @Param({"256", "1024", "4096"})
+  public int size;
+
+  @Param({"OPEN", "NOISE"})
+  public MapType mapType;
+
+  @Param({"0.2"})
+  public double obstacleDensity;
+
+  @Param({"COSTS_ONLY", "COSTS_AND_NUMBER_POINTS"})
+  public Options option;
+
+  private TerrainMap terrainMap;
+  private AbstractPathFinder pathFinder;
+  private Coordinate[] points;
+  private int pair;
+
+  @Setup
+  public void setUp() {
+    terrainMap = MapGenerator.generate(mapType, size, obstacleDensity, 42);
+    pathFinder = Engines.create(engine, queueStrategy);
+    points = MapGenerator.freePoints(terrainMap, 2 * PAIRS, 7);
+  }
+
+  @Benchmark
+  public Queue<Coordinate> singleQuery() throws Exception {
+    pair = (pair + 1) % PAIRS;
+    return pathFinder.getPath(terrainMap, points[2 * pair], points[2 * pair + 1], option);
+  }
+}
@@ -0,0 +1,103 @@
+package sample.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sample.Coordinate;
+import sample.Material;
+import sample.RadialGradientCostModel;
+import sample.TerrainMap;
+
+/**
+ * Time to create maps and their gradient costs.
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class TerrainMapBenchmark {
+
+  @Param({"32", "256", "1024", "4096"})
+  public int size;
+
+  @Param({"OPEN", "MAZE", "NOISE"})
+  public MapType mapType;
+
+  private TerrainMap terrainMap;
+  private Coordinate center;
+  private Material[] materials;
+
+  @Setup
+  public void setUp() {
+    terrainMap = MapGenerator.generate(mapType, size, 0.2, 42);
+    center = new Coordinate(size / 2, size / 2);
+    materials = new Material[MapGenerator.MAX_COSTS];
+    for (int i = 0; i < materials.length; i++) {
+      materials[i] = new Material("costs " + (i + 1), i + 1, false);
+    }
+  }
+
+  /**
+   * Creates an empty map.
+   */
+  @Benchmark
+  public TerrainMap construction() {
+    return new TerrainMap(size, size);
+  }
+
+  /**
+   * Creates a map and sets every point through the public interface, like an editor does.
+   */
+  @Benchmark
+  public TerrainMap constructionPerPoint() {
+    TerrainMap map = new TerrainMap(size, size);
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        map.setMaterialAtPoint(new Coordinate(x, y), materials[(x + y) % materials.length]);
+      }
+    }
+    return map;
+  }
+
+  /**
+   * Creates one of the synthetic maps.
+   */
+  @Benchmark
+  public TerrainMap generate() {
+    return MapGenerator.generate(mapType, size, 0.2, 42);
+  }
+
+  /**
+   * Copies the map with the gradient costs of Options.COSTS_AND_NUMBER_POINTS.
+   */
+  @Benchmark
+  public TerrainMap addRadialGradient() {
+    return terrainMap.addRadialGradient(center);
+  }
+
+  /**
+   * Reads the same gradient costs from the lazy cost model that the searches use.
+   */
+  @Benchmark
+  public void radialGradientCostModel(Blackhole blackhole) {
+    RadialGradientCostModel costModel = new RadialGradientCostModel(terrainMap, center);
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        blackhole.consume(costModel.costsAt(x, y));
+      }
+    }
+  }
+}
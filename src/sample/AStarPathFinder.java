@@ -0,0 +1,134 @@
+package sample;
+
+/**
+ * Implementation of the pathfinder interface based on the A* algorithm.
+ * Like the dijkstra algorithm it searches from the ending point, but it
+ * prefers cells close to the starting point and stops as soon as the
+ * starting point is finished.
+ * The heuristic is the Manhattan distance scaled by the lowest costs of a
+ * cell, which never overestimates the real costs, so the paths have the
+ * same costs as the ones of PathFinderAlgorithm.
+ * @version 1.0
+ */
+public class AStarPathFinder extends AbstractPathFinder {
+
+  /**
+   * Constructor for class AStarPathFinder.
+   * The priority queue is chosen automatically for every query.
+   */
+  public AStarPathFinder() {
+    this(QueueStrategy.AUTO);
+  }
+
+  /**
+   * Constructor for class AStarPathFinder.
+   * @param queueStrategy the priority queue used for the cells that are not finished
+   */
+  public AStarPathFinder(QueueStrategy queueStrategy) {
+    setQueueStrategy(queueStrategy);
+  }
+
+  @Override
+  protected AbstractPathFinder newLegFinder() {
+    return new AStarPathFinder(getQueueStrategy());
+  }
+
+  @Override
+  protected int[] searchPath(CostModel costModel, int startingCell, int endingCell) {
+    search(context, getQueueStrategy(), costModel, startingCell, endingCell);
+    return tracePredecessors(startingCell);
+  }
+
+  /**
+   * A* search from the ending to the starting cell, also used by finders
+   * that fall back to it.
+   * @param context the context that receives the costs and predecessors
+   * @param queueStrategy the priority queue used for the cells that are not finished
+   * @param costModel the costs of the cells
+   * @param startingCell index of the starting cell
+   * @param endingCell index of the ending cell
+   */
+  static void search(SearchContext context, QueueStrategy queueStrategy, CostModel costModel,
+                     int startingCell, int endingCell) {
+    int length = costModel.getLength();
+    int height = costModel.getHeight();
+    int minCosts = costModel.getMinCosts();
+    // the heuristic can raise the key of a step by at most minCosts
+    context.reset(length * height, queueStrategy, 0, costModel.getMaxCosts() + minCosts);
+    OpenSet notFinishedCells = context.getOpenSet();
+    int targetX = startingCell % length;
+    int targetY = startingCell / length;
+
+    context.setCosts(endingCell, 0, SearchContext.NONE);
+    notFinishedCells.insert(endingCell, heuristic(endingCell % length, endingCell / length,
+        targetX, targetY, minCosts));
+
+    while (!notFinishedCells.isEmpty()) {
+      int cell = notFinishedCells.extractMin();
+      if (cell == startingCell) {
+        break;
+      }
+      context.close(cell);
+      int costs = context.getCosts(cell);
+      int xvalue = cell % length;
+      int yvalue = cell / length;
+      // the neighbours of the frontier are read next
+      costModel.prefetch(xvalue, yvalue);
+      // relax all neighbour cells
+      if (xvalue > 0) {
+        relax(context, costModel, cell, costs, cell - 1, xvalue - 1, yvalue,
+            targetX, targetY, minCosts);
+      }
+      if (xvalue + 1 < length) {
+        relax(context, costModel, cell, costs, cell + 1, xvalue + 1, yvalue,
+            targetX, targetY, minCosts);
+      }
+      if (yvalue > 0) {
+        relax(context, costModel, cell, costs, cell - length, xvalue, yvalue - 1,
+            targetX, targetY, minCosts);
+      }
+      if (yvalue + 1 < height) {
+        relax(context, costModel, cell, costs, cell + length, xvalue, yvalue + 1,
+            targetX, targetY, minCosts);
+      }
+    }
+  }
+
+  /**
+   * Lower bound of the costs from a cell to the target cell.
+   * Every step but the last enters a cell other than the target, which costs
+   * at least minCosts. The target itself is not counted, so the bound also
+   * holds if the target is cheaper than all other cells.
+   * @param xvalue x-coordinate of the cell
+   * @param yvalue y-coordinate of the cell
+   * @param targetX x-coordinate of the target cell
+   * @param targetY y-coordinate of the target cell
+   * @param minCosts the lowest costs of a cell
+   * @return the estimated remaining costs
+   */
+  static int heuristic(int xvalue, int yvalue, int targetX, int targetY, int minCosts) {
+    int steps = Math.abs(xvalue - targetX) + Math.abs(yvalue - targetY);
+    return steps > 1 ? SearchContext.addCosts(0, (long) (steps - 1) * minCosts) : 0;
+  }
+
+  /**
+   * Lowers the costs of a neighbour cell if it can be reached cheaper over the current cell.
+   */
+  private static void relax(SearchContext context, CostModel costModel, int current,
+                            int currentCosts, int neighbour, int xvalue, int yvalue,
+                            int targetX, int targetY, int minCosts) {
+    if (context.isClosed(neighbour)) {
+      return;
+    }
+    int stepCosts = costModel.costsAt(xvalue, yvalue);
+    if (stepCosts == CostModel.OBSTACLE) {
+      return;
+    }
+    int costsToNeighbour = SearchContext.addCosts(currentCosts, stepCosts);
+    if (costsToNeighbour < context.getCosts(neighbour)) {
+      context.setCosts(neighbour, costsToNeighbour, current);
+      context.getOpenSet().insertOrDecrease(neighbour, SearchContext.addCosts(costsToNeighbour,
+          heuristic(xvalue, yvalue, targetX, targetY, minCosts)));
+    }
+  }
+}
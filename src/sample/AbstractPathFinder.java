@@ -0,0 +1,568 @@
+package sample;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Base class for path finders that search over the cells of a TerrainMap.
+ * Checks the query, creates the cost model for the chosen option and turns
+ * the found cells into a path. Subclasses only implement the search itself.
+ * The search state is kept in a SearchContext that is reused between queries.
+ * The legs of a path over intermediate points are searched in parallel on a
+ * ForkJoinPool, each by its own leg finder, and joined without copies.
+ * A finder must only be used by one query at a time.
+ * Registered SearchListeners are told the counters and times of every query;
+ * without listeners nothing is counted or timed. An observed query can be
+ * cancelled by interrupting the thread that started it, the search then
+ * stops with a CancellationException at its next checkpoint.
+ * Points that lie in different areas of the ConnectivityIndex of the map
+ * are answered without search.
+ * @version 1.0
+ */
+public abstract class AbstractPathFinder implements PathFinder {
+
+  // costs, predecessors and finished cells of the search
+  protected final SearchContext context = new SearchContext();
+  // priority queue used for the cells that are not finished
+  private QueueStrategy queueStrategy = QueueStrategy.AUTO;
+  // pool that searches the legs of a path over intermediate points
+  private ForkJoinPool legPool = ForkJoinPool.commonPool();
+  // finders of earlier legs, each with its own search state
+  private final ConcurrentLinkedQueue<AbstractPathFinder> legFinders = new ConcurrentLinkedQueue<>();
+  private final List<SearchListener> searchListeners = new CopyOnWriteArrayList<>();
+  // counters of the query that is observed right now, otherwise null
+  private SearchMeter meter;
+
+  public QueueStrategy getQueueStrategy() {
+    return queueStrategy;
+  }
+
+  /**
+   * Sets the priority queue used by the following queries.
+   * @param queueStrategy the priority queue used for the cells that are not finished
+   */
+  public void setQueueStrategy(QueueStrategy queueStrategy) {
+    if (queueStrategy == null) {
+      throw new IllegalArgumentException();
+    }
+    this.queueStrategy = queueStrategy;
+  }
+
+  /**
+   * Sets the pool that searches the legs of a path over intermediate points.
+   * @param legPool the pool for the legs, the common pool by default
+   */
+  public void setLegPool(ForkJoinPool legPool) {
+    if (legPool == null) {
+      throw new IllegalArgumentException();
+    }
+    this.legPool = legPool;
+  }
+
+  public ForkJoinPool getLegPool() {
+    return legPool;
+  }
+
+  @Override
+  public boolean isObservable() {
+    return true;
+  }
+
+  @Override
+  public void addSearchListener(SearchListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException();
+    }
+    searchListeners.add(listener);
+  }
+
+  @Override
+  public void removeSearchListener(SearchListener listener) {
+    searchListeners.remove(listener);
+  }
+
+  @Override
+  public Queue<Coordinate> getPath(TerrainMap terrainMap, Coordinate startingPoint,
+                                   Coordinate endingPoint, Options option)
+          throws Exception {
+    return calculatePath(terrainMap, startingPoint, endingPoint, option).asQueue();
+  }
+
+  @Override
+  public Queue<Coordinate> getPath(TerrainMap terrainMap, Coordinate startingPoint,
+                                   Coordinate endingPoint, List<Coordinate> intermediatePoints,
+                                   Options option) throws Exception {
+    return calculatePath(terrainMap, startingPoint, endingPoint, intermediatePoints, option)
+        .asQueue();
+  }
+
+  @Override
+  public Path calculatePath(TerrainMap terrainMap, Coordinate startingPoint,
+                            Coordinate endingPoint, Options option) throws Exception {
+    checkPoints(terrainMap, startingPoint, endingPoint);
+    return calculatePath(terrainMap, new Coordinate[] {startingPoint, endingPoint}, option);
+  }
+
+  @Override
+  public Path calculatePath(TerrainMap terrainMap, Coordinate startingPoint,
+                            Coordinate endingPoint, List<Coordinate> intermediatePoints,
+                            Options option) throws Exception {
+    //if there is no intermediate point
+    if (intermediatePoints.isEmpty()) {
+      //calculate the path from the starting to the ending point
+      return calculatePath(terrainMap,startingPoint,endingPoint,option);
+    }
+    Coordinate[] points = new Coordinate[intermediatePoints.size() + 2];
+    points[0] = startingPoint;
+    for (int i = 0; i < intermediatePoints.size(); i++) {
+      points[i + 1] = intermediatePoints.get(i);
+    }
+    points[points.length - 1] = endingPoint;
+    // all points are checked before any leg is searched, in the order of the path
+    for (Coordinate point : points) {
+      checkPoint(terrainMap, point);
+    }
+    return calculatePath(terrainMap, points, option);
+  }
+
+  /**
+   * Searches the legs between checked points and joins them into a path.
+   * @param points the starting point, the intermediate points and the ending point
+   */
+  private Path calculatePath(TerrainMap terrainMap, Coordinate[] points, Options option) {
+    SearchMeter observed = searchListeners.isEmpty() ? null : new SearchMeter(searchListeners);
+    long allocated = observed == null ? 0 : allocatedBytes();
+    long started = observed == null ? 0 : System.nanoTime();
+    int[][] legs = new int[points.length - 1][];
+    attachMeter(observed);
+    try {
+      if (!isReachable(terrainMap, points)) {
+        // stitch returns no path for the first empty leg between different points
+        Arrays.fill(legs, new int[0]);
+      } else if (legs.length == 1) {
+        legs[0] = findPath(terrainMap, points[0], points[1], option);
+      } else {
+        searchLegs(terrainMap, points, option, legs);
+      }
+    } finally {
+      attachMeter(null);
+    }
+    if (observed == null) {
+      return stitch(terrainMap, legs, points, option);
+    }
+    long searched = System.nanoTime();
+    Path path = stitch(terrainMap, legs, points, option);
+    observed.pathNanos = System.nanoTime() - searched;
+    searchFinished(observed, option, points.length - 2, path.size(), searched - started, allocated);
+    return path;
+  }
+
+  /**
+   * Asks the connectivity index of the map if every point can be reached from the one before.
+   * Building the index on the first query counts as preparation.
+   * Maps whose cells are read in chunks from a file are not indexed, the
+   * index would read the whole file and keep an int for every cell.
+   */
+  private boolean isReachable(TerrainMap terrainMap, Coordinate[] points) {
+    if (terrainMap.getStorage().isChunked()) {
+      return true;
+    }
+    long started = meter == null ? 0 : System.nanoTime();
+    ConnectivityIndex connectivity = terrainMap.getConnectivityIndex();
+    boolean reachable = true;
+    for (int i = 0; i < points.length - 1 && reachable; i++) {
+      reachable = connectivity.isConnected(points[i], points[i + 1]);
+    }
+    addPrepareNanos(meter == null ? 0 : System.nanoTime() - started);
+    return reachable;
+  }
+
+  /**
+   * Searches the legs between the points of a path, in parallel if leg finders are supported.
+   */
+  private void searchLegs(TerrainMap terrainMap, Coordinate[] points, Options option,
+                          int[][] legs) {
+    AbstractPathFinder legFinder = borrowLegFinder();
+    if (legFinder == null) {
+      for (int i = 0; i < legs.length; i++) {
+        legs[i] = findPath(terrainMap, points[i], points[i + 1], option);
+      }
+      return;
+    }
+    legFinders.offer(legFinder);
+    // the costs without gradient do not depend on the leg, all legs read the same model
+    CostModel sharedCostModel = null;
+    if (option == Options.COSTS_ONLY) {
+      long started = meter == null ? 0 : System.nanoTime();
+      sharedCostModel = createCostModel(terrainMap, points[0], option);
+      addPrepareNanos(meter == null ? 0 : System.nanoTime() - started);
+    }
+    legPool.invoke(new LegSearch(terrainMap, points, option, sharedCostModel, meter, legs, 0,
+        legs.length));
+  }
+
+  /**
+   * Calculates the path between the starting and end point with any costs.
+   * Other cost models than the ones of the options can be plugged in this way,
+   * for example models that compute their costs from a TerrainMap when they are asked.
+   * @param costModel the costs of the cells
+   * @param startingPoint the starting point of the path
+   * @param endingPoint the ending point of the path
+   * @return the calculated path from the starting to the end point
+   * @throws Exception if one of the points is an obstacle
+   */
+  public Queue<Coordinate> getPath(CostModel costModel, Coordinate startingPoint,
+                                   Coordinate endingPoint) throws Exception {
+    return calculatePath(costModel, startingPoint, endingPoint).asQueue();
+  }
+
+  /**
+   * Calculates the path between the starting and end point with any costs as compact Path.
+   * @param costModel the costs of the cells
+   * @param startingPoint the starting point of the path
+   * @param endingPoint the ending point of the path
+   * @return the calculated path with its costs, its option is null
+   * @throws Exception if one of the points is an obstacle
+   */
+  public Path calculatePath(CostModel costModel, Coordinate startingPoint,
+                            Coordinate endingPoint) throws Exception {
+    checkPoint(costModel, startingPoint);
+    checkPoint(costModel, endingPoint);
+    int length = costModel.getLength();
+    int startingCell = cellOf(startingPoint, length);
+    int endingCell = cellOf(endingPoint, length);
+    int[] cells = searchPath(costModel, startingCell, endingCell);
+    long costs = cells.length == 0 && startingCell != endingCell
+        ? Path.NO_PATH : Path.costsOf(cells, costModel);
+    return new Path(cells, length, costs, null);
+  }
+
+  /**
+   * Searches the cells of the path between two points that can be walked over.
+   * @param terrainMap the map of the terrain to calculate the path
+   * @param startingPoint the starting point of the path
+   * @param endingPoint the ending point of the path
+   * @param option option to specify on which basis is used to calculate the path
+   * @return the cells from the starting to the ending point,
+   *         empty if there is no path or both points are equal
+   */
+  protected int[] findPath(TerrainMap terrainMap, Coordinate startingPoint,
+                           Coordinate endingPoint, Options option) {
+    long started = meter == null ? 0 : System.nanoTime();
+    CostModel costModel = createCostModel(terrainMap, startingPoint, option);
+    addPrepareNanos(meter == null ? 0 : System.nanoTime() - started);
+    int length = costModel.getLength();
+    return searchPath(costModel, cellOf(startingPoint, length), cellOf(endingPoint, length));
+  }
+
+  /**
+   * Lets the searches of this finder count into a meter.
+   * Subclasses with more search state than the context count that state as well.
+   * @param meter the meter of the observed query or null to stop counting
+   */
+  void attachMeter(SearchMeter meter) {
+    this.meter = meter;
+    context.setMeter(meter);
+  }
+
+  /**
+   * Getter for the meter of a search that does not use the open set of the context.
+   * Such a search counts its expanded nodes itself, which also checks for cancellation.
+   * @return the meter of the observed query or null while no query is observed
+   */
+  SearchMeter getMeter() {
+    return meter;
+  }
+
+  /**
+   * Counts time spent preparing the terrain for a search, for example building a graph.
+   * Does nothing while no query is observed.
+   * @param nanos the time in nanoseconds
+   */
+  protected void addPrepareNanos(long nanos) {
+    if (meter != null) {
+      meter.prepareNanos += nanos;
+    }
+  }
+
+  /**
+   * Creates a path finder with the same settings and its own search state.
+   * The legs of a path over intermediate points are searched in parallel by such finders.
+   * @return a new path finder, or null if the legs have to be searched one after another
+   *         by this finder because it keeps state that belongs to the map
+   */
+  protected AbstractPathFinder newLegFinder() {
+    return null;
+  }
+
+  /**
+   * Searches the cheapest path between two cells.
+   * The costs of a path are the costs of all its cells except the ending cell.
+   * @param costModel the costs of the cells
+   * @param startingCell index of the starting cell
+   * @param endingCell index of the ending cell
+   * @return the cells from the starting to the ending cell,
+   *         empty if there is no path or both cells are equal
+   */
+  protected abstract int[] searchPath(CostModel costModel, int startingCell, int endingCell);
+
+  /**
+   * Creates the costs of the cells for an option.
+   * @param terrainMap the map of the terrain to calculate the path
+   * @param startingPoint the starting point of the path
+   * @param option option to specify on which basis is used to calculate the path
+   * @return the cost model used by the search
+   */
+  protected CostModel createCostModel(TerrainMap terrainMap, Coordinate startingPoint, Options option) {
+    if (option == Options.COSTS_AND_NUMBER_POINTS) {
+      return new RadialGradientCostModel(terrainMap, startingPoint);
+    }
+    return new TerrainCostModel(terrainMap);
+  }
+
+  /**
+   * Follows the predecessors stored in the context.
+   * @param from index of the first cell of the path
+   * @return the cells from the first cell to the cell without predecessor,
+   *         empty if the first cell has no predecessor
+   */
+  protected int[] tracePredecessors(int from) {
+    int count = 0;
+    for (int cell = from; cell != SearchContext.NONE; cell = context.getPredecessor(cell)) {
+      count++;
+    }
+    if (count < 2) {
+      return new int[0];
+    }
+    int[] cells = new int[count];
+    int index = 0;
+    for (int cell = from; cell != SearchContext.NONE; cell = context.getPredecessor(cell)) {
+      cells[index++] = cell;
+    }
+    return cells;
+  }
+
+  /**
+   * Checks that the starting and the ending point can be walked over.
+   * @param terrainMap the map of the terrain to calculate the path
+   * @param startingPoint the starting point of the path
+   * @param endingPoint the ending point of the path
+   * @throws Exception if one of the points is an obstacle
+   */
+  protected static void checkPoints(TerrainMap terrainMap, Coordinate startingPoint,
+                                    Coordinate endingPoint) throws Exception {
+    checkPoint(terrainMap, startingPoint);
+    checkPoint(terrainMap, endingPoint);
+  }
+
+  /**
+   * Checks that a point can be walked over.
+   * @param terrainMap the map of the terrain to calculate the path
+   * @param point the point to check
+   * @throws Exception if the point is an obstacle
+   */
+  protected static void checkPoint(TerrainMap terrainMap, Coordinate point) throws Exception {
+    if (terrainMap.getMaterialAtPoint(point).isObstacle()) {
+      throw new Exception(point + " is obstacle");
+    }
+  }
+
+  /**
+   * Checks that a point is inside a cost model and can be walked over.
+   * @param costModel the costs of the cells
+   * @param point the point to check
+   * @throws Exception if the point is an obstacle
+   */
+  private static void checkPoint(CostModel costModel, Coordinate point) throws Exception {
+    int xvalue = point.getXvalue();
+    int yvalue = point.getYvalue();
+    if (xvalue < 0 || yvalue < 0 || xvalue >= costModel.getLength()
+        || yvalue >= costModel.getHeight()) {
+      throw new IllegalArgumentException();
+    }
+    if (costModel.costsAt(xvalue, yvalue) == CostModel.OBSTACLE) {
+      throw new Exception(point + " is obstacle");
+    }
+  }
+
+  /**
+   * Joins the legs of a path over intermediate points and adds up their costs.
+   * The first cell of a leg is the last one of the leg before, so it is skipped.
+   * A single leg is taken without copy.
+   * @param terrainMap the map of the terrain the legs were searched on
+   * @param legs the cells of every leg
+   * @param points the starting point, the intermediate points and the ending point
+   * @param option option the legs were searched with
+   * @return the complete path, empty if a leg has no path
+   */
+  private Path stitch(TerrainMap terrainMap, int[][] legs, Coordinate[] points, Options option) {
+    int length = terrainMap.getLength();
+    int count = 0;
+    long costs = 0;
+    for (int i = 0; i < legs.length; i++) {
+      int[] cells = legs[i];
+      if (cells.length == 0) {
+        // a leg between equal points is empty, any other empty leg has no path
+        if (cellOf(points[i], length) != cellOf(points[i + 1], length)) {
+          return new Path(cells, length, Path.NO_PATH, option);
+        }
+        continue;
+      }
+      count += count == 0 ? cells.length : cells.length - 1;
+      costs += Path.costsOf(cells, createCostModel(terrainMap, points[i], option));
+    }
+    if (legs.length == 1) {
+      return new Path(legs[0], length, costs, option);
+    }
+    int[] path = new int[count];
+    int index = 0;
+    for (int[] cells : legs) {
+      if (cells.length == 0) {
+        continue;
+      }
+      int first = index == 0 ? 0 : 1;
+      System.arraycopy(cells, first, path, index, cells.length - first);
+      index += cells.length - first;
+    }
+    return new Path(path, length, costs, option);
+  }
+
+  /**
+   * Tells the listeners about an observed query.
+   */
+  private void searchFinished(SearchMeter observed, Options option, int intermediatePoints,
+                              int pathLength, long elapsedNanos, long allocatedBefore) {
+    long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+    SearchStatistics statistics = new SearchStatistics(getClass().getSimpleName(), option,
+        intermediatePoints, pathLength, observed, elapsedNanos - observed.prepareNanos, allocated);
+    for (SearchListener listener : searchListeners) {
+      listener.searchFinished(statistics);
+    }
+  }
+
+  /**
+   * Returns the bytes the current thread allocated so far.
+   * @return the bytes or -1 if the runtime can not measure them
+   */
+  private static long allocatedBytes() {
+    com.sun.management.ThreadMXBean threads = AllocationCounter.THREADS;
+    if (threads == null) {
+      return -1;
+    }
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Takes a finder for a leg from the finders of earlier queries or creates a new one.
+   * @return the finder or null if this finder does not support parallel legs
+   */
+  private AbstractPathFinder borrowLegFinder() {
+    AbstractPathFinder legFinder = legFinders.poll();
+    if (legFinder == null) {
+      legFinder = newLegFinder();
+    }
+    if (legFinder != null) {
+      legFinder.setQueueStrategy(queueStrategy);
+    }
+    return legFinder;
+  }
+
+  /**
+   * Returns the flat index of a point.
+   * @param point the point on the map
+   * @param length length of the map in x-direction
+   */
+  protected static int cellOf(Coordinate point, int length) {
+    return point.getYvalue() * length + point.getXvalue();
+  }
+
+  /**
+   * Searches a range of legs, ranges with more than one leg are split.
+   */
+  private final class LegSearch extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TerrainMap terrainMap;
+    private final Coordinate[] points;
+    private final Options option;
+    private final CostModel sharedCostModel;
+    // counters of the observed query, null if it is not observed
+    private final SearchMeter meter;
+    private final int[][] legs;
+    private final int from;
+    private final int to;
+
+    LegSearch(TerrainMap terrainMap, Coordinate[] points, Options option,
+              CostModel sharedCostModel, SearchMeter meter, int[][] legs, int from, int to) {
+      this.terrainMap = terrainMap;
+      this.points = points;
+      this.option = option;
+      this.sharedCostModel = sharedCostModel;
+      this.meter = meter;
+      this.legs = legs;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new LegSearch(terrainMap, points, option, sharedCostModel, meter, legs, from, middle),
+            new LegSearch(terrainMap, points, option, sharedCostModel, meter, legs, middle, to));
+        return;
+      }
+      AbstractPathFinder legFinder = borrowLegFinder();
+      SearchMeter legMeter = meter == null ? null : new SearchMeter(meter);
+      legFinder.attachMeter(legMeter);
+      try {
+        if (sharedCostModel == null) {
+          legs[from] = legFinder.findPath(terrainMap, points[from], points[from + 1], option);
+        } else {
+          int length = sharedCostModel.getLength();
+          legs[from] = legFinder.searchPath(sharedCostModel, cellOf(points[from], length),
+              cellOf(points[from + 1], length));
+        }
+      } finally {
+        legFinder.attachMeter(null);
+        legFinders.offer(legFinder);
+        if (legMeter != null) {
+          meter.addCounters(legMeter);
+        }
+      }
+    }
+  }
+
+  /**
+   * Holds the bean that measures allocations, it is only loaded once a query is observed.
+   */
+  private static final class AllocationCounter {
+
+    static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private static com.sun.management.ThreadMXBean threads() {
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+        return null;
+      }
+      com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+      try {
+        if (!allocations.isThreadAllocatedMemorySupported()) {
+          return null;
+        }
+        allocations.setThreadAllocatedMemoryEnabled(true);
+      } catch (UnsupportedOperationException e) {
+        return null;
+      }
+      return allocations;
+    }
+  }
+}
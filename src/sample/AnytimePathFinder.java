@@ -0,0 +1,510 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Implementation of the pathfinder interface based on the anytime algorithm
+ * ARA*. It starts with an A* search whose heuristic is multiplied by a weight
+ * larger than 1, which finds a path quickly, and then lowers the weight step
+ * by step. Every step reuses the search before and only expands the cells
+ * whose costs improved, until the weight is 1 and the path is the cheapest.
+ * A query stops when its time or expansion budget is spent and returns the
+ * best path found so far. Its costs are at most getLastSuboptimalityBound
+ * times the costs of the cheapest path. improvePath continues the search of
+ * the last query with a new budget.
+ * Without budget the paths have the same costs as the ones of
+ * PathFinderAlgorithm. The legs of a path over intermediate points are
+ * searched one after another and share the budget of the query.
+ * @version 1.0
+ */
+public class AnytimePathFinder extends AbstractPathFinder {
+
+  /**
+   * budget without limit.
+   */
+  public static final long UNLIMITED = Long.MAX_VALUE;
+  /**
+   * weight of the first search used by default.
+   */
+  public static final double DEFAULT_INITIAL_WEIGHT = 3.0;
+  /**
+   * amount the weight is lowered by after every search by default.
+   */
+  public static final double DEFAULT_WEIGHT_STEP = 0.5;
+
+  // expanded cells between two looks at the clock
+  private static final int CLOCK_INTERVAL = 256;
+
+  private double initialWeight = DEFAULT_INITIAL_WEIGHT;
+  private double weightStep = DEFAULT_WEIGHT_STEP;
+  private long timeBudget = UNLIMITED;
+  private long expansionBudget = UNLIMITED;
+
+  // budget of the running query, shared by all its legs
+  private long budgetStarted;
+  private long expansionsLeft;
+  private int clock;
+
+  // search of the last leg, it is kept so its path can be improved
+  private AnytimeSearch search;
+  private boolean lastLegSearched;
+  private boolean improvable;
+  private TerrainMap lastMap;
+  private long lastVersion;
+  private Options lastOption;
+  private double lastSuboptimalityBound = 1;
+
+  /**
+   * Constructor for class AnytimePathFinder without budget.
+   */
+  public AnytimePathFinder() {
+  }
+
+  /**
+   * Constructor for class AnytimePathFinder.
+   * @param timeBudget the time a query may search in nanoseconds or UNLIMITED
+   * @param expansionBudget the cells a query may expand or UNLIMITED
+   */
+  public AnytimePathFinder(long timeBudget, long expansionBudget) {
+    setTimeBudget(timeBudget);
+    setExpansionBudget(expansionBudget);
+  }
+
+  public double getInitialWeight() {
+    return initialWeight;
+  }
+
+  /**
+   * Sets the weight of the heuristic in the first search of a query.
+   * @param initialWeight at least 1, larger weights find the first path faster
+   */
+  public void setInitialWeight(double initialWeight) {
+    if (!(initialWeight >= 1) || Double.isInfinite(initialWeight)) {
+      throw new IllegalArgumentException("initial weight must be at least 1");
+    }
+    this.initialWeight = initialWeight;
+  }
+
+  public double getWeightStep() {
+    return weightStep;
+  }
+
+  /**
+   * Sets the amount the weight is lowered by after every search.
+   * @param weightStep larger than 0, larger steps need fewer searches
+   */
+  public void setWeightStep(double weightStep) {
+    if (!(weightStep > 0)) {
+      throw new IllegalArgumentException("weight step must be larger than 0");
+    }
+    this.weightStep = weightStep;
+  }
+
+  public long getTimeBudget() {
+    return timeBudget;
+  }
+
+  /**
+   * Sets the time a query or a call of improvePath may search.
+   * @param timeBudget the time in nanoseconds or UNLIMITED
+   */
+  public void setTimeBudget(long timeBudget) {
+    if (timeBudget <= 0) {
+      throw new IllegalArgumentException("time budget must be positive");
+    }
+    this.timeBudget = timeBudget;
+  }
+
+  public long getExpansionBudget() {
+    return expansionBudget;
+  }
+
+  /**
+   * Sets the number of cells a query or a call of improvePath may expand.
+   * @param expansionBudget the number of cells or UNLIMITED
+   */
+  public void setExpansionBudget(long expansionBudget) {
+    if (expansionBudget <= 0) {
+      throw new IllegalArgumentException("expansion budget must be positive");
+    }
+    this.expansionBudget = expansionBudget;
+  }
+
+  /**
+   * Getter for the proven suboptimality bound of the path of the last query.
+   * The costs of the path are at most the bound times the costs of the
+   * cheapest path. Over intermediate points it is the largest bound of a leg.
+   * @return 1 if the path is the cheapest or there is none,
+   *         infinity if the budget was spent before a path was found
+   */
+  public double getLastSuboptimalityBound() {
+    return lastSuboptimalityBound;
+  }
+
+  /**
+   * Tells whether improvePath can continue the search of the last query.
+   * That is the case for the last query without intermediate points, as long
+   * as its path is not the cheapest one and its map was not changed.
+   */
+  public boolean isImprovable() {
+    return improvable && lastSuboptimalityBound > 1
+        && (lastMap == null || lastMap.getVersion() == lastVersion);
+  }
+
+  @Override
+  public Path calculatePath(TerrainMap terrainMap, Coordinate startingPoint,
+                            Coordinate endingPoint, Options option) throws Exception {
+    startQuery();
+    // read before the search, a change during the search makes the path outdated
+    long version = terrainMap == null ? 0 : terrainMap.getVersion();
+    Path path = super.calculatePath(terrainMap, startingPoint, endingPoint, option);
+    improvable = lastLegSearched;
+    lastMap = terrainMap;
+    lastVersion = version;
+    lastOption = option;
+    return path;
+  }
+
+  @Override
+  public Path calculatePath(TerrainMap terrainMap, Coordinate startingPoint,
+                            Coordinate endingPoint, List<Coordinate> intermediatePoints,
+                            Options option) throws Exception {
+    if (intermediatePoints.isEmpty()) {
+      return calculatePath(terrainMap, startingPoint, endingPoint, option);
+    }
+    startQuery();
+    return super.calculatePath(terrainMap, startingPoint, endingPoint, intermediatePoints, option);
+  }
+
+  @Override
+  public Path calculatePath(CostModel costModel, Coordinate startingPoint,
+                            Coordinate endingPoint) throws Exception {
+    startQuery();
+    Path path = super.calculatePath(costModel, startingPoint, endingPoint);
+    // a cost model without map can not tell about changes, the caller has to
+    improvable = lastLegSearched;
+    lastMap = null;
+    lastOption = null;
+    return path;
+  }
+
+  /**
+   * Continues the search of the last query with a new budget.
+   * The search goes on where the query stopped, nothing is searched again.
+   * @return the best path found so far, it is never more expensive than the one before
+   * @throws IllegalStateException if the last query had intermediate points
+   *         or its map was changed since
+   */
+  public Path improvePath() {
+    if (!improvable) {
+      throw new IllegalStateException("only the last query without intermediate points can be improved");
+    }
+    if (lastMap != null && lastMap.getVersion() != lastVersion) {
+      throw new IllegalStateException("the map was changed since the path was calculated");
+    }
+    startBudget();
+    search.run();
+    lastSuboptimalityBound = search.bound;
+    int[] cells = search.trace();
+    return new Path(cells, search.length, cells.length == 0 ? Path.NO_PATH : search.bestCosts,
+        lastOption);
+  }
+
+  @Override
+  protected int[] searchPath(CostModel costModel, int startingCell, int endingCell) {
+    if (startingCell == endingCell) {
+      lastLegSearched = false;
+      return new int[0];
+    }
+    if (search == null) {
+      search = new AnytimeSearch();
+    }
+    search.start(costModel, startingCell, endingCell);
+    search.run();
+    lastLegSearched = true;
+    lastSuboptimalityBound = Math.max(lastSuboptimalityBound, search.bound);
+    return search.trace();
+  }
+
+  /**
+   * Forgets the state of the last query and starts its budget.
+   */
+  private void startQuery() {
+    improvable = false;
+    lastLegSearched = false;
+    lastSuboptimalityBound = 1;
+    startBudget();
+  }
+
+  private void startBudget() {
+    budgetStarted = System.nanoTime();
+    expansionsLeft = expansionBudget;
+    clock = 0;
+  }
+
+  /**
+   * Takes one expansion from the budget of the query.
+   * @return false if the budget is spent
+   */
+  private boolean spendExpansion() {
+    if (expansionsLeft == 0) {
+      return false;
+    }
+    expansionsLeft--;
+    if (++clock < CLOCK_INTERVAL || timeBudget == UNLIMITED) {
+      return true;
+    }
+    clock = 0;
+    return System.nanoTime() - budgetStarted < timeBudget;
+  }
+
+  /**
+   * State of the weighted searches of one leg.
+   * It searches from the ending to the starting cell like AStarPathFinder.
+   * Cells whose costs improved after they were expanded are inconsistent,
+   * they are opened again when the weight is lowered.
+   */
+  private final class AnytimeSearch {
+
+    CostModel costModel;
+    int length;
+    // proven bound of the path found so far
+    double bound;
+    // the cheapest path traced so far and its costs, the path is never changed
+    int[] bestCells;
+    long bestCosts;
+
+    private int height;
+    private int minCosts;
+    private int startingCell;
+    private int endingCell;
+    private int targetX;
+    private int targetY;
+    private double weight;
+    private int[] costs = new int[0];
+    private int[] predecessors = new int[0];
+    // bit sets of the cells expanded with the current weight and of the inconsistent cells
+    private long[] closed = new long[0];
+    private long[] inconsistent = new long[0];
+    private int[] inconsistentCells = new int[16];
+    private int inconsistentCount;
+    private int[] openBuffer = new int[0];
+    private final IndexedDaryHeap openCells = new IndexedDaryHeap(0);
+
+    /**
+     * Starts the search of a leg with the initial weight.
+     */
+    void start(CostModel costModel, int startingCell, int endingCell) {
+      this.costModel = costModel;
+      this.startingCell = startingCell;
+      this.endingCell = endingCell;
+      length = costModel.getLength();
+      height = costModel.getHeight();
+      minCosts = costModel.getMinCosts();
+      targetX = startingCell % length;
+      targetY = startingCell / length;
+      int cellCount = length * height;
+      int words = (cellCount + 63) >>> 6;
+      if (cellCount > costs.length) {
+        costs = new int[cellCount];
+        predecessors = new int[cellCount];
+        closed = new long[words];
+        inconsistent = new long[words];
+      } else {
+        Arrays.fill(closed, 0, words, 0L);
+        Arrays.fill(inconsistent, 0, words, 0L);
+      }
+      Arrays.fill(costs, 0, cellCount, SearchContext.INFINITE);
+      Arrays.fill(predecessors, 0, cellCount, SearchContext.NONE);
+      inconsistentCount = 0;
+      openCells.ensureCapacity(cellCount);
+      openCells.clear();
+      weight = initialWeight;
+      bound = Double.POSITIVE_INFINITY;
+      bestCells = null;
+      costs[endingCell] = 0;
+      openCells.insert(endingCell, key(endingCell));
+    }
+
+    /**
+     * Searches with lower and lower weights until the path is the cheapest or the budget is spent.
+     */
+    void run() {
+      while (improve()) {
+        if (costs[startingCell] == SearchContext.INFINITE) {
+          // a complete search did not reach the starting cell, so there is no path
+          bound = 1;
+          return;
+        }
+        // a complete search with a weight finds a path at most weight times the cheapest one
+        updateBound(weight);
+        if (bound <= 1) {
+          return;
+        }
+        lowerWeight();
+      }
+      updateBound(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Expands cells until no open cell can lead to a cheaper path with the current weight.
+     * @return false if the budget was spent before
+     */
+    private boolean improve() {
+      SearchMeter meter = getMeter();
+      while (!openCells.isEmpty() && costs[startingCell] > openCells.getMinKey()) {
+        if (!spendExpansion()) {
+          return false;
+        }
+        if (meter != null) {
+          meter.expanded();
+        }
+        int cell = openCells.extractMin();
+        closed[cell >>> 6] |= 1L << cell;
+        int xvalue = cell % length;
+        int yvalue = cell / length;
+        // the neighbours of the frontier are read next
+        costModel.prefetch(xvalue, yvalue);
+        // relax all neighbour cells
+        if (xvalue > 0) {
+          relax(cell, cell - 1, xvalue - 1, yvalue);
+        }
+        if (xvalue + 1 < length) {
+          relax(cell, cell + 1, xvalue + 1, yvalue);
+        }
+        if (yvalue > 0) {
+          relax(cell, cell - length, xvalue, yvalue - 1);
+        }
+        if (yvalue + 1 < height) {
+          relax(cell, cell + length, xvalue, yvalue + 1);
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Lowers the costs of a neighbour cell if it can be reached cheaper over the current cell.
+     * An expanded neighbour is not opened again with the current weight, it becomes inconsistent.
+     */
+    private void relax(int current, int neighbour, int xvalue, int yvalue) {
+      int stepCosts = costModel.costsAt(xvalue, yvalue);
+      if (stepCosts == CostModel.OBSTACLE) {
+        return;
+      }
+      int costsToNeighbour = SearchContext.addCosts(costs[current], stepCosts);
+      if (costsToNeighbour >= costs[neighbour]) {
+        return;
+      }
+      costs[neighbour] = costsToNeighbour;
+      predecessors[neighbour] = current;
+      if ((closed[neighbour >>> 6] & (1L << neighbour)) == 0) {
+        openCells.insertOrDecrease(neighbour, key(neighbour));
+      } else if ((inconsistent[neighbour >>> 6] & (1L << neighbour)) == 0) {
+        inconsistent[neighbour >>> 6] |= 1L << neighbour;
+        if (inconsistentCount == inconsistentCells.length) {
+          inconsistentCells = Arrays.copyOf(inconsistentCells, inconsistentCount * 2);
+        }
+        inconsistentCells[inconsistentCount++] = neighbour;
+      }
+    }
+
+    /**
+     * Lowers the weight and opens the inconsistent cells again.
+     * The keys of the open cells only get smaller, so they are decreased in place.
+     */
+    private void lowerWeight() {
+      weight = Math.max(1, weight - weightStep);
+      int openCount = openCells.size();
+      if (openBuffer.length < openCount) {
+        openBuffer = new int[openCount];
+      }
+      for (int i = 0; i < openCount; i++) {
+        openBuffer[i] = openCells.nodeAt(i);
+      }
+      for (int i = 0; i < openCount; i++) {
+        openCells.decreaseKey(openBuffer[i], key(openBuffer[i]));
+      }
+      Arrays.fill(closed, 0, (length * height + 63) >>> 6, 0L);
+      for (int i = 0; i < inconsistentCount; i++) {
+        int cell = inconsistentCells[i];
+        inconsistent[cell >>> 6] &= ~(1L << cell);
+        openCells.insert(cell, key(cell));
+      }
+      inconsistentCount = 0;
+    }
+
+    /**
+     * Lowers the bound to the ratio between the costs found so far and a lower
+     * bound of the cheapest costs. Every cell of the cheapest path that does not
+     * know its cheapest costs yet follows an open or inconsistent cell that does,
+     * so the smallest unweighted key of these cells is such a lower bound.
+     * @param limit a bound that is already proven, for example the weight of a complete search
+     */
+    private void updateBound(double limit) {
+      double ratio;
+      long found = costs[startingCell];
+      if (openCells.isEmpty() && inconsistentCount == 0) {
+        ratio = 1;
+      } else if (found == SearchContext.INFINITE) {
+        ratio = Double.POSITIVE_INFINITY;
+      } else {
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < openCells.size(); i++) {
+          lowest = Math.min(lowest, unweightedKey(openCells.nodeAt(i)));
+        }
+        for (int i = 0; i < inconsistentCount; i++) {
+          lowest = Math.min(lowest, unweightedKey(inconsistentCells[i]));
+        }
+        if (found <= lowest) {
+          ratio = 1;
+        } else {
+          ratio = lowest == 0 ? Double.POSITIVE_INFINITY : (double) found / lowest;
+        }
+      }
+      bound = Math.min(bound, Math.min(limit, ratio));
+    }
+
+    private long unweightedKey(int cell) {
+      return (long) costs[cell] + AStarPathFinder.heuristic(cell % length, cell / length,
+          targetX, targetY, minCosts);
+    }
+
+    /**
+     * Key of a cell in the open set, the costs plus the weighted heuristic.
+     */
+    private int key(int cell) {
+      long key = costs[cell] + (long) (weight * AStarPathFinder.heuristic(cell % length,
+          cell / length, targetX, targetY, minCosts));
+      // a key below INFINITE keeps the cell in front of a starting cell that was not reached
+      return (int) Math.min(key, SearchContext.INFINITE - 1);
+    }
+
+    /**
+     * Follows the predecessors from the starting cell and keeps the path if it is cheaper.
+     * The costs of a traced path are at most the costs of its starting cell, but
+     * a later path with lower costs at the starting cell can still be more expensive.
+     * @return the cells of the best path found so far, empty if there is none yet
+     */
+    int[] trace() {
+      if (costs[startingCell] != SearchContext.INFINITE) {
+        int count = 1;
+        for (int cell = startingCell; cell != endingCell; cell = predecessors[cell]) {
+          count++;
+        }
+        int[] cells = new int[count];
+        int cell = startingCell;
+        for (int i = 0; i < count; i++) {
+          cells[i] = cell;
+          cell = predecessors[cell];
+        }
+        long pathCosts = Path.costsOf(cells, costModel);
+        if (bestCells == null || pathCosts < bestCosts) {
+          bestCells = cells;
+          bestCosts = pathCosts;
+        }
+      }
+      return bestCells == null ? new int[0] : bestCells;
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Searches many paths on one TerrainMap at the same time.
+ * Every query runs as its own task on an Executor. A PathFinder keeps the
+ * state of its search, so a task borrows a PathFinder that no other task
+ * uses and returns it afterwards; there are never more PathFinders than
+ * queries searched at the same time.
+ * The map must not be changed while a batch is searched.
+ * @version 1.0
+ */
+public class BatchPathFinder {
+
+  private final Supplier<? extends PathFinder> pathFinderFactory;
+  private final Executor executor;
+  // path finders of finished tasks
+  private final ConcurrentLinkedQueue<PathFinder> pathFinders = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Constructor for class BatchPathFinder searching with the A* algorithm.
+   * @param executor the executor that runs the queries
+   */
+  public BatchPathFinder(Executor executor) {
+    this(AStarPathFinder::new, executor);
+  }
+
+  /**
+   * Constructor for class BatchPathFinder.
+   * @param pathFinderFactory creates a new PathFinder for every query searched at the same time
+   * @param executor the executor that runs the queries
+   */
+  public BatchPathFinder(Supplier<? extends PathFinder> pathFinderFactory, Executor executor) {
+    if (pathFinderFactory == null || executor == null) {
+      throw new IllegalArgumentException("path finder factory and executor must not be null");
+    }
+    this.pathFinderFactory = pathFinderFactory;
+    this.executor = executor;
+  }
+
+  /**
+   * Creates an executor with a fixed number of platform threads.
+   * The caller has to shut it down.
+   * @param threads the number of threads, usually the number of cores
+   * @return the new executor
+   */
+  public static ExecutorService newPlatformThreadPool(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("number of threads must be at least 1");
+    }
+    return Executors.newFixedThreadPool(threads);
+  }
+
+  /**
+   * Creates an executor that starts a virtual thread for every query.
+   * Virtual threads exist since Java 21, on older runtimes a pool with a
+   * platform thread per core is returned instead. The caller has to shut it down.
+   * @return the new executor
+   */
+  public static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return newPlatformThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  /**
+   * Starts the search of all queries.
+   * @param terrainMap the map of the terrain to calculate the paths
+   * @param queries the queries to search
+   * @return the results in the order of the queries, a failed search completes its future
+   *         exceptionally
+   */
+  public List<CompletableFuture<Queue<Coordinate>>> submit(TerrainMap terrainMap,
+                                                           List<PathQuery> queries) {
+    if (terrainMap == null) {
+      throw new IllegalArgumentException("terrain map must not be null");
+    }
+    List<CompletableFuture<Queue<Coordinate>>> results = new ArrayList<>(queries.size());
+    for (PathQuery query : queries) {
+      if (query == null) {
+        throw new IllegalArgumentException("queries must not be null");
+      }
+      CompletableFuture<Queue<Coordinate>> result = new CompletableFuture<>();
+      results.add(result);
+      executor.execute(() -> search(terrainMap, query, result));
+    }
+    return results;
+  }
+
+  /**
+   * Searches all queries and waits until they are finished.
+   * @param terrainMap the map of the terrain to calculate the paths
+   * @param queries the queries to search
+   * @return the paths in the order of the queries
+   * @throws Exception the reason of the first failed query in the order of the queries
+   */
+  public List<Queue<Coordinate>> getPaths(TerrainMap terrainMap, List<PathQuery> queries)
+      throws Exception {
+    List<CompletableFuture<Queue<Coordinate>>> results = submit(terrainMap, queries);
+    List<Queue<Coordinate>> paths = new ArrayList<>(results.size());
+    for (CompletableFuture<Queue<Coordinate>> result : results) {
+      try {
+        paths.add(result.get());
+      } catch (ExecutionException e) {
+        throw causeOf(e);
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Searches all queries and reports every result as soon as it is finished.
+   * The listener is called by the calling thread, one result after another,
+   * and this method returns after the last result.
+   * @param terrainMap the map of the terrain to calculate the paths
+   * @param queries the queries to search
+   * @param listener receives the results in the order they are finished
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public void getPaths(TerrainMap terrainMap, List<PathQuery> queries, PathQueryListener listener)
+      throws InterruptedException {
+    if (listener == null) {
+      throw new IllegalArgumentException("listener must not be null");
+    }
+    List<CompletableFuture<Queue<Coordinate>>> results = submit(terrainMap, queries);
+    BlockingQueue<Integer> finished = new LinkedBlockingQueue<>();
+    for (int i = 0; i < results.size(); i++) {
+      int index = i;
+      results.get(i).whenComplete((path, exception) -> finished.add(index));
+    }
+    for (int i = 0; i < results.size(); i++) {
+      int index = finished.take();
+      try {
+        listener.pathFound(index, queries.get(index), results.get(index).get());
+      } catch (ExecutionException e) {
+        listener.queryFailed(index, queries.get(index), causeOf(e));
+      }
+    }
+  }
+
+  /**
+   * Unwraps the reason of a failed search, errors are thrown again.
+   */
+  private static Exception causeOf(ExecutionException exception) {
+    Throwable cause = exception.getCause();
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return (Exception) cause;
+  }
+
+  /**
+   * Searches one query with a PathFinder that is not used by another task.
+   */
+  private void search(TerrainMap terrainMap, PathQuery query,
+                      CompletableFuture<Queue<Coordinate>> result) {
+    PathFinder pathFinder = pathFinders.poll();
+    if (pathFinder == null) {
+      pathFinder = pathFinderFactory.get();
+    }
+    try {
+      result.complete(query.search(pathFinder, terrainMap));
+    } catch (Exception e) {
+      result.completeExceptionally(e);
+    } catch (Error e) {
+      result.completeExceptionally(e);
+      throw e;
+    } finally {
+      pathFinders.offer(pathFinder);
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package sample;
+
+/**
+ * Implementation of the pathfinder interface based on a bidirectional dijkstra algorithm.
+ * One search starts at the ending point and pays the costs of every cell it
+ * enters, the other one starts at the starting point and pays the costs of
+ * every cell it leaves. Both together add up the costs of all cells of the
+ * path except the ending cell, like the single sided search does.
+ * The searches stop as soon as the sum of their least open keys reaches the
+ * cheapest path over a cell both of them have reached.
+ * @version 1.0
+ */
+public class BidirectionalPathFinder extends AbstractPathFinder {
+
+  // state of the search from the starting point, the inherited context searches from the ending point
+  private final SearchContext startContext = new SearchContext();
+
+  // costs of the cheapest path found so far
+  private long bestCosts;
+  // cell at which the cheapest path found so far connects both searches
+  private int meetingCell;
+
+  /**
+   * Constructor for class BidirectionalPathFinder.
+   * The priority queues are chosen automatically for every query.
+   */
+  public BidirectionalPathFinder() {
+    this(QueueStrategy.AUTO);
+  }
+
+  /**
+   * Constructor for class BidirectionalPathFinder.
+   * @param queueStrategy the priority queue used for the cells that are not finished
+   */
+  public BidirectionalPathFinder(QueueStrategy queueStrategy) {
+    setQueueStrategy(queueStrategy);
+  }
+
+  @Override
+  protected AbstractPathFinder newLegFinder() {
+    return new BidirectionalPathFinder(getQueueStrategy());
+  }
+
+  @Override
+  void attachMeter(SearchMeter meter) {
+    super.attachMeter(meter);
+    startContext.setMeter(meter);
+  }
+
+  @Override
+  protected int[] searchPath(CostModel costModel, int startingCell, int endingCell) {
+    if (startingCell == endingCell) {
+      return new int[0];
+    }
+    int length = costModel.getLength();
+    int cellCount = length * costModel.getHeight();
+    context.reset(cellCount, getQueueStrategy(), costModel.getMinCosts(), costModel.getMaxCosts());
+    startContext.reset(cellCount, getQueueStrategy(), costModel.getMinCosts(), costModel.getMaxCosts());
+    OpenSet fromEnd = context.getOpenSet();
+    OpenSet fromStart = startContext.getOpenSet();
+    context.setCosts(endingCell, 0, SearchContext.NONE);
+    fromEnd.insert(endingCell, 0);
+    startContext.setCosts(startingCell, 0, SearchContext.NONE);
+    fromStart.insert(startingCell, 0);
+    bestCosts = Long.MAX_VALUE;
+    meetingCell = SearchContext.NONE;
+
+    while (!fromEnd.isEmpty() && !fromStart.isEmpty()) {
+      // standard stopping criterion, no cheaper path can connect both searches anymore
+      if ((long) fromEnd.getMinKey() + fromStart.getMinKey() >= bestCosts) {
+        break;
+      }
+      // expand the side with the smaller frontier
+      if (fromEnd.size() <= fromStart.size()) {
+        expandFromEnd(costModel);
+      } else {
+        expandFromStart(costModel);
+      }
+    }
+    if (meetingCell == SearchContext.NONE) {
+      return new int[0];
+    }
+    return joinPath();
+  }
+
+  /**
+   * Finishes the cheapest open cell of the search from the ending point.
+   * Neighbours are reached with the costs of the neighbour itself.
+   */
+  private void expandFromEnd(CostModel costModel) {
+    int length = costModel.getLength();
+    int height = costModel.getHeight();
+    int cell = context.getOpenSet().extractMin();
+    context.close(cell);
+    int costs = context.getCosts(cell);
+    int xvalue = cell % length;
+    int yvalue = cell / length;
+    // the neighbours of the frontier are read next
+    costModel.prefetch(xvalue, yvalue);
+    if (xvalue > 0) {
+      relaxFromEnd(costModel, cell, costs, cell - 1, xvalue - 1, yvalue);
+    }
+    if (xvalue + 1 < length) {
+      relaxFromEnd(costModel, cell, costs, cell + 1, xvalue + 1, yvalue);
+    }
+    if (yvalue > 0) {
+      relaxFromEnd(costModel, cell, costs, cell - length, xvalue, yvalue - 1);
+    }
+    if (yvalue + 1 < height) {
+      relaxFromEnd(costModel, cell, costs, cell + length, xvalue, yvalue + 1);
+    }
+  }
+
+  /**
+   * Finishes the cheapest open cell of the search from the starting point.
+   * Neighbours are reached with the costs of the finished cell, because
+   * the path leaves this cell towards them.
+   */
+  private void expandFromStart(CostModel costModel) {
+    int length = costModel.getLength();
+    int height = costModel.getHeight();
+    int cell = startContext.getOpenSet().extractMin();
+    startContext.close(cell);
+    int xvalue = cell % length;
+    int yvalue = cell / length;
+    costModel.prefetch(xvalue, yvalue);
+    int costs = SearchContext.addCosts(startContext.getCosts(cell), costModel.costsAt(xvalue, yvalue));
+    if (xvalue > 0) {
+      relaxFromStart(costModel, cell, costs, cell - 1, xvalue - 1, yvalue);
+    }
+    if (xvalue + 1 < length) {
+      relaxFromStart(costModel, cell, costs, cell + 1, xvalue + 1, yvalue);
+    }
+    if (yvalue > 0) {
+      relaxFromStart(costModel, cell, costs, cell - length, xvalue, yvalue - 1);
+    }
+    if (yvalue + 1 < height) {
+      relaxFromStart(costModel, cell, costs, cell + length, xvalue, yvalue + 1);
+    }
+  }
+
+  private void relaxFromEnd(CostModel costModel, int current, int currentCosts,
+                            int neighbour, int xvalue, int yvalue) {
+    if (context.isClosed(neighbour)) {
+      return;
+    }
+    int stepCosts = costModel.costsAt(xvalue, yvalue);
+    if (stepCosts == CostModel.OBSTACLE) {
+      return;
+    }
+    int costsToNeighbour = SearchContext.addCosts(currentCosts, stepCosts);
+    if (costsToNeighbour < context.getCosts(neighbour)) {
+      context.setCosts(neighbour, costsToNeighbour, current);
+      context.getOpenSet().insertOrDecrease(neighbour, costsToNeighbour);
+      checkMeeting(neighbour, costsToNeighbour, startContext.getCosts(neighbour));
+    }
+  }
+
+  private void relaxFromStart(CostModel costModel, int current, int costsToNeighbour,
+                              int neighbour, int xvalue, int yvalue) {
+    if (startContext.isClosed(neighbour) || costModel.costsAt(xvalue, yvalue) == CostModel.OBSTACLE) {
+      return;
+    }
+    if (costsToNeighbour < startContext.getCosts(neighbour)) {
+      startContext.setCosts(neighbour, costsToNeighbour, current);
+      startContext.getOpenSet().insertOrDecrease(neighbour, costsToNeighbour);
+      checkMeeting(neighbour, context.getCosts(neighbour), costsToNeighbour);
+    }
+  }
+
+  /**
+   * Remembers a cell if the path over it is the cheapest one found so far.
+   * @param cell index of the cell both searches may have reached
+   * @param costsFromEnd costs of the search from the ending point to the cell
+   * @param costsFromStart costs of the search from the starting point to the cell
+   */
+  private void checkMeeting(int cell, int costsFromEnd, int costsFromStart) {
+    if (costsFromEnd == SearchContext.INFINITE || costsFromStart == SearchContext.INFINITE) {
+      return;
+    }
+    long costs = (long) costsFromEnd + costsFromStart;
+    if (costs < bestCosts) {
+      bestCosts = costs;
+      meetingCell = cell;
+    }
+  }
+
+  /**
+   * Joins the predecessors of both searches at the meeting cell.
+   * @return the cells from the starting to the ending cell
+   */
+  private int[] joinPath() {
+    int startCount = 0;
+    for (int cell = meetingCell; cell != SearchContext.NONE; cell = startContext.getPredecessor(cell)) {
+      startCount++;
+    }
+    int endCount = 0;
+    for (int cell = context.getPredecessor(meetingCell); cell != SearchContext.NONE;
+         cell = context.getPredecessor(cell)) {
+      endCount++;
+    }
+    int[] cells = new int[startCount + endCount];
+    // the search from the starting point leads backwards from the meeting cell
+    int index = startCount - 1;
+    for (int cell = meetingCell; cell != SearchContext.NONE; cell = startContext.getPredecessor(cell)) {
+      cells[index--] = cell;
+    }
+    index = startCount;
+    for (int cell = context.getPredecessor(meetingCell); cell != SearchContext.NONE;
+         cell = context.getPredecessor(cell)) {
+      cells[index++] = cell;
+    }
+    return cells;
+  }
+}
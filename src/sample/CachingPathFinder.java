@@ -0,0 +1,277 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ * PathFinder that remembers the paths found by another PathFinder.
+ * A path is stored together with the version of its TerrainMap, so every
+ * change of the map makes the stored paths of the map unusable; they are
+ * removed as soon as a query sees the new version. The cache is bounded by
+ * a number of paths and a number of coordinates of all stored paths, the
+ * least recently used paths are evicted first.
+ * Queries that fail, for example because a point is an obstacle, are not stored.
+ * @version 1.0
+ */
+public class CachingPathFinder implements PathFinder {
+
+  /**
+   * number of paths stored by default.
+   */
+  public static final int DEFAULT_MAX_PATHS = 256;
+
+  private final PathFinder pathFinder;
+  private final int maxPaths;
+  private final long maxCoordinates;
+  // stored paths in the order of their last use
+  private final LinkedHashMap<Key, Path> paths = new LinkedHashMap<>(16, 0.75f, true);
+  private long storedCoordinates;
+  private TerrainMap lastMap;
+  private long lastVersion;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  /**
+   * Constructor for class CachingPathFinder storing up to DEFAULT_MAX_PATHS paths.
+   * @param pathFinder the PathFinder that searches the paths that are not stored
+   */
+  public CachingPathFinder(PathFinder pathFinder) {
+    this(pathFinder, DEFAULT_MAX_PATHS, Long.MAX_VALUE);
+  }
+
+  /**
+   * Constructor for class CachingPathFinder.
+   * @param pathFinder the PathFinder that searches the paths that are not stored
+   * @param maxPaths the largest number of stored paths
+   * @param maxCoordinates the largest number of coordinates of all stored paths
+   */
+  public CachingPathFinder(PathFinder pathFinder, int maxPaths, long maxCoordinates) {
+    if (pathFinder == null) {
+      throw new IllegalArgumentException("path finder must not be null");
+    }
+    if (maxPaths < 0 || maxCoordinates < 0) {
+      throw new IllegalArgumentException("limits of the cache must not be negative");
+    }
+    this.pathFinder = pathFinder;
+    this.maxPaths = maxPaths;
+    this.maxCoordinates = maxCoordinates;
+  }
+
+  public PathFinder getPathFinder() {
+    return pathFinder;
+  }
+
+  @Override
+  public boolean isObservable() {
+    return pathFinder.isObservable();
+  }
+
+  /**
+   * Registers a listener at the wrapped PathFinder.
+   * Queries answered from the cache do not search and are not reported.
+   * @param listener the listener to add
+   */
+  @Override
+  public void addSearchListener(SearchListener listener) {
+    pathFinder.addSearchListener(listener);
+  }
+
+  @Override
+  public void removeSearchListener(SearchListener listener) {
+    pathFinder.removeSearchListener(listener);
+  }
+
+  /**
+   * Getter for the number of queries answered with a stored path.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Getter for the number of queries that had to be searched.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Getter for the number of paths removed to stay inside the limits.
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Getter for the number of paths removed because their map was changed.
+   */
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  /**
+   * Getter for the number of stored paths.
+   */
+  public synchronized int size() {
+    return paths.size();
+  }
+
+  /**
+   * Removes all stored paths, the counters are kept.
+   */
+  public synchronized void clear() {
+    paths.clear();
+    storedCoordinates = 0;
+    lastMap = null;
+  }
+
+  @Override
+  public Queue<Coordinate> getPath(TerrainMap terrainMap, Coordinate startingPoint,
+                                   Coordinate endingPoint, Options option) throws Exception {
+    return calculatePath(terrainMap, startingPoint, endingPoint, option).asQueue();
+  }
+
+  @Override
+  public Queue<Coordinate> getPath(TerrainMap terrainMap, Coordinate startingPoint,
+                                   Coordinate endingPoint, List<Coordinate> intermediatePoints,
+                                   Options option) throws Exception {
+    return calculatePath(terrainMap, startingPoint, endingPoint, intermediatePoints, option)
+        .asQueue();
+  }
+
+  /**
+   * Returns the stored path of a query or calculates it with the wrapped PathFinder.
+   * Paths are immutable, so all hits of a query share one Path.
+   */
+  @Override
+  public Path calculatePath(TerrainMap terrainMap, Coordinate startingPoint,
+                            Coordinate endingPoint, Options option) throws Exception {
+    Key key = new Key(terrainMap, option, startingPoint, endingPoint, null);
+    Path path = lookUp(key);
+    if (path == null) {
+      path = pathFinder.calculatePath(terrainMap, startingPoint, endingPoint, option);
+      store(key, path);
+    }
+    return path;
+  }
+
+  @Override
+  public Path calculatePath(TerrainMap terrainMap, Coordinate startingPoint,
+                            Coordinate endingPoint, List<Coordinate> intermediatePoints,
+                            Options option) throws Exception {
+    Key key = new Key(terrainMap, option, startingPoint, endingPoint, intermediatePoints);
+    Path path = lookUp(key);
+    if (path == null) {
+      path = pathFinder.calculatePath(terrainMap, startingPoint, endingPoint,
+          intermediatePoints, option);
+      store(key, path);
+    }
+    return path;
+  }
+
+  /**
+   * Finds the stored path of a query and removes the outdated paths of its map.
+   * @return the path or null if it is not stored
+   */
+  private synchronized Path lookUp(Key key) {
+    if (key.terrainMap == lastMap && key.version != lastVersion) {
+      invalidate(key.terrainMap, key.version);
+    }
+    lastMap = key.terrainMap;
+    lastVersion = key.version;
+    Path path = paths.get(key);
+    if (path == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return path;
+  }
+
+  private synchronized void store(Key key, Path path) {
+    // the map may have been changed during the search
+    if (key.terrainMap.getVersion() != key.version) {
+      return;
+    }
+    Path replaced = paths.put(key, path);
+    if (replaced != null) {
+      storedCoordinates -= replaced.size();
+    }
+    storedCoordinates += path.size();
+    Iterator<Path> leastRecentlyUsed = paths.values().iterator();
+    while (paths.size() > maxPaths || storedCoordinates > maxCoordinates) {
+      storedCoordinates -= leastRecentlyUsed.next().size();
+      leastRecentlyUsed.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Removes the paths of a map that were found for another version.
+   */
+  private void invalidate(TerrainMap terrainMap, long version) {
+    Iterator<Map.Entry<Key, Path>> entries = paths.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<Key, Path> entry = entries.next();
+      Key key = entry.getKey();
+      if (key.terrainMap == terrainMap && key.version != version) {
+        storedCoordinates -= entry.getValue().size();
+        entries.remove();
+        invalidations++;
+      }
+    }
+  }
+
+  /**
+   * Identifies a query: the map and its version, the option and all points in the order of the path.
+   */
+  private static final class Key {
+
+    private final TerrainMap terrainMap;
+    private final long version;
+    private final Options option;
+    private final int[] points;
+    private final int hash;
+
+    Key(TerrainMap terrainMap, Options option, Coordinate startingPoint,
+        Coordinate endingPoint, List<Coordinate> intermediatePoints) {
+      this.terrainMap = terrainMap;
+      this.version = terrainMap.getVersion();
+      this.option = option;
+      int count = intermediatePoints == null ? 0 : intermediatePoints.size();
+      points = new int[2 * count + 4];
+      points[0] = startingPoint.getXvalue();
+      points[1] = startingPoint.getYvalue();
+      for (int i = 0; i < count; i++) {
+        points[2 * i + 2] = intermediatePoints.get(i).getXvalue();
+        points[2 * i + 3] = intermediatePoints.get(i).getYvalue();
+      }
+      points[points.length - 2] = endingPoint.getXvalue();
+      points[points.length - 1] = endingPoint.getYvalue();
+      hash = 31 * (31 * (31 * System.identityHashCode(terrainMap) + Long.hashCode(version))
+          + Objects.hashCode(option)) + Arrays.hashCode(points);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return terrainMap == other.terrainMap && version == other.version
+          && option == other.option && Arrays.equals(points, other.points);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
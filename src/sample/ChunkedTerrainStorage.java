@@ -0,0 +1,631 @@
+package sample;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Terrain storage that keeps only some square chunks of a terrain file in memory.
+ * A chunk is read from the file the first time one of its cells is read and
+ * stays in a cache of a fixed number of chunks; when the cache is full the
+ * chunk that was used the longest time ago is dropped. Changed chunks are
+ * handed to a background thread that writes them back to the file in the
+ * order they were dropped; until then a read of such a chunk takes it from
+ * memory, so no read waits for a write. A chunk that can not be written
+ * back is kept for the next force, which throws the error; reading cells
+ * never fails because of a write. Unlike MappedTerrainStorage the memory
+ * used by the map is bounded by the cache and not left to the operating system.
+ * Searches call prefetch for the cells of their frontier, a chunk next to a
+ * frontier cell close to the border of its own chunk is then read on a
+ * background thread before the search gets there.
+ * Cells can only be set to Materials of the palette of the file, and like
+ * every terrain file the map has at most Integer.MAX_VALUE cells.
+ * The storage is thread-safe and has to be closed to write back all changes.
+ * @version 1.0
+ */
+public class ChunkedTerrainStorage implements TerrainStorage, Closeable {
+
+  /**
+   * cells per side of a chunk if none is given.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 256;
+  /**
+   * chunks kept in memory if no limit is given, 32 MB with the default chunk size.
+   */
+  public static final int DEFAULT_MAX_CHUNKS = 256;
+
+  // a search is cancelled by interrupting its thread, which would close a
+  // FileChannel in the middle of a read, so the file is read without channel
+  private final RandomAccessFile file;
+  // guards the position of the file
+  private final Object fileLock = new Object();
+  private final boolean writable;
+  private final int length;
+  private final int height;
+  private final long gridOffset;
+  private final Material[] palette;
+  // costs of every palette entry as seen by a search
+  private final int[] paletteCosts;
+  private final int chunkShift;
+  private final int chunkMask;
+  private final int chunkColumns;
+  private final int maxChunks;
+  // the cached chunks, ordered from the least to the most recently used
+  private final LinkedHashMap<Integer, Chunk> chunks;
+  // one bit per chunk that is cached, read without lock by prefetch
+  private final int[] cachedBits;
+  // chunks that are being read by the prefetch thread
+  private final Map<Integer, CompletableFuture<Chunk>> prefetching = new HashMap<>();
+  private final ExecutorService prefetcher;
+  // chunks that left the cache or were copied by force and wait for their write back
+  private final Map<Integer, Chunk> writing = new HashMap<>();
+  // writes the chunks back one after another, so a newer copy is always written last
+  private final ExecutorService writer;
+  // the chunk of the last cell every thread read, most reads hit it without lock
+  private final ThreadLocal<Chunk[]> recent = ThreadLocal.withInitial(() -> new Chunk[1]);
+  // the first error of writing back a chunk, thrown by force
+  private IOException writeBackFailure;
+  private int minCosts = Integer.MAX_VALUE;
+  private int maxCosts = 0;
+  private long loads;
+  private long prefetchLoads;
+  private long writeBacks;
+  private boolean closed;
+
+  /**
+   * Constructor for class ChunkedTerrainStorage with the default chunk size and cache.
+   * @param file the terrain file
+   * @param writable true if cells may be changed, changes are written to the file
+   * @throws IOException if the file can not be read or is no terrain file
+   */
+  public ChunkedTerrainStorage(File file, boolean writable) throws IOException {
+    this(file, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_CHUNKS, writable);
+  }
+
+  /**
+   * Constructor for class ChunkedTerrainStorage.
+   * @param file the terrain file
+   * @param chunkSize the cells per side of a chunk, a power of two
+   * @param maxChunks the number of chunks kept in memory, at least one
+   * @param writable true if cells may be changed, changes are written to the file
+   * @throws IOException if the file can not be read or is no terrain file
+   */
+  public ChunkedTerrainStorage(File file, int chunkSize, int maxChunks, boolean writable)
+      throws IOException {
+    if (chunkSize <= 0 || Integer.bitCount(chunkSize) != 1 || chunkSize > 1 << 14) {
+      throw new IllegalArgumentException("chunk size must be a power of two up to 16384");
+    }
+    if (maxChunks < 1) {
+      throw new IllegalArgumentException("at least one chunk has to be cached");
+    }
+    this.writable = writable;
+    this.maxChunks = maxChunks;
+    chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+    chunkMask = chunkSize - 1;
+    this.file = new RandomAccessFile(file, writable ? "rw" : "r");
+    try {
+      TerrainFile.Header header = TerrainFile.readHeader(this.file.getChannel());
+      length = header.length;
+      height = header.height;
+      gridOffset = header.gridOffset;
+      palette = header.palette;
+    } catch (IOException e) {
+      this.file.close();
+      throw e;
+    }
+    paletteCosts = new int[palette.length];
+    for (int i = 0; i < palette.length; i++) {
+      Material material = palette[i];
+      int costs = Math.max(0, material.getCosts());
+      paletteCosts[i] = material.isObstacle() ? CostModel.OBSTACLE : costs;
+      if (!material.isObstacle()) {
+        minCosts = Math.min(minCosts, costs);
+        maxCosts = Math.max(maxCosts, costs);
+      }
+    }
+    chunkColumns = (length + chunkMask) >> chunkShift;
+    long chunkCount = (long) chunkColumns * ((height + chunkMask) >> chunkShift);
+    if (chunkCount > Integer.MAX_VALUE) {
+      this.file.close();
+      throw new IllegalArgumentException("chunk size is too small for the map");
+    }
+    cachedBits = new int[(int) ((chunkCount + 31) >> 5)];
+    chunks = new LinkedHashMap<>(16, 0.75f, true);
+    prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "terrain-prefetch");
+      thread.setDaemon(true);
+      return thread;
+    });
+    writer = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "terrain-write-back");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public int getLength() {
+    return length;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public Material getMaterial(int xvalue, int yvalue) {
+    checkInside(xvalue, yvalue);
+    return palette[chunkAt(xvalue, yvalue).cells[cellOf(xvalue, yvalue)] & 0xFFFF];
+  }
+
+  @Override
+  public void setMaterial(int xvalue, int yvalue, Material material) {
+    if (!writable) {
+      throw new UnsupportedOperationException("terrain file is opened read only");
+    }
+    int index = TerrainFile.paletteIndexOf(palette, material);
+    checkInside(xvalue, yvalue);
+    int key = keyOf(xvalue, yvalue);
+    while (true) {
+      Chunk chunk = chunk(key);
+      synchronized (this) {
+        // the chunk may have been evicted while the lock was not held
+        if (chunks.get(key) == chunk) {
+          chunk.cells[cellOf(xvalue, yvalue)] = (short) index;
+          chunk.dirty = true;
+          recent.get()[0] = chunk;
+          return;
+        }
+      }
+    }
+  }
+
+  @Override
+  public int costsAt(int xvalue, int yvalue) {
+    return paletteCosts[chunkAt(xvalue, yvalue).cells[cellOf(xvalue, yvalue)] & 0xFFFF];
+  }
+
+  @Override
+  public int getMinCosts() {
+    return minCosts > maxCosts ? 0 : minCosts;
+  }
+
+  @Override
+  public int getMaxCosts() {
+    return maxCosts;
+  }
+
+  /**
+   * Reads the chunks next to a cell in the background if the cell is in the
+   * outer quarter of its chunk. Chunks that are cached or already being read are skipped.
+   */
+  @Override
+  public void prefetch(int xvalue, int yvalue) {
+    int chunkSize = chunkMask + 1;
+    int margin = chunkSize >> 2;
+    int xinside = xvalue & chunkMask;
+    int yinside = yvalue & chunkMask;
+    int xstep = xinside < margin ? -1 : xinside >= chunkSize - margin ? 1 : 0;
+    int ystep = yinside < margin ? -1 : yinside >= chunkSize - margin ? 1 : 0;
+    int column = xvalue >> chunkShift;
+    int row = yvalue >> chunkShift;
+    if (xstep != 0) {
+      prefetchChunk(column + xstep, row);
+    }
+    if (ystep != 0) {
+      prefetchChunk(column, row + ystep);
+    }
+    if (xstep != 0 && ystep != 0) {
+      prefetchChunk(column + xstep, row + ystep);
+    }
+  }
+
+  /**
+   * Getter for the number of chunks read from the file, prefetched ones included.
+   */
+  public synchronized long getLoads() {
+    return loads;
+  }
+
+  /**
+   * Getter for the number of chunks the prefetch thread read into the cache.
+   */
+  public synchronized long getPrefetchLoads() {
+    return prefetchLoads;
+  }
+
+  /**
+   * Getter for the number of changed chunks written back to the file.
+   */
+  public synchronized long getWriteBacks() {
+    return writeBacks;
+  }
+
+  /**
+   * Getter for the number of chunks in memory.
+   */
+  public synchronized int getCachedChunks() {
+    return chunks.size();
+  }
+
+  /**
+   * Writes all changed chunks to the file and waits for all write backs, the chunks stay cached.
+   * Chunks whose write back failed before are written again.
+   * @throws IOException if a chunk can not be written
+   */
+  public void force() throws IOException {
+    synchronized (this) {
+      checkOpen();
+      writeBackFailure = null;
+      for (Chunk chunk : writing.values()) {
+        if (chunk.writeFailed) {
+          chunk.writeFailed = false;
+          writer.execute(() -> writeBack(chunk));
+        }
+      }
+      for (Chunk chunk : chunks.values()) {
+        if (chunk.dirty) {
+          // the copy is written while the cached chunk can still be changed
+          chunk.dirty = false;
+          handOver(new Chunk(chunk.key, chunk.cells.clone()));
+        }
+      }
+    }
+    awaitWriteBacks();
+    IOException failure;
+    synchronized (this) {
+      failure = writeBackFailure;
+      writeBackFailure = null;
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    if (writable) {
+      synchronized (fileLock) {
+        file.getFD().sync();
+      }
+    }
+  }
+
+  /**
+   * Writes all changed chunks to the file and closes it.
+   * Cells can not be read after the storage is closed, also not by threads
+   * whose last chunk is still in memory, because all chunks are marked as evicted.
+   * @throws IOException if a chunk can not be written
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      prefetcher.shutdown();
+    }
+    try {
+      force();
+    } finally {
+      synchronized (this) {
+        closed = true;
+        for (Chunk chunk : chunks.values()) {
+          chunk.evicted = true;
+        }
+        chunks.clear();
+      }
+      // chunks dropped by reads during force are written before the file is closed
+      awaitWriteBacks();
+      writer.shutdown();
+      synchronized (this) {
+        writing.clear();
+      }
+      synchronized (fileLock) {
+        file.close();
+      }
+    }
+  }
+
+  @Override
+  public boolean isChunked() {
+    return true;
+  }
+
+  /**
+   * Returns the chunk of a cell, without lock if it is the chunk of the last
+   * cell the thread read. Every thread has its own last chunk, so searches on
+   * different threads do not replace each other's chunk.
+   */
+  private Chunk chunkAt(int xvalue, int yvalue) {
+    int key = keyOf(xvalue, yvalue);
+    Chunk[] cursor = recent.get();
+    Chunk chunk = cursor[0];
+    if (chunk == null || chunk.key != key || chunk.evicted) {
+      chunk = chunk(key);
+      cursor[0] = chunk;
+    }
+    return chunk;
+  }
+
+  /**
+   * Returns a chunk from the cache or reads it from the file.
+   * The file is read without holding the lock, so readers of cached chunks
+   * do not wait; a chunk the prefetch thread is reading is waited for.
+   */
+  private Chunk chunk(int key) {
+    while (true) {
+      CompletableFuture<Chunk> future;
+      long writeBacksBefore;
+      synchronized (this) {
+        Chunk chunk = chunks.get(key);
+        if (chunk != null) {
+          return chunk;
+        }
+        checkOpen();
+        Chunk waiting = writing.get(key);
+        if (waiting != null) {
+          // the file does not have the changes yet, the chunk is copied from memory
+          Chunk copy = new Chunk(key, waiting.cells.clone());
+          add(copy);
+          return copy;
+        }
+        future = prefetching.get(key);
+        writeBacksBefore = writeBacks;
+      }
+      Chunk chunk = null;
+      if (future != null) {
+        try {
+          chunk = future.join();
+        } catch (CompletionException e) {
+          // a failed prefetch is repeated by this read
+        }
+      }
+      if (chunk == null) {
+        chunk = cache(key, read(key), writeBacksBefore);
+      }
+      if (chunk != null) {
+        return chunk;
+      }
+    }
+  }
+
+  /**
+   * Puts a chunk that was read into the cache unless another thread was faster.
+   * @param writeBacksBefore the number of write backs before the chunk was read
+   * @return the cached chunk, or null if the chunk has to be read again because
+   *         a write back finished during the read
+   */
+  private synchronized Chunk cache(int key, Chunk loaded, long writeBacksBefore) {
+    Chunk chunk = chunks.get(key);
+    if (chunk != null) {
+      return chunk;
+    }
+    checkOpen();
+    Chunk waiting = writing.get(key);
+    if (waiting != null) {
+      loaded = new Chunk(key, waiting.cells.clone());
+    } else if (writeBacks != writeBacksBefore) {
+      // a chunk written back during the read may have been read before its changes
+      return null;
+    }
+    add(loaded);
+    return loaded;
+  }
+
+  /**
+   * Adds a chunk to the cache and drops the least recently used ones, called with the lock held.
+   */
+  private void add(Chunk chunk) {
+    chunks.put(chunk.key, chunk);
+    cachedBits[chunk.key >> 5] |= 1 << chunk.key;
+    loads++;
+    evictLeastRecentlyUsed(chunk);
+  }
+
+  private void prefetchChunk(int column, int row) {
+    if (column < 0 || row < 0 || column >= chunkColumns || row << chunkShift >= height) {
+      return;
+    }
+    int key = row * chunkColumns + column;
+    // the bits are read without lock, a stale bit only makes a useless or a missing hint
+    if ((cachedBits[key >> 5] & 1 << key) != 0) {
+      return;
+    }
+    synchronized (this) {
+      if (closed || chunks.containsKey(key) || prefetching.containsKey(key)) {
+        return;
+      }
+      long writeBacksBefore = writeBacks;
+      prefetching.put(key, CompletableFuture.supplyAsync(() -> {
+        try {
+          Chunk chunk = cache(key, read(key), writeBacksBefore);
+          synchronized (this) {
+            prefetchLoads += chunk == null ? 0 : 1;
+          }
+          return chunk;
+        } finally {
+          synchronized (this) {
+            prefetching.remove(key);
+          }
+        }
+      }, prefetcher));
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("terrain storage is closed");
+    }
+  }
+
+  /**
+   * Drops the least recently used chunks until the cache holds maxChunks,
+   * called with the lock held after a chunk was added.
+   * Changed chunks are handed to the write back thread, the lock is never
+   * held while the file is written.
+   * @param added the chunk that was added, it is never dropped
+   */
+  private void evictLeastRecentlyUsed(Chunk added) {
+    int excess = chunks.size() - maxChunks;
+    // iterating the values does not count as use of the chunks
+    Iterator<Chunk> leastRecentlyUsed = chunks.values().iterator();
+    while (excess > 0 && leastRecentlyUsed.hasNext()) {
+      Chunk chunk = leastRecentlyUsed.next();
+      if (chunk == added) {
+        continue;
+      }
+      leastRecentlyUsed.remove();
+      cachedBits[chunk.key >> 5] &= ~(1 << chunk.key);
+      chunk.evicted = true;
+      if (chunk.dirty) {
+        // nobody changes the chunk any more, it is written as it is
+        chunk.dirty = false;
+        handOver(chunk);
+      }
+      excess--;
+    }
+  }
+
+  /**
+   * Hands a chunk that is not changed any more to the write back thread, called with the lock held.
+   * The chunk replaces an older one of the same key that is still waiting.
+   */
+  private void handOver(Chunk chunk) {
+    writing.put(chunk.key, chunk);
+    writer.execute(() -> writeBack(chunk));
+  }
+
+  /**
+   * Writes a chunk on the write back thread without holding the lock.
+   * A chunk that can not be written stays in writing, so its changes are not lost.
+   */
+  private void writeBack(Chunk chunk) {
+    IOException failure = null;
+    try {
+      write(chunk);
+    } catch (IOException e) {
+      failure = e;
+    }
+    synchronized (this) {
+      if (failure == null) {
+        writing.remove(chunk.key, chunk);
+        writeBacks++;
+      } else {
+        chunk.writeFailed = true;
+        if (writeBackFailure == null) {
+          writeBackFailure = failure;
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits until the write back thread wrote all chunks handed to it before.
+   */
+  private void awaitWriteBacks() {
+    CompletableFuture.runAsync(() -> { }, writer).join();
+  }
+
+  /**
+   * Reads the rows of a chunk from the grid of the file.
+   */
+  private Chunk read(int key) {
+    Chunk chunk = new Chunk(key, chunkMask + 1);
+    int firstX = (key % chunkColumns) << chunkShift;
+    int firstY = (key / chunkColumns) << chunkShift;
+    int columns = Math.min(chunkMask + 1, length - firstX);
+    int rows = Math.min(chunkMask + 1, height - firstY);
+    byte[] bytes = new byte[2 * columns];
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    synchronized (fileLock) {
+      try {
+        for (int row = 0; row < rows; row++) {
+          file.seek(rowOffset(firstX, firstY + row));
+          file.readFully(bytes);
+          buffer.clear();
+          buffer.asShortBuffer().get(chunk.cells, row << chunkShift, columns);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    for (int i = 0; i < chunk.cells.length; i++) {
+      if ((chunk.cells[i] & 0xFFFF) >= palette.length) {
+        throw new IllegalStateException("corrupt terrain file, unknown palette index "
+            + (chunk.cells[i] & 0xFFFF));
+      }
+    }
+    return chunk;
+  }
+
+  /**
+   * Writes the rows of a changed chunk to the grid of the file.
+   */
+  private void write(Chunk chunk) throws IOException {
+    int firstX = (chunk.key % chunkColumns) << chunkShift;
+    int firstY = (chunk.key / chunkColumns) << chunkShift;
+    int columns = Math.min(chunkMask + 1, length - firstX);
+    int rows = Math.min(chunkMask + 1, height - firstY);
+    byte[] bytes = new byte[2 * columns];
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    synchronized (fileLock) {
+      for (int row = 0; row < rows; row++) {
+        buffer.clear();
+        buffer.asShortBuffer().put(chunk.cells, row << chunkShift, columns);
+        file.seek(rowOffset(firstX, firstY + row));
+        file.write(bytes);
+      }
+    }
+  }
+
+  private long rowOffset(int xvalue, int yvalue) {
+    return gridOffset + 2L * ((long) yvalue * length + xvalue);
+  }
+
+  private int keyOf(int xvalue, int yvalue) {
+    return (yvalue >> chunkShift) * chunkColumns + (xvalue >> chunkShift);
+  }
+
+  private int cellOf(int xvalue, int yvalue) {
+    return ((yvalue & chunkMask) << chunkShift) | (xvalue & chunkMask);
+  }
+
+  private void checkInside(int xvalue, int yvalue) {
+    if (xvalue < 0 || yvalue < 0 || xvalue >= length || yvalue >= height) {
+      throw new IllegalArgumentException(xvalue + ", " + yvalue + " is not inside the map");
+    }
+  }
+
+  /**
+   * Palette indices of the cells of a chunk, row by row. Chunks at the
+   * right and lower border of the map keep their cells outside unused.
+   */
+  private static final class Chunk {
+
+    private final int key;
+    private final short[] cells;
+    private boolean dirty;
+    // set if the write back failed, force tries it again
+    private boolean writeFailed;
+    // set when the chunk left the cache, threads that still hold it read it again
+    private volatile boolean evicted;
+
+    Chunk(int key, int chunkSize) {
+      this(key, new short[chunkSize * chunkSize]);
+    }
+
+    Chunk(int key, short[] cells) {
+      this.key = key;
+      this.cells = cells;
+    }
+  }
+}
@@ -0,0 +1,589 @@
+package sample;
+
+import java.util.Arrays;
+
+/**
+ * Abstract graph of a TerrainMap for hierarchical path finding.
+ * The map is split into square clusters. Entrances are placed on the borders
+ * between neighbouring clusters and the costs between the entrances of a
+ * cluster are precomputed, so a query only searches the small graph of
+ * entrances and then refines the found path cluster by cluster.
+ * An open part of a border gets one entrance per entranceWidth cells.
+ * With an entrance width of 1 every border cell is an entrance and the paths
+ * have the same costs as the ones of PathFinderAlgorithm, larger widths give
+ * smaller graphs and faster queries but paths that can be more expensive.
+ * Clusters are built when a search reaches them for the first time. The
+ * graph listens to its map and rebuilds only the clusters touched by a
+ * changed cell, the next time a search reaches them.
+ * Costs are the ones of Options.COSTS_ONLY: a path pays the costs of all its
+ * cells except the last.
+ * @version 1.0
+ */
+public final class ClusterGraph implements TerrainListener {
+
+  private final TerrainMap terrainMap;
+  private final int clusterSize;
+  private final int entranceWidth;
+
+  private int length;
+  private int height;
+  private int clustersX;
+  private int clustersY;
+  // pairs of cells (inside, outside) that connect a cluster with its right / lower neighbour
+  private int[][] rightTransitions;
+  private int[][] lowerTransitions;
+  private boolean[] rightBorderChanged;
+  private boolean[] lowerBorderChanged;
+  private boolean[] clusterChanged;
+  private boolean mapChanged = true;
+
+  // sorted entrance cells of every cluster
+  private int[][] entrances;
+  // up to four cells in neighbouring clusters per entrance, NONE if unused
+  private int[][] exits;
+  // costs between the entrances of a cluster, row by row
+  private int[][] entranceCosts;
+
+  // search inside one cluster, indexed by the local cell
+  private final int[] localCosts;
+  private final int[] localPredecessors;
+  private final IndexedDaryHeap localOpenCells;
+  // costs of the cells of the loaded cluster and its position
+  private final int[] localCellCosts;
+  private int loadedLeft;
+  private int loadedTop;
+  private int loadedWidth;
+  private int loadedRows;
+
+  private int lastCosts = -1;
+  // time spent in buildCluster
+  private long buildNanos;
+
+  /**
+   * Constructor for class ClusterGraph.
+   * The graph registers itself as listener of the map, call release when it is no longer used.
+   * @param terrainMap the map the graph is built for
+   * @param clusterSize length and height of a cluster in cells
+   * @param entranceWidth the number of border cells that share one entrance
+   */
+  public ClusterGraph(TerrainMap terrainMap, int clusterSize, int entranceWidth) {
+    if (terrainMap == null || clusterSize < 1 || entranceWidth < 1) {
+      throw new IllegalArgumentException();
+    }
+    this.terrainMap = terrainMap;
+    this.clusterSize = clusterSize;
+    this.entranceWidth = entranceWidth;
+    localCosts = new int[clusterSize * clusterSize];
+    localPredecessors = new int[clusterSize * clusterSize];
+    localOpenCells = new IndexedDaryHeap(clusterSize * clusterSize);
+    localCellCosts = new int[clusterSize * clusterSize];
+    terrainMap.addTerrainListener(this);
+  }
+
+  public TerrainMap getTerrainMap() {
+    return terrainMap;
+  }
+
+  public int getClusterSize() {
+    return clusterSize;
+  }
+
+  public int getEntranceWidth() {
+    return entranceWidth;
+  }
+
+  /**
+   * Getter for the costs of the last path found by findPath.
+   * @return the costs or -1 if no path was found
+   */
+  public int getLastCosts() {
+    return lastCosts;
+  }
+
+  /**
+   * Getter for the time spent building clusters since the graph was created.
+   * Clusters are built when a search reaches them, so this time is part of the searches.
+   */
+  public long getBuildNanos() {
+    return buildNanos;
+  }
+
+  /**
+   * Stops listening to the map.
+   */
+  public void release() {
+    terrainMap.removeTerrainListener(this);
+  }
+
+  @Override
+  public void cellChanged(TerrainMap terrainMap, int xvalue, int yvalue) {
+    if (mapChanged) {
+      return;
+    }
+    int clusterX = xvalue / clusterSize;
+    int clusterY = yvalue / clusterSize;
+    int cluster = clusterY * clustersX + clusterX;
+    clusterChanged[cluster] = true;
+    // cells on a border also change the entrances of the neighbour
+    if (xvalue % clusterSize == 0 && clusterX > 0) {
+      rightBorderChanged[cluster - 1] = true;
+    }
+    if (xvalue == clusterRight(clusterX) - 1 && clusterX + 1 < clustersX) {
+      rightBorderChanged[cluster] = true;
+    }
+    if (yvalue % clusterSize == 0 && clusterY > 0) {
+      lowerBorderChanged[cluster - clustersX] = true;
+    }
+    if (yvalue == clusterBottom(clusterY) - 1 && clusterY + 1 < clustersY) {
+      lowerBorderChanged[cluster] = true;
+    }
+  }
+
+  @Override
+  public void mapChanged(TerrainMap terrainMap) {
+    mapChanged = true;
+  }
+
+  /**
+   * Searches the cheapest path over the entrances and refines it into cells.
+   * @param startingCell index of the starting cell
+   * @param endingCell index of the ending cell
+   * @param context the context used for the search over the entrances
+   * @param queueStrategy the priority queue used for the entrances that are not finished
+   * @return the cells from the starting to the ending cell,
+   *         empty if there is no path or both cells are equal
+   */
+  public int[] findPath(int startingCell, int endingCell, SearchContext context,
+                        QueueStrategy queueStrategy) {
+    update();
+    lastCosts = -1;
+    if (startingCell == endingCell) {
+      return new int[0];
+    }
+    TerrainStorage storage = terrainMap.getStorage();
+    int startingCluster = clusterOf(startingCell);
+    int endingCluster = clusterOf(endingCell);
+    int endX = endingCell % length;
+    int endY = endingCell / length;
+    int minCosts = storage.getMinCosts();
+    ensureCluster(startingCluster);
+    ensureCluster(endingCluster);
+
+    // connect the starting and the ending cell with the entrances of their clusters
+    int[] startingEntrances = entrances[startingCluster];
+    int[] costsFromStart = new int[startingEntrances.length];
+    loadCluster(startingCluster);
+    searchCluster(startingCell, false, SearchContext.NONE);
+    for (int i = 0; i < startingEntrances.length; i++) {
+      costsFromStart[i] = localCosts[localCell(startingEntrances[i])];
+    }
+    int directCosts = startingCluster == endingCluster
+        ? localCosts[localCell(endingCell)] : SearchContext.INFINITE;
+    int[] endingEntrances = entrances[endingCluster];
+    int[] costsToEnd = new int[endingEntrances.length];
+    loadCluster(endingCluster);
+    searchCluster(endingCell, true, SearchContext.NONE);
+    for (int i = 0; i < endingEntrances.length; i++) {
+      costsToEnd[i] = localCosts[localCell(endingEntrances[i])];
+    }
+
+    // a step inside a cluster crosses at most all of its cells
+    long maxStep = (long) localCosts.length * storage.getMaxCosts() + 2L * clusterSize * minCosts;
+    context.reset(length * height, queueStrategy, 0, (int) Math.min(maxStep, Integer.MAX_VALUE - 1));
+    OpenSet openEntrances = context.getOpenSet();
+    context.setCosts(startingCell, 0, SearchContext.NONE);
+    openEntrances.insert(startingCell, AStarPathFinder.heuristic(startingCell % length,
+        startingCell / length, endX, endY, minCosts));
+
+    while (!openEntrances.isEmpty()) {
+      int cell = openEntrances.extractMin();
+      if (cell == endingCell) {
+        break;
+      }
+      context.close(cell);
+      int costs = context.getCosts(cell);
+      if (cell == startingCell) {
+        for (int i = 0; i < startingEntrances.length; i++) {
+          relax(context, cell, costs, costsFromStart[i], startingEntrances[i], endX, endY, minCosts);
+        }
+        relax(context, cell, costs, directCosts, endingCell, endX, endY, minCosts);
+      }
+      // the cluster behind the entrance is loaded next if it was not built yet
+      storage.prefetch(cell % length, cell / length);
+      int cluster = clusterOf(cell);
+      ensureCluster(cluster);
+      int entrance = Arrays.binarySearch(entrances[cluster], cell);
+      if (entrance < 0) {
+        continue;
+      }
+      int[] clusterEntrances = entrances[cluster];
+      int[] costsBetween = entranceCosts[cluster];
+      int row = entrance * clusterEntrances.length;
+      for (int i = 0; i < clusterEntrances.length; i++) {
+        relax(context, cell, costs, costsBetween[row + i], clusterEntrances[i], endX, endY, minCosts);
+      }
+      if (cluster == endingCluster) {
+        relax(context, cell, costs, costsToEnd[entrance], endingCell, endX, endY, minCosts);
+      }
+      int cellCosts = storage.costsAt(cell % length, cell / length);
+      for (int i = entrance * 4; i < entrance * 4 + 4; i++) {
+        int exit = exits[cluster][i];
+        if (exit != SearchContext.NONE) {
+          relax(context, cell, costs, cellCosts, exit, endX, endY, minCosts);
+        }
+      }
+    }
+    if (context.getCosts(endingCell) == SearchContext.INFINITE) {
+      return new int[0];
+    }
+    lastCosts = context.getCosts(endingCell);
+    return refine(context, endingCell);
+  }
+
+  /**
+   * Prepares the graph for a new size of the map, all clusters are rebuilt when they are reached.
+   */
+  private void update() {
+    if (mapChanged) {
+      length = terrainMap.getLength();
+      height = terrainMap.getHeight();
+      clustersX = (length + clusterSize - 1) / clusterSize;
+      clustersY = (height + clusterSize - 1) / clusterSize;
+      int clusters = clustersX * clustersY;
+      rightTransitions = new int[clusters][];
+      lowerTransitions = new int[clusters][];
+      entrances = new int[clusters][];
+      exits = new int[clusters][];
+      entranceCosts = new int[clusters][];
+      rightBorderChanged = new boolean[clusters];
+      lowerBorderChanged = new boolean[clusters];
+      clusterChanged = new boolean[clusters];
+      Arrays.fill(rightBorderChanged, true);
+      Arrays.fill(lowerBorderChanged, true);
+      Arrays.fill(clusterChanged, true);
+      mapChanged = false;
+    }
+  }
+
+  /**
+   * Rebuilds a cluster if it or one of its borders changed since it was built.
+   * Clusters are only built when a search reaches them.
+   */
+  private void ensureCluster(int cluster) {
+    updateBorder(cluster, true);
+    updateBorder(cluster, false);
+    if (cluster % clustersX > 0) {
+      updateBorder(cluster - 1, true);
+    }
+    if (cluster >= clustersX) {
+      updateBorder(cluster - clustersX, false);
+    }
+    if (clusterChanged[cluster]) {
+      long started = System.nanoTime();
+      buildCluster(cluster);
+      buildNanos += System.nanoTime() - started;
+      clusterChanged[cluster] = false;
+    }
+  }
+
+  /**
+   * Places the entrances of the right or lower border of a cluster again if it changed.
+   * Both clusters next to the border are rebuilt when they are reached the next time.
+   */
+  private void updateBorder(int cluster, boolean right) {
+    if (right && rightBorderChanged[cluster]) {
+      rightTransitions[cluster] = findTransitions(cluster, true);
+      rightBorderChanged[cluster] = false;
+      clusterChanged[cluster] = true;
+      if (cluster % clustersX + 1 < clustersX) {
+        clusterChanged[cluster + 1] = true;
+      }
+    } else if (!right && lowerBorderChanged[cluster]) {
+      lowerTransitions[cluster] = findTransitions(cluster, false);
+      lowerBorderChanged[cluster] = false;
+      clusterChanged[cluster] = true;
+      if (cluster + clustersX < clusterChanged.length) {
+        clusterChanged[cluster + clustersX] = true;
+      }
+    }
+  }
+
+  /**
+   * Places the entrances on the right or lower border of a cluster.
+   * Every run of cells that are open on both sides is split into pieces of
+   * at most entranceWidth cells, each piece gets an entrance at its cheapest pair of cells.
+   * @return pairs of cells, the first one inside the cluster
+   */
+  private int[] findTransitions(int cluster, boolean right) {
+    int clusterX = cluster % clustersX;
+    int clusterY = cluster / clustersX;
+    if (right ? clusterX + 1 >= clustersX : clusterY + 1 >= clustersY) {
+      return new int[0];
+    }
+    TerrainStorage storage = terrainMap.getStorage();
+    // the border runs along y for the right border and along x for the lower border
+    int first = right ? clusterY * clusterSize : clusterX * clusterSize;
+    int end = right ? clusterBottom(clusterY) : clusterRight(clusterX);
+    int inside = right ? clusterRight(clusterX) - 1 : clusterBottom(clusterY) - 1;
+    int[] pairCosts = new int[end - first];
+    for (int i = first; i < end; i++) {
+      int insideCosts = right ? storage.costsAt(inside, i) : storage.costsAt(i, inside);
+      int outsideCosts = right ? storage.costsAt(inside + 1, i) : storage.costsAt(i, inside + 1);
+      pairCosts[i - first] = insideCosts == CostModel.OBSTACLE || outsideCosts == CostModel.OBSTACLE
+          ? CostModel.OBSTACLE : SearchContext.addCosts(insideCosts, outsideCosts);
+    }
+    int[] transitions = new int[2 * pairCosts.length];
+    int count = 0;
+    int runStart = 0;
+    while (runStart < pairCosts.length) {
+      if (pairCosts[runStart] == CostModel.OBSTACLE) {
+        runStart++;
+        continue;
+      }
+      int runEnd = runStart;
+      while (runEnd < pairCosts.length && pairCosts[runEnd] != CostModel.OBSTACLE) {
+        runEnd++;
+      }
+      int runLength = runEnd - runStart;
+      int pieces = (runLength + entranceWidth - 1) / entranceWidth;
+      for (int piece = 0; piece < pieces; piece++) {
+        int pieceStart = runStart + piece * runLength / pieces;
+        int pieceEnd = runStart + (piece + 1) * runLength / pieces;
+        int middle = (pieceStart + pieceEnd - 1) / 2;
+        int best = middle;
+        for (int i = pieceStart; i < pieceEnd; i++) {
+          if (pairCosts[i] < pairCosts[best]
+              || (pairCosts[i] == pairCosts[best] && Math.abs(i - middle) < Math.abs(best - middle))) {
+            best = i;
+          }
+        }
+        int position = first + best;
+        transitions[count++] = right ? position * length + inside : inside * length + position;
+        transitions[count++] = right ? position * length + inside + 1 : (inside + 1) * length + position;
+      }
+      runStart = runEnd;
+    }
+    return Arrays.copyOf(transitions, count);
+  }
+
+  /**
+   * Collects the entrances of a cluster and the costs between them.
+   */
+  private void buildCluster(int cluster) {
+    int clusterX = cluster % clustersX;
+    int clusterY = cluster / clustersX;
+    // entrance cell in the upper half, cell in the neighbour cluster in the lower half
+    long[] pairs = new long[0];
+    pairs = addPairs(pairs, rightTransitions[cluster], 0);
+    pairs = addPairs(pairs, lowerTransitions[cluster], 0);
+    if (clusterX > 0) {
+      pairs = addPairs(pairs, rightTransitions[cluster - 1], 1);
+    }
+    if (clusterY > 0) {
+      pairs = addPairs(pairs, lowerTransitions[cluster - clustersX], 1);
+    }
+    Arrays.sort(pairs);
+    int[] clusterEntrances = new int[pairs.length];
+    int[] clusterExits = new int[4 * pairs.length];
+    Arrays.fill(clusterExits, SearchContext.NONE);
+    int count = 0;
+    for (int i = 0; i < pairs.length; i++) {
+      int cell = (int) (pairs[i] >>> 32);
+      if (count == 0 || clusterEntrances[count - 1] != cell) {
+        clusterEntrances[count++] = cell;
+      }
+      int slot = (count - 1) * 4;
+      while (clusterExits[slot] != SearchContext.NONE) {
+        slot++;
+      }
+      clusterExits[slot] = (int) pairs[i];
+    }
+    clusterEntrances = Arrays.copyOf(clusterEntrances, count);
+    int[] costsBetween = new int[count * count];
+    loadCluster(cluster);
+    for (int i = 0; i < count; i++) {
+      searchCluster(clusterEntrances[i], false, SearchContext.NONE);
+      for (int j = 0; j < count; j++) {
+        costsBetween[i * count + j] = localCosts[localCell(clusterEntrances[j])];
+      }
+    }
+    entrances[cluster] = clusterEntrances;
+    exits[cluster] = Arrays.copyOf(clusterExits, 4 * count);
+    entranceCosts[cluster] = costsBetween;
+  }
+
+  /**
+   * Appends the transitions of a border as (entrance, exit) pairs.
+   * @param side 0 if the first cell of a transition is the entrance, 1 for the second cell
+   */
+  private static long[] addPairs(long[] pairs, int[] transitions, int side) {
+    int count = transitions.length / 2;
+    long[] result = Arrays.copyOf(pairs, pairs.length + count);
+    for (int i = 0; i < count; i++) {
+      int entrance = transitions[2 * i + side];
+      int exit = transitions[2 * i + 1 - side];
+      result[pairs.length + i] = ((long) entrance << 32) | (exit & 0xFFFFFFFFL);
+    }
+    return result;
+  }
+
+  /**
+   * Copies the costs of the cells of a cluster for the following searches inside it.
+   * @param cluster the cluster to search in
+   */
+  private void loadCluster(int cluster) {
+    TerrainStorage storage = terrainMap.getStorage();
+    int clusterX = cluster % clustersX;
+    int clusterY = cluster / clustersX;
+    loadedLeft = clusterX * clusterSize;
+    loadedTop = clusterY * clusterSize;
+    loadedWidth = clusterRight(clusterX) - loadedLeft;
+    loadedRows = clusterBottom(clusterY) - loadedTop;
+    for (int yvalue = 0; yvalue < loadedRows; yvalue++) {
+      for (int xvalue = 0; xvalue < loadedWidth; xvalue++) {
+        localCellCosts[yvalue * loadedWidth + xvalue] =
+            storage.costsAt(loadedLeft + xvalue, loadedTop + yvalue);
+      }
+    }
+  }
+
+  /**
+   * Searches the cheapest costs inside the loaded cluster with the dijkstra algorithm.
+   * The results are stored in localCosts and localPredecessors.
+   * @param source the cell the search starts from
+   * @param backward false for the costs from the source to every cell,
+   *                 true for the costs from every cell to the source
+   * @param target cell at which the search can stop, NONE to search the whole cluster
+   */
+  private void searchCluster(int source, boolean backward, int target) {
+    int width = loadedWidth;
+    int cellCount = width * loadedRows;
+    Arrays.fill(localCosts, 0, cellCount, SearchContext.INFINITE);
+    localOpenCells.clear();
+    int sourceCell = localCell(source);
+    int targetCell = target == SearchContext.NONE ? SearchContext.NONE : localCell(target);
+    localCosts[sourceCell] = 0;
+    localPredecessors[sourceCell] = SearchContext.NONE;
+    localOpenCells.insert(sourceCell, 0);
+    while (!localOpenCells.isEmpty()) {
+      int cell = localOpenCells.extractMin();
+      if (cell == targetCell) {
+        return;
+      }
+      int xvalue = cell % width;
+      int costs = localCosts[cell];
+      // forward a step pays the cell it leaves, backward the cell it enters
+      int leaveCosts = backward ? 0 : localCellCosts[cell];
+      if (xvalue > 0) {
+        relaxLocal(cell, costs, leaveCosts, cell - 1, backward);
+      }
+      if (xvalue + 1 < width) {
+        relaxLocal(cell, costs, leaveCosts, cell + 1, backward);
+      }
+      if (cell >= width) {
+        relaxLocal(cell, costs, leaveCosts, cell - width, backward);
+      }
+      if (cell + width < cellCount) {
+        relaxLocal(cell, costs, leaveCosts, cell + width, backward);
+      }
+    }
+  }
+
+  /**
+   * Lowers the costs of a neighbour cell inside the loaded cluster.
+   */
+  private void relaxLocal(int cell, int costs, int leaveCosts, int next, boolean backward) {
+    int nextCosts = localCellCosts[next];
+    if (nextCosts == CostModel.OBSTACLE) {
+      return;
+    }
+    int costsToNext = SearchContext.addCosts(costs, backward ? nextCosts : leaveCosts);
+    if (costsToNext < localCosts[next]) {
+      localCosts[next] = costsToNext;
+      localPredecessors[next] = cell;
+      localOpenCells.insertOrDecrease(next, costsToNext);
+    }
+  }
+
+  /**
+   * Turns the entrances found by the search into cells.
+   * Consecutive entrances of the same cluster are connected by a search inside the cluster,
+   * entrances of different clusters are neighbours.
+   */
+  private int[] refine(SearchContext context, int endingCell) {
+    int abstractLength = 0;
+    for (int cell = endingCell; cell != SearchContext.NONE; cell = context.getPredecessor(cell)) {
+      abstractLength++;
+    }
+    int[] abstractPath = new int[abstractLength];
+    int index = abstractLength;
+    for (int cell = endingCell; cell != SearchContext.NONE; cell = context.getPredecessor(cell)) {
+      abstractPath[--index] = cell;
+    }
+    int[] cells = new int[Math.max(16, abstractLength * clusterSize)];
+    int count = 0;
+    cells[count++] = abstractPath[0];
+    for (int i = 1; i < abstractLength; i++) {
+      int from = abstractPath[i - 1];
+      int to = abstractPath[i];
+      int cluster = clusterOf(from);
+      if (cluster != clusterOf(to)) {
+        if (count == cells.length) {
+          cells = Arrays.copyOf(cells, cells.length * 2);
+        }
+        cells[count++] = to;
+        continue;
+      }
+      loadCluster(cluster);
+      searchCluster(from, false, to);
+      int segmentLength = 0;
+      int target = localCell(to);
+      for (int cell = target; localPredecessors[cell] != SearchContext.NONE;
+           cell = localPredecessors[cell]) {
+        segmentLength++;
+      }
+      if (count + segmentLength > cells.length) {
+        cells = Arrays.copyOf(cells, Math.max(cells.length * 2, count + segmentLength));
+      }
+      int position = count + segmentLength;
+      for (int cell = target; localPredecessors[cell] != SearchContext.NONE;
+           cell = localPredecessors[cell]) {
+        cells[--position] = (loadedTop + cell / loadedWidth) * length + loadedLeft + cell % loadedWidth;
+      }
+      count += segmentLength;
+    }
+    return Arrays.copyOf(cells, count);
+  }
+
+  /**
+   * Lowers the costs of an entrance if it can be reached cheaper over the current one.
+   */
+  private void relax(SearchContext context, int current, int currentCosts, int stepCosts,
+                     int next, int endX, int endY, int minCosts) {
+    if (stepCosts == SearchContext.INFINITE || context.isClosed(next)) {
+      return;
+    }
+    int costsToNext = SearchContext.addCosts(currentCosts, stepCosts);
+    if (costsToNext < context.getCosts(next)) {
+      context.setCosts(next, costsToNext, current);
+      context.getOpenSet().insertOrDecrease(next, SearchContext.addCosts(costsToNext,
+          AStarPathFinder.heuristic(next % length, next / length, endX, endY, minCosts)));
+    }
+  }
+
+  private int clusterOf(int cell) {
+    return (cell / length / clusterSize) * clustersX + (cell % length) / clusterSize;
+  }
+
+  private int localCell(int cell) {
+    return (cell / length - loadedTop) * loadedWidth + cell % length - loadedLeft;
+  }
+
+  private int clusterRight(int clusterX) {
+    return Math.min(length, (clusterX + 1) * clusterSize);
+  }
+
+  private int clusterBottom(int clusterY) {
+    return Math.min(height, (clusterY + 1) * clusterSize);
+  }
+}
@@ -0,0 +1,253 @@
+package sample;
+
+import java.util.Arrays;
+
+/**
+ * Index of the connected areas of the cells of a TerrainMap that are no
+ * obstacle. Two cells are connected if a path of steps to neighbour cells
+ * leads from one to the other, so a PathFinder can reject a query between
+ * separated cells without searching the whole area around its starting point.
+ * Every cell gets the label of an area; labels are merged with union-find.
+ * The labels are built with one pass over the rows on the first query and
+ * are kept up to date with the changes of the map: a cell that is no longer
+ * an obstacle merges the areas of its neighbours, a new obstacle only forces
+ * a new pass if its neighbours are not connected around it.
+ * The index is thread-safe, its map may be changed while other threads ask it.
+ * Changes made directly to the storage of the map are not noticed.
+ * @version 1.0
+ */
+public final class ConnectivityIndex implements TerrainListener {
+
+  /**
+   * area of an obstacle.
+   */
+  public static final int OBSTACLE = -1;
+
+  // the neighbours around a cell, every one touches the next one with a side
+  private static final int[] RING_X = {0, 1, 1, 1, 0, -1, -1, -1};
+  private static final int[] RING_Y = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+  private final TerrainMap terrainMap;
+  private int length;
+  private int height;
+  // label of every cell or OBSTACLE
+  private int[] labels = new int[0];
+  // union-find parent of every label, a label without parent is its own parent
+  private int[] parents = new int[16];
+  private int labelCount;
+  // set if the labels have to be built again before the next query
+  private boolean stale = true;
+  private long passes;
+
+  /**
+   * Constructor for class ConnectivityIndex, the labels are built by the first query.
+   * The index has to be registered as TerrainListener of the map to see its changes,
+   * TerrainMap.getConnectivityIndex returns such an index.
+   * @param terrainMap the map whose cells are indexed
+   */
+  public ConnectivityIndex(TerrainMap terrainMap) {
+    if (terrainMap == null) {
+      throw new IllegalArgumentException();
+    }
+    this.terrainMap = terrainMap;
+  }
+
+  /**
+   * Checks if a path leads from one cell to another.
+   * @param startingPoint the first cell
+   * @param endingPoint the second cell
+   * @return true if both cells are no obstacle and lie in the same area
+   */
+  public boolean isConnected(Coordinate startingPoint, Coordinate endingPoint) {
+    return isConnected(startingPoint.getXvalue(), startingPoint.getYvalue(),
+        endingPoint.getXvalue(), endingPoint.getYvalue());
+  }
+
+  /**
+   * Checks if a path leads from one cell to another.
+   * @param startingX x-coordinate of the first cell
+   * @param startingY y-coordinate of the first cell
+   * @param endingX x-coordinate of the second cell
+   * @param endingY y-coordinate of the second cell
+   * @return true if both cells are no obstacle and lie in the same area
+   */
+  public synchronized boolean isConnected(int startingX, int startingY, int endingX, int endingY) {
+    update();
+    int startingLabel = labels[startingY * length + startingX];
+    int endingLabel = labels[endingY * length + endingX];
+    return startingLabel != OBSTACLE && endingLabel != OBSTACLE
+        && find(startingLabel) == find(endingLabel);
+  }
+
+  /**
+   * Getter for the area of a cell.
+   * The numbers of the areas only stay the same until the labels are built again.
+   * @param xvalue x-coordinate of the cell
+   * @param yvalue y-coordinate of the cell
+   * @return a number that is the same for all cells of the area or OBSTACLE
+   */
+  public synchronized int getArea(int xvalue, int yvalue) {
+    update();
+    int label = labels[yvalue * length + xvalue];
+    return label == OBSTACLE ? OBSTACLE : find(label);
+  }
+
+  /**
+   * Getter for the number of passes over all cells, the first one included.
+   */
+  public synchronized long getPasses() {
+    return passes;
+  }
+
+  @Override
+  public synchronized void cellChanged(TerrainMap terrainMap, int xvalue, int yvalue) {
+    if (stale) {
+      return;
+    }
+    int cell = yvalue * length + xvalue;
+    boolean obstacle = terrainMap.getStorage().costsAt(xvalue, yvalue) == CostModel.OBSTACLE;
+    // changed costs do not change the areas
+    if (obstacle == (labels[cell] == OBSTACLE)) {
+      return;
+    }
+    if (obstacle) {
+      labels[cell] = OBSTACLE;
+      stale = !staysConnected(xvalue, yvalue);
+      return;
+    }
+    int label = OBSTACLE;
+    for (int direction = 0; direction < RING_X.length; direction += 2) {
+      int neighbour = labelAt(xvalue + RING_X[direction], yvalue + RING_Y[direction]);
+      if (neighbour == OBSTACLE) {
+        continue;
+      }
+      if (label == OBSTACLE) {
+        label = find(neighbour);
+      } else {
+        label = union(label, neighbour);
+      }
+    }
+    labels[cell] = label == OBSTACLE ? newLabel() : label;
+    // isolated cells add labels, a new pass removes the unused ones
+    stale = labelCount > labels.length;
+  }
+
+  @Override
+  public synchronized void mapChanged(TerrainMap terrainMap) {
+    stale = true;
+  }
+
+  /**
+   * Builds the labels again if the map was replaced or a new obstacle may have split an area.
+   */
+  private void update() {
+    if (!stale && length == terrainMap.getLength() && height == terrainMap.getHeight()) {
+      return;
+    }
+    TerrainStorage storage = terrainMap.getStorage();
+    length = storage.getLength();
+    height = storage.getHeight();
+    int cellCount = length * height;
+    if (labels.length != cellCount) {
+      labels = new int[cellCount];
+    }
+    labelCount = 0;
+    // a cell takes the label of its left neighbour and merges it with the one above
+    for (int yvalue = 0; yvalue < height; yvalue++) {
+      int row = yvalue * length;
+      for (int xvalue = 0; xvalue < length; xvalue++) {
+        int cell = row + xvalue;
+        if (storage.costsAt(xvalue, yvalue) == CostModel.OBSTACLE) {
+          labels[cell] = OBSTACLE;
+          continue;
+        }
+        int left = xvalue > 0 ? labels[cell - 1] : OBSTACLE;
+        int above = yvalue > 0 ? labels[cell - length] : OBSTACLE;
+        if (left != OBSTACLE) {
+          labels[cell] = above == OBSTACLE ? left : union(left, above);
+        } else {
+          labels[cell] = above == OBSTACLE ? newLabel() : above;
+        }
+      }
+    }
+    // every cell points to the root of its area, so later finds are one step
+    for (int cell = 0; cell < cellCount; cell++) {
+      if (labels[cell] != OBSTACLE) {
+        labels[cell] = find(labels[cell]);
+      }
+    }
+    stale = false;
+    passes++;
+  }
+
+  /**
+   * Checks the neighbours of a cell that became an obstacle. If all its free
+   * side neighbours are connected over the eight cells around it, every path
+   * over the cell can go around it and no area is split.
+   */
+  private boolean staysConnected(int xvalue, int yvalue) {
+    boolean[] free = new boolean[RING_X.length];
+    int start = -1;
+    for (int i = 0; i < free.length; i++) {
+      free[i] = labelAt(xvalue + RING_X[i], yvalue + RING_Y[i]) != OBSTACLE;
+      if (!free[i]) {
+        start = i;
+      }
+    }
+    if (start < 0) {
+      return true;
+    }
+    // count the runs of free neighbours that contain a side neighbour
+    int runs = 0;
+    boolean sideInRun = false;
+    for (int step = 1; step <= free.length; step++) {
+      int i = (start + step) % free.length;
+      if (free[i]) {
+        sideInRun |= (i & 1) == 0;
+      } else {
+        runs += sideInRun ? 1 : 0;
+        sideInRun = false;
+      }
+    }
+    return runs <= 1;
+  }
+
+  private int labelAt(int xvalue, int yvalue) {
+    if (xvalue < 0 || yvalue < 0 || xvalue >= length || yvalue >= height) {
+      return OBSTACLE;
+    }
+    return labels[yvalue * length + xvalue];
+  }
+
+  private int newLabel() {
+    if (labelCount == parents.length) {
+      parents = Arrays.copyOf(parents, labelCount * 2);
+    }
+    parents[labelCount] = labelCount;
+    return labelCount++;
+  }
+
+  /**
+   * Finds the root of a label and halves the path to it.
+   */
+  private int find(int label) {
+    while (parents[label] != label) {
+      parents[label] = parents[parents[label]];
+      label = parents[label];
+    }
+    return label;
+  }
+
+  /**
+   * Merges the areas of two labels.
+   * @return the root of the merged area
+   */
+  private int union(int first, int second) {
+    int firstRoot = find(first);
+    int secondRoot = find(second);
+    if (firstRoot != secondRoot) {
+      parents[secondRoot] = firstRoot;
+    }
+    return firstRoot;
+  }
+}
@@ -50,4 +50,9 @@ public class Coordinate {
     }
     return false;
   }
+
+  @Override
+  public int hashCode() {
+    return 31 * xvalue + yvalue;
+  }
 }
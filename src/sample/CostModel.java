@@ -0,0 +1,60 @@
+package sample;
+
+/**
+ * Costs of the cells of a map as seen by a search.
+ * Cells are addressed by their x- and y-coordinate, so a search can ask
+ * for costs without creating Coordinate objects.
+ * @version 1.0
+ */
+public interface CostModel {
+
+  /**
+   * costs returned for cells that can not be walked over.
+   */
+  int OBSTACLE = -1;
+
+  /**
+   * Getter for the length of the map in x-direction.
+   */
+  int getLength();
+
+  /**
+   * Getter for the height of the map in y-direction.
+   */
+  int getHeight();
+
+  /**
+   * Getter for the costs to walk over a cell.
+   * @param xvalue the x-coordinate of the cell
+   * @param yvalue the y-coordinate of the cell
+   * @return the non-negative costs of the cell or OBSTACLE
+   */
+  int costsAt(int xvalue, int yvalue);
+
+  /**
+   * Getter for the lowest costs of a cell that is no obstacle.
+   */
+  int getMinCosts();
+
+  /**
+   * Getter for the highest costs of a cell that is no obstacle.
+   */
+  int getMaxCosts();
+
+  /**
+   * Hint that a search will soon ask for the costs of the cells around a cell,
+   * called for the cells on the frontier of a search.
+   * @param xvalue the x-coordinate of the cell
+   * @param yvalue the y-coordinate of the cell
+   */
+  default void prefetch(int xvalue, int yvalue) {
+  }
+
+  /**
+   * Tells whether the cells are read in chunks, see TerrainStorage.isChunked.
+   * @return true if a table with an entry for every cell would not fit into memory
+   */
+  default boolean isChunked() {
+    return false;
+  }
+}
@@ -0,0 +1,77 @@
+package sample;
+
+/**
+ * Open set that counts the operations of another open set for a SearchMeter.
+ * Every removed node counts as expanded, every inserted or lowered node as relaxed.
+ * Removing a node is also the checkpoint at which a cancelled query stops.
+ * @version 1.0
+ */
+final class CountingOpenSet implements OpenSet {
+
+  private final OpenSet openSet;
+  private final SearchMeter meter;
+
+  CountingOpenSet(OpenSet openSet, SearchMeter meter) {
+    this.openSet = openSet;
+    this.meter = meter;
+  }
+
+  OpenSet getOpenSet() {
+    return openSet;
+  }
+
+  SearchMeter getMeter() {
+    return meter;
+  }
+
+  @Override
+  public void insert(int node, int key) {
+    openSet.insert(node, key);
+    meter.relaxedNodes++;
+    meter.queueOperations++;
+    int size = openSet.size();
+    if (size > meter.openSetPeak) {
+      meter.openSetPeak = size;
+    }
+  }
+
+  @Override
+  public void decreaseKey(int node, int key) {
+    openSet.decreaseKey(node, key);
+    meter.relaxedNodes++;
+    meter.queueOperations++;
+  }
+
+  @Override
+  public int extractMin() {
+    // a cancelled query stops before the node is taken
+    meter.expanded();
+    meter.queueOperations++;
+    return openSet.extractMin();
+  }
+
+  @Override
+  public int getMinKey() {
+    return openSet.getMinKey();
+  }
+
+  @Override
+  public boolean contains(int node) {
+    return openSet.contains(node);
+  }
+
+  @Override
+  public int size() {
+    return openSet.size();
+  }
+
+  @Override
+  public void clear() {
+    openSet.clear();
+  }
+
+  @Override
+  public void ensureCapacity(int capacity) {
+    openSet.ensureCapacity(capacity);
+  }
+}
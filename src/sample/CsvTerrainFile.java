@@ -0,0 +1,211 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Cost grids as comma separated values.
+ * Every line is a row of the map, every value the costs of a cell, a
+ * negative value marks an obstacle. Values may also be separated by
+ * semicolons, lines may end with CR LF and empty lines are ignored.
+ * The Materials of a read map are all named "csv".
+ * The file is memory mapped and its rows are parsed in parallel bands
+ * directly from the mapped bytes, so a file is limited to 2 GB.
+ * @version 1.0
+ */
+public final class CsvTerrainFile {
+
+  /**
+   * name of the Materials of a read map.
+   */
+  public static final String MATERIAL_NAME = "csv";
+  // bytes written to the channel at once
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private CsvTerrainFile() {
+  }
+
+  /**
+   * Reads a cost grid on the common pool.
+   * @param file the file to read
+   * @return a new map with the costs of the file
+   * @throws IOException if the file can not be read or is no cost grid
+   */
+  public static TerrainMap read(File file) throws IOException {
+    return read(file, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Reads a cost grid.
+   * @param file the file to read
+   * @param pool the pool that parses the bands of rows
+   * @return a new map with the costs of the file
+   * @throws IOException if the file can not be read or is no cost grid
+   */
+  public static TerrainMap read(File file, ForkJoinPool pool) throws IOException {
+    MappedByteBuffer bytes;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("cost grids larger than 2 GB are not supported");
+      }
+      bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    int[] lines = lineBounds(bytes);
+    int height = lines.length / 2;
+    int length = height == 0 ? 0 : countValues(bytes, lines[0], lines[1]);
+    TerrainLoader loader = new TerrainLoader(length, height, MATERIAL_NAME);
+    loader.readBands(pool, (firstRow, rows) -> {
+      short[] indices = new short[length];
+      for (int yvalue = firstRow; yvalue < firstRow + rows; yvalue++) {
+        parseRow(bytes, lines[2 * yvalue], lines[2 * yvalue + 1], yvalue, indices, loader);
+        loader.setRow(yvalue, indices);
+      }
+    });
+    return new TerrainMap(loader.getStorage());
+  }
+
+  /**
+   * Writes the costs of a map as cost grid, obstacles are written as -1.
+   * The cells are streamed from the storage of the map without Materials.
+   * @param terrainMap the map to write
+   * @param file the file to write, an existing file is replaced
+   * @throws IOException if the file can not be written
+   */
+  public static void write(TerrainMap terrainMap, File file) throws IOException {
+    TerrainStorage storage = terrainMap.getStorage();
+    int length = storage.getLength();
+    int height = storage.getHeight();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      byte[] digits = new byte[11];
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < length; x++) {
+          // a value takes at most 11 bytes and its separator one more
+          if (buffer.remaining() < 12) {
+            TerrainFile.flush(buffer, channel);
+          }
+          int costs = storage.costsAt(x, y);
+          putInt(buffer, costs == CostModel.OBSTACLE ? -1 : costs, digits);
+          buffer.put((byte) (x + 1 < length ? ',' : '\n'));
+        }
+      }
+      TerrainFile.flush(buffer, channel);
+    }
+  }
+
+  /**
+   * Finds the lines that are not empty.
+   * @return the first byte and the end of every line, one pair after the other
+   */
+  private static int[] lineBounds(ByteBuffer bytes) {
+    int size = bytes.limit();
+    int[] bounds = new int[1024];
+    int count = 0;
+    int start = 0;
+    for (int i = 0; i <= size; i++) {
+      if (i == size || bytes.get(i) == '\n') {
+        if (!isBlank(bytes, start, i)) {
+          if (count == bounds.length) {
+            bounds = Arrays.copyOf(bounds, count * 2);
+          }
+          bounds[count++] = start;
+          bounds[count++] = i;
+        }
+        start = i + 1;
+      }
+    }
+    return Arrays.copyOf(bounds, count);
+  }
+
+  private static boolean isBlank(ByteBuffer bytes, int from, int to) {
+    for (int i = from; i < to; i++) {
+      byte value = bytes.get(i);
+      if (value != ' ' && value != '\t' && value != '\r') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int countValues(ByteBuffer bytes, int from, int to) {
+    int count = 1;
+    for (int i = from; i < to; i++) {
+      byte value = bytes.get(i);
+      if (value == ',' || value == ';') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Parses the values of a line into palette indices.
+   * @param from the first byte of the line
+   * @param to the end of the line
+   */
+  private static void parseRow(ByteBuffer bytes, int from, int to, int yvalue, short[] indices,
+                               TerrainLoader loader) throws IOException {
+    int position = from;
+    for (int x = 0; x < indices.length; x++) {
+      while (position < to && isSpace(bytes.get(position))) {
+        position++;
+      }
+      boolean negative = position < to && bytes.get(position) == '-';
+      if (negative) {
+        position++;
+      }
+      int digitsStart = position;
+      long value = 0;
+      while (position < to && bytes.get(position) >= '0' && bytes.get(position) <= '9') {
+        value = Math.min(Integer.MAX_VALUE, value * 10 + bytes.get(position) - '0');
+        position++;
+      }
+      if (position == digitsStart) {
+        throw new IOException("missing value in line " + (yvalue + 1) + ", column " + (x + 1));
+      }
+      while (position < to && isSpace(bytes.get(position))) {
+        position++;
+      }
+      boolean last = x + 1 == indices.length;
+      if (last ? position < to : position == to || !isSeparator(bytes.get(position))) {
+        throw new IOException("line " + (yvalue + 1) + " does not have " + indices.length
+            + " values separated by commas");
+      }
+      position++;
+      indices[x] = negative ? loader.obstacleIndex() : loader.indexOf((int) value);
+    }
+  }
+
+  private static boolean isSpace(byte value) {
+    return value == ' ' || value == '\t' || value == '\r';
+  }
+
+  private static boolean isSeparator(byte value) {
+    return value == ',' || value == ';';
+  }
+
+  /**
+   * Writes the decimal digits of a value without creating a String.
+   */
+  private static void putInt(ByteBuffer buffer, int value, byte[] digits) {
+    if (value < 0) {
+      buffer.put((byte) '-');
+      value = -value;
+    }
+    int count = 0;
+    do {
+      digits[count++] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    while (count > 0) {
+      buffer.put(digits[--count]);
+    }
+  }
+}
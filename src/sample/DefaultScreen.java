@@ -1,26 +1,19 @@
 package sample;
 
-import javafx.event.EventHandler;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.GridPane;
-import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
-import javafx.scene.paint.Color;
-import javafx.scene.paint.Paint;
-import javafx.scene.shape.Line;
-import javafx.scene.shape.Rectangle;
 import javafx.stage.Stage;
 
 
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
 public class DefaultScreen {
 
@@ -44,20 +37,21 @@ public class DefaultScreen {
   private CheckBox obstacleCheckBox;
   @FXML
   private Button okButton;
+  @FXML
+  private CheckBox anyOrderCheckBox;
 
-  private Pane pathPane;
-
-  private static final int REC_SIZE = 25;
-  private static final int GAP = 5;
+  private PathOverlay pathOverlay;
+  private TerrainCanvasView terrainView;
 
   private int maxHeight;
   private int maxWidth;
   private List<TextField> intermediatePoints = new LinkedList<>();
-  private Rectangle currentRectangle;
   private TerrainMap terrainMap;
-  private boolean currentPointIsObstacle;
-  private Queue<Coordinate> path = new LinkedList<>();
-  private PathFinder pathFinder = new PathFinderAlgorithm();
+  private Path path;
+  private PathFinder pathFinder = new CachingPathFinder(new IncrementalPathFinder());
+  private PathFinder anyOrderPathFinder = new WaypointOrderPathFinder(pathFinder);
+  // searches off the JavaFX thread and cancels a query when the map is edited
+  private PathService pathService = new PathService(Platform::runLater);
 
   @FXML
   private void calculatePath(){
@@ -83,44 +77,55 @@ public class DefaultScreen {
       option = Options.COSTS_AND_NUMBER_POINTS;
     }
     if (startingPoint != null && endingPoint != null && validIntermediatePoints){
-      if (this.intermediatePoints.isEmpty()){
-        try {
-          path = pathFinder.getPath(terrainMap,startingPoint,endingPoint,option);
-        } catch (Exception e) {
-          showAlert(e.getMessage());
-        }
-        System.out.println("NO INTERMEDIA");
-      }else {
-        try {
-          path = pathFinder.getPath(terrainMap,startingPoint,endingPoint,intermediatePoints,option);
-        } catch (Exception e) {
-          showAlert(e.getMessage());
-        }
-        System.out.println("WIth Intermedia");
-      }
-      if(!path.isEmpty()) {
-        printPath();
-      }
-      else{
-        showAlert("No Path Found");
-      }
+      // the path is searched in the background, a running search of an older query is cancelled
+      PathFinder pathFinder = !intermediatePoints.isEmpty() && anyOrderCheckBox.isSelected()
+          ? anyOrderPathFinder : this.pathFinder;
+      errorLabel.setText("Calculating...");
+      pathService.submit(pathFinder, terrainMap, startingPoint, endingPoint, intermediatePoints,
+          option, new PathServiceListener() {
+            private SearchStatistics statistics;
+
+            @Override
+            public void progress(long expandedNodes) {
+              errorLabel.setText("Calculating... " + expandedNodes + " cells searched");
+            }
+
+            @Override
+            public void searchFinished(SearchStatistics statistics) {
+              this.statistics = statistics;
+            }
+
+            @Override
+            public void pathFound(Path path) {
+              // the statistics of the search are shown until the next query
+              errorLabel.setText(statistics == null ? "" : statistics.getExpandedNodes()
+                  + " cells searched in "
+                  + (statistics.getPrepareNanos() + statistics.getSearchNanos()
+                  + statistics.getPathNanos()) / 1000000 + " ms");
+              DefaultScreen.this.path = path;
+              if (!path.isEmpty()) {
+                printPath();
+              } else {
+                showAlert("No Path Found");
+              }
+            }
+
+            @Override
+            public void queryFailed(Exception exception) {
+              errorLabel.setText("");
+              showAlert(exception.getMessage());
+            }
+
+            @Override
+            public void queryCancelled() {
+              errorLabel.setText("Calculation cancelled");
+            }
+          });
     }
-    System.out.println(optionID);
   }
 
   private void printPath(){
-    pathPane.getChildren().removeAll(pathPane.getChildren());
-    Coordinate start = path.poll();
-    int scaling = REC_SIZE + GAP + 1;
-    int padding = REC_SIZE/2;
-    for (Coordinate point : path) {
-      Line line = new Line(padding+start.getXvalue()*scaling, padding+start.getYvalue()*scaling,
-          padding+point.getXvalue()*scaling, padding+point.getYvalue()*scaling);
-      line.setStrokeWidth(5);
-      line.setStroke(new Color(1.0,0.0,0.0,0.5));
-      start = point;
-      pathPane.getChildren().add(line);
-    }
+    pathOverlay.setPath(path);
   }
 
   public void setUpDefaultScreen(int height, int width, Stage stage){
@@ -138,43 +143,19 @@ public class DefaultScreen {
     primaryStage.setTitle("Hello World");
     primaryStage.setScene(new Scene(root, 800, 400));
     primaryStage.show();
+    // every search is written to a running flight recording
+    pathFinder.addSearchListener(new JfrSearchListener());
     setUpDefaultTerrainMap(height,width);
-    pathPane = new Pane();
-    pathPane.setMouseTransparent(true);
-    terrainMapView.getChildren().add(pathPane);
+    pathOverlay = new PathOverlay(terrainView);
   }
 
   private void setUpDefaultTerrainMap(int height, int width){
     terrainMap = new TerrainMap(width, height);
-    GridPane terrainPane = new GridPane();
-    terrainPane.setHgap(GAP);
-    terrainPane.setVgap(GAP);
-    for (int i = 0; i < height; i++){
-      for (int j = 0; j < width; j++){
-        StackPane stackPane = new StackPane();
-        Label label = new Label("1");
-        Rectangle rectangle = new Rectangle(REC_SIZE,REC_SIZE);
-        rectangle.setStroke(Paint.valueOf("Black"));
-        rectangle.setStrokeWidth(1);
-        rectangle.setFill(Paint.valueOf("White"));
-        stackPane.getChildren().addAll(rectangle,label);
-        stackPane.addEventHandler(MouseEvent.MOUSE_CLICKED, new EventHandler<MouseEvent>(){
-          @Override
-          public void handle(MouseEvent event) {
-            if (currentRectangle != null){
-              currentRectangle.setFill(currentPointIsObstacle ? Color.BLACK : Color.WHITE);
-            }
-            currentRectangle = rectangle;
-            System.out.println("REC Clicked");
-            currentRectangle.setFill(Color.CORNFLOWERBLUE);
-            updateCostAndObstacle(GridPane.getColumnIndex(currentRectangle.getParent()),
-                    GridPane.getRowIndex(currentRectangle.getParent()));
-          }
-        });
-        terrainPane.add(stackPane,j,i);
-      }
-    }
-    terrainMapView.getChildren().add(terrainPane);
+    // only the visible cells are drawn, so the size of the map does not matter
+    terrainView = new TerrainCanvasView();
+    terrainView.setTerrainMap(terrainMap);
+    terrainView.setOnCellClicked(this::updateCostAndObstacle);
+    terrainMapView.getChildren().add(terrainView);
   }
 
   @FXML
@@ -200,24 +181,19 @@ public class DefaultScreen {
 
   @FXML
   private void updateMap(){
-    if (currentRectangle != null) {
-      Label label = (Label) ((StackPane) currentRectangle.getParent()).getChildren().get(1);
-      int x = GridPane.getColumnIndex(currentRectangle.getParent());
-      int y = GridPane.getRowIndex(currentRectangle.getParent());
+    int x = terrainView.getSelectedX();
+    int y = terrainView.getSelectedY();
+    if (x >= 0 && y >= 0) {
       String costsString = costsTextField.getText();
       try {
         int costs = Integer.parseInt(costsString);
         terrainMap.getMaterialAtPoint(new Coordinate(x, y)).setCosts(costs);
-        label.setText(costs > 0 ? costsString : "0");
       } catch (Exception e) {
         errorLabel.setText("Invalid input in costs");
         return;
       }
-      currentPointIsObstacle = obstacleCheckBox.isSelected();
-      if (currentPointIsObstacle) {
-        currentRectangle.setFill(Color.BLACK);
-      }
-      terrainMap.getMaterialAtPoint(new Coordinate(x, y)).setObstacle(currentPointIsObstacle);
+      // the view listens to the map and draws the changed cell again
+      terrainMap.getMaterialAtPoint(new Coordinate(x, y)).setObstacle(obstacleCheckBox.isSelected());
     }
   }
 
@@ -254,7 +230,6 @@ public class DefaultScreen {
     Material material = terrainMap.getMaterialAtPoint(new Coordinate(x,y));
     costsTextField.setText("" + material.getCosts());
     obstacleCheckBox.setSelected(material.isObstacle());
-    currentPointIsObstacle = material.isObstacle();
   }
 
   private void showAlert(String message) {
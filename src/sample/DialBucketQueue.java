@@ -0,0 +1,167 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Dial's bucket queue for small non-negative integer edge costs.
+ * Uses a circular array of maxKeyIncrease + 1 buckets, so all keys that can
+ * be waiting at the same time map to distinct buckets. Every bucket is a
+ * doubly linked list of nodes, which makes insert and decrease-key O(1).
+ * Keys must lie between the last extracted key and that key plus
+ * maxKeyIncrease.
+ * @version 1.0
+ */
+public class DialBucketQueue implements OpenSet {
+
+  private static final int NONE = -1;
+
+  // first node of every bucket
+  private int[] heads;
+  private int[] next;
+  private int[] previous;
+  private int[] keys;
+  // marks which nodes are contained
+  private boolean[] contained;
+  // the key of the bucket the scan stands at
+  private int cursor;
+  // false until the first key after clear was inserted
+  private boolean anchored;
+  private int size;
+
+  /**
+   * Constructor for class DialBucketQueue.
+   * @param capacity number of nodes of the searched graph
+   * @param maxKeyIncrease the largest difference between an inserted key
+   *                       and the last extracted key, e.g. the highest edge costs
+   */
+  public DialBucketQueue(int capacity, int maxKeyIncrease) {
+    if (maxKeyIncrease < 0 || maxKeyIncrease == Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("invalid key range " + maxKeyIncrease);
+    }
+    heads = new int[maxKeyIncrease + 1];
+    Arrays.fill(heads, NONE);
+    next = new int[0];
+    previous = new int[0];
+    keys = new int[0];
+    contained = new boolean[0];
+    ensureCapacity(capacity);
+  }
+
+  @Override
+  public void insert(int node, int key) {
+    if (!anchored) {
+      // the first key after clear decides where the buckets start
+      cursor = key;
+      anchored = true;
+    }
+    if (key < cursor || key - cursor >= heads.length) {
+      throw new IllegalArgumentException("key " + key + " is outside of the bucket range");
+    }
+    keys[node] = key;
+    link(node, key % heads.length);
+    contained[node] = true;
+    size++;
+  }
+
+  @Override
+  public void decreaseKey(int node, int key) {
+    if (key < cursor) {
+      throw new IllegalArgumentException("key " + key + " is outside of the bucket range");
+    }
+    unlink(node);
+    keys[node] = key;
+    link(node, key % heads.length);
+  }
+
+  @Override
+  public int extractMin() {
+    advanceCursor();
+    int bucket = cursor % heads.length;
+    int node = heads[bucket];
+    unlink(node);
+    contained[node] = false;
+    size--;
+    return node;
+  }
+
+  @Override
+  public int getMinKey() {
+    advanceCursor();
+    return cursor;
+  }
+
+  @Override
+  public boolean contains(int node) {
+    return contained[node];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    for (int bucket = 0; bucket < heads.length && size > 0; bucket++) {
+      int node = heads[bucket];
+      while (node != NONE) {
+        contained[node] = false;
+        size--;
+        node = next[node];
+      }
+      heads[bucket] = NONE;
+    }
+    Arrays.fill(heads, NONE);
+    size = 0;
+    anchored = false;
+  }
+
+  @Override
+  public void ensureCapacity(int capacity) {
+    if (capacity > contained.length) {
+      next = new int[capacity];
+      previous = new int[capacity];
+      keys = new int[capacity];
+      contained = new boolean[capacity];
+      Arrays.fill(heads, NONE);
+      size = 0;
+      anchored = false;
+    }
+  }
+
+  /**
+   * Moves the cursor to the first non empty bucket.
+   */
+  private void advanceCursor() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    while (heads[cursor % heads.length] == NONE) {
+      cursor++;
+    }
+  }
+
+  private void link(int node, int bucket) {
+    int head = heads[bucket];
+    next[node] = head;
+    previous[node] = NONE;
+    if (head != NONE) {
+      previous[head] = node;
+    }
+    heads[bucket] = node;
+  }
+
+  private void unlink(int node) {
+    int before = previous[node];
+    int after = next[node];
+    if (before == NONE) {
+      heads[keys[node] % heads.length] = after;
+    } else {
+      next[before] = after;
+    }
+    if (after != NONE) {
+      previous[after] = before;
+    }
+  }
+}
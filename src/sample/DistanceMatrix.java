@@ -0,0 +1,232 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Costs of the cheapest paths between every pair of a list of points.
+ * Every row is computed by one search from its point that stops as soon as
+ * all other points are finished. The rows are searched in parallel on a
+ * ForkJoinPool, each task with its own SearchContext.
+ * The costs of a path are the ones of the path finders: the costs of all its
+ * cells except the last, with Options.COSTS_AND_NUMBER_POINTS the gradient
+ * starts at the point the path starts from.
+ * @version 1.0
+ */
+public final class DistanceMatrix {
+
+  /**
+   * costs between two points that are not connected.
+   */
+  public static final int INFINITE = SearchContext.INFINITE;
+
+  private final List<Coordinate> points;
+  private final Options option;
+  // costs from point i to point j at i * size + j
+  private final int[] costs;
+
+  private DistanceMatrix(List<Coordinate> points, Options option, int[] costs) {
+    this.points = points;
+    this.option = option;
+    this.costs = costs;
+  }
+
+  /**
+   * Computes the costs between all points on the common pool.
+   * @param terrainMap the map of the terrain
+   * @param points the points, none of them may be an obstacle
+   * @param option option to specify on which basis the costs are calculated
+   * @return the costs between all points
+   * @throws Exception if one of the points is an obstacle
+   */
+  public static DistanceMatrix compute(TerrainMap terrainMap, List<Coordinate> points,
+                                       Options option) throws Exception {
+    return compute(terrainMap, points, option, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Computes the costs between all points.
+   * @param terrainMap the map of the terrain
+   * @param points the points, none of them may be an obstacle
+   * @param option option to specify on which basis the costs are calculated
+   * @param pool the pool that searches the rows
+   * @return the costs between all points
+   * @throws Exception if one of the points is an obstacle
+   */
+  public static DistanceMatrix compute(TerrainMap terrainMap, List<Coordinate> points,
+                                       Options option, ForkJoinPool pool) throws Exception {
+    List<Coordinate> copy = Collections.unmodifiableList(new ArrayList<>(points));
+    for (Coordinate point : copy) {
+      AbstractPathFinder.checkPoint(terrainMap, point);
+    }
+    int size = copy.size();
+    int length = terrainMap.getLength();
+    int[] cells = new int[size];
+    for (int i = 0; i < size; i++) {
+      cells[i] = AbstractPathFinder.cellOf(copy.get(i), length);
+    }
+    int[] costs = new int[size * size];
+    // without gradient the costs do not depend on the row, all rows read the same model
+    CostModel sharedCostModel = option == Options.COSTS_ONLY ? new TerrainCostModel(terrainMap) : null;
+    if (size > 0) {
+      pool.invoke(new RowSearch(terrainMap, copy, sharedCostModel, cells, costs,
+          new ConcurrentLinkedQueue<>(), 0, size));
+    }
+    return new DistanceMatrix(copy, option, costs);
+  }
+
+  /**
+   * Getter for the number of points.
+   */
+  public int getSize() {
+    return points.size();
+  }
+
+  /**
+   * Getter for the points in the order of the rows and columns.
+   */
+  public List<Coordinate> getPoints() {
+    return points;
+  }
+
+  public Options getOption() {
+    return option;
+  }
+
+  /**
+   * Getter for the costs of the cheapest path between two points.
+   * @param from index of the starting point
+   * @param to index of the ending point
+   * @return the costs or INFINITE if there is no path
+   */
+  public int getCosts(int from, int to) {
+    return costs[from * points.size() + to];
+  }
+
+  /**
+   * Searches the costs from one cell to all target cells.
+   * A step pays the costs of the cell it leaves, so the costs are the ones of the path finders.
+   * @param costModel the costs of the cells
+   * @param context the search state to use
+   * @param source index of the cell the search starts at
+   * @param targets indices of the target cells
+   * @param row receives the costs to every target cell
+   * @param offset index of the costs of the first target in row
+   */
+  private static void searchRow(CostModel costModel, SearchContext context, int source,
+                                int[] targets, int[] row, int offset) {
+    int length = costModel.getLength();
+    int height = costModel.getHeight();
+    context.reset(length * height, QueueStrategy.AUTO, costModel.getMinCosts(),
+        costModel.getMaxCosts());
+    OpenSet openCells = context.getOpenSet();
+    context.setCosts(source, 0, SearchContext.NONE);
+    openCells.insert(source, 0);
+    // the search stops when all distinct targets are finished
+    int[] sortedTargets = Arrays.stream(targets).distinct().sorted().toArray();
+    int remaining = sortedTargets.length;
+    if (Arrays.binarySearch(sortedTargets, source) >= 0) {
+      remaining--;
+    }
+    while (remaining > 0 && !openCells.isEmpty()) {
+      int cell = openCells.extractMin();
+      context.close(cell);
+      if (cell != source && Arrays.binarySearch(sortedTargets, cell) >= 0) {
+        remaining--;
+      }
+      int costs = context.getCosts(cell);
+      int xvalue = cell % length;
+      int yvalue = cell / length;
+      int costsToNeighbours = SearchContext.addCosts(costs, costModel.costsAt(xvalue, yvalue));
+      if (xvalue > 0) {
+        relax(costModel, context, cell, costsToNeighbours, cell - 1, xvalue - 1, yvalue);
+      }
+      if (xvalue + 1 < length) {
+        relax(costModel, context, cell, costsToNeighbours, cell + 1, xvalue + 1, yvalue);
+      }
+      if (yvalue > 0) {
+        relax(costModel, context, cell, costsToNeighbours, cell - length, xvalue, yvalue - 1);
+      }
+      if (yvalue + 1 < height) {
+        relax(costModel, context, cell, costsToNeighbours, cell + length, xvalue, yvalue + 1);
+      }
+    }
+    for (int i = 0; i < targets.length; i++) {
+      row[offset + i] = targets[i] == source || context.isClosed(targets[i])
+          ? context.getCosts(targets[i]) : INFINITE;
+    }
+  }
+
+  /**
+   * Lowers the costs of a neighbour cell if it can be reached cheaper over the current cell.
+   */
+  private static void relax(CostModel costModel, SearchContext context, int current,
+                            int costsToNeighbour, int neighbour, int xvalue, int yvalue) {
+    if (context.isClosed(neighbour) || costModel.costsAt(xvalue, yvalue) == CostModel.OBSTACLE) {
+      return;
+    }
+    if (costsToNeighbour < context.getCosts(neighbour)) {
+      context.setCosts(neighbour, costsToNeighbour, current);
+      context.getOpenSet().insertOrDecrease(neighbour, costsToNeighbour);
+    }
+  }
+
+  /**
+   * Searches a range of rows, ranges with more than one row are split.
+   */
+  private static final class RowSearch extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TerrainMap terrainMap;
+    private final List<Coordinate> points;
+    private final CostModel sharedCostModel;
+    private final int[] cells;
+    private final int[] costs;
+    // search states of finished tasks
+    private final ConcurrentLinkedQueue<SearchContext> contexts;
+    private final int from;
+    private final int to;
+
+    RowSearch(TerrainMap terrainMap, List<Coordinate> points, CostModel sharedCostModel,
+              int[] cells, int[] costs,
+              ConcurrentLinkedQueue<SearchContext> contexts, int from, int to) {
+      this.terrainMap = terrainMap;
+      this.points = points;
+      this.sharedCostModel = sharedCostModel;
+      this.cells = cells;
+      this.costs = costs;
+      this.contexts = contexts;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new RowSearch(terrainMap, points, sharedCostModel, cells, costs,
+                contexts, from, middle),
+            new RowSearch(terrainMap, points, sharedCostModel, cells, costs,
+                contexts, middle, to));
+        return;
+      }
+      CostModel costModel = sharedCostModel != null ? sharedCostModel
+          : new RadialGradientCostModel(terrainMap, points.get(from));
+      SearchContext context = contexts.poll();
+      if (context == null) {
+        context = new SearchContext();
+      }
+      try {
+        searchRow(costModel, context, cells[from], cells, costs, from * cells.length);
+      } finally {
+        contexts.offer(context);
+      }
+    }
+  }
+}
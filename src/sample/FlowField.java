@@ -0,0 +1,394 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * Costs and directions of the cheapest paths from every cell of a map to
+ * one target. The field is computed with one search from the target over the
+ * whole map, afterwards the path of any number of agents is followed along
+ * the directions in the time of its length, without another search.
+ * The costs are the ones of Options.COSTS_ONLY: the costs of all cells of a
+ * path except the target. The costs of Options.COSTS_AND_NUMBER_POINTS depend
+ * on the starting point of every agent, so they have no common field.
+ * The field listens to its map and is refreshed by the next query after a
+ * change: only the cells whose cheapest path led over a changed cell and the
+ * cells that become cheaper are searched again.
+ * The field is not thread safe, the map must not be changed while it is read.
+ * @version 1.0
+ */
+public class FlowField implements TerrainListener {
+
+  /**
+   * costs of a cell that has no path to the target.
+   */
+  public static final int INFINITE = SearchContext.INFINITE;
+  /**
+   * direction of the target and of cells without path.
+   */
+  public static final byte NONE = -1;
+  /**
+   * direction to the cell with the next smaller x-coordinate.
+   */
+  public static final byte LEFT = 0;
+  /**
+   * direction to the cell with the next larger x-coordinate.
+   */
+  public static final byte RIGHT = 1;
+  /**
+   * direction to the cell with the next smaller y-coordinate.
+   */
+  public static final byte UP = 2;
+  /**
+   * direction to the cell with the next larger y-coordinate.
+   */
+  public static final byte DOWN = 3;
+
+  private final TerrainMap terrainMap;
+  private final int targetX;
+  private final int targetY;
+  private CostModel costModel;
+  private int length;
+  private int height;
+  private int targetCell;
+  // costs from every cell to the target
+  private int[] costs;
+  // direction of the next cell of the cheapest path of every cell
+  private byte[] directions;
+  private IndexedDaryHeap openCells;
+  // cells changed since the last refresh
+  private int[] changedCells = new int[16];
+  private int changedCount;
+  private boolean completeRefresh = true;
+  private int lastUpdatedCells;
+
+  /**
+   * Constructor for class FlowField.
+   * The field is computed by the first query.
+   * @param terrainMap the map of the terrain
+   * @param target the point all paths lead to
+   * @throws Exception if the target is an obstacle
+   */
+  public FlowField(TerrainMap terrainMap, Coordinate target) throws Exception {
+    AbstractPathFinder.checkPoint(terrainMap, target);
+    this.terrainMap = terrainMap;
+    this.targetX = target.getXvalue();
+    this.targetY = target.getYvalue();
+    terrainMap.addTerrainListener(this);
+  }
+
+  public TerrainMap getTerrainMap() {
+    return terrainMap;
+  }
+
+  public Coordinate getTarget() {
+    return new Coordinate(targetX, targetY);
+  }
+
+  /**
+   * Getter for the number of cells whose costs were set by the last refresh.
+   */
+  public int getLastUpdatedCells() {
+    return lastUpdatedCells;
+  }
+
+  /**
+   * Getter for the costs of the cheapest path from a point to the target.
+   * @param xvalue the x-coordinate of the point
+   * @param yvalue the y-coordinate of the point
+   * @return the costs or INFINITE if there is no path
+   */
+  public int getCosts(int xvalue, int yvalue) {
+    refresh();
+    return costs[cellOf(xvalue, yvalue)];
+  }
+
+  /**
+   * Getter for the direction of the next point of the cheapest path from a point to the target.
+   * @param xvalue the x-coordinate of the point
+   * @param yvalue the y-coordinate of the point
+   * @return LEFT, RIGHT, UP or DOWN, NONE for the target and points without path
+   */
+  public byte getDirection(int xvalue, int yvalue) {
+    refresh();
+    return directions[cellOf(xvalue, yvalue)];
+  }
+
+  /**
+   * Getter for the costs of all points.
+   * @return a copy of the costs, the costs of a point are at index y * length + x
+   */
+  public int[] getCostField() {
+    refresh();
+    return costs.clone();
+  }
+
+  /**
+   * Getter for the directions of all points.
+   * @return a copy of the directions, the direction of a point is at index y * length + x
+   */
+  public byte[] getDirectionField() {
+    refresh();
+    return directions.clone();
+  }
+
+  /**
+   * Follows the directions from a point to the target.
+   * @param startingPoint the starting point of the path
+   * @return the path from the starting point to the target,
+   *         empty if there is no path or the starting point is the target
+   * @throws Exception if the starting point is an obstacle
+   */
+  public Queue<Coordinate> getPath(Coordinate startingPoint) throws Exception {
+    AbstractPathFinder.checkPoint(terrainMap, startingPoint);
+    refresh();
+    Queue<Coordinate> path = new LinkedList<>();
+    int cell = cellOf(startingPoint.getXvalue(), startingPoint.getYvalue());
+    if (cell == targetCell || costs[cell] == INFINITE) {
+      return path;
+    }
+    while (cell != targetCell) {
+      if (path.size() > costs.length) {
+        throw new IllegalStateException("directions of the flow field contain a cycle");
+      }
+      path.add(new Coordinate(cell % length, cell / length));
+      cell = next(cell, directions[cell]);
+    }
+    path.add(new Coordinate(targetX, targetY));
+    return path;
+  }
+
+  /**
+   * Brings the field up to date with the changes of the map.
+   * Called by every query, so it only has to be called to choose when the work is done.
+   */
+  public void refresh() {
+    if (!completeRefresh && changedCount == 0) {
+      return;
+    }
+    lastUpdatedCells = 0;
+    boolean complete = completeRefresh;
+    // a repair sets the flag again if the field has to be computed later
+    completeRefresh = false;
+    if (complete) {
+      compute();
+    } else {
+      repair();
+    }
+    changedCount = 0;
+    search();
+  }
+
+  /**
+   * Stops listening to the map.
+   */
+  public void release() {
+    terrainMap.removeTerrainListener(this);
+  }
+
+  @Override
+  public void cellChanged(TerrainMap terrainMap, int xvalue, int yvalue) {
+    if (completeRefresh) {
+      return;
+    }
+    // a search over the whole map is cheaper than repairing a large part of it
+    if (changedCount >= Math.max(16, length * height / 16)) {
+      completeRefresh = true;
+      return;
+    }
+    if (changedCount == changedCells.length) {
+      changedCells = Arrays.copyOf(changedCells, changedCount * 2);
+    }
+    changedCells[changedCount++] = yvalue * length + xvalue;
+  }
+
+  @Override
+  public void mapChanged(TerrainMap terrainMap) {
+    completeRefresh = true;
+  }
+
+  /**
+   * Starts a new search from the target over the whole map.
+   */
+  private void compute() {
+    costModel = new TerrainCostModel(terrainMap);
+    length = costModel.getLength();
+    height = costModel.getHeight();
+    if (targetX >= length || targetY >= height) {
+      throw new IllegalStateException("target is not inside the replaced map");
+    }
+    targetCell = targetY * length + targetX;
+    int cellCount = length * height;
+    if (costs == null || costs.length != cellCount) {
+      costs = new int[cellCount];
+      directions = new byte[cellCount];
+      openCells = new IndexedDaryHeap(cellCount);
+    } else {
+      openCells.clear();
+    }
+    Arrays.fill(costs, INFINITE);
+    Arrays.fill(directions, NONE);
+    if (costModel.costsAt(targetX, targetY) != CostModel.OBSTACLE) {
+      costs[targetCell] = 0;
+      openCells.insert(targetCell, 0);
+    }
+  }
+
+  /**
+   * Opens the changed cells and all cells whose cheapest path leads over them again.
+   */
+  private void repair() {
+    if (costModel.costsAt(targetX, targetY) == CostModel.OBSTACLE) {
+      // no cell has a path, the field is computed again when the target is free
+      Arrays.fill(costs, INFINITE);
+      Arrays.fill(directions, NONE);
+      completeRefresh = true;
+      return;
+    }
+    if (costs[targetCell] == INFINITE) {
+      compute();
+      return;
+    }
+    // collect the subtrees of the changed cells, the target keeps its costs of 0
+    int[] invalidCells = new int[16];
+    int invalidCount = 0;
+    for (int i = 0; i < changedCount; i++) {
+      int cell = changedCells[i];
+      if (cell != targetCell && costs[cell] != INFINITE) {
+        invalidCells = add(invalidCells, invalidCount++, cell);
+        costs[cell] = INFINITE;
+      }
+    }
+    for (int index = 0; index < invalidCount; index++) {
+      int cell = invalidCells[index];
+      int xvalue = cell % length;
+      int yvalue = cell / length;
+      for (byte direction = LEFT; direction <= DOWN; direction++) {
+        int neighbour = neighbour(xvalue, yvalue, direction);
+        // the neighbour leads over the cell if it points back in the opposite direction
+        if (neighbour != SearchContext.NONE && directions[neighbour] == (direction ^ 1)
+            && costs[neighbour] != INFINITE) {
+          invalidCells = add(invalidCells, invalidCount++, neighbour);
+          costs[neighbour] = INFINITE;
+        }
+      }
+    }
+    for (int index = 0; index < invalidCount; index++) {
+      int cell = invalidCells[index];
+      directions[cell] = NONE;
+      openCells.remove(cell);
+    }
+    // give the opened cells the costs over their neighbours that kept their costs
+    for (int index = 0; index < invalidCount; index++) {
+      reconnect(invalidCells[index]);
+    }
+    for (int i = 0; i < changedCount; i++) {
+      if (changedCells[i] != targetCell) {
+        reconnect(changedCells[i]);
+      }
+    }
+  }
+
+  /**
+   * Sets the costs of a cell to the cheapest costs over a neighbour.
+   */
+  private void reconnect(int cell) {
+    int xvalue = cell % length;
+    int yvalue = cell / length;
+    int stepCosts = costModel.costsAt(xvalue, yvalue);
+    if (stepCosts == CostModel.OBSTACLE) {
+      return;
+    }
+    for (byte direction = LEFT; direction <= DOWN; direction++) {
+      int neighbour = neighbour(xvalue, yvalue, direction);
+      if (neighbour != SearchContext.NONE && costs[neighbour] != INFINITE
+          && SearchContext.addCosts(costs[neighbour], stepCosts) < costs[cell]) {
+        costs[cell] = SearchContext.addCosts(costs[neighbour], stepCosts);
+        directions[cell] = direction;
+        openCells.insertOrDecrease(cell, costs[cell]);
+      }
+    }
+  }
+
+  /**
+   * Expands the open cells until every cell has its cheapest costs.
+   * A step into a cell pays the costs of that cell, because the paths lead
+   * the other way and leave it.
+   */
+  private void search() {
+    while (!openCells.isEmpty()) {
+      int cell = openCells.extractMin();
+      lastUpdatedCells++;
+      int xvalue = cell % length;
+      int yvalue = cell / length;
+      for (byte direction = LEFT; direction <= DOWN; direction++) {
+        int neighbour = neighbour(xvalue, yvalue, direction);
+        if (neighbour == SearchContext.NONE) {
+          continue;
+        }
+        int stepCosts = costModel.costsAt(neighbour % length, neighbour / length);
+        if (stepCosts == CostModel.OBSTACLE) {
+          continue;
+        }
+        int costsToNeighbour = SearchContext.addCosts(costs[cell], stepCosts);
+        if (costsToNeighbour < costs[neighbour]) {
+          // a repair can find cheaper costs for a cell that kept its costs
+          costs[neighbour] = costsToNeighbour;
+          directions[neighbour] = (byte) (direction ^ 1);
+          openCells.insertOrDecrease(neighbour, costsToNeighbour);
+        }
+      }
+    }
+  }
+
+  private int cellOf(int xvalue, int yvalue) {
+    if (xvalue < 0 || yvalue < 0 || xvalue >= length || yvalue >= height) {
+      throw new IllegalArgumentException(xvalue + ", " + yvalue + " is not inside the map");
+    }
+    return yvalue * length + xvalue;
+  }
+
+  /**
+   * Returns the cell in a direction of a cell that is inside the map.
+   */
+  private int next(int cell, byte direction) {
+    switch (direction) {
+      case LEFT:
+        return cell - 1;
+      case RIGHT:
+        return cell + 1;
+      case UP:
+        return cell - length;
+      case DOWN:
+        return cell + length;
+      default:
+        throw new IllegalStateException("cell " + cell + " has no direction");
+    }
+  }
+
+  /**
+   * Returns a neighbour of a cell.
+   * @return the index of the neighbour or NONE if it is outside of the map
+   */
+  private int neighbour(int xvalue, int yvalue, byte direction) {
+    switch (direction) {
+      case LEFT:
+        return xvalue > 0 ? yvalue * length + xvalue - 1 : SearchContext.NONE;
+      case RIGHT:
+        return xvalue + 1 < length ? yvalue * length + xvalue + 1 : SearchContext.NONE;
+      case UP:
+        return yvalue > 0 ? (yvalue - 1) * length + xvalue : SearchContext.NONE;
+      default:
+        return yvalue + 1 < height ? (yvalue + 1) * length + xvalue : SearchContext.NONE;
+    }
+  }
+
+  private static int[] add(int[] cells, int index, int cell) {
+    if (index == cells.length) {
+      cells = Arrays.copyOf(cells, index * 2);
+    }
+    cells[index] = cell;
+    return cells;
+  }
+}
@@ -0,0 +1,270 @@
+package sample;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.ImageIO;
+
+/**
+ * Heightmaps as binary PGM (P5) or PNG images.
+ * The gray value of a pixel is the costs of its cell. Values at or above an
+ * obstacle level are obstacles, by default only the largest value of the
+ * image, so written maps read back unchanged. The Materials of a read map
+ * are all named "height".
+ * PGM files are read from their channel in parallel bands of rows with
+ * positional reads. PNG images are decoded by ImageIO and their pixels are
+ * turned into cells in parallel bands. PNG images in color are read by their
+ * red channel.
+ * @version 1.0
+ */
+public final class HeightmapFile {
+
+  /**
+   * name of the Materials of a read map.
+   */
+  public static final String MATERIAL_NAME = "height";
+  /**
+   * obstacle level of maps without obstacles.
+   */
+  public static final int NO_OBSTACLES = Integer.MAX_VALUE;
+  // the largest value of a 16 bit image, larger costs can not be written
+  private static final int MAX_VALUE = 0xFFFF;
+  // bytes read from the channel at once by one band
+  private static final int READ_SIZE = 1 << 20;
+  // bytes written to the channel at once
+  private static final int BUFFER_SIZE = 1 << 16;
+  // the header of a PGM file is short, comments included
+  private static final int MAX_HEADER_SIZE = 4096;
+  // larger sizes in a header are taken as corrupt file
+  private static final int MAX_HEADER_VALUE = 1 << 30;
+
+  private HeightmapFile() {
+  }
+
+  /**
+   * Reads a PGM heightmap whose largest value marks obstacles on the common pool.
+   * @param file the file to read
+   * @return a new map with the gray values as costs
+   * @throws IOException if the file can not be read or is no binary PGM file
+   */
+  public static TerrainMap readPgm(File file) throws IOException {
+    return readPgm(file, -1, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Reads a PGM heightmap.
+   * @param file the file to read
+   * @param obstacleLevel the lowest value of an obstacle, NO_OBSTACLES for none,
+   *                      a negative value for the largest value of the file
+   * @param pool the pool that reads the bands of rows
+   * @return a new map with the gray values as costs
+   * @throws IOException if the file can not be read or is no binary PGM file
+   */
+  public static TerrainMap readPgm(File file, int obstacleLevel, ForkJoinPool pool)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate((int) Math.min(MAX_HEADER_SIZE, channel.size()));
+      TerrainFile.readFully(channel, header, 0);
+      header.flip();
+      if (header.remaining() < 2 || header.get() != 'P' || header.get() != '5') {
+        throw new IOException("not a binary PGM file");
+      }
+      int length = readHeaderValue(header);
+      int height = readHeaderValue(header);
+      int maxValue = readHeaderValue(header);
+      // a single white space separates the header from the pixels
+      header.get();
+      if (maxValue < 1 || maxValue > MAX_VALUE) {
+        throw new IOException("invalid largest value " + maxValue + " of PGM file");
+      }
+      int bytesPerValue = maxValue < 256 ? 1 : 2;
+      long pixelOffset = header.position();
+      if (pixelOffset + (long) bytesPerValue * length * height > channel.size()) {
+        throw new IOException("PGM file is shorter than its " + length + " x " + height + " pixels");
+      }
+      int level = obstacleLevel < 0 ? maxValue : obstacleLevel;
+      TerrainLoader loader = new TerrainLoader(length, height, MATERIAL_NAME);
+      int rowBytes = bytesPerValue * length;
+      int rowsPerRead = Math.max(1, READ_SIZE / Math.max(1, rowBytes));
+      loader.readBands(pool, (firstRow, rows) -> {
+        ByteBuffer buffer = ByteBuffer.allocate(rowBytes * Math.min(rows, rowsPerRead));
+        short[] indices = new short[length];
+        for (int row = firstRow; row < firstRow + rows; row += rowsPerRead) {
+          int count = Math.min(rowsPerRead, firstRow + rows - row);
+          buffer.clear().limit(count * rowBytes);
+          TerrainFile.readFully(channel, buffer, pixelOffset + (long) row * rowBytes);
+          buffer.flip();
+          for (int yvalue = row; yvalue < row + count; yvalue++) {
+            for (int x = 0; x < length; x++) {
+              int value = bytesPerValue == 1 ? buffer.get() & 0xFF : buffer.getShort() & 0xFFFF;
+              indices[x] = value >= level ? loader.obstacleIndex() : loader.indexOf(value);
+            }
+            loader.setRow(yvalue, indices);
+          }
+        }
+      });
+      return new TerrainMap(loader.getStorage());
+    }
+  }
+
+  /**
+   * Writes a map as binary PGM heightmap.
+   * The largest value is 255 if all costs are lower, otherwise 65535, and obstacles get it.
+   * @param terrainMap the map to write
+   * @param file the file to write, an existing file is replaced
+   * @throws IOException if the file can not be written or a cell costs more than 65534
+   */
+  public static void writePgm(TerrainMap terrainMap, File file) throws IOException {
+    TerrainStorage storage = terrainMap.getStorage();
+    int length = storage.getLength();
+    int height = storage.getHeight();
+    int maxValue = maxValueFor(storage);
+    int bytesPerValue = maxValue < 256 ? 1 : 2;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      buffer.put(("P5\n" + length + " " + height + "\n" + maxValue + "\n")
+          .getBytes(StandardCharsets.US_ASCII));
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < length; x++) {
+          if (buffer.remaining() < bytesPerValue) {
+            TerrainFile.flush(buffer, channel);
+          }
+          int costs = storage.costsAt(x, y);
+          int value = costs == CostModel.OBSTACLE ? maxValue : costs;
+          if (bytesPerValue == 1) {
+            buffer.put((byte) value);
+          } else {
+            buffer.putShort((short) value);
+          }
+        }
+      }
+      TerrainFile.flush(buffer, channel);
+    }
+  }
+
+  /**
+   * Reads a PNG heightmap whose largest value marks obstacles on the common pool.
+   * @param file the file to read
+   * @return a new map with the gray values as costs
+   * @throws IOException if the file can not be read or is no image
+   */
+  public static TerrainMap readPng(File file) throws IOException {
+    return readPng(file, -1, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Reads a PNG heightmap, or any other image ImageIO can decode.
+   * @param file the file to read
+   * @param obstacleLevel the lowest value of an obstacle, NO_OBSTACLES for none,
+   *                      a negative value for the largest value of the image
+   * @param pool the pool that turns the bands of rows into cells
+   * @return a new map with the gray values as costs
+   * @throws IOException if the file can not be read or is no image
+   */
+  public static TerrainMap readPng(File file, int obstacleLevel, ForkJoinPool pool)
+      throws IOException {
+    BufferedImage image = ImageIO.read(file);
+    if (image == null) {
+      throw new IOException("no image in " + file);
+    }
+    Raster raster = image.getRaster();
+    ColorModel colorModel = image.getColorModel();
+    // images with a palette are read by the red channel of their colors
+    IndexColorModel palette = colorModel instanceof IndexColorModel
+        ? (IndexColorModel) colorModel : null;
+    int maxValue = palette != null ? 255 : (1 << raster.getSampleModel().getSampleSize(0)) - 1;
+    int level = obstacleLevel < 0 ? maxValue : obstacleLevel;
+    int length = image.getWidth();
+    int height = image.getHeight();
+    TerrainLoader loader = new TerrainLoader(length, height, MATERIAL_NAME);
+    loader.readBands(pool, (firstRow, rows) -> {
+      int[] values = new int[length];
+      short[] indices = new short[length];
+      for (int yvalue = firstRow; yvalue < firstRow + rows; yvalue++) {
+        raster.getSamples(0, yvalue, length, 1, 0, values);
+        for (int x = 0; x < length; x++) {
+          int value = palette == null ? values[x] : palette.getRed(values[x]);
+          indices[x] = value >= level ? loader.obstacleIndex() : loader.indexOf(value);
+        }
+        loader.setRow(yvalue, indices);
+      }
+    });
+    return new TerrainMap(loader.getStorage());
+  }
+
+  /**
+   * Writes a map as gray PNG heightmap with 8 or 16 bits like writePgm.
+   * @param terrainMap the map to write
+   * @param file the file to write, an existing file is replaced
+   * @throws IOException if the file can not be written or a cell costs more than 65534
+   */
+  public static void writePng(TerrainMap terrainMap, File file) throws IOException {
+    TerrainStorage storage = terrainMap.getStorage();
+    int length = storage.getLength();
+    int height = storage.getHeight();
+    if (length == 0 || height == 0) {
+      throw new IOException("an empty map can not be written as image");
+    }
+    int maxValue = maxValueFor(storage);
+    BufferedImage image = new BufferedImage(length, height,
+        maxValue < 256 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_USHORT_GRAY);
+    WritableRaster raster = image.getRaster();
+    int[] values = new int[length];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < length; x++) {
+        int costs = storage.costsAt(x, y);
+        values[x] = costs == CostModel.OBSTACLE ? maxValue : costs;
+      }
+      raster.setSamples(0, y, length, 1, 0, values);
+    }
+    if (!ImageIO.write(image, "png", file)) {
+      throw new IOException("no PNG writer available");
+    }
+  }
+
+  /**
+   * Chooses the largest value of an image, which is reserved for obstacles.
+   */
+  private static int maxValueFor(TerrainStorage storage) throws IOException {
+    int maxCosts = storage.getMaxCosts();
+    if (maxCosts >= MAX_VALUE) {
+      throw new IOException("costs above " + (MAX_VALUE - 1) + " can not be written as heightmap");
+    }
+    return maxCosts < 255 ? 255 : MAX_VALUE;
+  }
+
+  /**
+   * Reads a decimal number of a PGM header, skipping white space and comments.
+   */
+  private static int readHeaderValue(ByteBuffer header) throws IOException {
+    int value = -1;
+    while (header.hasRemaining()) {
+      byte next = header.get();
+      if (next == '#' && value < 0) {
+        while (header.hasRemaining() && header.get() != '\n') {
+          // the comment ends at the end of the line
+        }
+      } else if (next >= '0' && next <= '9') {
+        value = Math.max(0, value) * 10 + next - '0';
+        if (value > MAX_HEADER_VALUE) {
+          throw new IOException("PGM header value too large");
+        }
+      } else if (value >= 0) {
+        // give back the white space after the number, it may separate the pixels
+        header.position(header.position() - 1);
+        return value;
+      }
+    }
+    throw new IOException("incomplete PGM header");
+  }
+}
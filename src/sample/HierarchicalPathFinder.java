@@ -0,0 +1,172 @@
+package sample;
+
+/**
+ * Implementation of the pathfinder interface based on hierarchical path
+ * finding (HPA*). For Options.COSTS_ONLY the map is split into clusters with
+ * a precomputed ClusterGraph, so long paths only search the entrances of the
+ * clusters instead of every cell. The graph is kept for the last used map and
+ * only the clusters touched by changed cells are rebuilt.
+ * The entrance width trades exactness against speed: with a width of 1 the
+ * paths have the same costs as the ones of PathFinderAlgorithm, with larger
+ * widths the searches are faster but the paths can be more expensive.
+ * The costs of Options.COSTS_AND_NUMBER_POINTS depend on the starting point,
+ * so they can not be precomputed and are searched with the A* algorithm.
+ * @version 1.0
+ */
+public class HierarchicalPathFinder extends AbstractPathFinder {
+
+  /**
+   * length and height of a cluster used by default.
+   */
+  public static final int DEFAULT_CLUSTER_SIZE = 32;
+  /**
+   * number of border cells that share one entrance by default.
+   */
+  public static final int DEFAULT_ENTRANCE_WIDTH = 8;
+
+  // searches the options that can not be precomputed and measures the suboptimality
+  private final AStarPathFinder flatPathFinder = new AStarPathFinder();
+  private final int clusterSize;
+  private int entranceWidth;
+  private ClusterGraph clusterGraph;
+  private boolean measureSuboptimality;
+  private int lastCosts = -1;
+  private double lastSuboptimality = Double.NaN;
+
+  /**
+   * Constructor for class HierarchicalPathFinder with the default cluster size and entrance width.
+   */
+  public HierarchicalPathFinder() {
+    this(DEFAULT_CLUSTER_SIZE, DEFAULT_ENTRANCE_WIDTH);
+  }
+
+  /**
+   * Constructor for class HierarchicalPathFinder.
+   * @param clusterSize length and height of a cluster in cells
+   * @param entranceWidth the number of border cells that share one entrance, 1 for exact paths
+   */
+  public HierarchicalPathFinder(int clusterSize, int entranceWidth) {
+    if (clusterSize < 1) {
+      throw new IllegalArgumentException("cluster size must be at least 1");
+    }
+    this.clusterSize = clusterSize;
+    setEntranceWidth(entranceWidth);
+  }
+
+  public int getClusterSize() {
+    return clusterSize;
+  }
+
+  public int getEntranceWidth() {
+    return entranceWidth;
+  }
+
+  /**
+   * Sets the number of border cells that share one entrance.
+   * The cluster graph is rebuilt by the next query.
+   * @param entranceWidth 1 for exact paths, larger values for faster searches
+   */
+  public void setEntranceWidth(int entranceWidth) {
+    if (entranceWidth < 1) {
+      throw new IllegalArgumentException("entrance width must be at least 1");
+    }
+    this.entranceWidth = entranceWidth;
+    releaseGraph();
+  }
+
+  public boolean isMeasureSuboptimality() {
+    return measureSuboptimality;
+  }
+
+  /**
+   * Enables the measurement of the suboptimality of inexact paths.
+   * Every query then also searches the cheapest path with the A* algorithm,
+   * so this should only be used to choose the entrance width.
+   * @param measureSuboptimality true to measure the suboptimality
+   */
+  public void setMeasureSuboptimality(boolean measureSuboptimality) {
+    this.measureSuboptimality = measureSuboptimality;
+  }
+
+  /**
+   * Getter for the costs of the path found by the last query.
+   * @return the costs or -1 if the last query found no path or did not use the cluster graph
+   */
+  public int getLastCosts() {
+    return lastCosts;
+  }
+
+  /**
+   * Getter for the suboptimality of the path found by the last query.
+   * That is the ratio between its costs and the costs of the cheapest path.
+   * @return 1 for exact paths, the measured ratio if the measurement is enabled,
+   *         otherwise NaN
+   */
+  public double getLastSuboptimality() {
+    return lastSuboptimality;
+  }
+
+  /**
+   * Forgets the cluster graph and stops listening to its map.
+   */
+  public void releaseGraph() {
+    if (clusterGraph != null) {
+      clusterGraph.release();
+      clusterGraph = null;
+    }
+  }
+
+  @Override
+  protected int[] findPath(TerrainMap terrainMap, Coordinate startingPoint,
+                           Coordinate endingPoint, Options option) {
+    lastCosts = -1;
+    lastSuboptimality = Double.NaN;
+    if (option != Options.COSTS_ONLY) {
+      return super.findPath(terrainMap, startingPoint, endingPoint, option);
+    }
+    if (clusterGraph == null || clusterGraph.getTerrainMap() != terrainMap) {
+      releaseGraph();
+      clusterGraph = new ClusterGraph(terrainMap, clusterSize, entranceWidth);
+    }
+    int length = terrainMap.getLength();
+    int startingCell = cellOf(startingPoint, length);
+    int endingCell = cellOf(endingPoint, length);
+    long buildNanos = clusterGraph.getBuildNanos();
+    int[] cells = clusterGraph.findPath(startingCell, endingCell, context, getQueueStrategy());
+    // clusters reached for the first time or changed are built by the search
+    addPrepareNanos(clusterGraph.getBuildNanos() - buildNanos);
+    lastCosts = clusterGraph.getLastCosts();
+    if (lastCosts >= 0 && entranceWidth == 1) {
+      lastSuboptimality = 1;
+    } else if (lastCosts >= 0 && measureSuboptimality) {
+      lastSuboptimality = suboptimality(terrainMap, startingCell, endingCell);
+    }
+    return cells;
+  }
+
+  @Override
+  void attachMeter(SearchMeter meter) {
+    super.attachMeter(meter);
+    flatPathFinder.attachMeter(meter);
+  }
+
+  @Override
+  protected int[] searchPath(CostModel costModel, int startingCell, int endingCell) {
+    flatPathFinder.setQueueStrategy(getQueueStrategy());
+    return flatPathFinder.searchPath(costModel, startingCell, endingCell);
+  }
+
+  /**
+   * Compares the costs of the last path with the ones of the cheapest path.
+   */
+  private double suboptimality(TerrainMap terrainMap, int startingCell, int endingCell) {
+    CostModel costModel = new TerrainCostModel(terrainMap);
+    int[] cells = searchPath(costModel, startingCell, endingCell);
+    int length = costModel.getLength();
+    long optimalCosts = 0;
+    for (int i = 0; i < cells.length - 1; i++) {
+      optimalCosts += costModel.costsAt(cells[i] % length, cells[i] / length);
+    }
+    return optimalCosts == 0 ? 1 : (double) lastCosts / optimalCosts;
+  }
+}
@@ -0,0 +1,466 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Implementation of the pathfinder interface that keeps its search state
+ * between queries. Like AStarPathFinder it searches from the ending point
+ * towards the starting point. The state of the last queries is kept as a
+ * plan per map, starting point, ending point and option. A plan listens to
+ * its map and, when it is asked again, only repairs the part of the search
+ * tree that depends on the changed cells: the changed cells and every cell
+ * whose cheapest known path leads over them are opened again, then the
+ * search continues until the starting point is finished and no open cell
+ * can lead to a cheaper path. An edit far away from the search costs almost
+ * nothing, an edit on the path costs about the part of the tree behind it.
+ * The repair can open finished cells again, so the open cells are always
+ * kept in an IndexedDaryHeap and the queue strategy is not used.
+ * A plan keeps about 20 bytes per cell of its map, so the plans are limited
+ * by their number and by the cells of all their maps together. A plan that
+ * is dropped releases its arrays.
+ * @version 1.0
+ */
+public class IncrementalPathFinder extends AbstractPathFinder {
+
+  /**
+   * number of plans that are kept by default.
+   */
+  public static final int DEFAULT_MAX_PLANS = 4;
+
+  /**
+   * number of cells all kept plans may cover by default, about 80 MB.
+   */
+  public static final long DEFAULT_MAX_PLAN_CELLS = 1L << 22;
+
+  private final int maxPlans;
+  private final long maxPlanCells;
+  // most recently used plan first
+  private final LinkedList<Plan> plans = new LinkedList<>();
+  // cells of the maps of all kept plans
+  private long planCells;
+  private int lastExpandedCells;
+
+  /**
+   * Constructor for class IncrementalPathFinder that keeps the default number of plans.
+   */
+  public IncrementalPathFinder() {
+    this(DEFAULT_MAX_PLANS);
+  }
+
+  /**
+   * Constructor for class IncrementalPathFinder.
+   * Every plan keeps arrays over all cells of its map, intermediate points need one plan per leg.
+   * @param maxPlans number of plans that are kept
+   */
+  public IncrementalPathFinder(int maxPlans) {
+    this(maxPlans, DEFAULT_MAX_PLAN_CELLS);
+  }
+
+  /**
+   * Constructor for class IncrementalPathFinder.
+   * A plan whose map alone has more cells than maxPlanCells is still kept, but only as single plan.
+   * @param maxPlans number of plans that are kept
+   * @param maxPlanCells number of cells the maps of all kept plans may have together
+   */
+  public IncrementalPathFinder(int maxPlans, long maxPlanCells) {
+    if (maxPlans < 1) {
+      throw new IllegalArgumentException("at least one plan must be kept");
+    }
+    if (maxPlanCells < 1) {
+      throw new IllegalArgumentException("plans must be allowed to cover at least one cell");
+    }
+    this.maxPlans = maxPlans;
+    this.maxPlanCells = maxPlanCells;
+  }
+
+  public int getMaxPlans() {
+    return maxPlans;
+  }
+
+  public long getMaxPlanCells() {
+    return maxPlanCells;
+  }
+
+  /**
+   * Getter for the number of plans that are kept at the moment.
+   */
+  public int getPlanCount() {
+    return plans.size();
+  }
+
+  /**
+   * Getter for the number of cells the last query expanded.
+   * A repaired query only counts the cells that had to be expanded again.
+   */
+  public int getLastExpandedCells() {
+    return lastExpandedCells;
+  }
+
+  /**
+   * Forgets all plans and stops listening to their maps.
+   */
+  public void clearPlans() {
+    for (Plan plan : plans) {
+      plan.release();
+    }
+    plans.clear();
+    planCells = 0;
+  }
+
+  @Override
+  protected int[] findPath(TerrainMap terrainMap, Coordinate startingPoint,
+                           Coordinate endingPoint, Options option) {
+    int length = terrainMap.getLength();
+    Plan plan = planFor(terrainMap, cellOf(startingPoint, length), cellOf(endingPoint, length), option);
+    int[] cells = plan.findPath(getMeter());
+    lastExpandedCells = plan.expandedCells;
+    return cells;
+  }
+
+  @Override
+  protected int[] searchPath(CostModel costModel, int startingCell, int endingCell) {
+    // cost models without a map can not be told about changes, so nothing is kept
+    Plan plan = new Plan(null, null, startingCell, endingCell);
+    plan.costModel = costModel;
+    int[] cells = plan.findPath(getMeter());
+    lastExpandedCells = plan.expandedCells;
+    return cells;
+  }
+
+  /**
+   * Finds the kept plan of a query or creates a new one.
+   */
+  private Plan planFor(TerrainMap terrainMap, int startingCell, int endingCell, Options option) {
+    Iterator<Plan> iterator = plans.iterator();
+    while (iterator.hasNext()) {
+      Plan plan = iterator.next();
+      if (plan.mapReplaced) {
+        iterator.remove();
+        drop(plan);
+      } else if (plan.terrainMap == terrainMap && plan.option == option
+          && plan.startingCell == startingCell && plan.endingCell == endingCell) {
+        iterator.remove();
+        plans.addFirst(plan);
+        return plan;
+      }
+    }
+    int length = terrainMap.getLength();
+    long cellCount = (long) length * terrainMap.getHeight();
+    while (!plans.isEmpty() && (plans.size() == maxPlans || planCells + cellCount > maxPlanCells)) {
+      drop(plans.removeLast());
+    }
+    Plan plan = new Plan(terrainMap, option, startingCell, endingCell);
+    plan.cellCount = cellCount;
+    planCells += cellCount;
+    plan.costModel = option == Options.COSTS_AND_NUMBER_POINTS
+        ? new RadialGradientCostModel(terrainMap, startingCell % length, startingCell / length)
+        : new TerrainCostModel(terrainMap);
+    terrainMap.addTerrainListener(plan);
+    plans.addFirst(plan);
+    return plan;
+  }
+
+  /**
+   * Releases a plan that was removed from the kept plans.
+   */
+  private void drop(Plan plan) {
+    planCells -= plan.cellCount;
+    plan.release();
+  }
+
+  /**
+   * Search state of one query that is repaired when cells of its map change.
+   */
+  private static final class Plan implements TerrainListener {
+
+    final TerrainMap terrainMap;
+    final Options option;
+    final int startingCell;
+    final int endingCell;
+    CostModel costModel;
+    // set if the complete map was replaced, the plan can not be used any more
+    volatile boolean mapReplaced;
+    int expandedCells;
+    // cells of the map when the plan was kept
+    long cellCount;
+
+    private int length;
+    private int height;
+    private int minCosts;
+    private boolean searchStarted;
+    private int[] costs;
+    private int[] predecessors;
+    private long[] closed;
+    private IndexedDaryHeap openCells;
+    // cells changed since the last query
+    private int[] changedCells = new int[16];
+    private int changedCount;
+    private boolean tooManyChanges;
+
+    Plan(TerrainMap terrainMap, Options option, int startingCell, int endingCell) {
+      this.terrainMap = terrainMap;
+      this.option = option;
+      this.startingCell = startingCell;
+      this.endingCell = endingCell;
+    }
+
+    @Override
+    public synchronized void cellChanged(TerrainMap terrainMap, int xvalue, int yvalue) {
+      if (!searchStarted || tooManyChanges) {
+        return;
+      }
+      // a search from the beginning is cheaper than repairing a large part of the map
+      if (changedCount >= Math.max(16, length * height / 16)) {
+        tooManyChanges = true;
+        return;
+      }
+      if (changedCount == changedCells.length) {
+        changedCells = Arrays.copyOf(changedCells, changedCount * 2);
+      }
+      changedCells[changedCount++] = yvalue * length + xvalue;
+    }
+
+    @Override
+    public void mapChanged(TerrainMap terrainMap) {
+      mapReplaced = true;
+    }
+
+    /**
+     * Stops listening to the map and frees the arrays of the search.
+     */
+    synchronized void release() {
+      if (terrainMap != null) {
+        terrainMap.removeTerrainListener(this);
+      }
+      costs = null;
+      predecessors = null;
+      closed = null;
+      openCells = null;
+      changedCells = new int[16];
+      changedCount = 0;
+      searchStarted = false;
+    }
+
+    /**
+     * Searches or repairs the path of the plan.
+     * A cancelled search leaves the plan consistent, the next query goes on with it.
+     * @param meter the meter that counts the expanded cells or null
+     * @return the cells from the starting to the ending cell,
+     *         empty if there is no path or both cells are equal
+     */
+    int[] findPath(SearchMeter meter) {
+      expandedCells = 0;
+      if (startingCell == endingCell) {
+        return new int[0];
+      }
+      // the map may be changed by another thread while the plan is searched
+      synchronized (this) {
+        // a lower bound of the costs changes the keys of all open cells
+        if (!searchStarted || tooManyChanges || costModel.getMinCosts() != minCosts) {
+          start();
+        } else {
+          repair();
+        }
+      }
+      search(meter);
+      return trace();
+    }
+
+    /**
+     * Starts a new search from the ending cell.
+     */
+    private void start() {
+      length = costModel.getLength();
+      height = costModel.getHeight();
+      minCosts = costModel.getMinCosts();
+      int cellCount = length * height;
+      if (costs == null) {
+        costs = new int[cellCount];
+        predecessors = new int[cellCount];
+        closed = new long[(cellCount + 63) >>> 6];
+        openCells = new IndexedDaryHeap(cellCount);
+      } else {
+        Arrays.fill(closed, 0L);
+        openCells.clear();
+      }
+      Arrays.fill(costs, SearchContext.INFINITE);
+      Arrays.fill(predecessors, SearchContext.NONE);
+      costs[endingCell] = 0;
+      openCells.insert(endingCell, heuristic(endingCell));
+      searchStarted = true;
+      changedCount = 0;
+      tooManyChanges = false;
+    }
+
+    /**
+     * Opens the changed cells and all cells whose known path leads over them again.
+     */
+    private void repair() {
+      if (changedCount == 0) {
+        return;
+      }
+      // collect the subtrees of the changed cells, the ending cell keeps its costs of 0
+      int[] invalidCells = new int[16];
+      int invalidCount = 0;
+      for (int i = 0; i < changedCount; i++) {
+        int cell = changedCells[i];
+        if (cell != endingCell && costs[cell] != SearchContext.INFINITE) {
+          invalidCells = add(invalidCells, invalidCount++, cell);
+          costs[cell] = SearchContext.INFINITE;
+        }
+      }
+      for (int index = 0; index < invalidCount; index++) {
+        int cell = invalidCells[index];
+        int xvalue = cell % length;
+        int yvalue = cell / length;
+        for (int direction = 0; direction < 4; direction++) {
+          int neighbour = neighbour(xvalue, yvalue, direction);
+          if (neighbour != SearchContext.NONE && predecessors[neighbour] == cell
+              && costs[neighbour] != SearchContext.INFINITE) {
+            invalidCells = add(invalidCells, invalidCount++, neighbour);
+            costs[neighbour] = SearchContext.INFINITE;
+          }
+        }
+      }
+      for (int index = 0; index < invalidCount; index++) {
+        int cell = invalidCells[index];
+        predecessors[cell] = SearchContext.NONE;
+        closed[cell >>> 6] &= ~(1L << cell);
+        openCells.remove(cell);
+      }
+      // give the opened cells the costs over their finished neighbours
+      for (int index = 0; index < invalidCount; index++) {
+        reconnect(invalidCells[index]);
+      }
+      for (int i = 0; i < changedCount; i++) {
+        if (changedCells[i] != endingCell) {
+          reconnect(changedCells[i]);
+        }
+      }
+      changedCount = 0;
+    }
+
+    /**
+     * Sets the costs of a cell that is not finished to the cheapest costs over a finished neighbour.
+     */
+    private void reconnect(int cell) {
+      if (isClosed(cell)) {
+        return;
+      }
+      int xvalue = cell % length;
+      int yvalue = cell / length;
+      int stepCosts = costModel.costsAt(xvalue, yvalue);
+      if (stepCosts == CostModel.OBSTACLE) {
+        return;
+      }
+      for (int direction = 0; direction < 4; direction++) {
+        int neighbour = neighbour(xvalue, yvalue, direction);
+        if (neighbour != SearchContext.NONE && isClosed(neighbour)
+            && costs[neighbour] != SearchContext.INFINITE
+            && SearchContext.addCosts(costs[neighbour], stepCosts) < costs[cell]) {
+          costs[cell] = SearchContext.addCosts(costs[neighbour], stepCosts);
+          predecessors[cell] = neighbour;
+          openCells.insertOrDecrease(cell, SearchContext.addCosts(costs[cell], heuristic(cell)));
+        }
+      }
+    }
+
+    /**
+     * Expands cells until the starting cell is finished and no open cell can lead to cheaper costs.
+     */
+    private void search(SearchMeter meter) {
+      while (!openCells.isEmpty()) {
+        if (isClosed(startingCell) && openCells.getMinKey() >= costs[startingCell]) {
+          break;
+        }
+        if (meter != null) {
+          meter.expanded();
+        }
+        int cell = openCells.extractMin();
+        closed[cell >>> 6] |= 1L << cell;
+        expandedCells++;
+        int xvalue = cell % length;
+        int yvalue = cell / length;
+        // the neighbours of the frontier are read next
+        costModel.prefetch(xvalue, yvalue);
+        for (int direction = 0; direction < 4; direction++) {
+          int neighbour = neighbour(xvalue, yvalue, direction);
+          if (neighbour == SearchContext.NONE) {
+            continue;
+          }
+          int stepCosts = costModel.costsAt(neighbour % length, neighbour / length);
+          if (stepCosts == CostModel.OBSTACLE) {
+            continue;
+          }
+          int costsToNeighbour = SearchContext.addCosts(costs[cell], stepCosts);
+          if (costsToNeighbour < costs[neighbour]) {
+            // a repair can find cheaper costs for a finished cell, it is opened again
+            costs[neighbour] = costsToNeighbour;
+            predecessors[neighbour] = cell;
+            closed[neighbour >>> 6] &= ~(1L << neighbour);
+            openCells.insertOrDecrease(neighbour,
+                SearchContext.addCosts(costsToNeighbour, heuristic(neighbour)));
+          }
+        }
+      }
+    }
+
+    /**
+     * Follows the predecessors from the starting cell.
+     */
+    private int[] trace() {
+      if (costs[startingCell] == SearchContext.INFINITE) {
+        return new int[0];
+      }
+      int count = 0;
+      for (int cell = startingCell; cell != SearchContext.NONE; cell = predecessors[cell]) {
+        if (++count > costs.length) {
+          throw new IllegalStateException("predecessors of the plan contain a cycle");
+        }
+      }
+      int[] cells = new int[count];
+      int index = 0;
+      for (int cell = startingCell; cell != SearchContext.NONE; cell = predecessors[cell]) {
+        cells[index++] = cell;
+      }
+      return cells;
+    }
+
+    private int heuristic(int cell) {
+      return AStarPathFinder.heuristic(cell % length, cell / length,
+          startingCell % length, startingCell / length, minCosts);
+    }
+
+    private boolean isClosed(int cell) {
+      return (closed[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Returns a neighbour of a cell.
+     * @param direction 0 left, 1 right, 2 up, 3 down
+     * @return the index of the neighbour or NONE if it is outside of the map
+     */
+    private int neighbour(int xvalue, int yvalue, int direction) {
+      switch (direction) {
+        case 0:
+          return xvalue > 0 ? yvalue * length + xvalue - 1 : SearchContext.NONE;
+        case 1:
+          return xvalue + 1 < length ? yvalue * length + xvalue + 1 : SearchContext.NONE;
+        case 2:
+          return yvalue > 0 ? (yvalue - 1) * length + xvalue : SearchContext.NONE;
+        default:
+          return yvalue + 1 < height ? (yvalue + 1) * length + xvalue : SearchContext.NONE;
+      }
+    }
+
+    private static int[] add(int[] cells, int index, int cell) {
+      if (index == cells.length) {
+        cells = Arrays.copyOf(cells, index * 2);
+      }
+      cells[index] = cell;
+      return cells;
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed d-ary min heap.
+ * Keeps the position of every node in the heap, so decrease-key is a
+ * sift-up instead of a remove and insert. Accepts any key sequence.
+ * @version 1.0
+ */
+public class IndexedDaryHeap implements OpenSet {
+
+  // default number of children per heap node
+  public static final int DEFAULT_ARITY = 4;
+
+  private final int arity;
+  // heap of node indices
+  private int[] heap;
+  // position of each node in the heap, -1 if it is not contained
+  private int[] position;
+  // key of each node
+  private int[] keys;
+  private int size;
+
+  /**
+   * Constructor for class IndexedDaryHeap with the default arity.
+   * @param capacity number of nodes of the searched graph
+   */
+  public IndexedDaryHeap(int capacity) {
+    this(capacity, DEFAULT_ARITY);
+  }
+
+  /**
+   * Constructor for class IndexedDaryHeap.
+   * @param capacity number of nodes of the searched graph
+   * @param arity number of children per heap node, at least 2
+   */
+  public IndexedDaryHeap(int capacity, int arity) {
+    if (arity < 2) {
+      throw new IllegalArgumentException("arity must be at least 2");
+    }
+    this.arity = arity;
+    heap = new int[0];
+    position = new int[0];
+    keys = new int[0];
+    ensureCapacity(capacity);
+  }
+
+  @Override
+  public void insert(int node, int key) {
+    keys[node] = key;
+    heap[size] = node;
+    position[node] = size;
+    siftUp(size++);
+  }
+
+  @Override
+  public void decreaseKey(int node, int key) {
+    keys[node] = key;
+    siftUp(position[node]);
+  }
+
+  /**
+   * Removes a node from the heap.
+   * Not part of OpenSet, because the bucket queues can not remove nodes cheaply.
+   * @param node the node to remove, nothing happens if it is not contained
+   */
+  public void remove(int node) {
+    int index = position[node];
+    if (index < 0) {
+      return;
+    }
+    position[node] = -1;
+    size--;
+    if (index < size) {
+      int last = heap[size];
+      heap[index] = last;
+      position[last] = index;
+      siftUp(index);
+      siftDown(position[last]);
+    }
+  }
+
+  @Override
+  public int extractMin() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    int out = heap[0];
+    position[out] = -1;
+    size--;
+    if (size > 0) {
+      int last = heap[size];
+      heap[0] = last;
+      position[last] = 0;
+      siftDown(0);
+    }
+    return out;
+  }
+
+  @Override
+  public int getMinKey() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return keys[heap[0]];
+  }
+
+  /**
+   * Getter for the node at a position of the heap.
+   * Together with size it visits all contained nodes, in no particular order.
+   * @param index the position, from 0 to size - 1
+   * @return the node at the position
+   */
+  public int nodeAt(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return heap[index];
+  }
+
+  @Override
+  public boolean contains(int node) {
+    return position[node] >= 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      position[heap[i]] = -1;
+    }
+    size = 0;
+  }
+
+  @Override
+  public void ensureCapacity(int capacity) {
+    if (capacity > position.length) {
+      heap = new int[capacity];
+      position = new int[capacity];
+      keys = new int[capacity];
+      Arrays.fill(position, -1);
+      size = 0;
+    }
+  }
+
+  private void siftUp(int index) {
+    int node = heap[index];
+    int key = keys[node];
+    while (index > 0) {
+      int parentIndex = (index - 1) / arity;
+      int parent = heap[parentIndex];
+      if (keys[parent] <= key) {
+        break;
+      }
+      heap[index] = parent;
+      position[parent] = index;
+      index = parentIndex;
+    }
+    heap[index] = node;
+    position[node] = index;
+  }
+
+  private void siftDown(int index) {
+    int node = heap[index];
+    int key = keys[node];
+    while (true) {
+      int firstChild = index * arity + 1;
+      if (firstChild >= size) {
+        break;
+      }
+      // find the child with the least key
+      int lastChild = Math.min(firstChild + arity, size);
+      int bestIndex = firstChild;
+      int bestKey = keys[heap[firstChild]];
+      for (int child = firstChild + 1; child < lastChild; child++) {
+        int childKey = keys[heap[child]];
+        if (childKey < bestKey) {
+          bestKey = childKey;
+          bestIndex = child;
+        }
+      }
+      if (bestKey >= key) {
+        break;
+      }
+      int best = heap[bestIndex];
+      heap[index] = best;
+      position[best] = index;
+      index = bestIndex;
+    }
+    heap[index] = node;
+    position[node] = index;
+  }
+}
@@ -0,0 +1,89 @@
+package sample;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * SearchListener that writes every query as an event to Java Flight Recorder.
+ * The events are named sample.PathSearch. If no recording is running the
+ * event is dropped right after its creation.
+ * @version 1.0
+ */
+public class JfrSearchListener implements SearchListener {
+
+  @Override
+  public void searchFinished(SearchStatistics statistics) {
+    PathSearchEvent event = new PathSearchEvent();
+    if (!event.isEnabled()) {
+      return;
+    }
+    event.pathFinder = statistics.getPathFinder();
+    event.option = String.valueOf(statistics.getOption());
+    event.intermediatePoints = statistics.getIntermediatePoints();
+    event.pathLength = statistics.getPathLength();
+    event.expandedNodes = statistics.getExpandedNodes();
+    event.relaxedNodes = statistics.getRelaxedNodes();
+    event.openSetPeak = statistics.getOpenSetPeak();
+    event.queueOperations = statistics.getQueueOperations();
+    event.prepareTime = statistics.getPrepareNanos();
+    event.searchTime = statistics.getSearchNanos();
+    event.pathTime = statistics.getPathNanos();
+    event.allocatedBytes = statistics.getAllocatedBytes();
+    event.commit();
+  }
+
+  /**
+   * Flight recorder event of one query.
+   */
+  @Name("sample.PathSearch")
+  @Label("Path Search")
+  @Category("Pathfinding")
+  @Description("One query of a PathFinder")
+  static final class PathSearchEvent extends Event {
+
+    @Label("Path Finder")
+    String pathFinder;
+
+    @Label("Option")
+    String option;
+
+    @Label("Intermediate Points")
+    int intermediatePoints;
+
+    @Label("Path Length")
+    int pathLength;
+
+    @Label("Expanded Nodes")
+    long expandedNodes;
+
+    @Label("Relaxed Nodes")
+    long relaxedNodes;
+
+    @Label("Open Set Peak")
+    int openSetPeak;
+
+    @Label("Queue Operations")
+    long queueOperations;
+
+    @Label("Prepare Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long prepareTime;
+
+    @Label("Search Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long searchTime;
+
+    @Label("Path Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long pathTime;
+
+    @Label("Allocated")
+    @DataAmount(DataAmount.BYTES)
+    long allocatedBytes;
+  }
+}
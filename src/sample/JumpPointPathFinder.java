@@ -0,0 +1,374 @@
+package sample;
+
+import java.util.Arrays;
+
+/**
+ * Implementation of the pathfinder interface based on Jump Point Search.
+ * Inside a region of equally expensive cells all shortest paths between two
+ * cells have the same costs, so the search does not put every cell into the
+ * open set but jumps straight on until something interesting happens:
+ * the target is reached, an obstacle forces a turn, or a neighbouring cell
+ * has other costs. Cells next to other costs are expanded like in the
+ * A* algorithm, so the paths have the same costs as the ones of
+ * PathFinderAlgorithm.
+ * On the 4-connected grid a vertical jump has to look sideways at every
+ * step. A walk along a row finds the same jump point from every cell it
+ * passes, so it is remembered for all of them and every run of a row is
+ * walked at most once per direction and query; this takes two ints per cell.
+ * Jumping only pays off on open maps where all cells cost the same: on the
+ * 4-connected grid even a few scattered obstacles stop the vertical jumps
+ * at almost every row. Before a query the finder therefore samples the map,
+ * and if the costs differ or more than one sampled cell in 1024 lies next
+ * to an obstacle it searches the map with AStarPathFinder's search instead.
+ * Maps read in chunks from a file and maps whose search state is paged
+ * are always searched that way, their jumps would not fit into memory.
+ * Like the other implementations it searches from the ending point.
+ * @version 1.0
+ */
+public class JumpPointPathFinder extends AbstractPathFinder {
+
+  // jump of a row that was not walked yet in the current query
+  private static final int UNKNOWN = -2;
+  // cells looked at to decide whether a map is open
+  private static final int SAMPLES = 4096;
+  // a map is open if at most one sample in this many lies next to an obstacle
+  private static final int OPEN_RATIO = 1024;
+
+  // state of the current query
+  private CostModel costModel;
+  private int length;
+  private int height;
+  private int targetX;
+  private int targetY;
+  private int minCosts;
+  // steps of the last successful jump
+  private int jumpSteps;
+  // jump point x-coordinate of every cell of a row in both directions, or NONE or UNKNOWN
+  private int[] rowJumps = new int[0];
+  // rows whose jumps belong to the current query carry its generation
+  private int[] rowGenerations = new int[0];
+  private int scanGeneration;
+
+  /**
+   * Constructor for class JumpPointPathFinder.
+   * The priority queue is chosen automatically for every query.
+   */
+  public JumpPointPathFinder() {
+    this(QueueStrategy.AUTO);
+  }
+
+  /**
+   * Constructor for class JumpPointPathFinder.
+   * @param queueStrategy the priority queue used for the jump points that are not finished
+   */
+  public JumpPointPathFinder(QueueStrategy queueStrategy) {
+    setQueueStrategy(queueStrategy);
+  }
+
+  @Override
+  protected AbstractPathFinder newLegFinder() {
+    return new JumpPointPathFinder(getQueueStrategy());
+  }
+
+  @Override
+  protected int[] searchPath(CostModel costModel, int startingCell, int endingCell) {
+    this.costModel = costModel;
+    length = costModel.getLength();
+    height = costModel.getHeight();
+    targetX = startingCell % length;
+    targetY = startingCell / length;
+    minCosts = costModel.getMinCosts();
+    if (costModel.isChunked() || (long) length * height > SearchContext.PAGED_CELLS || !isOpenMap()) {
+      this.costModel = null;
+      AStarPathFinder.search(context, getQueueStrategy(), costModel, startingCell, endingCell);
+      return tracePredecessors(startingCell);
+    }
+    // a single jump can cross the whole map, and the heuristic can raise
+    // the key of every step of it by at most minCosts
+    long maxJump = (long) Math.max(length, height) * ((long) costModel.getMaxCosts() + minCosts);
+    context.reset(length * height, getQueueStrategy(), 0,
+        (int) Math.min(maxJump, Integer.MAX_VALUE - 1));
+    OpenSet jumpPoints = context.getOpenSet();
+    resetJumps(length * height);
+
+    context.setCosts(endingCell, 0, SearchContext.NONE);
+    jumpPoints.insert(endingCell, heuristic(endingCell % length, endingCell / length));
+    try {
+      while (!jumpPoints.isEmpty()) {
+        int cell = jumpPoints.extractMin();
+        if (cell == startingCell) {
+          break;
+        }
+        context.close(cell);
+        // the jumps start at the neighbours of the jump point
+        costModel.prefetch(cell % length, cell / length);
+        expand(cell);
+      }
+      return tracePath(startingCell);
+    } finally {
+      this.costModel = null;
+    }
+  }
+
+  /**
+   * Jumps from a jump point in all directions that can lead to a shortest path.
+   * @param cell index of the jump point
+   */
+  private void expand(int cell) {
+    int xvalue = cell % length;
+    int yvalue = cell / length;
+    int predecessor = context.getPredecessor(cell);
+    if (predecessor == SearchContext.NONE || isBorder(xvalue, yvalue)) {
+      // the root and cells next to other costs are expanded completely
+      jumpFrom(cell, xvalue, yvalue, -1, 0);
+      jumpFrom(cell, xvalue, yvalue, 1, 0);
+      jumpFrom(cell, xvalue, yvalue, 0, -1);
+      jumpFrom(cell, xvalue, yvalue, 0, 1);
+      return;
+    }
+    int dx = Integer.signum(xvalue - predecessor % length);
+    int dy = Integer.signum(yvalue - predecessor / length);
+    if (dx != 0) {
+      jumpFrom(cell, xvalue, yvalue, dx, 0);
+      jumpFrom(cell, xvalue, yvalue, 0, -1);
+      jumpFrom(cell, xvalue, yvalue, 0, 1);
+    } else {
+      jumpFrom(cell, xvalue, yvalue, 0, dy);
+      jumpFrom(cell, xvalue, yvalue, -1, 0);
+      jumpFrom(cell, xvalue, yvalue, 1, 0);
+    }
+  }
+
+  /**
+   * Jumps in one direction and adds the found jump point to the open set.
+   */
+  private void jumpFrom(int cell, int xvalue, int yvalue, int dx, int dy) {
+    int nextX = xvalue + dx;
+    int nextY = yvalue + dy;
+    if (!isInside(nextX, nextY)) {
+      return;
+    }
+    int stepCosts = costModel.costsAt(nextX, nextY);
+    if (stepCosts == CostModel.OBSTACLE) {
+      return;
+    }
+    int jumpPoint = jump(nextX, nextY, dx, dy);
+    if (jumpPoint == SearchContext.NONE || context.isClosed(jumpPoint)) {
+      return;
+    }
+    int costs = SearchContext.addCosts(context.getCosts(cell), (long) jumpSteps * stepCosts);
+    if (costs < context.getCosts(jumpPoint)) {
+      context.setCosts(jumpPoint, costs, cell);
+      context.getOpenSet().insertOrDecrease(jumpPoint,
+          SearchContext.addCosts(costs, heuristic(jumpPoint % length, jumpPoint / length)));
+    }
+  }
+
+  /**
+   * Walks in a straight line over cells with the same costs.
+   * All cells of the jump have the costs of its first cell, because a cell
+   * next to other costs is a jump point.
+   * @param xvalue x-coordinate of the first cell of the jump
+   * @param yvalue y-coordinate of the first cell of the jump
+   * @param dx step in x-direction
+   * @param dy step in y-direction
+   * @return index of the found jump point or NONE if the jump runs into a dead end
+   */
+  private int jump(int xvalue, int yvalue, int dx, int dy) {
+    if (dy == 0) {
+      int jumpX = horizontalJump(xvalue, yvalue, dx);
+      if (jumpX == SearchContext.NONE) {
+        return SearchContext.NONE;
+      }
+      jumpSteps = Math.abs(jumpX - xvalue) + 1;
+      return yvalue * length + jumpX;
+    }
+    int steps = 1;
+    while (true) {
+      if (isJumpPoint(xvalue, yvalue, dx, dy)) {
+        jumpSteps = steps;
+        return yvalue * length + xvalue;
+      }
+      xvalue += dx;
+      yvalue += dy;
+      if (isBlocked(xvalue, yvalue)) {
+        return SearchContext.NONE;
+      }
+      steps++;
+    }
+  }
+
+  /**
+   * Checks if a jump has to stop at a cell.
+   * For the forced neighbours every cell with other costs counts as blocked,
+   * because the detours around it are not equally expensive.
+   */
+  private boolean isJumpPoint(int xvalue, int yvalue, int dx, int dy) {
+    if ((xvalue == targetX && yvalue == targetY) || isBorder(xvalue, yvalue)) {
+      return true;
+    }
+    int costs = costModel.costsAt(xvalue, yvalue);
+    if (dx != 0) {
+      // a blocked cell behind a free cell above or below forces a turn
+      return (!isBlocked(xvalue, yvalue - 1, costs) && isBlocked(xvalue - dx, yvalue - 1, costs))
+          || (!isBlocked(xvalue, yvalue + 1, costs) && isBlocked(xvalue - dx, yvalue + 1, costs));
+    }
+    if ((!isBlocked(xvalue - 1, yvalue, costs) && isBlocked(xvalue - 1, yvalue - dy, costs))
+        || (!isBlocked(xvalue + 1, yvalue, costs) && isBlocked(xvalue + 1, yvalue - dy, costs))) {
+      return true;
+    }
+    // vertical jumps stop where a horizontal jump would find something
+    return hasHorizontalJumpPoint(xvalue, yvalue, 1) || hasHorizontalJumpPoint(xvalue, yvalue, -1);
+  }
+
+  private boolean hasHorizontalJumpPoint(int xvalue, int yvalue, int dx) {
+    int firstX = xvalue + dx;
+    return !isBlocked(firstX, yvalue) && horizontalJump(firstX, yvalue, dx) != SearchContext.NONE;
+  }
+
+  /**
+   * Walks along a row like jump. Every cell the walk passes leads to the same
+   * jump point, so it is remembered for all of them and later jumps over the
+   * same cells are answered at once.
+   * @param xvalue x-coordinate of the first cell of the jump, which is no obstacle
+   * @param yvalue y-coordinate of the row
+   * @param dx step in x-direction
+   * @return x-coordinate of the found jump point or NONE if the jump runs into a dead end
+   */
+  private int horizontalJump(int xvalue, int yvalue, int dx) {
+    if (rowGenerations[yvalue] != scanGeneration) {
+      // the row is used for the first time in this query
+      rowGenerations[yvalue] = scanGeneration;
+      Arrays.fill(rowJumps, 2 * yvalue * length, 2 * (yvalue + 1) * length, UNKNOWN);
+    }
+    int slot = 2 * (yvalue * length) + (dx > 0 ? 0 : 1);
+    int endX = xvalue;
+    int result;
+    while (true) {
+      int known = rowJumps[slot + 2 * endX];
+      if (known != UNKNOWN) {
+        result = known;
+        break;
+      }
+      if (isJumpPoint(endX, yvalue, dx, 0)) {
+        result = endX;
+        break;
+      }
+      endX += dx;
+      if (isBlocked(endX, yvalue)) {
+        result = SearchContext.NONE;
+        break;
+      }
+    }
+    for (int x = xvalue; x != endX; x += dx) {
+      rowJumps[slot + 2 * x] = result;
+    }
+    return result;
+  }
+
+  private void resetJumps(int cellCount) {
+    if (rowJumps.length != 2 * cellCount || rowGenerations.length != height) {
+      rowJumps = new int[2 * cellCount];
+      rowGenerations = new int[height];
+      scanGeneration = 0;
+    }
+    scanGeneration++;
+    if (scanGeneration == 0) {
+      Arrays.fill(rowGenerations, 0);
+      scanGeneration = 1;
+    }
+  }
+
+  /**
+   * Checks if all cells cost the same and a sample of evenly spread cells
+   * finds hardly any cell next to an obstacle.
+   */
+  private boolean isOpenMap() {
+    if (costModel.getMinCosts() != costModel.getMaxCosts()) {
+      return false;
+    }
+    long cellCount = (long) length * height;
+    long step = Math.max(1, cellCount / SAMPLES);
+    int samples = 0;
+    int nearObstacles = 0;
+    for (long cell = step / 2; cell < cellCount; cell += step) {
+      int xvalue = (int) (cell % length);
+      int yvalue = (int) (cell / length);
+      samples++;
+      if (!isBlocked(xvalue, yvalue)
+          && (isObstacle(xvalue - 1, yvalue) || isObstacle(xvalue + 1, yvalue)
+          || isObstacle(xvalue, yvalue - 1) || isObstacle(xvalue, yvalue + 1))) {
+        nearObstacles++;
+      }
+    }
+    return (long) nearObstacles * OPEN_RATIO <= samples;
+  }
+
+  private boolean isObstacle(int xvalue, int yvalue) {
+    return isInside(xvalue, yvalue) && costModel.costsAt(xvalue, yvalue) == CostModel.OBSTACLE;
+  }
+
+  /**
+   * Checks if a cell has a walkable neighbour with other costs than itself.
+   */
+  private boolean isBorder(int xvalue, int yvalue) {
+    int costs = costModel.costsAt(xvalue, yvalue);
+    return hasOtherCosts(xvalue - 1, yvalue, costs) || hasOtherCosts(xvalue + 1, yvalue, costs)
+        || hasOtherCosts(xvalue, yvalue - 1, costs) || hasOtherCosts(xvalue, yvalue + 1, costs);
+  }
+
+  private boolean hasOtherCosts(int xvalue, int yvalue, int costs) {
+    if (!isInside(xvalue, yvalue)) {
+      return false;
+    }
+    int neighbourCosts = costModel.costsAt(xvalue, yvalue);
+    return neighbourCosts != CostModel.OBSTACLE && neighbourCosts != costs;
+  }
+
+  private boolean isBlocked(int xvalue, int yvalue) {
+    return !isInside(xvalue, yvalue) || costModel.costsAt(xvalue, yvalue) == CostModel.OBSTACLE;
+  }
+
+  private boolean isBlocked(int xvalue, int yvalue, int runCosts) {
+    return !isInside(xvalue, yvalue) || costModel.costsAt(xvalue, yvalue) != runCosts;
+  }
+
+  private boolean isInside(int xvalue, int yvalue) {
+    return xvalue >= 0 && yvalue >= 0 && xvalue < length && yvalue < height;
+  }
+
+  private int heuristic(int xvalue, int yvalue) {
+    return AStarPathFinder.heuristic(xvalue, yvalue, targetX, targetY, minCosts);
+  }
+
+  /**
+   * Follows the jump points from the starting cell and fills in the cells between them.
+   * @param startingCell index of the starting cell
+   * @return the cells from the starting to the ending cell, empty if there is no path
+   */
+  private int[] tracePath(int startingCell) {
+    if (context.getPredecessor(startingCell) == SearchContext.NONE) {
+      return new int[0];
+    }
+    int count = 1;
+    for (int cell = startingCell; context.getPredecessor(cell) != SearchContext.NONE;
+         cell = context.getPredecessor(cell)) {
+      int next = context.getPredecessor(cell);
+      count += Math.abs(next % length - cell % length) + Math.abs(next / length - cell / length);
+    }
+    int[] cells = new int[count];
+    int index = 0;
+    cells[index++] = startingCell;
+    for (int cell = startingCell; context.getPredecessor(cell) != SearchContext.NONE;
+         cell = context.getPredecessor(cell)) {
+      int next = context.getPredecessor(cell);
+      // jump points are connected by straight lines
+      int step = next % length != cell % length ? Integer.signum(next - cell) : Integer.signum(next - cell) * length;
+      for (int between = cell + step; between != next; between += step) {
+        cells[index++] = between;
+      }
+      cells[index++] = next;
+    }
+    return cells;
+  }
+}
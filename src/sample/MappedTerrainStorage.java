@@ -0,0 +1,141 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Terrain storage that reads its cells from a memory mapped terrain file.
+ * Only the palette is loaded, the grid stays in the file and is paged in
+ * by the operating system when a search touches it, so the map can be
+ * larger than the heap. The grid is mapped in bands of whole rows because
+ * a single mapping is limited to 2 GB.
+ * Cells can only be set to Materials of the palette of the file.
+ * @version 1.0
+ */
+public class MappedTerrainStorage implements TerrainStorage {
+
+  // upper limit for the bytes of one mapped band
+  private static final long MAX_BAND_BYTES = 1L << 30;
+
+  private final int length;
+  private final int height;
+  private final boolean writable;
+  private final Material[] palette;
+  // costs of every palette entry as seen by a search
+  private final int[] paletteCosts;
+  private final MappedByteBuffer[] bands;
+  private final ShortBuffer[] bandCells;
+  private final int rowsPerBand;
+  private int minCosts = Integer.MAX_VALUE;
+  private int maxCosts = 0;
+
+  /**
+   * Constructor for class MappedTerrainStorage.
+   * @param file the terrain file
+   * @param writable true if cells may be changed, changes are written to the file
+   * @throws IOException if the file can not be read or is no terrain file
+   */
+  public MappedTerrainStorage(File file, boolean writable) throws IOException {
+    this.writable = writable;
+    StandardOpenOption[] options = writable
+        ? new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE}
+        : new StandardOpenOption[] {StandardOpenOption.READ};
+    try (FileChannel channel = FileChannel.open(file.toPath(), options)) {
+      TerrainFile.Header header = TerrainFile.readHeader(channel);
+      length = header.length;
+      height = header.height;
+      palette = header.palette;
+      paletteCosts = new int[palette.length];
+      for (int i = 0; i < palette.length; i++) {
+        Material material = palette[i];
+        int costs = Math.max(0, material.getCosts());
+        paletteCosts[i] = material.isObstacle() ? CostModel.OBSTACLE : costs;
+        if (!material.isObstacle()) {
+          minCosts = Math.min(minCosts, costs);
+          maxCosts = Math.max(maxCosts, costs);
+        }
+      }
+      rowsPerBand = (int) Math.max(1, Math.min(height, MAX_BAND_BYTES / Math.max(1, 2L * length)));
+      int bandCount = height == 0 ? 0 : (height + rowsPerBand - 1) / rowsPerBand;
+      bands = new MappedByteBuffer[bandCount];
+      bandCells = new ShortBuffer[bandCount];
+      FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+      for (int band = 0; band < bandCount; band++) {
+        int rows = Math.min(rowsPerBand, height - band * rowsPerBand);
+        long offset = header.gridOffset + 2L * length * band * rowsPerBand;
+        bands[band] = channel.map(mode, offset, 2L * length * rows);
+        bandCells[band] = bands[band].asShortBuffer();
+      }
+    }
+  }
+
+  @Override
+  public int getLength() {
+    return length;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public Material getMaterial(int xvalue, int yvalue) {
+    return palette[paletteIndex(xvalue, yvalue)];
+  }
+
+  @Override
+  public void setMaterial(int xvalue, int yvalue, Material material) {
+    if (!writable) {
+      throw new UnsupportedOperationException("terrain file is mapped read only");
+    }
+    int index = TerrainFile.paletteIndexOf(palette, material);
+    checkInside(xvalue, yvalue);
+    bandCells[yvalue / rowsPerBand].put((yvalue % rowsPerBand) * length + xvalue, (short) index);
+  }
+
+  @Override
+  public int costsAt(int xvalue, int yvalue) {
+    return paletteCosts[bandCells[yvalue / rowsPerBand].get((yvalue % rowsPerBand) * length + xvalue) & 0xFFFF];
+  }
+
+  @Override
+  public int getMinCosts() {
+    return minCosts > maxCosts ? 0 : minCosts;
+  }
+
+  @Override
+  public int getMaxCosts() {
+    return maxCosts;
+  }
+
+  /**
+   * Writes all changed cells to the file.
+   */
+  public void force() {
+    if (writable) {
+      for (MappedByteBuffer band : bands) {
+        band.force();
+      }
+    }
+  }
+
+  private int paletteIndex(int xvalue, int yvalue) {
+    checkInside(xvalue, yvalue);
+    int index = bandCells[yvalue / rowsPerBand].get((yvalue % rowsPerBand) * length + xvalue) & 0xFFFF;
+    if (index >= palette.length) {
+      throw new IllegalStateException("corrupt terrain file, unknown palette index " + index);
+    }
+    return index;
+  }
+
+  private void checkInside(int xvalue, int yvalue) {
+    if (xvalue < 0 || yvalue < 0 || xvalue >= length || yvalue >= height) {
+      throw new IllegalArgumentException(xvalue + ", " + yvalue + " is not inside the map");
+    }
+  }
+}
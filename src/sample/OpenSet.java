@@ -0,0 +1,82 @@
+package sample;
+
+/**
+ * Priority queue over the open nodes of a search.
+ * Nodes are identified by an integer index in the range [0, capacity)
+ * and are ordered by an integer key, usually the costs to reach them.
+ * Every implementation supports decrease-key, so a node is never
+ * contained twice.
+ * @version 1.0
+ */
+public interface OpenSet {
+
+  /**
+   * Adds a node that is not yet contained.
+   * @param node index of the node
+   * @param key priority of the node
+   */
+  void insert(int node, int key);
+
+  /**
+   * Lowers the key of a node that is already contained.
+   * @param node index of the node
+   * @param key the new key, not greater than the current one
+   */
+  void decreaseKey(int node, int key);
+
+  /**
+   * Removes the node with the least key.
+   * @return index of the removed node
+   */
+  int extractMin();
+
+  /**
+   * Returns the least key without removing its node.
+   * @return the least key of all contained nodes
+   */
+  int getMinKey();
+
+  /**
+   * Checks if a node is contained.
+   * @param node index of the node
+   * @return true if the node is waiting in this set
+   */
+  boolean contains(int node);
+
+  /**
+   * Returns the number of contained nodes.
+   */
+  int size();
+
+  /**
+   * Removes all nodes.
+   */
+  void clear();
+
+  /**
+   * Makes sure that node indices below capacity can be stored.
+   * Clears the set if it had to grow.
+   * @param capacity number of nodes of the searched graph
+   */
+  void ensureCapacity(int capacity);
+
+  /**
+   * Checks if there are no contained nodes.
+   */
+  default boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Inserts a node or lowers its key if it is already contained.
+   * @param node index of the node
+   * @param key priority of the node
+   */
+  default void insertOrDecrease(int node, int key) {
+    if (contains(node)) {
+      decreaseKey(node, key);
+    } else {
+      insert(node, key);
+    }
+  }
+}
@@ -0,0 +1,358 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compact in-memory terrain storage.
+ * Every distinct Material is stored once in a palette and every cell only
+ * keeps the 16 bit index of its palette entry, so a cell takes two bytes
+ * instead of a Material object of its own.
+ * Cells are stored row by row (y * length + x).
+ * The storage counts the cells of every entry. Entries without cells are
+ * reused when the palette is full, and only if more than MAX_PALETTE_SIZE
+ * entries are in use at the same time the cells switch to 32 bit indices.
+ * The cost bounds only cover the entries that are in use.
+ * @version 1.0
+ */
+public class PaletteTerrainStorage implements TerrainStorage {
+
+  // the number of different Materials a map can contain with 16 bit indices
+  public static final int MAX_PALETTE_SIZE = 1 << 16;
+
+  private final int length;
+  private final int height;
+  // unsigned palette index of every cell, null once the cells use wideCells
+  private short[] cells;
+  // palette index of every cell once the palette outgrew 16 bit indices
+  private int[] wideCells;
+  private Material[] palette;
+  // costs of every palette entry as seen by a search
+  private int[] paletteCosts;
+  // number of cells of every palette entry
+  private int[] useCounts;
+  private int paletteSize;
+  // entries without cells that can be reused, filled when the palette is full
+  private int[] freeEntries = new int[0];
+  private int freeCount;
+  private final Map<PaletteKey, Integer> paletteIndices = new HashMap<>();
+  private int minCosts = Integer.MAX_VALUE;
+  private int maxCosts = 0;
+  // set if an entry at one of the bounds lost its last cell
+  private boolean boundsStale;
+
+  /**
+   * Constructor for class PaletteTerrainStorage.
+   * @param length fixed length of the map
+   * @param height fixed height of the map
+   * @param defaultMaterial the Material of all cells at the beginning
+   */
+  public PaletteTerrainStorage(int length, int height, Material defaultMaterial) {
+    if (length < 0 || height < 0) {
+      throw new IllegalArgumentException();
+    }
+    this.length = length;
+    this.height = height;
+    cells = new short[length * height];
+    palette = new Material[16];
+    paletteCosts = new int[16];
+    useCounts = new int[16];
+    // every cell starts at palette index zero
+    intern(defaultMaterial.getName(), defaultMaterial.getCosts(), defaultMaterial.isObstacle());
+    addUses(0, length * height);
+  }
+
+  @Override
+  public int getLength() {
+    return length;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public Material getMaterial(int xvalue, int yvalue) {
+    return palette[getPaletteIndex(xvalue, yvalue)];
+  }
+
+  @Override
+  public void setMaterial(int xvalue, int yvalue, Material material) {
+    checkInside(xvalue, yvalue);
+    setPaletteIndex(xvalue, yvalue,
+        intern(material.getName(), material.getCosts(), material.isObstacle()));
+  }
+
+  @Override
+  public int costsAt(int xvalue, int yvalue) {
+    int cell = yvalue * length + xvalue;
+    short[] narrow = cells;
+    return paletteCosts[narrow != null ? narrow[cell] & 0xFFFF : wideCells[cell]];
+  }
+
+  @Override
+  public int getMinCosts() {
+    updateBounds();
+    return minCosts > maxCosts ? 0 : minCosts;
+  }
+
+  @Override
+  public int getMaxCosts() {
+    updateBounds();
+    return maxCosts;
+  }
+
+  /**
+   * Getter for the palette index of a cell.
+   * @param xvalue the x-coordinate of the cell
+   * @param yvalue the y-coordinate of the cell
+   */
+  public int getPaletteIndex(int xvalue, int yvalue) {
+    checkInside(xvalue, yvalue);
+    return indexAt(yvalue * length + xvalue);
+  }
+
+  /**
+   * Sets the palette index of a cell.
+   * @param xvalue the x-coordinate of the cell
+   * @param yvalue the y-coordinate of the cell
+   * @param index an index returned by intern
+   */
+  public void setPaletteIndex(int xvalue, int yvalue, int index) {
+    checkInside(xvalue, yvalue);
+    if (index < 0 || index >= paletteSize || palette[index] == null) {
+      throw new IllegalArgumentException("unknown palette index " + index);
+    }
+    int cell = yvalue * length + xvalue;
+    int oldIndex = indexAt(cell);
+    if (oldIndex == index) {
+      return;
+    }
+    if (cells != null) {
+      cells[cell] = (short) index;
+    } else {
+      wideCells[cell] = index;
+    }
+    addUses(index, 1);
+    removeUse(oldIndex);
+  }
+
+  /**
+   * Sets the palette indices of a whole row without checking or counting them.
+   * Used by the file readers, which fill disjoint rows from several threads
+   * with indices they interned before and call countUses at the end.
+   * Only valid while the cells use 16 bit indices.
+   * @param yvalue the y-coordinate of the row
+   * @param indices the palette index of every cell of the row
+   */
+  void setRow(int yvalue, short[] indices) {
+    System.arraycopy(indices, 0, cells, yvalue * length, length);
+  }
+
+  /**
+   * Counts the cells of every palette entry again after setRow.
+   */
+  void countUses() {
+    Arrays.fill(useCounts, 0, paletteSize, 0);
+    int cellCount = length * height;
+    for (int cell = 0; cell < cellCount; cell++) {
+      useCounts[indexAt(cell)]++;
+    }
+    boundsStale = true;
+  }
+
+  /**
+   * Getter for the number of palette entries, entries without cells included.
+   */
+  public int getPaletteSize() {
+    return paletteSize;
+  }
+
+  /**
+   * Getter for a palette entry.
+   * @param index the palette index
+   * @return the shared Material, which must not be changed, or null if the
+   *         entry was freed and is waiting to be reused
+   */
+  public Material getPaletteEntry(int index) {
+    if (index < 0 || index >= paletteSize) {
+      throw new IllegalArgumentException("unknown palette index " + index);
+    }
+    return palette[index];
+  }
+
+  /**
+   * Getter for the number of cells of a palette entry.
+   * @param index the palette index
+   */
+  public int getUseCount(int index) {
+    if (index < 0 || index >= paletteSize) {
+      throw new IllegalArgumentException("unknown palette index " + index);
+    }
+    return useCounts[index];
+  }
+
+  /**
+   * Returns the palette index of a Material and adds it if it is new.
+   * When the 16 bit palette is full, entries without cells are freed and
+   * reused first, so indices of such entries kept by the caller become invalid.
+   * @param name name of the material
+   * @param costs costs to walk over the material, negative costs are stored as zero
+   * @param isObstacle indicates if the material can not be walked over
+   * @return the palette index of the material
+   */
+  public int intern(String name, int costs, boolean isObstacle) {
+    costs = Math.max(0, costs);
+    PaletteKey key = new PaletteKey(name, costs, isObstacle);
+    Integer existing = paletteIndices.get(key);
+    if (existing != null) {
+      return existing;
+    }
+    if (freeCount == 0 && paletteSize == palette.length && paletteSize >= MAX_PALETTE_SIZE) {
+      freeUnusedEntries();
+      // grow instead if so few entries are free that the next scan would follow soon
+      if (freeCount < paletteSize / 16) {
+        if (cells != null) {
+          widenCells();
+        }
+        growPalette();
+      }
+    }
+    int index;
+    if (freeCount > 0) {
+      index = freeEntries[--freeCount];
+    } else {
+      if (paletteSize == palette.length) {
+        growPalette();
+      }
+      index = paletteSize++;
+    }
+    palette[index] = new Material(name, costs, isObstacle);
+    paletteCosts[index] = isObstacle ? CostModel.OBSTACLE : costs;
+    useCounts[index] = 0;
+    paletteIndices.put(key, index);
+    return index;
+  }
+
+  private void growPalette() {
+    palette = Arrays.copyOf(palette, paletteSize * 2);
+    paletteCosts = Arrays.copyOf(paletteCosts, paletteSize * 2);
+    useCounts = Arrays.copyOf(useCounts, paletteSize * 2);
+  }
+
+  private int indexAt(int cell) {
+    return cells != null ? cells[cell] & 0xFFFF : wideCells[cell];
+  }
+
+  /**
+   * Counts new cells of an entry and widens the bounds if it was not in use.
+   */
+  private void addUses(int index, int count) {
+    if (count == 0) {
+      return;
+    }
+    if (useCounts[index] == 0 && paletteCosts[index] != CostModel.OBSTACLE) {
+      minCosts = Math.min(minCosts, paletteCosts[index]);
+      maxCosts = Math.max(maxCosts, paletteCosts[index]);
+    }
+    useCounts[index] += count;
+  }
+
+  /**
+   * Counts a cell that left an entry. If the entry was the last one at a
+   * bound, the bounds are computed again by the next getter.
+   */
+  private void removeUse(int index) {
+    useCounts[index]--;
+    int costs = paletteCosts[index];
+    if (useCounts[index] == 0 && costs != CostModel.OBSTACLE
+        && (costs == minCosts || costs == maxCosts)) {
+      boundsStale = true;
+    }
+  }
+
+  private void updateBounds() {
+    if (!boundsStale) {
+      return;
+    }
+    int min = Integer.MAX_VALUE;
+    int max = 0;
+    for (int i = 0; i < paletteSize; i++) {
+      if (useCounts[i] > 0 && paletteCosts[i] != CostModel.OBSTACLE) {
+        min = Math.min(min, paletteCosts[i]);
+        max = Math.max(max, paletteCosts[i]);
+      }
+    }
+    minCosts = min;
+    maxCosts = max;
+    boundsStale = false;
+  }
+
+  /**
+   * Frees all entries without cells, so intern can reuse their indices.
+   */
+  private void freeUnusedEntries() {
+    for (int i = 0; i < paletteSize; i++) {
+      if (useCounts[i] == 0 && palette[i] != null) {
+        Material entry = palette[i];
+        paletteIndices.remove(new PaletteKey(entry.getName(), entry.getCosts(), entry.isObstacle()));
+        palette[i] = null;
+        if (freeCount == freeEntries.length) {
+          freeEntries = Arrays.copyOf(freeEntries, Math.max(16, freeCount * 2));
+        }
+        freeEntries[freeCount++] = i;
+      }
+    }
+  }
+
+  /**
+   * Switches the cells to 32 bit indices because more than MAX_PALETTE_SIZE entries are in use.
+   */
+  private void widenCells() {
+    int[] wide = new int[cells.length];
+    for (int cell = 0; cell < wide.length; cell++) {
+      wide[cell] = cells[cell] & 0xFFFF;
+    }
+    wideCells = wide;
+    cells = null;
+  }
+
+  private void checkInside(int xvalue, int yvalue) {
+    if (xvalue < 0 || yvalue < 0 || xvalue >= length || yvalue >= height) {
+      throw new IllegalArgumentException(xvalue + ", " + yvalue + " is not inside the map");
+    }
+  }
+
+  /**
+   * Values that identify a palette entry.
+   */
+  private static final class PaletteKey {
+    private final String name;
+    private final int costs;
+    private final boolean isObstacle;
+
+    private PaletteKey(String name, int costs, boolean isObstacle) {
+      this.name = name;
+      this.costs = costs;
+      this.isObstacle = isObstacle;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof PaletteKey) {
+        PaletteKey other = (PaletteKey) obj;
+        return costs == other.costs && isObstacle == other.isObstacle
+            && Objects.equals(name, other.name);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, costs, isObstacle);
+    }
+  }
+}
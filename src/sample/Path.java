@@ -1,4 +1,319 @@
 package sample;
 
-public class Path {
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * Immutable result of a path query.
+ * The cells are stored as packed flat indices (y * length + x) in one int
+ * array, a step costs four bytes instead of a list node and a Coordinate.
+ * Besides the cells a path knows its total costs and the option it was
+ * calculated with. The cells can be read by index or with forEachPoint
+ * without creating objects; asQueue offers the Queue of Coordinates that
+ * PathFinder.getPath returns.
+ * @version 1.0
+ */
+public final class Path {
+
+  /**
+   * costs of a path that does not exist.
+   */
+  public static final long NO_PATH = -1;
+
+  private final int[] cells;
+  private final int length;
+  private final long costs;
+  private final Options option;
+
+  /**
+   * Constructor for class Path that takes the cells without copying them.
+   * @param cells the flat indices of the cells from the starting to the ending point
+   * @param length length of the map in x-direction
+   * @param costs the costs of all cells except the last one or NO_PATH
+   * @param option the option the path was calculated with, null for other cost models
+   */
+  Path(int[] cells, int length, long costs, Options option) {
+    this.cells = cells;
+    this.length = length;
+    this.costs = costs;
+    this.option = option;
+  }
+
+  /**
+   * Creates a path from coordinates.
+   * @param points the points from the starting to the ending point
+   * @param length length of the map in x-direction
+   * @param costs the costs of all cells except the last one or NO_PATH
+   * @param option the option the path was calculated with, null for other cost models
+   * @return the new path
+   */
+  public static Path of(Collection<Coordinate> points, int length, long costs, Options option) {
+    if (length < 1 || costs < NO_PATH) {
+      throw new IllegalArgumentException();
+    }
+    int[] cells = new int[points.size()];
+    int index = 0;
+    for (Coordinate point : points) {
+      if (point.getXvalue() < 0 || point.getXvalue() >= length || point.getYvalue() < 0) {
+        throw new IllegalArgumentException(point + " is outside of the map");
+      }
+      cells[index++] = point.getYvalue() * length + point.getXvalue();
+    }
+    return new Path(cells, length, costs, option);
+  }
+
+  /**
+   * Creates a path from the coordinates found by a PathFinder and adds up its costs.
+   * With Options.COSTS_AND_NUMBER_POINTS the gradient of every leg starts at the
+   * point the leg starts at, like the PathFinders calculate it.
+   * @param terrainMap the map the path was found on
+   * @param points the points of the path, empty if there is no path
+   * @param waypoints the starting point, the intermediate points and the ending point
+   * @param option the option the path was calculated with
+   * @return the new path
+   */
+  static Path of(TerrainMap terrainMap, Collection<Coordinate> points, List<Coordinate> waypoints,
+                 Options option) {
+    int length = terrainMap.getLength();
+    Path path = of(points, length, 0, option);
+    int[] cells = path.cells;
+    int[] waypointCells = new int[waypoints.size()];
+    for (int i = 0; i < waypointCells.length; i++) {
+      waypointCells[i] = AbstractPathFinder.cellOf(waypoints.get(i), length);
+    }
+    if (cells.length == 0) {
+      for (int i = 1; i < waypointCells.length; i++) {
+        if (waypointCells[i] != waypointCells[0]) {
+          return new Path(cells, length, NO_PATH, option);
+        }
+      }
+      return path;
+    }
+    long costs = 0;
+    int next = 1;
+    CostModel costModel = null;
+    for (int i = 0; i < cells.length - 1; i++) {
+      // a leg ends at the first time its waypoint is reached, equal waypoints give empty legs
+      int origin = cells[i];
+      if (costModel == null || next < waypointCells.length && origin == waypointCells[next]) {
+        while (next < waypointCells.length && origin == waypointCells[next]) {
+          next++;
+        }
+        costModel = option == Options.COSTS_AND_NUMBER_POINTS
+            ? new RadialGradientCostModel(terrainMap, origin % length, origin / length)
+            : new TerrainCostModel(terrainMap);
+      }
+      costs += costModel.costsAt(origin % length, origin / length);
+    }
+    return new Path(cells, length, costs, option);
+  }
+
+  /**
+   * Adds up the costs of all cells of a leg except its last one.
+   * @param cells the cells of the leg
+   * @param costModel the costs the leg was searched with
+   * @return the costs, 0 for an empty leg
+   */
+  static long costsOf(int[] cells, CostModel costModel) {
+    int mapLength = costModel.getLength();
+    long costs = 0;
+    for (int i = 0; i < cells.length - 1; i++) {
+      costs += costModel.costsAt(cells[i] % mapLength, cells[i] / mapLength);
+    }
+    return costs;
+  }
+
+  /**
+   * Getter for the number of points of the path.
+   */
+  public int size() {
+    return cells.length;
+  }
+
+  /**
+   * Tells whether the path has no points, because there is no path or both points are equal.
+   */
+  public boolean isEmpty() {
+    return cells.length == 0;
+  }
+
+  /**
+   * Tells whether a path was found, a path between equal points is found and empty.
+   */
+  public boolean isFound() {
+    return costs != NO_PATH;
+  }
+
+  /**
+   * Getter for the costs of all cells of the path except the last one.
+   * @return the costs or NO_PATH if there is no path
+   */
+  public long getCosts() {
+    return costs;
+  }
+
+  /**
+   * Getter for the option the path was calculated with.
+   * @return the option or null if the path was calculated with another cost model
+   */
+  public Options getOption() {
+    return option;
+  }
+
+  /**
+   * Getter for the length of the map in x-direction, which packs the cells.
+   */
+  public int getMapLength() {
+    return length;
+  }
+
+  /**
+   * Getter for the flat index y * length + x of a point.
+   * @param index the position of the point in the path
+   */
+  public int getCell(int index) {
+    return cells[index];
+  }
+
+  public int getXvalue(int index) {
+    return cells[index] % length;
+  }
+
+  public int getYvalue(int index) {
+    return cells[index] / length;
+  }
+
+  /**
+   * Creates a Coordinate of a point.
+   * @param index the position of the point in the path
+   * @return a new Coordinate the caller may change
+   */
+  public Coordinate getPoint(int index) {
+    return new Coordinate(cells[index] % length, cells[index] / length);
+  }
+
+  /**
+   * Hands all points of the path to a consumer without creating objects.
+   * @param consumer the consumer of the x- and y-coordinates in the order of the path
+   */
+  public void forEachPoint(PointConsumer consumer) {
+    for (int cell : cells) {
+      consumer.accept(cell % length, cell / length);
+    }
+  }
+
+  /**
+   * Copies the flat indices of the cells.
+   */
+  public int[] toCells() {
+    return cells.clone();
+  }
+
+  /**
+   * Creates a view of the path as Queue of Coordinates, which is also a List.
+   * Every access creates a new Coordinate. Taking points with poll or remove
+   * only moves the head of the view, the path is not changed and every view
+   * starts at the first point. Adding points is not supported.
+   * @return the new view
+   */
+  public Queue<Coordinate> asQueue() {
+    return new QueueView();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof Path)) {
+      return false;
+    }
+    Path other = (Path) obj;
+    return length == other.length && costs == other.costs && option == other.option
+        && Arrays.equals(cells, other.cells);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Arrays.hashCode(cells) + Long.hashCode(costs)) + length;
+  }
+
+  @Override
+  public String toString() {
+    return "Path of " + cells.length + " points with costs " + costs + " for " + option;
+  }
+
+  /**
+   * Receives the points of a path.
+   */
+  @FunctionalInterface
+  public interface PointConsumer {
+
+    /**
+     * Called for every point of the path.
+     * @param xvalue the x-coordinate of the point
+     * @param yvalue the y-coordinate of the point
+     */
+    void accept(int xvalue, int yvalue);
+  }
+
+  /**
+   * Queue and List of the points of the path from a head on.
+   */
+  private final class QueueView extends AbstractList<Coordinate> implements Queue<Coordinate> {
+
+    // index of the first point of the view
+    private int head;
+
+    @Override
+    public Coordinate get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException(index);
+      }
+      return getPoint(head + index);
+    }
+
+    @Override
+    public int size() {
+      return cells.length - head;
+    }
+
+    @Override
+    public boolean offer(Coordinate coordinate) {
+      throw new UnsupportedOperationException("a path can not be extended");
+    }
+
+    @Override
+    public Coordinate remove() {
+      Coordinate point = poll();
+      if (point == null) {
+        throw new NoSuchElementException();
+      }
+      return point;
+    }
+
+    @Override
+    public Coordinate poll() {
+      if (head == cells.length) {
+        return null;
+      }
+      modCount++;
+      return getPoint(head++);
+    }
+
+    @Override
+    public Coordinate element() {
+      Coordinate point = peek();
+      if (point == null) {
+        throw new NoSuchElementException();
+      }
+      return point;
+    }
+
+    @Override
+    public Coordinate peek() {
+      return head == cells.length ? null : getPoint(head);
+    }
+  }
 }
@@ -1,5 +1,7 @@
 package sample;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
 
@@ -34,6 +36,61 @@ public interface PathFinder {
   Queue<Coordinate> getPath(TerrainMap terrainMap, Coordinate startingPoint, Coordinate endingPoint,
                             List<Coordinate> intermediatePoints, Options option)
                             throws Exception;
-}
 
+  /**
+   * calculates the path between the starting and end point as compact Path.
+   * @param terrainMap the map of the terrain to calculate the path
+   * @param startingPoint the starting point of the path
+   * @param endingPoint the ending point of the path
+   * @param option option to specify on which basis is used to calculate the path
+   * @return the calculated path with its costs
+   */
+  default Path calculatePath(TerrainMap terrainMap, Coordinate startingPoint,
+                             Coordinate endingPoint, Options option) throws Exception {
+    return Path.of(terrainMap, getPath(terrainMap, startingPoint, endingPoint, option),
+        Arrays.asList(startingPoint, endingPoint), option);
+  }
+
+  /**
+   * calculates the path between the starting and end point over intermediate points as compact Path.
+   * @param terrainMap the map of the terrain to calculate the path
+   * @param startingPoint the starting point of the path
+   * @param endingPoint the ending point of the path
+   * @param intermediatePoints the points that should be visited
+   * @param option option to specify on which basis is used to calculate the path
+   * @return the calculated path with its costs
+   */
+  default Path calculatePath(TerrainMap terrainMap, Coordinate startingPoint,
+                             Coordinate endingPoint, List<Coordinate> intermediatePoints,
+                             Options option) throws Exception {
+    List<Coordinate> waypoints = new ArrayList<>(intermediatePoints.size() + 2);
+    waypoints.add(startingPoint);
+    waypoints.addAll(intermediatePoints);
+    waypoints.add(endingPoint);
+    return Path.of(terrainMap,
+        getPath(terrainMap, startingPoint, endingPoint, intermediatePoints, option), waypoints, option);
+  }
+
+  /**
+   * Tells whether this PathFinder reports its queries to SearchListeners.
+   * @return false by default, PathFinders that measure their queries return true
+   */
+  default boolean isObservable() {
+    return false;
+  }
+
+  /**
+   * Registers a listener that is told the counters and times of every following query.
+   * PathFinders that are not observable ignore the listener.
+   * @param listener the listener to add
+   */
+  default void addSearchListener(SearchListener listener) {
+  }
 
+  /**
+   * Removes a registered listener.
+   * @param listener the listener to remove
+   */
+  default void removeSearchListener(SearchListener listener) {
+  }
+}
@@ -1,277 +1,103 @@
 package sample;
 
 
-import java.util.*;
-
 /**
  * Implementation of the pathfinder interface.
  * Calculates the path based on a dijkstra algorithm.
  * @author Patrick Hanselmann, Jeffrey Rietzler
  * @version 1.0
  */
-public class PathFinderAlgorithm implements PathFinder {
-
-  // Graph to save the 2D Relation of all nodes
-  private Node[][] graph;
-  // Map with all nodes that were not finally used by the algorithm
-  // Saved with their current costs to reach this node, as key
-  private TreeMap<Integer, List<Node>> notFinishedNodes;
-  // List of all finally used Nodes. These are not used in the algorithm anymore
-  private List<Node> finishedNodes;
+public class PathFinderAlgorithm extends AbstractPathFinder {
 
   /**
    * Constructor for class PathFindingAlgorithm.
+   * The priority queue is chosen automatically for every query.
    */
   public PathFinderAlgorithm() {
-    notFinishedNodes = new TreeMap<>();
-    finishedNodes = new LinkedList<>();
-  }
-
-  @Override
-  public Queue<Coordinate> getPath(TerrainMap terrainMap, Coordinate startingPoint,
-                                   Coordinate endingPoint, Options option)
-          throws Exception {
-    TerrainMap terrainMapTest = new TerrainMap(2,3);
-    terrainMapTest.setCompleteMap(terrainMap.getCompleteMap());
-
-    if (terrainMapTest.getMaterialAtPoint(startingPoint).isObstacle()) {
-      throw new Exception(startingPoint + " is obstacle");
-    }
-    else if (terrainMapTest.getMaterialAtPoint(endingPoint).isObstacle()) {
-      throw new Exception(endingPoint + " is obstacle");
-    }
-
-    if (option == Options.COSTS_AND_NUMBER_POINTS) {
-      terrainMapTest = terrainMapTest.addRadialGradient(startingPoint);
-    }
-
-    //switch starting and ending point
-    Coordinate temp = startingPoint;
-    startingPoint = endingPoint;
-    endingPoint = temp;
-    //Queue with the coordinates from the starting to ending point
-    Queue<Coordinate> path = new LinkedList<>();
-    //Initialisation of all needed data fields
-    initialise(terrainMapTest.getCompleteMap().length, terrainMapTest.getCompleteMap()[0].length);
-    //get the starting point
-    Node currentNode = graph[startingPoint.getXvalue()][startingPoint.getYvalue()];
-    // set costs for starting point to zero
-    currentNode.setSumCostsToReachThisPoint(0);
-    // add starting point to finished nodes
-    finishedNodes.add(currentNode);
-
-    boolean finished = false;
-    // Dijkstra-Algorithm
-    do {
-      // get all neighbour points that are not in the finished List
-      List<Node> neighbours = getUnFinishedNeighbourNodes(currentNode,terrainMapTest);
-
-      for (Node node : neighbours) {
-        Coordinate neighbourCoord = new Coordinate(node.getXvalue(), node.getYvalue());
-        // calculate the costs to get to a neighbour node
-        int costsToNeighbour = currentNode.getSumCostsToReachThisPoint()
-                + terrainMapTest.getMaterialAtPoint(neighbourCoord).getCosts();
-        if (costsToNeighbour < node.getSumCostsToReachThisPoint()) {
-          // set the lower costs
-          node.setSumCostsToReachThisPoint(costsToNeighbour);
-          // set currentNode as new predecessor
-          node.setPredecessor(currentNode);
-          // add the node to the notFinished Map
-          addNodeToList(node);
-        }
-      }
-
-      if (notFinishedNodes.isEmpty()) {
-        finished = true;
-      } else {
-        currentNode = getNodeWithLeastCosts();
-        // add currentNode to finished List
-        finishedNodes.add(currentNode);
-      }
-    }
-    while (!finished);
-    //get path
-    Node point = graph[endingPoint.getXvalue()][endingPoint.getYvalue()];
-    // No path found
-    if (point.predecessor == null) {
-      return path;
-    }
-    while (point != null) {
-      path.add(new Coordinate(point.getXvalue(), point.getYvalue()));
-      point = point.getPredecessor();
-    }
-    return path;
-  }
-
-  @Override
-  public Queue<Coordinate> getPath(TerrainMap terrainMap, Coordinate startingPoint,
-                                   Coordinate endingPoint, List<Coordinate> intermediatePoints,
-                                   Options option) throws Exception {
-    List<Coordinate> tempPath = new LinkedList<>();
-    //if there is no intermediate point
-    if (intermediatePoints.isEmpty()) {
-      //calculate the path from the starting to the ending point
-      return getPath(terrainMap,startingPoint,endingPoint,option);
-    }
-    tempPath.addAll(getPath(terrainMap,startingPoint,intermediatePoints.get(0),option));
-    //if there is more than one intermediate point
-    if (intermediatePoints.size() > 1) {
-      // iterate over all of them
-      for (int i = 0; i < intermediatePoints.size() - 1 ; i++) {
-        Queue<Coordinate> coordinates = getPath(terrainMap,intermediatePoints.get(i),
-                intermediatePoints.get(i + 1),option);
-        //remove the first coordinate because it is already in the path list
-        coordinates.remove();
-        tempPath.addAll(coordinates);
-      }
-    }
-    Queue<Coordinate> lastPath = getPath(terrainMap,
-        intermediatePoints.get(intermediatePoints.size() - 1), endingPoint,option);
-    lastPath.remove();
-    tempPath.addAll(lastPath);
-    //Queue with the coordinates from the starting to ending point over intermediate points
-    return new LinkedList<>(tempPath);
+    this(QueueStrategy.AUTO);
   }
 
   /**
-   * Adds a Node to the notFinished Map.
-   * if the Node is already in the finished List it gets deleted and
-   * added with its new costs as key
-   * @param node the node to be added
+   * Constructor for class PathFindingAlgorithm.
+   * @param queueStrategy the priority queue used for the nodes that are not finished
    */
-  private void addNodeToList(Node node) {
-    // look up if the Node is already in the unfinished Map
-    TreeMap<Integer, List<Node>> tempNodes = new TreeMap<>(notFinishedNodes);
-    for (Integer key : tempNodes.keySet()) {
-      List<Node> nodes = tempNodes.get(key);
-      for (Node savedNode: nodes) {
-        // if it is
-        if (savedNode.equals(node)) {
-          // remove it
-          notFinishedNodes.get(key).remove(node);
-          // if the list it was saved in is now empty
-          if (notFinishedNodes.get(key).isEmpty()) {
-            //remove it
-            notFinishedNodes.remove(key);
-          }
-
-        }
-      }
-    }
-    int costs = node.getSumCostsToReachThisPoint();
-    //if Map already contains new key of the Node
-    if (notFinishedNodes.containsKey(costs)) {
-      //add Node to the List with this key
-      notFinishedNodes.get(costs).add(node);
-    }  else {
-      // create new list with Node and add it to map
-      List<Node> list = new LinkedList<>();
-      list.add(node);
-      notFinishedNodes.put(costs, list);
-    }
+  public PathFinderAlgorithm(QueueStrategy queueStrategy) {
+    setQueueStrategy(queueStrategy);
   }
 
-  /**
-   * returns the Node with the least costs.
-   */
-  private Node getNodeWithLeastCosts() {
-    //remove entry at first key in map and return it
-    Node out = notFinishedNodes.get(notFinishedNodes.firstKey()).remove(0);
-    // if the list the Node was in is now empty then delete it
-    if (notFinishedNodes.get(notFinishedNodes.firstKey()).isEmpty()) {
-      notFinishedNodes.remove(notFinishedNodes.firstKey());
-    }
-    return out;
+  @Override
+  protected AbstractPathFinder newLegFinder() {
+    return new PathFinderAlgorithm(getQueueStrategy());
   }
 
-  /**
-   * return all neighbour nodes of current node that are not in the finished List.
-   * @param currentNode the currently observed node
-   */
-  private List<Node> getUnFinishedNeighbourNodes(Node currentNode, TerrainMap terrainMap) {
-    int xvalue = currentNode.getXvalue();
-    int yvalue = currentNode.getYvalue();
-    List<Node> neighbours = new LinkedList<>();
-    if (xvalue - 1 >= 0) {
-      neighbours.add(graph[xvalue - 1][yvalue]);
-    }
-    if (xvalue + 1 < graph.length) {
-      neighbours.add(graph[xvalue + 1][yvalue]);
-    }
-    if (yvalue - 1 >= 0) {
-      neighbours.add(graph[xvalue][yvalue - 1]);
-    }
-    if (yvalue + 1 < graph[0].length) {
-      neighbours.add(graph[xvalue][yvalue + 1]);
-    }
-    Iterator<Node> it = neighbours.iterator();
-    while (it.hasNext()) {
-      Node nextNode = it.next();
-      boolean isObstacle = terrainMap.getMaterialAtPoint(
-              new Coordinate(nextNode.getXvalue(),nextNode.getYvalue())).isObstacle();
-      if (finishedNodes.contains(nextNode) || isObstacle) {
-        it.remove();
-      }
-    }
-    return neighbours;
+  @Override
+  protected int[] searchPath(CostModel costModel, int startingCell, int endingCell) {
+    // search from the ending point, so the predecessors lead from the starting to the ending point
+    search(costModel, endingCell);
+    return tracePredecessors(startingCell);
   }
 
   /**
-   * initializer for all needed data types.
-   * @param xlength length in x-direction of the used TerrainMap
-   * @param ylength length in y-direction of the used TerrainMap
+   * Dijkstra-Algorithm over the flat cell indices of the map.
+   * Allocates nothing once the context has grown to the map size.
+   * @param costModel the costs of the cells
+   * @param source index of the cell the search starts at
    */
-  private void initialise(int xlength, int ylength) {
-    graph = new Node[xlength][ylength];
-    for (int x = 0 ; x < graph.length ; x++) {
-      for (int y = 0; y < graph[x].length ; y++) {
-        graph[x][y] = new Node(x,y);
+  private void search(CostModel costModel, int source) {
+    int length = costModel.getLength();
+    int height = costModel.getHeight();
+    context.reset(length * height, getQueueStrategy(), costModel.getMinCosts(), costModel.getMaxCosts());
+    OpenSet notFinishedCells = context.getOpenSet();
+    // set costs for starting point to zero
+    context.setCosts(source, 0, SearchContext.NONE);
+    notFinishedCells.insert(source, 0);
+
+    while (!notFinishedCells.isEmpty()) {
+      int cell = notFinishedCells.extractMin();
+      context.close(cell);
+      int costs = context.getCosts(cell);
+      int xvalue = cell % length;
+      int yvalue = cell / length;
+      // the neighbours of the frontier are read next
+      costModel.prefetch(xvalue, yvalue);
+      // relax all neighbour cells
+      if (xvalue > 0) {
+        relax(costModel, cell, costs, cell - 1, xvalue - 1, yvalue);
+      }
+      if (xvalue + 1 < length) {
+        relax(costModel, cell, costs, cell + 1, xvalue + 1, yvalue);
+      }
+      if (yvalue > 0) {
+        relax(costModel, cell, costs, cell - length, xvalue, yvalue - 1);
+      }
+      if (yvalue + 1 < height) {
+        relax(costModel, cell, costs, cell + length, xvalue, yvalue + 1);
       }
     }
-    notFinishedNodes = new TreeMap<>();
-    finishedNodes = new LinkedList<>();
   }
 
-
   /**
-   * Represents a node in a graph.
+   * Lowers the costs of a neighbour cell if it can be reached cheaper over the current cell.
+   * @param costModel the costs of the cells
+   * @param current index of the current cell
+   * @param currentCosts costs to reach the current cell
+   * @param neighbour index of the neighbour cell
+   * @param xvalue x-coordinate of the neighbour cell
+   * @param yvalue y-coordinate of the neighbour cell
    */
-  private class Node {
-    private Node predecessor;
-    // costs to reach this point from a starting point
-    private int sumCostsToReachThisPoint;
-    private final int xvalue;
-    private final int yvalue;
-
-    private Node(int xvalue, int yvalue) {
-      this.xvalue = xvalue;
-      this.yvalue = yvalue;
-      predecessor = null;
-      sumCostsToReachThisPoint = Integer.MAX_VALUE - 1;
-    }
-
-    private void setPredecessor(Node predecessor) {
-      this.predecessor = predecessor;
-    }
-
-    private Node getPredecessor() {
-      return predecessor;
-    }
-
-    private void setSumCostsToReachThisPoint(int costs) {
-      this.sumCostsToReachThisPoint = costs;
-    }
-
-    private int getSumCostsToReachThisPoint() {
-      return sumCostsToReachThisPoint;
-    }
-
-    private int getXvalue() {
-      return xvalue;
-    }
-
-    private int getYvalue() {
-      return yvalue;
+  private void relax(CostModel costModel, int current, int currentCosts,
+                     int neighbour, int xvalue, int yvalue) {
+    if (context.isClosed(neighbour)) {
+      return;
+    }
+    int stepCosts = costModel.costsAt(xvalue, yvalue);
+    if (stepCosts == CostModel.OBSTACLE) {
+      return;
+    }
+    int costsToNeighbour = SearchContext.addCosts(currentCosts, stepCosts);
+    if (costsToNeighbour < context.getCosts(neighbour)) {
+      context.setCosts(neighbour, costsToNeighbour, current);
+      context.getOpenSet().insertOrDecrease(neighbour, costsToNeighbour);
     }
   }
 }
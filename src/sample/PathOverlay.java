@@ -0,0 +1,129 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javafx.collections.ObservableList;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Polyline;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+/**
+ * Draws a Path as one Polyline on the overlay of a TerrainCanvasView.
+ * Steps in the same direction are merged into one segment, so a straight
+ * corridor of any length needs two points. When another path is shown only
+ * the points between the common beginning and the common end of the old and
+ * the new path are replaced. The line keeps its width in pixels at every zoom.
+ * @version 1.0
+ */
+public class PathOverlay {
+
+  /**
+   * width of the line in pixels.
+   */
+  public static final double STROKE_PIXELS = 5;
+
+  private static final Color PATH_COLOR = new Color(1.0, 0.0, 0.0, 0.5);
+
+  private final TerrainCanvasView view;
+  private final Polyline polyline = new Polyline();
+  // cells of the shown points, packed with the length of the map
+  private int[] vertices = new int[0];
+  private int length;
+  private int lastReplacedVertices;
+
+  /**
+   * Constructor for class PathOverlay.
+   * @param view the view whose overlay shows the path
+   */
+  public PathOverlay(TerrainCanvasView view) {
+    if (view == null) {
+      throw new IllegalArgumentException();
+    }
+    this.view = view;
+    polyline.setStroke(PATH_COLOR);
+    polyline.setStrokeLineCap(StrokeLineCap.ROUND);
+    polyline.setStrokeLineJoin(StrokeLineJoin.ROUND);
+    view.getOverlay().getChildren().add(polyline);
+    view.addViewListener(this::updateStrokeWidth);
+    updateStrokeWidth();
+  }
+
+  /**
+   * Shows a path instead of the current one.
+   * @param path the path to show, null or an empty path to show nothing
+   */
+  public void setPath(Path path) {
+    int[] next = path == null ? new int[0] : vertices(path);
+    int common = Math.min(vertices.length, next.length);
+    int prefix = 0;
+    int suffix = 0;
+    // the packed cells only compare equal on maps of the same length
+    if (path == null || path.getMapLength() == length) {
+      while (prefix < common && vertices[prefix] == next[prefix]) {
+        prefix++;
+      }
+      while (suffix < common - prefix
+          && vertices[vertices.length - 1 - suffix] == next[next.length - 1 - suffix]) {
+        suffix++;
+      }
+    }
+    if (path != null) {
+      length = path.getMapLength();
+    }
+    List<Double> replacement = new ArrayList<>(2 * (next.length - prefix - suffix));
+    for (int i = prefix; i < next.length - suffix; i++) {
+      replacement.add(next[i] % length + 0.5);
+      replacement.add(next[i] / length + 0.5);
+    }
+    ObservableList<Double> points = polyline.getPoints();
+    points.remove(2 * prefix, 2 * (vertices.length - suffix));
+    points.addAll(2 * prefix, replacement);
+    lastReplacedVertices = Math.max(vertices.length, next.length) - prefix - suffix;
+    vertices = next;
+  }
+
+  /**
+   * Removes the shown path.
+   */
+  public void clear() {
+    setPath(null);
+  }
+
+  /**
+   * Getter for the number of points of the Polyline.
+   */
+  public int getVertexCount() {
+    return vertices.length;
+  }
+
+  /**
+   * Getter for the number of points the last setPath had to replace or add.
+   */
+  public int getLastReplacedVertices() {
+    return lastReplacedVertices;
+  }
+
+  /**
+   * Returns the cells of a path where its direction changes, with its first and last cell.
+   * The steps of a path go to neighbour cells, so equal differences of the
+   * packed cells are equal directions.
+   */
+  static int[] vertices(Path path) {
+    int size = path.size();
+    int[] vertices = new int[size];
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (i == 0 || i == size - 1
+          || path.getCell(i) - path.getCell(i - 1) != path.getCell(i + 1) - path.getCell(i)) {
+        vertices[count++] = path.getCell(i);
+      }
+    }
+    return Arrays.copyOf(vertices, count);
+  }
+
+  private void updateStrokeWidth() {
+    polyline.setStrokeWidth(STROKE_PIXELS / view.getScale());
+  }
+}
@@ -0,0 +1,105 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * One request for a path of a BatchPathFinder.
+ * The points are copied, so later changes of the given Coordinates do not
+ * change the query.
+ * @version 1.0
+ */
+public final class PathQuery {
+
+  private final Coordinate startingPoint;
+  private final Coordinate endingPoint;
+  private final List<Coordinate> intermediatePoints;
+  private final Options option;
+
+  /**
+   * Constructor for class PathQuery without intermediate points.
+   * @param startingPoint the starting point of the path
+   * @param endingPoint the ending point of the path
+   * @param option option to specify on which basis is used to calculate the path
+   */
+  public PathQuery(Coordinate startingPoint, Coordinate endingPoint, Options option) {
+    this(startingPoint, endingPoint, Collections.emptyList(), option);
+  }
+
+  /**
+   * Constructor for class PathQuery.
+   * @param startingPoint the starting point of the path
+   * @param endingPoint the ending point of the path
+   * @param intermediatePoints the points that should be visited
+   * @param option option to specify on which basis is used to calculate the path
+   */
+  public PathQuery(Coordinate startingPoint, Coordinate endingPoint,
+                   List<Coordinate> intermediatePoints, Options option) {
+    if (startingPoint == null || endingPoint == null || intermediatePoints == null
+        || option == null) {
+      throw new IllegalArgumentException("points and option of a query must not be null");
+    }
+    this.startingPoint = copyOf(startingPoint);
+    this.endingPoint = copyOf(endingPoint);
+    List<Coordinate> points = new ArrayList<>(intermediatePoints.size());
+    for (Coordinate point : intermediatePoints) {
+      if (point == null) {
+        throw new IllegalArgumentException("intermediate points must not be null");
+      }
+      points.add(copyOf(point));
+    }
+    this.intermediatePoints = Collections.unmodifiableList(points);
+    this.option = option;
+  }
+
+  public Coordinate getStartingPoint() {
+    return copyOf(startingPoint);
+  }
+
+  public Coordinate getEndingPoint() {
+    return copyOf(endingPoint);
+  }
+
+  /**
+   * Getter for the intermediate points.
+   * @return the points in the order they are visited, empty if there are none
+   */
+  public List<Coordinate> getIntermediatePoints() {
+    List<Coordinate> points = new ArrayList<>(intermediatePoints.size());
+    for (Coordinate point : intermediatePoints) {
+      points.add(copyOf(point));
+    }
+    return points;
+  }
+
+  public Options getOption() {
+    return option;
+  }
+
+  /**
+   * Searches the path of this query.
+   * @param pathFinder the path finder to use
+   * @param terrainMap the map of the terrain to calculate the path
+   * @return the calculated path
+   * @throws Exception if one of the points is an obstacle
+   */
+  Queue<Coordinate> search(PathFinder pathFinder, TerrainMap terrainMap) throws Exception {
+    if (intermediatePoints.isEmpty()) {
+      return pathFinder.getPath(terrainMap, getStartingPoint(), getEndingPoint(), option);
+    }
+    return pathFinder.getPath(terrainMap, getStartingPoint(), getEndingPoint(),
+        getIntermediatePoints(), option);
+  }
+
+  @Override
+  public String toString() {
+    return startingPoint + " -> " + endingPoint
+        + (intermediatePoints.isEmpty() ? "" : " over " + intermediatePoints) + " (" + option + ")";
+  }
+
+  private static Coordinate copyOf(Coordinate point) {
+    return new Coordinate(point.getXvalue(), point.getYvalue());
+  }
+}
@@ -0,0 +1,27 @@
+package sample;
+
+import java.util.Queue;
+
+/**
+ * Listener that receives the results of a batch of path queries in the order
+ * they are finished.
+ * @version 1.0
+ */
+public interface PathQueryListener {
+
+  /**
+   * Called after the path of a query was found.
+   * @param index the index of the query in the batch
+   * @param query the finished query
+   * @param path the calculated path, empty if there is no path
+   */
+  void pathFound(int index, PathQuery query, Queue<Coordinate> path);
+
+  /**
+   * Called after the search of a query failed.
+   * @param index the index of the query in the batch
+   * @param query the failed query
+   * @param exception the reason, for example a point that is an obstacle
+   */
+  void queryFailed(int index, PathQuery query, Exception exception);
+}
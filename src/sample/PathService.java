@@ -0,0 +1,222 @@
+package sample;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calculates paths on a background thread, so the user interface is not
+ * blocked while a large map is searched. Only the latest query matters:
+ * submitting a new query cancels the running one, and a query is cancelled
+ * as soon as a cell of its map changes, because its path would be outdated.
+ * The queries run one after another on a single daemon thread, so a
+ * PathFinder is never used by two queries at once. Progress and results are
+ * handed to a PathServiceListener through the callback executor, for JavaFX
+ * that is Platform::runLater.
+ * A running search stops at its next checkpoint if its PathFinder is
+ * observable, otherwise a cancelled query runs to its end and its result
+ * is dropped.
+ * @version 1.0
+ */
+public class PathService implements AutoCloseable {
+
+  private final ExecutorService executor;
+  private final Executor callbackExecutor;
+  // the latest query, only its progress and result are reported
+  private volatile Query current;
+
+  /**
+   * Constructor for class PathService.
+   * @param callbackExecutor the executor that calls the listeners, for example Platform::runLater
+   */
+  public PathService(Executor callbackExecutor) {
+    if (callbackExecutor == null) {
+      throw new IllegalArgumentException("callback executor must not be null");
+    }
+    this.callbackExecutor = callbackExecutor;
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "path-service");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Submits a query and cancels the one that is running.
+   * @param pathFinder the PathFinder that calculates the path
+   * @param terrainMap the map the path is searched on
+   * @param startingPoint the point the path starts at
+   * @param endingPoint the point the path ends at
+   * @param intermediatePoints the points the path visits in between, may be empty
+   * @param option the costs the path is calculated with
+   * @param listener the listener that receives the progress and the result
+   * @return the query, which can be cancelled itself
+   */
+  public synchronized Query submit(PathFinder pathFinder, TerrainMap terrainMap,
+                                   Coordinate startingPoint, Coordinate endingPoint,
+                                   List<Coordinate> intermediatePoints, Options option,
+                                   PathServiceListener listener) {
+    if (pathFinder == null || terrainMap == null || intermediatePoints == null
+        || listener == null) {
+      throw new IllegalArgumentException();
+    }
+    cancel();
+    Query query = new Query(pathFinder, terrainMap, startingPoint, endingPoint,
+        intermediatePoints, option, listener);
+    current = query;
+    // the query listens before it runs, so no change of the map is missed
+    terrainMap.addTerrainListener(query);
+    executor.execute(query);
+    return query;
+  }
+
+  /**
+   * Cancels the running query, if there is one.
+   */
+  public synchronized void cancel() {
+    Query query = current;
+    if (query != null) {
+      query.cancel(true);
+    }
+  }
+
+  /**
+   * Tells whether the latest query is still waiting or running.
+   */
+  public boolean isRunning() {
+    Query query = current;
+    return query != null && !query.isDone();
+  }
+
+  /**
+   * Cancels the running query and stops the background thread.
+   */
+  @Override
+  public void close() {
+    cancel();
+    executor.shutdown();
+  }
+
+  /**
+   * Query that runs on the background thread and reports to the callback executor.
+   * Its result can also be waited for with get.
+   */
+  public final class Query extends FutureTask<Path> implements TerrainListener, SearchListener {
+
+    private final PathFinder pathFinder;
+    private final TerrainMap terrainMap;
+    private final PathServiceListener listener;
+    private final AtomicLong expandedNodes = new AtomicLong();
+    // counters and times of the search, null if the PathFinder did not measure it
+    private volatile SearchStatistics statistics;
+    // set while an update of the progress waits for the callback executor
+    private final AtomicBoolean progressPending = new AtomicBoolean();
+
+    private Query(PathFinder pathFinder, TerrainMap terrainMap, Coordinate startingPoint,
+                  Coordinate endingPoint, List<Coordinate> intermediatePoints, Options option,
+                  PathServiceListener listener) {
+      super(() -> intermediatePoints.isEmpty()
+          ? pathFinder.calculatePath(terrainMap, startingPoint, endingPoint, option)
+          : pathFinder.calculatePath(terrainMap, startingPoint, endingPoint,
+              intermediatePoints, option));
+      this.pathFinder = pathFinder;
+      this.terrainMap = terrainMap;
+      this.listener = listener;
+    }
+
+    @Override
+    public void run() {
+      if (isDone()) {
+        return;
+      }
+      // a listener makes the search count its nodes, which also checks for cancellation
+      boolean observed = pathFinder.isObservable();
+      if (observed) {
+        pathFinder.addSearchListener(this);
+      }
+      try {
+        super.run();
+      } finally {
+        if (observed) {
+          pathFinder.removeSearchListener(this);
+        }
+      }
+    }
+
+    @Override
+    public void searchFinished(SearchStatistics statistics) {
+      this.statistics = statistics;
+    }
+
+    @Override
+    public void searchProgress(long nodes) {
+      expandedNodes.set(nodes);
+      if (progressPending.compareAndSet(false, true)) {
+        callbackExecutor.execute(() -> {
+          progressPending.set(false);
+          if (isLatest() && !isDone()) {
+            listener.progress(expandedNodes.get());
+          }
+        });
+      }
+    }
+
+    @Override
+    public void cellChanged(TerrainMap terrainMap, int xvalue, int yvalue) {
+      cancel(true);
+    }
+
+    @Override
+    public void mapChanged(TerrainMap terrainMap) {
+      cancel(true);
+    }
+
+    @Override
+    protected void done() {
+      terrainMap.removeTerrainListener(this);
+      callbackExecutor.execute(this::report);
+    }
+
+    /**
+     * Hands the result to the listener, unless a newer query was submitted meanwhile.
+     */
+    private void report() {
+      if (!isLatest()) {
+        return;
+      }
+      if (isCancelled()) {
+        listener.queryCancelled();
+        return;
+      }
+      try {
+        Path path = get();
+        if (statistics != null) {
+          listener.searchFinished(statistics);
+        }
+        listener.pathFound(path);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof CancellationException) {
+          // the search noticed the cancellation before the query was marked as cancelled
+          listener.queryCancelled();
+        } else if (cause instanceof Exception) {
+          listener.queryFailed((Exception) cause);
+        } else {
+          listener.queryFailed(e);
+        }
+      } catch (InterruptedException | CancellationException e) {
+        listener.queryCancelled();
+      }
+    }
+
+    private boolean isLatest() {
+      return current == this;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package sample;
+
+/**
+ * Listener that receives the progress and the result of a query of a PathService.
+ * All methods are called by the callback executor of the service, for a
+ * JavaFX user interface that is the JavaFX application thread. A query that
+ * was replaced by a newer one reports nothing more.
+ * @version 1.0
+ */
+public interface PathServiceListener {
+
+  /**
+   * Called while the query is searched, updates that come faster than the
+   * callback executor runs them are combined.
+   * @param expandedNodes the nodes the search expanded so far
+   */
+  default void progress(long expandedNodes) {
+  }
+
+  /**
+   * Called right before pathFound if the PathFinder measured the search of the query.
+   * Queries answered without a search, for example from a cache, are not measured.
+   * @param statistics the counters and times of the search
+   */
+  default void searchFinished(SearchStatistics statistics) {
+  }
+
+  /**
+   * Called after the path of the query was found.
+   * @param path the calculated path, not found if there is no path
+   */
+  void pathFound(Path path);
+
+  /**
+   * Called after the search of the query failed.
+   * @param exception the reason, for example a point that is an obstacle
+   */
+  void queryFailed(Exception exception);
+
+  /**
+   * Called after the query was cancelled, because the map changed or it was cancelled directly.
+   */
+  default void queryCancelled() {
+  }
+}
@@ -0,0 +1,77 @@
+package sample;
+
+/**
+ * Enum to specify which priority queue holds the open nodes of a search.
+ */
+public enum QueueStrategy {
+    /**
+     * indexed 4-ary heap. Accepts every key sequence and has the least
+     * overhead on small maps.
+     */
+    D_ARY_HEAP,
+
+    /**
+     * monotone radix heap. Independent of the cost range,
+     * wins on large maps with expensive or widely spread costs.
+     */
+    RADIX_HEAP,
+
+    /**
+     * Dial's bucket queue. Constant time per operation,
+     * wins on large maps whose costs are small integers.
+     */
+    DIAL_BUCKETS,
+
+    /**
+     * chooses one of the other strategies from the map size and the cost range.
+     */
+    AUTO;
+
+    // maps with fewer nodes are searched with the heap
+    static final int SMALL_GRAPH = 1024;
+    // largest key range Dial's buckets are used for
+    static final int DIAL_MAX_RANGE = 4096;
+
+    /**
+     * Resolves AUTO to a concrete strategy.
+     * Monotone strategies are replaced by the heap if there are negative costs.
+     * A negative key range overflowed the int range and is never given to Dial's buckets.
+     * @param capacity number of nodes of the searched graph
+     * @param minEdgeCosts the lowest costs of a single step
+     * @param maxKeyIncrease the largest difference between an inserted key and the last extracted key
+     * @return the strategy that is used for these parameters
+     */
+    public QueueStrategy resolve(int capacity, int minEdgeCosts, int maxKeyIncrease) {
+        if (minEdgeCosts < 0) {
+            return D_ARY_HEAP;
+        }
+        if (maxKeyIncrease < 0 && (this == AUTO || this == DIAL_BUCKETS)) {
+            return RADIX_HEAP;
+        }
+        if (this != AUTO) {
+            return this;
+        }
+        if (capacity < SMALL_GRAPH) {
+            return D_ARY_HEAP;
+        }
+        return maxKeyIncrease <= DIAL_MAX_RANGE ? DIAL_BUCKETS : RADIX_HEAP;
+    }
+
+    /**
+     * Creates an open set for a search.
+     * @param capacity number of nodes of the searched graph
+     * @param minEdgeCosts the lowest costs of a single step
+     * @param maxKeyIncrease the largest difference between an inserted key and the last extracted key
+     * @return a new empty open set
+     */
+    public OpenSet createOpenSet(int capacity, int minEdgeCosts, int maxKeyIncrease) {
+        switch (resolve(capacity, minEdgeCosts, maxKeyIncrease)) {
+            case RADIX_HEAP:
+                return new RadixHeap(capacity);
+            case DIAL_BUCKETS:
+                return new DialBucketQueue(capacity, maxKeyIncrease);
+            default:
+                return new IndexedDaryHeap(capacity);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package sample;
+
+/**
+ * Cost model of Options.COSTS_AND_NUMBER_POINTS.
+ * The costs of a cell are the costs of its Material multiplied by its
+ * distance to the starting point, rounded down. They are calculated when a
+ * search asks for them, so only the cells a search touches are computed and
+ * the terrain is not copied; later changes of the map are seen as well.
+ * The costs are the same as the ones of TerrainMap.addRadialGradient.
+ * @version 1.0
+ */
+public class RadialGradientCostModel implements CostModel {
+
+  private final TerrainStorage storage;
+  private final int startX;
+  private final int startY;
+
+  /**
+   * Constructor for class RadialGradientCostModel.
+   * @param terrainMap the map whose costs are used
+   * @param start origin of the radial gradient field
+   */
+  public RadialGradientCostModel(TerrainMap terrainMap, Coordinate start) {
+    this(terrainMap, start.getXvalue(), start.getYvalue());
+  }
+
+  /**
+   * Constructor for class RadialGradientCostModel.
+   * @param terrainMap the map whose costs are used
+   * @param startX the x-coordinate of the origin of the gradient
+   * @param startY the y-coordinate of the origin of the gradient
+   */
+  public RadialGradientCostModel(TerrainMap terrainMap, int startX, int startY) {
+    this.storage = terrainMap.getStorage();
+    this.startX = startX;
+    this.startY = startY;
+  }
+
+  @Override
+  public int getLength() {
+    return storage.getLength();
+  }
+
+  @Override
+  public int getHeight() {
+    return storage.getHeight();
+  }
+
+  @Override
+  public int costsAt(int xvalue, int yvalue) {
+    int costs = storage.costsAt(xvalue, yvalue);
+    if (costs == OBSTACLE) {
+      return OBSTACLE;
+    }
+    return scale(costs, distance(xvalue - startX, yvalue - startY));
+  }
+
+  @Override
+  public int getMinCosts() {
+    // every cell but the starting point is at least one step away from it
+    return storage.getMinCosts();
+  }
+
+  @Override
+  public int getMaxCosts() {
+    return scale(storage.getMaxCosts(), distance(storage.getLength(), storage.getHeight()));
+  }
+
+  @Override
+  public void prefetch(int xvalue, int yvalue) {
+    storage.prefetch(xvalue, yvalue);
+  }
+
+  @Override
+  public boolean isChunked() {
+    return storage.isChunked();
+  }
+
+  /**
+   * Multiplies costs by a distance, products beyond the int range are clamped to Integer.MAX_VALUE.
+   */
+  static int scale(int costs, int distance) {
+    return (int) Math.min(Integer.MAX_VALUE, (long) costs * distance);
+  }
+
+  /**
+   * Returns the distance of a cell, rounded down.
+   * The sum of squares is exact, so the square root of the hardware is
+   * exact after rounding down for every distance of a map.
+   */
+  static int distance(int xdistance, int ydistance) {
+    return (int) Math.sqrt((double) ((long) xdistance * xdistance + (long) ydistance * ydistance));
+  }
+}
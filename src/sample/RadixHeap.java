@@ -0,0 +1,169 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Monotone radix heap for non-negative integer keys.
+ * Nodes are kept in 33 buckets by the highest bit in which their key differs
+ * from the last extracted key, so every node moves down at most 32 times.
+ * Keys must never be lower than the last extracted key, which holds for
+ * Dijkstra and for A* with a consistent heuristic.
+ * @version 1.0
+ */
+public class RadixHeap implements OpenSet {
+
+  private static final int BUCKETS = 33;
+
+  // node indices per bucket
+  private final int[][] buckets = new int[BUCKETS][];
+  private final int[] bucketSizes = new int[BUCKETS];
+  // bucket of each node, -1 if it is not contained
+  private int[] bucketOf;
+  // slot of each node inside its bucket
+  private int[] slotOf;
+  private int[] keys;
+  // the last extracted key
+  private int last;
+  private int size;
+
+  /**
+   * Constructor for class RadixHeap.
+   * @param capacity number of nodes of the searched graph
+   */
+  public RadixHeap(int capacity) {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new int[16];
+    }
+    bucketOf = new int[0];
+    slotOf = new int[0];
+    keys = new int[0];
+    ensureCapacity(capacity);
+  }
+
+  @Override
+  public void insert(int node, int key) {
+    if (key < last) {
+      throw new IllegalArgumentException("key " + key + " is lower than last extracted key " + last);
+    }
+    keys[node] = key;
+    addToBucket(node, bucketIndex(key));
+    size++;
+  }
+
+  @Override
+  public void decreaseKey(int node, int key) {
+    if (key < last) {
+      throw new IllegalArgumentException("key " + key + " is lower than last extracted key " + last);
+    }
+    removeFromBucket(node);
+    keys[node] = key;
+    addToBucket(node, bucketIndex(key));
+  }
+
+  @Override
+  public int extractMin() {
+    pullMinIntoFirstBucket();
+    int node = buckets[0][bucketSizes[0] - 1];
+    removeFromBucket(node);
+    size--;
+    return node;
+  }
+
+  @Override
+  public int getMinKey() {
+    pullMinIntoFirstBucket();
+    return last;
+  }
+
+  @Override
+  public boolean contains(int node) {
+    return bucketOf[node] >= 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < BUCKETS; i++) {
+      for (int j = 0; j < bucketSizes[i]; j++) {
+        bucketOf[buckets[i][j]] = -1;
+      }
+      bucketSizes[i] = 0;
+    }
+    size = 0;
+    last = 0;
+  }
+
+  @Override
+  public void ensureCapacity(int capacity) {
+    if (capacity > bucketOf.length) {
+      bucketOf = new int[capacity];
+      slotOf = new int[capacity];
+      keys = new int[capacity];
+      Arrays.fill(bucketOf, -1);
+      Arrays.fill(bucketSizes, 0);
+      size = 0;
+      last = 0;
+    }
+  }
+
+  /**
+   * Makes sure that the nodes with the least key are in bucket zero.
+   */
+  private void pullMinIntoFirstBucket() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    if (bucketSizes[0] > 0) {
+      return;
+    }
+    int index = 1;
+    while (bucketSizes[index] == 0) {
+      index++;
+    }
+    // the least key of the first non empty bucket becomes the new reference
+    int[] bucket = buckets[index];
+    int count = bucketSizes[index];
+    int min = Integer.MAX_VALUE;
+    for (int i = 0; i < count; i++) {
+      min = Math.min(min, keys[bucket[i]]);
+    }
+    last = min;
+    // every node of this bucket moves into a lower bucket
+    bucketSizes[index] = 0;
+    for (int i = 0; i < count; i++) {
+      int node = bucket[i];
+      addToBucket(node, bucketIndex(keys[node]));
+    }
+  }
+
+  private int bucketIndex(int key) {
+    return key == last ? 0 : 32 - Integer.numberOfLeadingZeros(key ^ last);
+  }
+
+  private void addToBucket(int node, int index) {
+    int count = bucketSizes[index];
+    if (count == buckets[index].length) {
+      buckets[index] = Arrays.copyOf(buckets[index], count * 2);
+    }
+    buckets[index][count] = node;
+    bucketOf[node] = index;
+    slotOf[node] = count;
+    bucketSizes[index] = count + 1;
+  }
+
+  private void removeFromBucket(int node) {
+    int index = bucketOf[node];
+    int slot = slotOf[node];
+    int lastSlot = --bucketSizes[index];
+    // move the last node of the bucket into the free slot
+    int moved = buckets[index][lastSlot];
+    buckets[index][slot] = moved;
+    slotOf[moved] = slot;
+    bucketOf[node] = -1;
+  }
+}
@@ -0,0 +1,431 @@
+package sample;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Reusable state of a search over the cells of a map.
+ * Cells are flat indices (y * length + x). Costs and predecessors are
+ * stored in int arrays that are only valid for cells stamped with the
+ * current generation, so starting a new search does not have to clear them.
+ * Once the arrays are large enough a search allocates nothing.
+ * Maps with more than PAGED_CELLS cells keep the state in pages of 4096
+ * cells instead, a page is only created when the search reaches one of its
+ * cells, so a search that stays in a part of a huge map only pays for that part.
+ * A context must only be used by one search at a time.
+ * @version 1.0
+ */
+public final class SearchContext {
+
+  /**
+   * costs of a cell that was not reached yet.
+   */
+  public static final int INFINITE = Integer.MAX_VALUE;
+  /**
+   * predecessor of a cell without predecessor.
+   */
+  public static final int NONE = -1;
+  /**
+   * number of cells above which the state of a search is kept in pages.
+   */
+  public static final int PAGED_CELLS = 1 << 24;
+
+  private static final int PAGE_SHIFT = 12;
+  private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  private final int pagedCells;
+  private int[] costs = new int[0];
+  private int[] predecessors = new int[0];
+  // generation in which costs and predecessor of a cell were set
+  private int[] stamps = new int[0];
+  // bit set of the finished cells
+  private long[] closed = new long[0];
+  private int generation;
+  private int cellCount;
+  // state of the reached cells of a paged search, null while the arrays are used
+  private Page[] pages;
+
+  private OpenSet openSet;
+  private QueueStrategy openSetStrategy;
+  private int openSetRange;
+  // counts the operations on the open set while a query is observed, otherwise null
+  private SearchMeter meter;
+  // the open set handed to the searches, openSet itself if no meter is set
+  private OpenSet activeOpenSet;
+
+  /**
+   * Adds the costs of a step to the costs of a path.
+   * Sums beyond the int range stay at INFINITE - 1, so the keys of the open
+   * sets never wrap around and paths over very expensive cells are still
+   * found, but such paths are no longer told apart by their costs.
+   * @param costs the costs of the path
+   * @param stepCosts the costs of the step
+   * @return the sum, at most INFINITE - 1
+   */
+  public static int addCosts(int costs, long stepCosts) {
+    long sum = costs + stepCosts;
+    return sum < INFINITE ? (int) sum : INFINITE - 1;
+  }
+
+  /**
+   * Constructor for class SearchContext that pages maps with more than PAGED_CELLS cells.
+   */
+  public SearchContext() {
+    this(PAGED_CELLS);
+  }
+
+  /**
+   * Constructor for class SearchContext.
+   * @param pagedCells number of cells above which the state is kept in pages
+   */
+  SearchContext(int pagedCells) {
+    this.pagedCells = pagedCells;
+  }
+
+  /**
+   * Prepares the context for a new search.
+   * Searches of maps with more than PAGED_CELLS cells always use a d-ary
+   * heap whose positions are kept in the pages, the strategy is not used.
+   * @param cellCount number of cells of the searched map
+   * @param strategy the priority queue for the open cells
+   * @param minEdgeCosts the lowest costs of a single step
+   * @param maxKeyIncrease the largest difference between an inserted key and the last extracted key
+   */
+  public void reset(int cellCount, QueueStrategy strategy, int minEdgeCosts, int maxKeyIncrease) {
+    this.cellCount = cellCount;
+    if (cellCount > pagedCells) {
+      resetPages(cellCount);
+      return;
+    }
+    pages = null;
+    if (cellCount > stamps.length) {
+      costs = new int[cellCount];
+      predecessors = new int[cellCount];
+      stamps = new int[cellCount];
+      generation = 0;
+    }
+    int words = (cellCount + 63) >>> 6;
+    if (words > closed.length) {
+      closed = new long[words];
+    } else {
+      Arrays.fill(closed, 0, words, 0L);
+    }
+    generation++;
+    if (generation == Integer.MAX_VALUE) {
+      Arrays.fill(stamps, 0);
+      generation = 1;
+    }
+    QueueStrategy resolved = strategy.resolve(cellCount, minEdgeCosts, maxKeyIncrease);
+    if (openSet == null || resolved != openSetStrategy
+        || (resolved == QueueStrategy.DIAL_BUCKETS && maxKeyIncrease != openSetRange)) {
+      openSet = resolved.createOpenSet(cellCount, minEdgeCosts, maxKeyIncrease);
+      openSetStrategy = resolved;
+      openSetRange = maxKeyIncrease;
+    } else {
+      openSet.ensureCapacity(cellCount);
+      openSet.clear();
+    }
+    updateActiveOpenSet();
+  }
+
+  /**
+   * Prepares a paged search, the arrays of earlier searches are dropped.
+   */
+  private void resetPages(int cellCount) {
+    if (stamps.length > 0) {
+      costs = new int[0];
+      predecessors = new int[0];
+      stamps = new int[0];
+      closed = new long[0];
+    }
+    int pageCount = (cellCount + PAGE_MASK) >>> PAGE_SHIFT;
+    if (pages == null || pageCount > pages.length) {
+      pages = new Page[pageCount];
+    } else {
+      // only the pages the last search reached are kept for the next one
+      for (int i = 0; i < pages.length; i++) {
+        if (pages[i] != null && pages[i].generation != generation) {
+          pages[i] = null;
+        }
+      }
+    }
+    generation++;
+    if (generation == Integer.MAX_VALUE) {
+      Arrays.fill(pages, null);
+      generation = 1;
+    }
+    if (!(openSet instanceof PagedHeap)) {
+      openSet = new PagedHeap();
+      openSetStrategy = null;
+    } else {
+      openSet.clear();
+    }
+    updateActiveOpenSet();
+  }
+
+  /**
+   * Returns the page of a cell if the current search reached it, otherwise null.
+   */
+  private Page currentPage(int cell) {
+    Page page = pages[cell >>> PAGE_SHIFT];
+    return page != null && page.generation == generation ? page : null;
+  }
+
+  /**
+   * Returns the page of a cell, creating or clearing it if the current search did not reach it yet.
+   */
+  private Page reachPage(int cell) {
+    int index = cell >>> PAGE_SHIFT;
+    Page page = pages[index];
+    if (page == null) {
+      page = new Page();
+      pages[index] = page;
+    }
+    if (page.generation != generation) {
+      Arrays.fill(page.costs, INFINITE);
+      Arrays.fill(page.predecessors, NONE);
+      Arrays.fill(page.positions, -1);
+      Arrays.fill(page.closed, 0L);
+      page.generation = generation;
+    }
+    return page;
+  }
+
+  /**
+   * Sets the meter that counts the operations of the following searches.
+   * @param meter the meter of the observed query or null to stop counting
+   */
+  void setMeter(SearchMeter meter) {
+    this.meter = meter;
+    updateActiveOpenSet();
+  }
+
+  private void updateActiveOpenSet() {
+    if (meter == null || openSet == null) {
+      activeOpenSet = openSet;
+    } else if (!(activeOpenSet instanceof CountingOpenSet)
+        || ((CountingOpenSet) activeOpenSet).getOpenSet() != openSet
+        || ((CountingOpenSet) activeOpenSet).getMeter() != meter) {
+      activeOpenSet = new CountingOpenSet(openSet, meter);
+    }
+  }
+
+  /**
+   * Getter for the number of cells of the current search.
+   */
+  public int getCellCount() {
+    return cellCount;
+  }
+
+  /**
+   * Getter for the costs to reach a cell.
+   * @param cell index of the cell
+   * @return the costs or INFINITE if the cell was not reached yet
+   */
+  public int getCosts(int cell) {
+    if (pages != null) {
+      Page page = currentPage(cell);
+      return page == null ? INFINITE : page.costs[cell & PAGE_MASK];
+    }
+    return stamps[cell] == generation ? costs[cell] : INFINITE;
+  }
+
+  /**
+   * Getter for the predecessor of a cell.
+   * @param cell index of the cell
+   * @return the index of the predecessor or NONE
+   */
+  public int getPredecessor(int cell) {
+    if (pages != null) {
+      Page page = currentPage(cell);
+      return page == null ? NONE : page.predecessors[cell & PAGE_MASK];
+    }
+    return stamps[cell] == generation ? predecessors[cell] : NONE;
+  }
+
+  /**
+   * Sets the costs to reach a cell and the cell it is reached from.
+   * @param cell index of the cell
+   * @param costs the costs to reach the cell
+   * @param predecessor index of the predecessor or NONE
+   */
+  public void setCosts(int cell, int costs, int predecessor) {
+    if (pages != null) {
+      Page page = reachPage(cell);
+      page.costs[cell & PAGE_MASK] = costs;
+      page.predecessors[cell & PAGE_MASK] = predecessor;
+      return;
+    }
+    this.costs[cell] = costs;
+    this.predecessors[cell] = predecessor;
+    stamps[cell] = generation;
+  }
+
+  /**
+   * Checks if a cell is finished.
+   * @param cell index of the cell
+   */
+  public boolean isClosed(int cell) {
+    if (pages != null) {
+      Page page = currentPage(cell);
+      return page != null && (page.closed[(cell & PAGE_MASK) >>> 6] & (1L << cell)) != 0;
+    }
+    return (closed[cell >>> 6] & (1L << cell)) != 0;
+  }
+
+  /**
+   * Marks a cell as finished.
+   * @param cell index of the cell
+   */
+  public void close(int cell) {
+    if (pages != null) {
+      reachPage(cell).closed[(cell & PAGE_MASK) >>> 6] |= 1L << cell;
+      return;
+    }
+    closed[cell >>> 6] |= 1L << cell;
+  }
+
+  /**
+   * Getter for the priority queue of the open cells.
+   */
+  public OpenSet getOpenSet() {
+    return activeOpenSet;
+  }
+
+  /**
+   * State of the cells of one page, valid while its generation is the current one.
+   */
+  private static final class Page {
+    private int generation;
+    private final int[] costs = new int[PAGE_SIZE];
+    private final int[] predecessors = new int[PAGE_SIZE];
+    // position of every open cell in the paged heap, -1 if it is not open
+    private final int[] positions = new int[PAGE_SIZE];
+    private final long[] closed = new long[PAGE_SIZE >>> 6];
+  }
+
+  /**
+   * Indexed 4-ary min heap of a paged search.
+   * The keys are kept next to the nodes and the positions in the pages, so
+   * the heap only grows with the open cells and not with the map.
+   */
+  private final class PagedHeap implements OpenSet {
+
+    private static final int ARITY = 4;
+
+    private int[] heap = new int[64];
+    private int[] keys = new int[64];
+    private int size;
+
+    @Override
+    public void insert(int node, int key) {
+      reachPage(node);
+      if (size == heap.length) {
+        heap = Arrays.copyOf(heap, size * 2);
+        keys = Arrays.copyOf(keys, size * 2);
+      }
+      siftUp(size++, node, key);
+    }
+
+    @Override
+    public void decreaseKey(int node, int key) {
+      siftUp(pages[node >>> PAGE_SHIFT].positions[node & PAGE_MASK], node, key);
+    }
+
+    @Override
+    public int extractMin() {
+      if (size == 0) {
+        throw new NoSuchElementException();
+      }
+      int out = heap[0];
+      pages[out >>> PAGE_SHIFT].positions[out & PAGE_MASK] = -1;
+      size--;
+      if (size > 0) {
+        siftDown(heap[size], keys[size]);
+      }
+      return out;
+    }
+
+    @Override
+    public int getMinKey() {
+      if (size == 0) {
+        throw new NoSuchElementException();
+      }
+      return keys[0];
+    }
+
+    @Override
+    public boolean contains(int node) {
+      Page page = currentPage(node);
+      return page != null && page.positions[node & PAGE_MASK] >= 0;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void clear() {
+      for (int i = 0; i < size; i++) {
+        // pages of an earlier search are cleared when they are reached again
+        Page page = currentPage(heap[i]);
+        if (page != null) {
+          page.positions[heap[i] & PAGE_MASK] = -1;
+        }
+      }
+      size = 0;
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+      // the heap grows with the open cells
+    }
+
+    private void siftUp(int index, int node, int key) {
+      while (index > 0) {
+        int parentIndex = (index - 1) / ARITY;
+        if (keys[parentIndex] <= key) {
+          break;
+        }
+        place(index, heap[parentIndex], keys[parentIndex]);
+        index = parentIndex;
+      }
+      place(index, node, key);
+    }
+
+    /**
+     * Moves a node down from the root to its position.
+     */
+    private void siftDown(int node, int key) {
+      int index = 0;
+      while (true) {
+        int firstChild = index * ARITY + 1;
+        if (firstChild >= size) {
+          break;
+        }
+        // find the child with the least key
+        int lastChild = Math.min(firstChild + ARITY, size);
+        int bestIndex = firstChild;
+        for (int child = firstChild + 1; child < lastChild; child++) {
+          if (keys[child] < keys[bestIndex]) {
+            bestIndex = child;
+          }
+        }
+        if (keys[bestIndex] >= key) {
+          break;
+        }
+        place(index, heap[bestIndex], keys[bestIndex]);
+        index = bestIndex;
+      }
+      place(index, node, key);
+    }
+
+    private void place(int index, int node, int key) {
+      heap[index] = node;
+      keys[index] = key;
+      pages[node >>> PAGE_SHIFT].positions[node & PAGE_MASK] = index;
+    }
+  }
+}
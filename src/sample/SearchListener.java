@@ -0,0 +1,26 @@
+package sample;
+
+/**
+ * Listener that is informed about every query of a PathFinder.
+ * The searches only count while a listener is registered, so a PathFinder
+ * without listeners has no measuring overhead.
+ * The listener is called by the thread of the query after the path was found.
+ * While the search runs it is told the progress every few thousand expanded
+ * nodes, by the threads that search the legs of the query.
+ * @version 1.0
+ */
+public interface SearchListener {
+
+  /**
+   * Called after a query found its path or found that there is none.
+   * @param statistics the counters and times of the query
+   */
+  void searchFinished(SearchStatistics statistics);
+
+  /**
+   * Called while a query is searched, the nodes are counted in steps of a few thousand.
+   * @param expandedNodes the nodes all legs of the query expanded so far
+   */
+  default void searchProgress(long expandedNodes) {
+  }
+}
@@ -0,0 +1,96 @@
+package sample;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of one query that is observed by a SearchListener.
+ * A meter is only created if somebody listens, otherwise the searches do not count.
+ * Every CHECKPOINT_INTERVAL expanded nodes the meter tells the listeners about
+ * the progress and stops the query if the thread that started it was interrupted.
+ * @version 1.0
+ */
+final class SearchMeter {
+
+  /**
+   * expanded nodes between two checks for progress and cancellation.
+   */
+  static final int CHECKPOINT_INTERVAL = 4096;
+
+  long expandedNodes;
+  long relaxedNodes;
+  int openSetPeak;
+  long queueOperations;
+  long prepareNanos;
+  long pathNanos;
+
+  // the meter of the whole query, this meter itself if it does not count a leg
+  private final SearchMeter query;
+  // thread that started the query, it is interrupted to cancel it
+  private final Thread thread;
+  private final List<SearchListener> listeners;
+  // expanded nodes of the query and all its legs that were reported as progress
+  private final AtomicLong reportedNodes;
+  private int untilCheckpoint = CHECKPOINT_INTERVAL;
+
+  /**
+   * Constructor for the meter of a query started by the current thread.
+   * @param listeners the listeners that are told about the progress
+   */
+  SearchMeter(List<SearchListener> listeners) {
+    this.query = this;
+    this.thread = Thread.currentThread();
+    this.listeners = listeners;
+    this.reportedNodes = new AtomicLong();
+  }
+
+  /**
+   * Constructor for the meter of a leg of a query, the leg may be searched by another thread.
+   * @param query the meter of the query
+   */
+  SearchMeter(SearchMeter query) {
+    this.query = query;
+    this.thread = query.thread;
+    this.listeners = query.listeners;
+    this.reportedNodes = query.reportedNodes;
+  }
+
+  /**
+   * Counts an expanded node and reaches a checkpoint every CHECKPOINT_INTERVAL nodes.
+   * @throws CancellationException if the thread of the query was interrupted
+   */
+  void expanded() {
+    expandedNodes++;
+    if (--untilCheckpoint == 0) {
+      untilCheckpoint = CHECKPOINT_INTERVAL;
+      checkpoint();
+    }
+  }
+
+  /**
+   * Stops the query if it was cancelled, otherwise reports the nodes of all legs so far.
+   */
+  private void checkpoint() {
+    // the interrupted flag is only read, the thread that started the query keeps it
+    if (thread.isInterrupted()) {
+      throw new CancellationException("the search was cancelled");
+    }
+    long nodes = reportedNodes.addAndGet(CHECKPOINT_INTERVAL);
+    for (SearchListener listener : listeners) {
+      listener.searchProgress(nodes);
+    }
+  }
+
+  /**
+   * Adds the counters of a leg that was searched by another finder.
+   * The times are not added, they overlap with the ones of this query.
+   * @param leg the counters of the leg
+   */
+  synchronized void addCounters(SearchMeter leg) {
+    expandedNodes += leg.expandedNodes;
+    relaxedNodes += leg.relaxedNodes;
+    openSetPeak = Math.max(openSetPeak, leg.openSetPeak);
+    queueOperations += leg.queueOperations;
+  }
+}
@@ -0,0 +1,238 @@
+package sample;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SearchListener that aggregates the statistics of all queries into histograms.
+ * The histograms have exponential buckets with powers of two as upper bounds
+ * and report cumulative bucket counts, so they can be exported directly as
+ * Micrometer or Prometheus histograms. The names use the dotted style of
+ * Micrometer, times are in nanoseconds.
+ * The metrics can be shared by several PathFinders and threads.
+ * @version 1.0
+ */
+public class SearchMetrics implements SearchListener {
+
+  /**
+   * time spent creating the costs of the terrain.
+   */
+  public static final String PREPARE_TIME = "pathfinder.prepare.time";
+  /**
+   * time spent searching.
+   */
+  public static final String SEARCH_TIME = "pathfinder.search.time";
+  /**
+   * time spent turning the found cells into the path.
+   */
+  public static final String PATH_TIME = "pathfinder.path.time";
+  /**
+   * nodes taken out of the open sets.
+   */
+  public static final String EXPANDED_NODES = "pathfinder.expanded.nodes";
+  /**
+   * nodes put into the open sets or lowered in them.
+   */
+  public static final String RELAXED_NODES = "pathfinder.relaxed.nodes";
+  /**
+   * largest number of nodes in one open set.
+   */
+  public static final String OPEN_SET_PEAK = "pathfinder.open.set.peak";
+  /**
+   * inserts, decreases and removals of the open sets.
+   */
+  public static final String QUEUE_OPERATIONS = "pathfinder.queue.operations";
+  /**
+   * estimated bytes allocated by the thread of a query.
+   */
+  public static final String ALLOCATED_BYTES = "pathfinder.allocated.bytes";
+  /**
+   * number of points of the found paths.
+   */
+  public static final String PATH_LENGTH = "pathfinder.path.length";
+
+  private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+  private final LongAdder queriesWithoutPath = new LongAdder();
+
+  /**
+   * Constructor for class SearchMetrics.
+   */
+  public SearchMetrics() {
+    for (String name : new String[] {PREPARE_TIME, SEARCH_TIME, PATH_TIME, EXPANDED_NODES,
+        RELAXED_NODES, OPEN_SET_PEAK, QUEUE_OPERATIONS, ALLOCATED_BYTES, PATH_LENGTH}) {
+      histograms.put(name, new Histogram());
+    }
+  }
+
+  @Override
+  public void searchFinished(SearchStatistics statistics) {
+    histograms.get(PREPARE_TIME).record(statistics.getPrepareNanos());
+    histograms.get(SEARCH_TIME).record(statistics.getSearchNanos());
+    histograms.get(PATH_TIME).record(statistics.getPathNanos());
+    histograms.get(EXPANDED_NODES).record(statistics.getExpandedNodes());
+    histograms.get(RELAXED_NODES).record(statistics.getRelaxedNodes());
+    histograms.get(OPEN_SET_PEAK).record(statistics.getOpenSetPeak());
+    histograms.get(QUEUE_OPERATIONS).record(statistics.getQueueOperations());
+    if (statistics.getAllocatedBytes() >= 0) {
+      histograms.get(ALLOCATED_BYTES).record(statistics.getAllocatedBytes());
+    }
+    if (statistics.getPathLength() == 0) {
+      queriesWithoutPath.increment();
+    } else {
+      histograms.get(PATH_LENGTH).record(statistics.getPathLength());
+    }
+  }
+
+  /**
+   * Getter for the number of observed queries.
+   */
+  public long getQueries() {
+    return histograms.get(SEARCH_TIME).getCount();
+  }
+
+  /**
+   * Getter for the number of observed queries that found no path.
+   */
+  public long getQueriesWithoutPath() {
+    return queriesWithoutPath.sum();
+  }
+
+  /**
+   * Getter for a histogram.
+   * @param name one of the names defined by this class
+   * @return the histogram
+   */
+  public Histogram getHistogram(String name) {
+    Histogram histogram = histograms.get(name);
+    if (histogram == null) {
+      throw new IllegalArgumentException("unknown histogram " + name);
+    }
+    return histogram;
+  }
+
+  /**
+   * Getter for all histograms by their names.
+   */
+  public Map<String, Histogram> getHistograms() {
+    return Collections.unmodifiableMap(histograms);
+  }
+
+  /**
+   * Forgets all recorded values.
+   */
+  public void reset() {
+    for (Histogram histogram : histograms.values()) {
+      histogram.reset();
+    }
+    queriesWithoutPath.reset();
+  }
+
+  /**
+   * Histogram of non-negative values with the powers of two as bucket bounds.
+   * Recording is lock free, a histogram that is read while values are recorded
+   * may be off by the values recorded at that moment.
+   */
+  public static final class Histogram {
+
+    // bucket i counts the values up to 2^i, the last bucket all larger values
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Histogram() {
+    }
+
+    void record(long value) {
+      long positive = Math.max(0, value);
+      int bucket = positive <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(positive - 1);
+      buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+      count.increment();
+      sum.add(positive);
+      max.accumulate(positive);
+    }
+
+    void reset() {
+      for (int i = 0; i < BUCKETS; i++) {
+        buckets.set(i, 0);
+      }
+      count.reset();
+      sum.reset();
+      max.reset();
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    public long getSum() {
+      return sum.sum();
+    }
+
+    public long getMax() {
+      return max.get();
+    }
+
+    public double getMean() {
+      long values = getCount();
+      return values == 0 ? 0 : (double) getSum() / values;
+    }
+
+    /**
+     * Getter for the upper bounds of the buckets.
+     * @return the bounds 1, 2, 4, ... 2^62 and Long.MAX_VALUE
+     */
+    public long[] getBucketUpperBounds() {
+      long[] bounds = new long[BUCKETS];
+      for (int i = 0; i < BUCKETS - 1; i++) {
+        bounds[i] = 1L << i;
+      }
+      bounds[BUCKETS - 1] = Long.MAX_VALUE;
+      return bounds;
+    }
+
+    /**
+     * Getter for the cumulative counts of the buckets.
+     * @return at index i the number of values up to the i-th upper bound
+     */
+    public long[] getCumulativeBucketCounts() {
+      long[] counts = new long[BUCKETS];
+      long total = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        total += buckets.get(i);
+        counts[i] = total;
+      }
+      return counts;
+    }
+
+    /**
+     * Estimates a percentile by the upper bound of the bucket it falls into.
+     * @param percentile the percentile between 0 and 1
+     * @return an upper bound of the percentile, 0 if nothing was recorded
+     */
+    public long getPercentileUpperBound(double percentile) {
+      if (percentile < 0 || percentile > 1) {
+        throw new IllegalArgumentException("percentile must be between 0 and 1");
+      }
+      long[] counts = getCumulativeBucketCounts();
+      long total = counts[BUCKETS - 1];
+      if (total == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile * total));
+      long[] bounds = getBucketUpperBounds();
+      for (int i = 0; i < BUCKETS; i++) {
+        if (counts[i] >= rank) {
+          return Math.min(bounds[i], getMax());
+        }
+      }
+      return getMax();
+    }
+  }
+}
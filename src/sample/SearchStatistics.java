@@ -0,0 +1,134 @@
+package sample;
+
+/**
+ * Counters and times of one query of a PathFinder.
+ * The counters are read from the open sets of the searches: every node taken
+ * out of an open set counts as expanded, every node put into an open set or
+ * lowered in it counts as relaxed. Searches that keep their own queues, like
+ * the local searches inside the clusters of HierarchicalPathFinder or the
+ * plans of IncrementalPathFinder, are only counted as far as they report
+ * their expanded nodes.
+ * @version 1.0
+ */
+public final class SearchStatistics {
+
+  private final String pathFinder;
+  private final Options option;
+  private final int intermediatePoints;
+  private final int pathLength;
+  private final long expandedNodes;
+  private final long relaxedNodes;
+  private final int openSetPeak;
+  private final long queueOperations;
+  private final long prepareNanos;
+  private final long searchNanos;
+  private final long pathNanos;
+  private final long allocatedBytes;
+
+  SearchStatistics(String pathFinder, Options option, int intermediatePoints, int pathLength,
+                   SearchMeter meter, long searchNanos, long allocatedBytes) {
+    this.pathFinder = pathFinder;
+    this.option = option;
+    this.intermediatePoints = intermediatePoints;
+    this.pathLength = pathLength;
+    this.expandedNodes = meter.expandedNodes;
+    this.relaxedNodes = meter.relaxedNodes;
+    this.openSetPeak = meter.openSetPeak;
+    this.queueOperations = meter.queueOperations;
+    this.prepareNanos = meter.prepareNanos;
+    this.searchNanos = searchNanos;
+    this.pathNanos = meter.pathNanos;
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  /**
+   * Getter for the simple class name of the PathFinder that answered the query.
+   */
+  public String getPathFinder() {
+    return pathFinder;
+  }
+
+  public Options getOption() {
+    return option;
+  }
+
+  public int getIntermediatePoints() {
+    return intermediatePoints;
+  }
+
+  /**
+   * Getter for the number of points of the found path, 0 if there is none.
+   */
+  public int getPathLength() {
+    return pathLength;
+  }
+
+  /**
+   * Getter for the number of nodes taken out of the open sets.
+   */
+  public long getExpandedNodes() {
+    return expandedNodes;
+  }
+
+  /**
+   * Getter for the number of nodes put into the open sets or lowered in them.
+   */
+  public long getRelaxedNodes() {
+    return relaxedNodes;
+  }
+
+  /**
+   * Getter for the largest number of nodes in one open set at the same time.
+   */
+  public int getOpenSetPeak() {
+    return openSetPeak;
+  }
+
+  /**
+   * Getter for the number of inserts, decreases and removals of the open sets.
+   */
+  public long getQueueOperations() {
+    return queueOperations;
+  }
+
+  /**
+   * Getter for the time spent creating the costs of the terrain.
+   * Legs that are searched in parallel prepare their costs within the search time.
+   */
+  public long getPrepareNanos() {
+    return prepareNanos;
+  }
+
+  /**
+   * Getter for the time spent searching, without preparing the terrain.
+   */
+  public long getSearchNanos() {
+    return searchNanos;
+  }
+
+  /**
+   * Getter for the time spent turning the found cells into the path.
+   */
+  public long getPathNanos() {
+    return pathNanos;
+  }
+
+  /**
+   * Getter for the estimated bytes allocated by the thread of the query.
+   * Legs searched by other threads are not included.
+   * @return the bytes or -1 if the runtime can not measure them
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return pathFinder + " " + option + " over " + intermediatePoints
+        + " intermediate points: path " + pathLength
+        + ", expanded " + expandedNodes + ", relaxed " + relaxedNodes
+        + ", open set peak " + openSetPeak + ", queue operations " + queueOperations
+        + ", prepare " + prepareNanos / 1000 + " us, search " + searchNanos / 1000
+        + " us, path " + pathNanos / 1000 + " us, allocated " + allocatedBytes + " bytes";
+  }
+}
@@ -0,0 +1,725 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.application.Platform;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
+
+/**
+ * View of a TerrainMap that only draws the visible part of the map onto one Canvas.
+ * The map is rendered in tiles of TILE_SIZE x TILE_SIZE pixels. A tile of
+ * level 0 shows one cell per pixel, a tile of level n shows 2^n x 2^n cells
+ * per pixel, so a zoomed out view of a huge map draws about as many pixels
+ * as the view has. A pixel of a coarse level shows the darkest cell of its
+ * whole block, so thin walls stay visible when the view is zoomed out. A
+ * tile is built from the cached tiles of the level below, blocks without
+ * cached tiles are reduced from the cells. Rendered tiles are cached; changed
+ * cells only mark their tiles dirty and only the dirty tiles are rendered and
+ * drawn again.
+ * Dragging pans the view, the mouse wheel zooms around the mouse pointer and
+ * a click selects a cell. When the cells are large enough the grid and the
+ * costs of the cells are drawn as well.
+ * The view must be used on the JavaFX application thread, the map may be
+ * changed by any thread.
+ * @version 1.0
+ */
+public class TerrainCanvasView extends Region implements TerrainListener {
+
+  /**
+   * length and height of a tile in pixels.
+   */
+  public static final int TILE_SIZE = 64;
+  /**
+   * smallest size of a cell in pixels.
+   */
+  public static final double MIN_SCALE = 1.0 / 256;
+  /**
+   * largest size of a cell in pixels.
+   */
+  public static final double MAX_SCALE = 64;
+
+  // cell sizes from which on the grid and the costs are drawn
+  private static final double GRID_SCALE = 8;
+  private static final double LABEL_SCALE = 24;
+  // cell size used for small maps when they are shown for the first time
+  private static final double DEFAULT_SCALE = 30;
+  // rendered tiles kept in memory, about 16 KB each
+  private static final int MAX_TILES = 2048;
+  private static final int OBSTACLE_COLOR = 0xFF000000;
+  private static final Color GRID_COLOR = Color.gray(0.6);
+  private static final Color SELECTION_COLOR = Color.CORNFLOWERBLUE;
+  private static final Color BACKGROUND_COLOR = Color.gray(0.85);
+
+  private final Canvas canvas = new Canvas();
+  private final Pane overlay = new Pane();
+  private final Translate overlayTranslate = new Translate();
+  private final Scale overlayScale = new Scale();
+  // rendered tiles in the order of their last use
+  private final LinkedHashMap<Long, Tile> tiles = new LinkedHashMap<>(256, 0.75f, true);
+  // keys of the level 0 tiles with changed cells, filled by any thread
+  private final Set<Long> changedTiles = new HashSet<>();
+  private final AtomicBoolean redrawRequested = new AtomicBoolean();
+  private final List<Runnable> viewListeners = new ArrayList<>();
+  // pixels of the tile that is rendered and of one of its cached children
+  private final int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+  private final int[] childPixels = new int[TILE_SIZE * TILE_SIZE];
+  private TerrainMap terrainMap;
+  private double scale = DEFAULT_SCALE;
+  // position of the top left pixel of the view in pixels of the whole map
+  private double offsetX;
+  private double offsetY;
+  private boolean fitOnLayout;
+  private boolean fullRedraw = true;
+  private int selectedX = -1;
+  private int selectedY = -1;
+  private CellHandler cellHandler;
+  private double dragX;
+  private double dragY;
+
+  /**
+   * Constructor for class TerrainCanvasView.
+   */
+  public TerrainCanvasView() {
+    overlay.setManaged(false);
+    overlay.setMouseTransparent(true);
+    overlay.getTransforms().addAll(overlayTranslate, overlayScale);
+    getChildren().addAll(canvas, overlay);
+    Rectangle clip = new Rectangle();
+    clip.widthProperty().bind(widthProperty());
+    clip.heightProperty().bind(heightProperty());
+    setClip(clip);
+    setMinSize(0, 0);
+    setPrefSize(400, 300);
+    canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, this::mousePressed);
+    canvas.addEventHandler(MouseEvent.MOUSE_DRAGGED, this::mouseDragged);
+    canvas.addEventHandler(MouseEvent.MOUSE_CLICKED, this::mouseClicked);
+    canvas.addEventHandler(ScrollEvent.SCROLL, this::scrolled);
+  }
+
+  public TerrainMap getTerrainMap() {
+    return terrainMap;
+  }
+
+  /**
+   * Shows another map and fits it into the view if it is too large for the default cell size.
+   * @param terrainMap the map to show, null for none
+   */
+  public void setTerrainMap(TerrainMap terrainMap) {
+    if (this.terrainMap != null) {
+      this.terrainMap.removeTerrainListener(this);
+    }
+    this.terrainMap = terrainMap;
+    if (terrainMap != null) {
+      terrainMap.addTerrainListener(this);
+    }
+    tiles.clear();
+    synchronized (changedTiles) {
+      changedTiles.clear();
+    }
+    selectedX = -1;
+    selectedY = -1;
+    scale = DEFAULT_SCALE;
+    offsetX = 0;
+    offsetY = 0;
+    fitOnLayout = true;
+    requestLayout();
+    updateView();
+  }
+
+  /**
+   * Stops listening to the map.
+   */
+  public void release() {
+    setTerrainMap(null);
+  }
+
+  /**
+   * Getter for the pane drawn above the map, its coordinates are cells.
+   * The point (x + 0.5, y + 0.5) of the pane is the center of the cell (x, y)
+   * at every zoom and pan.
+   */
+  public Pane getOverlay() {
+    return overlay;
+  }
+
+  /**
+   * Registers a listener that is called after every zoom or pan.
+   * @param listener the listener to add
+   */
+  public void addViewListener(Runnable listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException();
+    }
+    viewListeners.add(listener);
+  }
+
+  public void removeViewListener(Runnable listener) {
+    viewListeners.remove(listener);
+  }
+
+  /**
+   * Getter for the size of a cell in pixels.
+   */
+  public double getScale() {
+    return scale;
+  }
+
+  /**
+   * Zooms around a point of the view.
+   * @param factor the factor the cells grow by, below 1 to zoom out
+   * @param pivotX the x-coordinate of the point in the view that keeps its cell
+   * @param pivotY the y-coordinate of the point in the view that keeps its cell
+   */
+  public void zoom(double factor, double pivotX, double pivotY) {
+    double newScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+    offsetX = (offsetX + pivotX) / scale * newScale - pivotX;
+    offsetY = (offsetY + pivotY) / scale * newScale - pivotY;
+    scale = newScale;
+    updateView();
+  }
+
+  /**
+   * Moves the view.
+   * @param deltaX the pixels the map moves to the right
+   * @param deltaY the pixels the map moves down
+   */
+  public void pan(double deltaX, double deltaY) {
+    offsetX -= deltaX;
+    offsetY -= deltaY;
+    updateView();
+  }
+
+  /**
+   * Sets the handler that is called when a cell is clicked.
+   * @param cellHandler the handler or null for none
+   */
+  public void setOnCellClicked(CellHandler cellHandler) {
+    this.cellHandler = cellHandler;
+  }
+
+  /**
+   * Highlights a cell.
+   * @param xvalue the x-coordinate of the cell, -1 to remove the highlight
+   * @param yvalue the y-coordinate of the cell, -1 to remove the highlight
+   */
+  public void select(int xvalue, int yvalue) {
+    markChanged(selectedX, selectedY);
+    selectedX = xvalue;
+    selectedY = yvalue;
+    markChanged(selectedX, selectedY);
+    requestRedraw();
+  }
+
+  /**
+   * Getter for the x-coordinate of the highlighted cell.
+   * @return the coordinate or -1 if no cell is highlighted
+   */
+  public int getSelectedX() {
+    return selectedX;
+  }
+
+  /**
+   * Getter for the y-coordinate of the highlighted cell.
+   * @return the coordinate or -1 if no cell is highlighted
+   */
+  public int getSelectedY() {
+    return selectedY;
+  }
+
+  /**
+   * Returns the column of the cell under a point of the view.
+   * @param viewX the x-coordinate in the view
+   * @return the column, may be outside of the map
+   */
+  public int cellX(double viewX) {
+    return (int) Math.floor((offsetX + viewX) / scale);
+  }
+
+  /**
+   * Returns the row of the cell under a point of the view.
+   * @param viewY the y-coordinate in the view
+   * @return the row, may be outside of the map
+   */
+  public int cellY(double viewY) {
+    return (int) Math.floor((offsetY + viewY) / scale);
+  }
+
+  @Override
+  public void cellChanged(TerrainMap terrainMap, int xvalue, int yvalue) {
+    markChanged(xvalue, yvalue);
+    requestRedraw();
+  }
+
+  @Override
+  public void mapChanged(TerrainMap terrainMap) {
+    Platform.runLater(() -> {
+      if (terrainMap == this.terrainMap) {
+        tiles.clear();
+        updateView();
+      }
+    });
+  }
+
+  @Override
+  protected void layoutChildren() {
+    double width = getWidth();
+    double height = getHeight();
+    if (canvas.getWidth() != width || canvas.getHeight() != height) {
+      canvas.setWidth(width);
+      canvas.setHeight(height);
+      fullRedraw = true;
+    }
+    if (fitOnLayout && terrainMap != null && width > 0 && height > 0) {
+      fitOnLayout = false;
+      double fit = Math.min(width / terrainMap.getLength(), height / terrainMap.getHeight());
+      scale = Math.max(MIN_SCALE, Math.min(DEFAULT_SCALE, fit));
+      updateView();
+    }
+    if (fullRedraw) {
+      redraw();
+    }
+  }
+
+  private void mousePressed(MouseEvent event) {
+    dragX = event.getX();
+    dragY = event.getY();
+  }
+
+  private void mouseDragged(MouseEvent event) {
+    pan(event.getX() - dragX, event.getY() - dragY);
+    dragX = event.getX();
+    dragY = event.getY();
+  }
+
+  private void mouseClicked(MouseEvent event) {
+    if (!event.isStillSincePress() || event.getButton() != MouseButton.PRIMARY || terrainMap == null) {
+      return;
+    }
+    int xvalue = cellX(event.getX());
+    int yvalue = cellY(event.getY());
+    if (xvalue < 0 || yvalue < 0 || xvalue >= terrainMap.getLength()
+        || yvalue >= terrainMap.getHeight()) {
+      return;
+    }
+    select(xvalue, yvalue);
+    if (cellHandler != null) {
+      cellHandler.cellClicked(xvalue, yvalue);
+    }
+  }
+
+  private void scrolled(ScrollEvent event) {
+    if (event.getDeltaY() != 0) {
+      zoom(Math.pow(1.002, event.getDeltaY()), event.getX(), event.getY());
+    }
+    event.consume();
+  }
+
+  /**
+   * Redraws the whole view after the position or the size of the cells changed.
+   */
+  private void updateView() {
+    if (terrainMap != null) {
+      // at least a quarter of the view keeps showing the map
+      double mapWidth = terrainMap.getLength() * scale;
+      double mapHeight = terrainMap.getHeight() * scale;
+      offsetX = Math.max(-0.75 * getWidth(), Math.min(mapWidth - 0.25 * getWidth(), offsetX));
+      offsetY = Math.max(-0.75 * getHeight(), Math.min(mapHeight - 0.25 * getHeight(), offsetY));
+    }
+    overlayTranslate.setX(-offsetX);
+    overlayTranslate.setY(-offsetY);
+    overlayScale.setX(scale);
+    overlayScale.setY(scale);
+    for (Runnable listener : viewListeners) {
+      listener.run();
+    }
+    fullRedraw = true;
+    requestRedraw();
+  }
+
+  /**
+   * Marks the level 0 tile of a cell as changed.
+   */
+  private void markChanged(int xvalue, int yvalue) {
+    if (xvalue < 0 || yvalue < 0) {
+      return;
+    }
+    synchronized (changedTiles) {
+      changedTiles.add(key(0, xvalue / TILE_SIZE, yvalue / TILE_SIZE));
+    }
+  }
+
+  /**
+   * Draws the view on the application thread, several requests are drawn once.
+   */
+  private void requestRedraw() {
+    if (redrawRequested.compareAndSet(false, true)) {
+      Platform.runLater(this::redraw);
+    }
+  }
+
+  private void redraw() {
+    redrawRequested.set(false);
+    GraphicsContext graphics = canvas.getGraphicsContext2D();
+    double width = canvas.getWidth();
+    double height = canvas.getHeight();
+    if (terrainMap == null) {
+      graphics.setFill(BACKGROUND_COLOR);
+      graphics.fillRect(0, 0, width, height);
+      fullRedraw = false;
+      return;
+    }
+    int level = level();
+    List<Tile> dirty = invalidateChangedTiles(level);
+    graphics.setImageSmoothing(false);
+    if (fullRedraw) {
+      fullRedraw = false;
+      graphics.setFill(BACKGROUND_COLOR);
+      graphics.fillRect(0, 0, width, height);
+      double tilePixels = (double) (TILE_SIZE << level) * scale;
+      int firstX = (int) Math.max(0, Math.floor(offsetX / tilePixels));
+      int firstY = (int) Math.max(0, Math.floor(offsetY / tilePixels));
+      int lastX = (int) Math.min(tileCount(terrainMap.getLength(), level) - 1,
+          Math.floor((offsetX + width) / tilePixels));
+      int lastY = (int) Math.min(tileCount(terrainMap.getHeight(), level) - 1,
+          Math.floor((offsetY + height) / tilePixels));
+      for (int tileY = firstY; tileY <= lastY; tileY++) {
+        for (int tileX = firstX; tileX <= lastX; tileX++) {
+          drawTile(graphics, tile(level, tileX, tileY));
+        }
+      }
+      drawDetails(graphics, 0, 0, width, height);
+      return;
+    }
+    // only the changed tiles of the shown level are drawn again
+    for (Tile tile : dirty) {
+      double[] bounds = bounds(tile);
+      if (bounds[0] + bounds[2] < 0 || bounds[1] + bounds[3] < 0
+          || bounds[0] > width || bounds[1] > height) {
+        continue;
+      }
+      graphics.save();
+      graphics.beginPath();
+      graphics.rect(bounds[0], bounds[1], bounds[2], bounds[3]);
+      graphics.clip();
+      graphics.setFill(BACKGROUND_COLOR);
+      graphics.fillRect(bounds[0], bounds[1], bounds[2], bounds[3]);
+      drawTile(graphics, tile);
+      drawDetails(graphics, bounds[0], bounds[1], bounds[2], bounds[3]);
+      graphics.restore();
+    }
+  }
+
+  /**
+   * Marks the cached tiles of all levels that contain changed cells as dirty.
+   * @param level the level that is shown
+   * @return the dirty tiles of the shown level
+   */
+  private List<Tile> invalidateChangedTiles(int level) {
+    Long[] changed;
+    synchronized (changedTiles) {
+      changed = changedTiles.toArray(new Long[0]);
+      changedTiles.clear();
+    }
+    List<Tile> dirty = new ArrayList<>();
+    Set<Long> seen = new HashSet<>();
+    for (long key : changed) {
+      int tileX = (int) (key & 0x1FFFFFFF);
+      int tileY = (int) ((key >>> 29) & 0x1FFFFFFF);
+      for (int tileLevel = 0; tileLevel <= maxLevel(); tileLevel++) {
+        Tile tile = tiles.get(key(tileLevel, tileX >> tileLevel, tileY >> tileLevel));
+        if (tile == null) {
+          continue;
+        }
+        tile.dirty = true;
+        if (tileLevel == level && seen.add(key(tileLevel, tile.tileX, tile.tileY))) {
+          dirty.add(tile);
+        }
+      }
+    }
+    return dirty;
+  }
+
+  private void drawTile(GraphicsContext graphics, Tile tile) {
+    if (tile.dirty) {
+      render(tile);
+    }
+    double[] bounds = bounds(tile);
+    graphics.drawImage(tile.image, bounds[0], bounds[1], bounds[2], bounds[3]);
+  }
+
+  /**
+   * Draws the grid, the costs and the highlighted cell inside a part of the view.
+   */
+  private void drawDetails(GraphicsContext graphics, double left, double top, double width,
+                           double height) {
+    int firstX = Math.max(0, cellX(left));
+    int firstY = Math.max(0, cellY(top));
+    int lastX = Math.min(terrainMap.getLength() - 1, cellX(left + width));
+    int lastY = Math.min(terrainMap.getHeight() - 1, cellY(top + height));
+    if (selectedX >= firstX && selectedX <= lastX && selectedY >= firstY && selectedY <= lastY) {
+      graphics.setFill(SELECTION_COLOR);
+      graphics.fillRect(selectedX * scale - offsetX, selectedY * scale - offsetY,
+          Math.max(1, scale), Math.max(1, scale));
+    }
+    if (scale < GRID_SCALE || firstX > lastX || firstY > lastY) {
+      return;
+    }
+    graphics.setStroke(GRID_COLOR);
+    graphics.setLineWidth(1);
+    for (int x = firstX; x <= lastX + 1; x++) {
+      double pixelX = Math.floor(x * scale - offsetX) + 0.5;
+      graphics.strokeLine(pixelX, firstY * scale - offsetY, pixelX, (lastY + 1) * scale - offsetY);
+    }
+    for (int y = firstY; y <= lastY + 1; y++) {
+      double pixelY = Math.floor(y * scale - offsetY) + 0.5;
+      graphics.strokeLine(firstX * scale - offsetX, pixelY, (lastX + 1) * scale - offsetX, pixelY);
+    }
+    if (scale < LABEL_SCALE) {
+      return;
+    }
+    TerrainStorage storage = terrainMap.getStorage();
+    graphics.setFill(Color.BLACK);
+    graphics.setTextAlign(TextAlignment.CENTER);
+    graphics.setTextBaseline(VPos.CENTER);
+    for (int y = firstY; y <= lastY; y++) {
+      for (int x = firstX; x <= lastX; x++) {
+        int costs = storage.costsAt(x, y);
+        if (costs != CostModel.OBSTACLE) {
+          graphics.fillText(Integer.toString(costs), (x + 0.5) * scale - offsetX,
+              (y + 0.5) * scale - offsetY);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a cached tile or renders a new one.
+   */
+  private Tile tile(int level, int tileX, int tileY) {
+    long key = key(level, tileX, tileY);
+    Tile tile = tiles.get(key);
+    if (tile == null) {
+      tile = new Tile(level, tileX, tileY);
+      tiles.put(key, tile);
+      Iterator<Map.Entry<Long, Tile>> leastRecentlyUsed = tiles.entrySet().iterator();
+      while (tiles.size() > MAX_TILES) {
+        leastRecentlyUsed.next();
+        leastRecentlyUsed.remove();
+      }
+    }
+    return tile;
+  }
+
+  /**
+   * Writes the colors of the cells of a tile into its image.
+   * A tile of a level above 0 is built from its four tiles of the level
+   * below where they are cached, otherwise from the cells of its blocks.
+   */
+  private void render(Tile tile) {
+    Tile[] children = new Tile[4];
+    if (tile.level > 0) {
+      // the children are rendered before the pixels of this tile are written
+      for (int child = 0; child < 4; child++) {
+        children[child] = tiles.get(key(tile.level - 1, 2 * tile.tileX + (child & 1),
+            2 * tile.tileY + (child >> 1)));
+        if (children[child] != null && children[child].dirty) {
+          render(children[child]);
+        }
+      }
+    }
+    int half = TILE_SIZE / 2;
+    for (int child = 0; child < 4; child++) {
+      int firstX = (child & 1) * half;
+      int firstY = (child >> 1) * half;
+      if (tile.level == 0) {
+        renderCells(tile, 0, 0, TILE_SIZE);
+        break;
+      } else if (children[child] != null) {
+        reduceChild(children[child], firstX, firstY);
+      } else {
+        renderCells(tile, firstX, firstY, half);
+      }
+    }
+    tile.image.getPixelWriter().setPixels(0, 0, TILE_SIZE, TILE_SIZE,
+        PixelFormat.getIntArgbInstance(), pixels, 0, TILE_SIZE);
+    tile.dirty = false;
+  }
+
+  /**
+   * Writes the darkest pixel of every 2 x 2 pixels of a child tile into a quarter of the pixels.
+   */
+  private void reduceChild(Tile child, int firstX, int firstY) {
+    child.image.getPixelReader().getPixels(0, 0, TILE_SIZE, TILE_SIZE,
+        PixelFormat.getIntArgbInstance(), childPixels, 0, TILE_SIZE);
+    for (int pixelY = 0; pixelY < TILE_SIZE / 2; pixelY++) {
+      for (int pixelX = 0; pixelX < TILE_SIZE / 2; pixelX++) {
+        int source = 2 * pixelY * TILE_SIZE + 2 * pixelX;
+        int color = darkerColor(childPixels[source], childPixels[source + 1]);
+        color = darkerColor(color, childPixels[source + TILE_SIZE]);
+        color = darkerColor(color, childPixels[source + TILE_SIZE + 1]);
+        pixels[(firstY + pixelY) * TILE_SIZE + firstX + pixelX] = color;
+      }
+    }
+  }
+
+  /**
+   * Writes the colors of the darkest cell of every block into a square of the pixels.
+   */
+  private void renderCells(Tile tile, int firstX, int firstY, int size) {
+    TerrainStorage storage = terrainMap.getStorage();
+    int length = terrainMap.getLength();
+    int height = terrainMap.getHeight();
+    int step = 1 << tile.level;
+    for (int pixelY = firstY; pixelY < firstY + size; pixelY++) {
+      int top = (tile.tileY * TILE_SIZE + pixelY) * step;
+      for (int pixelX = firstX; pixelX < firstX + size; pixelX++) {
+        int left = (tile.tileX * TILE_SIZE + pixelX) * step;
+        int color = 0;
+        if (top < height && left < length) {
+          int costs = 0;
+          int bottom = Math.min(height, top + step);
+          int right = Math.min(length, left + step);
+          for (int y = top; y < bottom && costs != CostModel.OBSTACLE; y++) {
+            for (int x = left; x < right; x++) {
+              costs = darker(costs, storage.costsAt(x, y));
+              if (costs == CostModel.OBSTACLE) {
+                break;
+              }
+            }
+          }
+          color = color(costs);
+        }
+        pixels[pixelY * TILE_SIZE + pixelX] = color;
+      }
+    }
+  }
+
+  private static int darker(int costs, int other) {
+    if (costs == CostModel.OBSTACLE || other == CostModel.OBSTACLE) {
+      return CostModel.OBSTACLE;
+    }
+    return Math.max(costs, other);
+  }
+
+  /**
+   * Returns the darker of two colors of color, transparent pixels outside of the map are ignored.
+   * Every channel of color gets smaller with higher costs, so the smaller color is the darker one.
+   */
+  private static int darkerColor(int color, int other) {
+    if (color == 0) {
+      return other;
+    }
+    if (other == 0) {
+      return color;
+    }
+    return (color & 0xFFFFFF) <= (other & 0xFFFFFF) ? color : other;
+  }
+
+  /**
+   * Returns the color of costs: white for cheap cells, brown for expensive ones, black for obstacles.
+   */
+  private static int color(int costs) {
+    if (costs == CostModel.OBSTACLE) {
+      return OBSTACLE_COLOR;
+    }
+    // grows from 0 for costs of 1 towards 1 for very high costs
+    double darkness = 1 - 8.0 / (Math.max(1, costs) + 7);
+    int red = (int) (255 - 116 * darkness);
+    int green = (int) (255 - 165 * darkness);
+    int blue = (int) (255 - 212 * darkness);
+    return 0xFF000000 | red << 16 | green << 8 | blue;
+  }
+
+  /**
+   * Returns the position and size of a tile in the view.
+   */
+  private double[] bounds(Tile tile) {
+    double cells = TILE_SIZE << tile.level;
+    return new double[] {tile.tileX * cells * scale - offsetX, tile.tileY * cells * scale - offsetY,
+        cells * scale, cells * scale};
+  }
+
+  /**
+   * Chooses the coarsest level whose pixels are at most one pixel of the view.
+   */
+  private int level() {
+    int level = 0;
+    while (level < maxLevel() && (1 << (level + 1)) * scale <= 1) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * Returns the level on which the whole map fits into one tile.
+   */
+  private int maxLevel() {
+    int size = Math.max(terrainMap.getLength(), terrainMap.getHeight());
+    int level = 0;
+    while ((TILE_SIZE << level) < size) {
+      level++;
+    }
+    return level;
+  }
+
+  private static int tileCount(int cells, int level) {
+    int cellsPerTile = TILE_SIZE << level;
+    return (cells + cellsPerTile - 1) / cellsPerTile;
+  }
+
+  private static long key(int level, int tileX, int tileY) {
+    return (long) level << 58 | (long) tileY << 29 | tileX;
+  }
+
+  /**
+   * Receives clicks on the cells of the view.
+   */
+  @FunctionalInterface
+  public interface CellHandler {
+
+    /**
+     * Called when a cell was clicked without dragging.
+     * @param xvalue the x-coordinate of the cell
+     * @param yvalue the y-coordinate of the cell
+     */
+    void cellClicked(int xvalue, int yvalue);
+  }
+
+  /**
+   * Rendered block of the map.
+   */
+  private static final class Tile {
+
+    final int level;
+    final int tileX;
+    final int tileY;
+    final WritableImage image = new WritableImage(TILE_SIZE, TILE_SIZE);
+    boolean dirty = true;
+
+    Tile(int level, int tileX, int tileY) {
+      this.level = level;
+      this.tileX = tileX;
+      this.tileY = tileY;
+    }
+  }
+}
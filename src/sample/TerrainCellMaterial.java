@@ -0,0 +1,69 @@
+package sample;
+
+/**
+ * View of the Material at one point of a TerrainMap.
+ * Reads the values stored by the map and writes every change back to it,
+ * so code that changes the Material returned by getMaterialAtPoint
+ * still changes the map.
+ * @version 1.0
+ */
+class TerrainCellMaterial extends Material {
+
+  private final TerrainMap terrainMap;
+  private final int xvalue;
+  private final int yvalue;
+
+  /**
+   * Constructor for class TerrainCellMaterial.
+   * @param terrainMap the map that stores the Material
+   * @param xvalue the x-coordinate of the point
+   * @param yvalue the y-coordinate of the point
+   */
+  TerrainCellMaterial(TerrainMap terrainMap, int xvalue, int yvalue) {
+    super(null, 0, false);
+    this.terrainMap = terrainMap;
+    this.xvalue = xvalue;
+    this.yvalue = yvalue;
+  }
+
+  @Override
+  public String getName() {
+    return stored().getName();
+  }
+
+  @Override
+  public void setName(String name) {
+    Material stored = stored();
+    write(new Material(name, stored.getCosts(), stored.isObstacle()));
+  }
+
+  @Override
+  public int getCosts() {
+    return stored().getCosts();
+  }
+
+  @Override
+  public void setCosts(int costs) {
+    Material stored = stored();
+    write(new Material(stored.getName(), Math.max(0, costs), stored.isObstacle()));
+  }
+
+  @Override
+  public boolean isObstacle() {
+    return stored().isObstacle();
+  }
+
+  @Override
+  public void setObstacle(boolean obstacle) {
+    Material stored = stored();
+    write(new Material(stored.getName(), stored.getCosts(), obstacle));
+  }
+
+  private Material stored() {
+    return terrainMap.getStorage().getMaterial(xvalue, yvalue);
+  }
+
+  private void write(Material material) {
+    terrainMap.setMaterialAtPoint(new Coordinate(xvalue, yvalue), material);
+  }
+}
@@ -0,0 +1,53 @@
+package sample;
+
+/**
+ * Cost model that reads the costs of the Materials of a TerrainMap.
+ * @version 1.0
+ */
+public class TerrainCostModel implements CostModel {
+
+  private final TerrainStorage storage;
+
+  /**
+   * Constructor for class TerrainCostModel.
+   * @param terrainMap the map whose costs are used
+   */
+  public TerrainCostModel(TerrainMap terrainMap) {
+    this.storage = terrainMap.getStorage();
+  }
+
+  @Override
+  public int getLength() {
+    return storage.getLength();
+  }
+
+  @Override
+  public int getHeight() {
+    return storage.getHeight();
+  }
+
+  @Override
+  public int costsAt(int xvalue, int yvalue) {
+    return storage.costsAt(xvalue, yvalue);
+  }
+
+  @Override
+  public int getMinCosts() {
+    return storage.getMinCosts();
+  }
+
+  @Override
+  public int getMaxCosts() {
+    return storage.getMaxCosts();
+  }
+
+  @Override
+  public void prefetch(int xvalue, int yvalue) {
+    storage.prefetch(xvalue, yvalue);
+  }
+
+  @Override
+  public boolean isChunked() {
+    return storage.isChunked();
+  }
+}
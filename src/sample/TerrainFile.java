@@ -0,0 +1,321 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Binary file format for terrain maps.
+ * All values are big endian:
+ * <pre>
+ * header    magic int "TERR", version short, reserved short,
+ *           length int, height int, palette size int, grid offset long
+ * palette   per entry: costs int, obstacle byte, name length short (-1 for null), UTF-8 name
+ * grid      length * height unsigned short palette indices, row by row, starting at grid offset
+ * </pre>
+ * The grid starts at an 8 byte aligned offset, so it can be memory mapped
+ * and read cell by cell without loading the file.
+ * The searches number the cells of a map with ints, so files with more than
+ * Integer.MAX_VALUE cells are rejected, also by the storages that keep the
+ * cells in the file.
+ * @version 1.0
+ */
+public final class TerrainFile {
+
+  static final int MAGIC = 0x54455252;
+  static final short VERSION = 1;
+  // magic, version, reserved, length, height, palette size, grid offset
+  static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 4 + 4 + 8;
+  // bytes written to the channel at once
+  private static final int BUFFER_SIZE = 1 << 16;
+  // bytes read from the channel at once by one band
+  private static final int READ_SIZE = 1 << 20;
+
+  private TerrainFile() {
+  }
+
+  /**
+   * Writes a map into a terrain file.
+   * The cells are streamed from the storage of the map, so the map is never copied.
+   * @param terrainMap the map to convert
+   * @param file the file to write, an existing file is replaced
+   * @throws IOException if the file can not be written
+   */
+  public static void write(TerrainMap terrainMap, File file) throws IOException {
+    TerrainStorage storage = terrainMap.getStorage();
+    int length = storage.getLength();
+    int height = storage.getHeight();
+    // maps without palette get one, so every distinct material is written once
+    PaletteTerrainStorage paletteStorage = storage instanceof PaletteTerrainStorage
+        ? (PaletteTerrainStorage) storage : collectPalette(storage);
+    if (paletteStorage.getPaletteSize() > PaletteTerrainStorage.MAX_PALETTE_SIZE) {
+      throw new IOException("terrain files hold at most "
+          + PaletteTerrainStorage.MAX_PALETTE_SIZE + " materials");
+    }
+    Material[] palette = new Material[paletteStorage.getPaletteSize()];
+    for (int i = 0; i < palette.length; i++) {
+      palette[i] = paletteStorage.getPaletteEntry(i);
+      // freed entries are kept as placeholders, so the indices of the cells stay valid
+      if (palette[i] == null) {
+        palette[i] = new Material(null, 0, false);
+      }
+    }
+    byte[][] names = new byte[palette.length][];
+    int paletteBytes = 0;
+    for (int i = 0; i < palette.length; i++) {
+      names[i] = palette[i].getName() == null ? null
+          : palette[i].getName().getBytes(StandardCharsets.UTF_8);
+      paletteBytes += 4 + 1 + 2 + (names[i] == null ? 0 : names[i].length);
+    }
+    long gridOffset = align(HEADER_SIZE + paletteBytes);
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, (int) gridOffset));
+      buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+      buffer.putInt(length).putInt(height).putInt(palette.length).putLong(gridOffset);
+      for (int i = 0; i < palette.length; i++) {
+        buffer.putInt(palette[i].getCosts());
+        buffer.put((byte) (palette[i].isObstacle() ? 1 : 0));
+        if (names[i] == null) {
+          buffer.putShort((short) -1);
+        } else {
+          buffer.putShort((short) names[i].length);
+          buffer.put(names[i]);
+        }
+      }
+      while (buffer.position() < gridOffset) {
+        buffer.put((byte) 0);
+      }
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < length; x++) {
+          if (buffer.remaining() < 2) {
+            flush(buffer, channel);
+          }
+          if (paletteStorage == storage) {
+            buffer.putShort((short) paletteStorage.getPaletteIndex(x, y));
+          } else {
+            Material material = storage.getMaterial(x, y);
+            buffer.putShort((short) paletteStorage.intern(material.getName(),
+                material.getCosts(), material.isObstacle()));
+          }
+        }
+      }
+      flush(buffer, channel);
+    }
+  }
+
+  /**
+   * Opens a terrain file as a map whose cells stay in the file.
+   * @param file the terrain file
+   * @param writable true if cells may be changed, changes are written to the file
+   * @return a map backed by the memory mapped file
+   * @throws IOException if the file can not be read or is no terrain file
+   */
+  public static TerrainMap map(File file, boolean writable) throws IOException {
+    return new TerrainMap(new MappedTerrainStorage(file, writable));
+  }
+
+  /**
+   * Loads a terrain file into memory on the common pool.
+   * @param file the terrain file
+   * @return a map whose cells no longer depend on the file
+   * @throws IOException if the file can not be read or is no terrain file
+   */
+  public static TerrainMap read(File file) throws IOException {
+    return read(file, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Loads a terrain file into memory.
+   * The grid is read in parallel bands of rows with positional reads of the
+   * channel and copied into a PaletteTerrainStorage index by index, so no
+   * Material is created per cell.
+   * @param file the terrain file
+   * @param pool the pool that reads the bands of rows
+   * @return a map whose cells no longer depend on the file
+   * @throws IOException if the file can not be read or is no terrain file
+   */
+  public static TerrainMap read(File file, ForkJoinPool pool) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      Header header = readHeader(channel);
+      int length = header.length;
+      PaletteTerrainStorage storage = new PaletteTerrainStorage(length, header.height,
+          header.palette[0]);
+      // equal entries of the file share one entry of the storage
+      short[] remap = new short[header.palette.length];
+      for (int i = 0; i < remap.length; i++) {
+        Material entry = header.palette[i];
+        remap[i] = (short) storage.intern(entry.getName(), entry.getCosts(), entry.isObstacle());
+      }
+      TerrainLoader loader = new TerrainLoader(storage);
+      int rowBytes = 2 * length;
+      int rowsPerRead = Math.max(1, READ_SIZE / Math.max(1, rowBytes));
+      loader.readBands(pool, (firstRow, rows) -> {
+        ByteBuffer buffer = ByteBuffer.allocate(rowBytes * Math.min(rows, rowsPerRead));
+        short[] indices = new short[length];
+        for (int row = firstRow; row < firstRow + rows; row += rowsPerRead) {
+          int count = Math.min(rowsPerRead, firstRow + rows - row);
+          buffer.clear().limit(count * rowBytes);
+          readFully(channel, buffer, header.gridOffset + (long) row * rowBytes);
+          buffer.flip();
+          for (int yvalue = row; yvalue < row + count; yvalue++) {
+            for (int x = 0; x < length; x++) {
+              int index = buffer.getShort() & 0xFFFF;
+              if (index >= remap.length) {
+                throw new IOException("corrupt terrain file, palette index " + index
+                    + " at " + x + ", " + yvalue);
+              }
+              indices[x] = remap[index];
+            }
+            loader.setRow(yvalue, indices);
+          }
+        }
+      });
+      return new TerrainMap(storage);
+    }
+  }
+
+  /**
+   * Reads the header and the palette of a terrain file.
+   * @param channel channel positioned at the beginning of the file
+   * @return the header values
+   * @throws IOException if the file can not be read or is no terrain file
+   */
+  static Header readHeader(FileChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+    readFully(channel, buffer, 0);
+    buffer.flip();
+    if (buffer.getInt() != MAGIC) {
+      throw new IOException("not a terrain file");
+    }
+    short version = buffer.getShort();
+    if (version != VERSION) {
+      throw new IOException("unsupported terrain file version " + version);
+    }
+    buffer.getShort();
+    Header header = new Header();
+    header.length = buffer.getInt();
+    header.height = buffer.getInt();
+    int paletteSize = buffer.getInt();
+    header.gridOffset = buffer.getLong();
+    if (header.length < 0 || header.height < 0 || paletteSize <= 0
+        || paletteSize > PaletteTerrainStorage.MAX_PALETTE_SIZE || header.gridOffset < HEADER_SIZE
+        || header.gridOffset + 2L * header.length * header.height > channel.size()) {
+      throw new IOException("corrupt terrain file header");
+    }
+    if ((long) header.length * header.height > Integer.MAX_VALUE) {
+      throw new IOException("the map has " + (long) header.length * header.height
+          + " cells, the searches can only number " + Integer.MAX_VALUE + " cells");
+    }
+    ByteBuffer paletteBuffer = ByteBuffer.allocate((int) (header.gridOffset - HEADER_SIZE));
+    readFully(channel, paletteBuffer, HEADER_SIZE);
+    paletteBuffer.flip();
+    header.palette = new Material[paletteSize];
+    for (int i = 0; i < paletteSize; i++) {
+      int costs = paletteBuffer.getInt();
+      boolean isObstacle = paletteBuffer.get() != 0;
+      short nameLength = paletteBuffer.getShort();
+      String name = null;
+      if (nameLength >= 0) {
+        byte[] bytes = new byte[nameLength];
+        paletteBuffer.get(bytes);
+        name = new String(bytes, StandardCharsets.UTF_8);
+      }
+      header.palette[i] = new Material(name, costs, isObstacle);
+    }
+    return header;
+  }
+
+  /**
+   * Collects the distinct Materials of a storage that has no palette of its own.
+   * @return an empty storage whose palette contains all Materials of the storage
+   * @throws IOException if the storage has more Materials than a file can hold
+   */
+  private static PaletteTerrainStorage collectPalette(TerrainStorage storage)
+      throws IOException {
+    PaletteTerrainStorage palette = new PaletteTerrainStorage(0, 0,
+        storage.getLength() * storage.getHeight() == 0
+            ? new Material("default", 1, false) : storage.getMaterial(0, 0));
+    Map<Material, Boolean> seen = new IdentityHashMap<>();
+    for (int y = 0; y < storage.getHeight(); y++) {
+      for (int x = 0; x < storage.getLength(); x++) {
+        Material material = storage.getMaterial(x, y);
+        if (seen.put(material, Boolean.TRUE) == null) {
+          // the palette has no cells, a full palette would free all of its entries
+          if (palette.getPaletteSize() == PaletteTerrainStorage.MAX_PALETTE_SIZE) {
+            throw new IOException("terrain files hold at most "
+                + PaletteTerrainStorage.MAX_PALETTE_SIZE + " materials");
+          }
+          palette.intern(material.getName(), material.getCosts(), material.isObstacle());
+        }
+      }
+    }
+    return palette;
+  }
+
+  /**
+   * Finds the palette entry of a terrain file with the values of a Material.
+   * @param palette the palette of the file
+   * @param material the Material to look for
+   * @return the index of the entry
+   * @throws IllegalArgumentException if no entry has the values of the Material
+   */
+  static int paletteIndexOf(Material[] palette, Material material) {
+    int costs = Math.max(0, material.getCosts());
+    for (int i = 0; i < palette.length; i++) {
+      Material entry = palette[i];
+      if (Math.max(0, entry.getCosts()) == costs && entry.isObstacle() == material.isObstacle()
+          && Objects.equals(entry.getName(), material.getName())) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("material is not part of the terrain file palette");
+  }
+
+  private static long align(long offset) {
+    return (offset + 7) & ~7L;
+  }
+
+  /**
+   * Writes the bytes of a buffer to a channel and clears it, also used by the other file formats.
+   */
+  static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Fills a buffer from a position of a channel, several threads may read the same channel.
+   */
+  static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("unexpected end of file");
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * Values of the header and the palette of a terrain file.
+   */
+  static final class Header {
+    int length;
+    int height;
+    long gridOffset;
+    Material[] palette;
+  }
+}
@@ -0,0 +1,24 @@
+package sample;
+
+/**
+ * Listener that is informed about changes of a TerrainMap.
+ * Only changes made through the TerrainMap are reported, this includes
+ * changes of the Materials returned by getMaterialAtPoint.
+ * @version 1.0
+ */
+public interface TerrainListener {
+
+  /**
+   * Called after the Material at a point was set.
+   * @param terrainMap the changed map
+   * @param xvalue the x-coordinate of the changed point
+   * @param yvalue the y-coordinate of the changed point
+   */
+  void cellChanged(TerrainMap terrainMap, int xvalue, int yvalue);
+
+  /**
+   * Called after the complete map was replaced, the size of the map may have changed.
+   * @param terrainMap the changed map
+   */
+  void mapChanged(TerrainMap terrainMap);
+}
@@ -0,0 +1,190 @@
+package sample;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fills a PaletteTerrainStorage from a file in parallel bands of rows.
+ * The cells are stored as palette indices, a value is only turned into a
+ * palette entry the first time it is read, so no Material is created per cell.
+ * All values of a file share the same name, every value is the costs of a
+ * cell and obstacles share one entry.
+ * @version 1.0
+ */
+final class TerrainLoader {
+
+  // values below this limit find their palette index in a table without lock
+  private static final int TABLE_SIZE = 1 << 16;
+  // rows per band are chosen so every thread of the pool gets a few bands
+  private static final int BANDS_PER_THREAD = 4;
+
+  private final PaletteTerrainStorage storage;
+  private final String name;
+  // palette index of every small value, -1 if the value was not interned yet
+  private final int[] valueIndices = new int[TABLE_SIZE];
+  private volatile int obstacleIndex = -1;
+
+  /**
+   * Constructor for class TerrainLoader.
+   * @param length the length of the map
+   * @param height the height of the map
+   * @param name the name of all Materials of the map
+   */
+  TerrainLoader(int length, int height, String name) {
+    storage = new PaletteTerrainStorage(length, height, new Material(name, 1, false));
+    this.name = name;
+    Arrays.fill(valueIndices, -1);
+  }
+
+  /**
+   * Constructor for a loader of a file that brings its own palette.
+   * Only readBands and setRow may be used, the palette of the storage is already complete.
+   * @param storage the storage to fill
+   */
+  TerrainLoader(PaletteTerrainStorage storage) {
+    this.storage = storage;
+    this.name = null;
+  }
+
+  PaletteTerrainStorage getStorage() {
+    return storage;
+  }
+
+  /**
+   * Returns the palette index of the costs of a cell that is no obstacle.
+   * The table is read without lock: another thread either already wrote the
+   * final index or the value is interned under the lock.
+   * @param costs the costs of the cell
+   * @throws IOException if the map has more distinct values than the palette can hold
+   */
+  short indexOf(int costs) throws IOException {
+    if (costs >= 0 && costs < TABLE_SIZE) {
+      int index = valueIndices[costs];
+      if (index >= 0) {
+        return (short) index;
+      }
+    }
+    return (short) intern(costs);
+  }
+
+  /**
+   * Returns the palette index of an obstacle.
+   * @throws IOException if the map has more distinct values than the palette can hold
+   */
+  short obstacleIndex() throws IOException {
+    int index = obstacleIndex;
+    return (short) (index >= 0 ? index : internObstacle());
+  }
+
+  private synchronized int internObstacle() throws IOException {
+    if (obstacleIndex < 0) {
+      checkPaletteSize();
+      obstacleIndex = storage.intern(name, 0, true);
+    }
+    return obstacleIndex;
+  }
+
+  private synchronized int intern(int costs) throws IOException {
+    checkPaletteSize();
+    int index = storage.intern(name, costs, false);
+    if (costs >= 0 && costs < TABLE_SIZE) {
+      valueIndices[costs] = index;
+    }
+    return index;
+  }
+
+  /**
+   * Rows set before are not counted by the storage yet, so a full palette
+   * must not free or widen anything.
+   */
+  private void checkPaletteSize() throws IOException {
+    if (storage.getPaletteSize() == PaletteTerrainStorage.MAX_PALETTE_SIZE) {
+      throw new IOException("the file has more than " + PaletteTerrainStorage.MAX_PALETTE_SIZE
+          + " distinct values, which is the most a map read from a file can hold");
+    }
+  }
+
+  /**
+   * Reads all rows of the map in bands, several bands at the same time,
+   * and counts the cells of every palette entry at the end.
+   * @param pool the pool that reads the bands
+   * @param reader reads the rows of a band and sets them with setRow
+   * @throws IOException if a band can not be read
+   */
+  void readBands(ForkJoinPool pool, BandReader reader) throws IOException {
+    int height = storage.getHeight();
+    if (height == 0) {
+      return;
+    }
+    int bands = Math.max(1, pool.getParallelism() * BANDS_PER_THREAD);
+    int rowsPerBand = Math.max(1, (height + bands - 1) / bands);
+    try {
+      pool.invoke(new BandRead(reader, rowsPerBand, 0, height));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    storage.countUses();
+  }
+
+  /**
+   * Sets the palette indices of a row.
+   * @param yvalue the y-coordinate of the row
+   * @param indices the palette index of every cell of the row
+   */
+  void setRow(int yvalue, short[] indices) {
+    storage.setRow(yvalue, indices);
+  }
+
+  /**
+   * Reads the rows of one band of the file.
+   */
+  @FunctionalInterface
+  interface BandReader {
+
+    /**
+     * Reads rows of the file and sets them.
+     * @param firstRow the y-coordinate of the first row of the band
+     * @param rows the number of rows of the band
+     * @throws IOException if the rows can not be read
+     */
+    void read(int firstRow, int rows) throws IOException;
+  }
+
+  /**
+   * Reads a range of rows, ranges larger than a band are split.
+   */
+  private static final class BandRead extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BandReader reader;
+    private final int rowsPerBand;
+    private final int from;
+    private final int to;
+
+    BandRead(BandReader reader, int rowsPerBand, int from, int to) {
+      this.reader = reader;
+      this.rowsPerBand = rowsPerBand;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > rowsPerBand) {
+        int middle = from + (to - from) / 2;
+        invokeAll(new BandRead(reader, rowsPerBand, from, middle),
+            new BandRead(reader, rowsPerBand, middle, to));
+        return;
+      }
+      try {
+        reader.read(from, to - from);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
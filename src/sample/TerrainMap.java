@@ -1,13 +1,27 @@
 package sample;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * This class represents a Map, to calculate paths with,
  * that contains Materials at specific locations.
+ * The Materials are kept by a TerrainStorage, by default a compact palette
+ * that stores every distinct Material only once. The Materials returned by
+ * this class are views of the stored values: changing them changes the map.
  * @author Jeffrey Rietzler, Patrick Hanselmann
- * @version 0.2
+ * @version 0.3
  */
 public class TerrainMap {
-  private Material[][] terrain;
+  private TerrainStorage storage;
+  private final List<TerrainListener> listeners = new CopyOnWriteArrayList<>();
+  // number of changes made through this map
+  private volatile long version;
+  // connected areas of the cells, created when a query asks for them first
+  private volatile ConnectivityIndex connectivityIndex;
 
   /**
    * Constructor for class TerrainMap.
@@ -15,31 +29,95 @@ public class TerrainMap {
    * @param height fixed height of the map
    */
   public TerrainMap(int length, int height) {
-    terrain = new Material[length][height];
-    fillDefault();
+    storage = new PaletteTerrainStorage(length, height, new Material("default", 1, false));
+  }
+
+  /**
+   * Constructor for class TerrainMap with a given storage.
+   * @param storage the storage that keeps the Materials of the map
+   */
+  public TerrainMap(TerrainStorage storage) {
+    if (storage == null) {
+      throw new IllegalArgumentException();
+    }
+    this.storage = storage;
   }
 
   /**
-   * Fills the TerrainMap with default values.
+   * Getter for the storage that keeps the Materials of the map.
    */
-  private void fillDefault() {
-    for (int i = 0 ; i < terrain.length ; i++) {
-      for (int j = 0 ; j < terrain[i].length ; j++) {
-        terrain[i][j] = new Material("default", 1, false);
+  public TerrainStorage getStorage() {
+    return storage;
+  }
+
+  /**
+   * Getter for the version of the map.
+   * Every change made through the map increases the version, this includes
+   * setMaterialAtPoint, setCompleteMap and changes of the Materials returned by
+   * getMaterialAtPoint. Changes made directly to the storage are not counted.
+   * @return the number of changes of the map
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Getter for the index of the connected areas of the map.
+   * The index is created on the first call and follows all changes made through the map.
+   * @return the index shared by all users of the map
+   */
+  public ConnectivityIndex getConnectivityIndex() {
+    ConnectivityIndex index = connectivityIndex;
+    if (index == null) {
+      synchronized (listeners) {
+        index = connectivityIndex;
+        if (index == null) {
+          index = new ConnectivityIndex(this);
+          addTerrainListener(index);
+          connectivityIndex = index;
+        }
       }
     }
+    return index;
+  }
+
+  /**
+   * Registers a listener that is informed about changes of the map.
+   * @param listener the listener to add
+   */
+  public void addTerrainListener(TerrainListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException();
+    }
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a registered listener.
+   * @param listener the listener to remove
+   */
+  public void removeTerrainListener(TerrainListener listener) {
+    listeners.remove(listener);
   }
 
   /**
    * Getter for the complete map.
+   * Creates a view for every point, so it should not be used for large maps.
    */
   public Material[][] getCompleteMap() {
-    return terrain;
+    Material[][] map = new Material[getLength()][getHeight()];
+    for (int x = 0; x < map.length; x++) {
+      for (int y = 0; y < map[x].length; y++) {
+        map[x][y] = new TerrainCellMaterial(this, x, y);
+      }
+    }
+    return map;
   }
 
   /**
    * Sets the map to the given new map
    * under the condition that the new map does not contain null element.
+   * The values of the Materials are copied into a new compact storage.
    * @param newMap the new map without null elements
    */
   public void setCompleteMap(Material[][] newMap) {
@@ -50,7 +128,20 @@ public class TerrainMap {
         }
       }
     }
-    this.terrain = newMap;
+    int length = newMap.length;
+    int height = length == 0 ? 0 : newMap[0].length;
+    PaletteTerrainStorage newStorage = new PaletteTerrainStorage(length, height,
+        new Material("default", 1, false));
+    for (int x = 0; x < length; x++) {
+      for (int y = 0; y < height; y++) {
+        newStorage.setMaterial(x, y, newMap[x][y]);
+      }
+    }
+    this.storage = newStorage;
+    version++;
+    for (TerrainListener listener : listeners) {
+      listener.mapChanged(this);
+    }
   }
 
   /**
@@ -60,19 +151,61 @@ public class TerrainMap {
    */
   public Material getMaterialAtPoint(Coordinate point) {
     if (pointInsideMap(point)) {
-      return terrain[point.getXvalue()][point.getYvalue()];
+      return new TerrainCellMaterial(this, point.getXvalue(), point.getYvalue());
     }
     throw new IllegalArgumentException();
   }
 
+  /**
+   * Getter for the length of the map in x-direction.
+   */
+  public int getLength() {
+    return storage.getLength();
+  }
+
+  /**
+   * Getter for the height of the map in y-direction.
+   */
+  public int getHeight() {
+    return storage.getHeight();
+  }
+
+  /**
+   * Getter for the costs of the Material at a specific point.
+   * Does not create a Coordinate, so it can be used in search loops.
+   * @param xvalue the x-coordinate of the point
+   * @param yvalue the y-coordinate of the point
+   * @return the costs to walk over the point
+   */
+  public int getCostsAt(int xvalue, int yvalue) {
+    return storage.getMaterial(xvalue, yvalue).getCosts();
+  }
+
+  /**
+   * Checks if the Material at a specific point is an obstacle.
+   * Does not create a Coordinate, so it can be used in search loops.
+   * @param xvalue the x-coordinate of the point
+   * @param yvalue the y-coordinate of the point
+   * @return true if the point can not be walked over
+   */
+  public boolean isObstacleAt(int xvalue, int yvalue) {
+    return storage.getMaterial(xvalue, yvalue).isObstacle();
+  }
+
   /**
    * Sets a new Material at a specific point.
+   * The map stores the values of the Material, later changes of the
+   * given object do not change the map.
    * @param point A Coordinate that describes the desired point on the map
    * @param newMaterial the new Material at point point
    */
   public void setMaterialAtPoint(Coordinate point, Material newMaterial) {
     if (pointInsideMap(point) && newMaterial != null) {
-      terrain[point.getXvalue()][point.getYvalue()] = newMaterial;
+      storage.setMaterial(point.getXvalue(), point.getYvalue(), newMaterial);
+      version++;
+      for (TerrainListener listener : listeners) {
+        listener.cellChanged(this, point.getXvalue(), point.getYvalue());
+      }
     } else {
       throw new IllegalArgumentException();
     }
@@ -81,29 +214,43 @@ public class TerrainMap {
   /**
    * applies a multiplicative radial linear gradient,
    * beginning at the start point.
+   * Copies the whole map, searches use a RadialGradientCostModel instead
+   * that only computes the costs of the cells they touch.
    * @param start origin of the radial gradient field
    * @return The modified TerrainMap
    */
   public TerrainMap addRadialGradient( Coordinate start) {
-    TerrainMap out = new TerrainMap(0,0);
-    Material[][] map =  new Material[this.getCompleteMap().length][this.getCompleteMap()[0].length];
-
-    for (int x = 0 ; x < this.getCompleteMap().length ; x++) {
-      for (int y = 0 ; y < this.getCompleteMap()[x].length ; y++) {
-        int distance = (int)Math.sqrt(Math.pow(start.getXvalue() - x,2)
-            + Math.pow(start.getYvalue() - y, 2));
-        Material oldMaterial = this.getMaterialAtPoint(new Coordinate(x,y));
-        Material mat = new Material(oldMaterial.getName(),oldMaterial.getCosts(),oldMaterial.isObstacle());
-        mat.setCosts(mat.getCosts() * distance);
-        map[x][y] = mat;
+    int length = getLength();
+    int height = getHeight();
+    PaletteTerrainStorage gradient = new PaletteTerrainStorage(length, height,
+        new Material("default", 1, false));
+    // every pair of material and distance is interned only once
+    int maxDistance = (int) Math.sqrt((double) length * length + (double) height * height) + 1;
+    Map<Material, int[]> gradientIndices = new IdentityHashMap<>();
+    for (int x = 0 ; x < length ; x++) {
+      for (int y = 0 ; y < height ; y++) {
+        int distance = RadialGradientCostModel.distance(start.getXvalue() - x,
+            start.getYvalue() - y);
+        Material oldMaterial = storage.getMaterial(x, y);
+        int[] indices = gradientIndices.get(oldMaterial);
+        if (indices == null) {
+          indices = new int[maxDistance];
+          Arrays.fill(indices, -1);
+          gradientIndices.put(oldMaterial, indices);
+        }
+        if (indices[distance] < 0) {
+          indices[distance] = gradient.intern(oldMaterial.getName(),
+              RadialGradientCostModel.scale(Math.max(0, oldMaterial.getCosts()), distance),
+              oldMaterial.isObstacle());
+        }
+        gradient.setPaletteIndex(x, y, indices[distance]);
       }
     }
-    out.setCompleteMap(map);
-    return out;
+    return new TerrainMap(gradient);
   }
 
   private boolean pointInsideMap(Coordinate point) {
     return point.getXvalue() >= 0 && point.getYvalue() >= 0
-        && point.getXvalue() < terrain.length && point.getYvalue() < terrain[0].length;
+        && point.getXvalue() < getLength() && point.getYvalue() < getHeight();
   }
 }
@@ -0,0 +1,73 @@
+package sample;
+
+/**
+ * Backend that stores the Materials of a TerrainMap.
+ * Cells are addressed by their x- and y-coordinate. Materials handed in are
+ * copied, Materials handed out are shared and must not be changed.
+ * @version 1.0
+ */
+public interface TerrainStorage {
+
+  /**
+   * Getter for the length of the map in x-direction.
+   */
+  int getLength();
+
+  /**
+   * Getter for the height of the map in y-direction.
+   */
+  int getHeight();
+
+  /**
+   * Getter for the Material of a cell.
+   * @param xvalue the x-coordinate of the cell
+   * @param yvalue the y-coordinate of the cell
+   * @return the stored Material, which must not be changed
+   */
+  Material getMaterial(int xvalue, int yvalue);
+
+  /**
+   * Stores the values of a Material for a cell.
+   * @param xvalue the x-coordinate of the cell
+   * @param yvalue the y-coordinate of the cell
+   * @param material the Material whose name, costs and obstacle flag are stored
+   */
+  void setMaterial(int xvalue, int yvalue, Material material);
+
+  /**
+   * Getter for the costs of a cell as seen by a search.
+   * @param xvalue the x-coordinate of the cell
+   * @param yvalue the y-coordinate of the cell
+   * @return the non-negative costs of the cell or CostModel.OBSTACLE
+   */
+  int costsAt(int xvalue, int yvalue);
+
+  /**
+   * Lower bound for the costs of all cells that are no obstacle.
+   */
+  int getMinCosts();
+
+  /**
+   * Upper bound for the costs of all cells that are no obstacle.
+   */
+  int getMaxCosts();
+
+  /**
+   * Hint that a search will soon read the cells around a cell.
+   * Storages that load their cells lazily may start loading them in the
+   * background; the hint must return quickly and never blocks.
+   * @param xvalue the x-coordinate of the cell
+   * @param yvalue the y-coordinate of the cell
+   */
+  default void prefetch(int xvalue, int yvalue) {
+  }
+
+  /**
+   * Tells whether only some chunks of the cells are kept in memory.
+   * Searches do not build tables with an entry for every cell of such a storage.
+   * @return true if the cells are read in chunks
+   */
+  default boolean isChunked() {
+    return false;
+  }
+}
@@ -0,0 +1,250 @@
+package sample;
+
+import java.util.Arrays;
+
+/**
+ * Chooses the order in which the intermediate points of a path are visited.
+ * The first point of the DistanceMatrix is the starting point, the last one
+ * the ending point, all points between them are intermediate points whose
+ * order may change. Up to EXACT_LIMIT intermediate points the cheapest order
+ * is calculated exactly with dynamic programming over subsets (Held-Karp),
+ * with more points the order is built from nearest neighbours and improved
+ * with 2-opt and Or-opt moves until no move lowers the costs.
+ * The costs between two points need not be symmetric, with
+ * Options.COSTS_AND_NUMBER_POINTS they usually are not.
+ * @version 1.0
+ */
+public final class WaypointOrder {
+
+  /**
+   * largest number of intermediate points whose order is calculated exactly.
+   */
+  public static final int EXACT_LIMIT = 12;
+
+  // costs of a missing connection, large enough to lose against every real path
+  // and small enough that the sum of all legs does not overflow
+  private static final long UNREACHABLE = 1L << 40;
+
+  private WaypointOrder() {
+  }
+
+  /**
+   * Calculates the order in which the points of a DistanceMatrix are visited.
+   * @param matrix the costs between the starting point, the intermediate points and the ending point
+   * @return the indices of all points in visiting order, starting with 0 and ending with size - 1
+   */
+  public static int[] optimize(DistanceMatrix matrix) {
+    int size = matrix.getSize();
+    if (size < 2) {
+      throw new IllegalArgumentException("matrix needs a starting and an ending point");
+    }
+    int[] order;
+    if (size - 2 <= EXACT_LIMIT) {
+      order = exact(matrix);
+    } else {
+      order = nearestNeighbour(matrix);
+      improve(matrix, order);
+    }
+    return order;
+  }
+
+  /**
+   * Calculates the costs of visiting the points in the given order.
+   * @param matrix the costs between the points
+   * @param order the indices of the points in visiting order
+   * @return the sum of the costs of all legs, DistanceMatrix.INFINITE is counted as a very large value
+   */
+  public static long costsOf(DistanceMatrix matrix, int[] order) {
+    long costs = 0;
+    for (int i = 0; i + 1 < order.length; i++) {
+      costs += costs(matrix, order[i], order[i + 1]);
+    }
+    return costs;
+  }
+
+  private static long costs(DistanceMatrix matrix, int from, int to) {
+    int costs = matrix.getCosts(from, to);
+    return costs == DistanceMatrix.INFINITE ? UNREACHABLE : costs;
+  }
+
+  /**
+   * Held-Karp: best[set][last] are the cheapest costs from the start over all
+   * intermediate points of set, ending at the intermediate point last.
+   */
+  private static int[] exact(DistanceMatrix matrix) {
+    int size = matrix.getSize();
+    int count = size - 2;
+    int end = size - 1;
+    if (count == 0) {
+      return new int[] {0, end};
+    }
+    int sets = 1 << count;
+    long[] best = new long[sets * count];
+    Arrays.fill(best, Long.MAX_VALUE);
+    for (int last = 0; last < count; last++) {
+      best[(1 << last) * count + last] = costs(matrix, 0, last + 1);
+    }
+    for (int set = 1; set < sets; set++) {
+      for (int last = 0; last < count; last++) {
+        long costs = best[set * count + last];
+        if (costs == Long.MAX_VALUE) {
+          continue;
+        }
+        for (int next = 0; next < count; next++) {
+          if ((set & (1 << next)) != 0) {
+            continue;
+          }
+          int nextSet = set | (1 << next);
+          long nextCosts = costs + costs(matrix, last + 1, next + 1);
+          if (nextCosts < best[nextSet * count + next]) {
+            best[nextSet * count + next] = nextCosts;
+          }
+        }
+      }
+    }
+    // walks back from the cheapest last intermediate point
+    int[] order = new int[size];
+    order[0] = 0;
+    order[end] = end;
+    int set = sets - 1;
+    int following = end;
+    for (int position = count; position > 0; position--) {
+      int bestLast = -1;
+      long bestCosts = Long.MAX_VALUE;
+      for (int last = 0; last < count; last++) {
+        if ((set & (1 << last)) == 0 || best[set * count + last] == Long.MAX_VALUE) {
+          continue;
+        }
+        long costs = best[set * count + last] + costs(matrix, last + 1, following);
+        if (costs < bestCosts) {
+          bestCosts = costs;
+          bestLast = last;
+        }
+      }
+      order[position] = bestLast + 1;
+      set &= ~(1 << bestLast);
+      following = bestLast + 1;
+    }
+    return order;
+  }
+
+  /**
+   * Always visits the cheapest intermediate point that is not visited yet.
+   */
+  private static int[] nearestNeighbour(DistanceMatrix matrix) {
+    int size = matrix.getSize();
+    int[] order = new int[size];
+    boolean[] visited = new boolean[size];
+    order[size - 1] = size - 1;
+    int current = 0;
+    for (int position = 1; position < size - 1; position++) {
+      int nearest = -1;
+      long nearestCosts = Long.MAX_VALUE;
+      for (int point = 1; point < size - 1; point++) {
+        if (!visited[point] && costs(matrix, current, point) < nearestCosts) {
+          nearestCosts = costs(matrix, current, point);
+          nearest = point;
+        }
+      }
+      visited[nearest] = true;
+      order[position] = nearest;
+      current = nearest;
+    }
+    return order;
+  }
+
+  /**
+   * Applies improving 2-opt and Or-opt moves until there are none left.
+   */
+  private static void improve(DistanceMatrix matrix, int[] order) {
+    boolean improved = true;
+    while (improved) {
+      improved = twoOpt(matrix, order) | orOpt(matrix, order);
+    }
+  }
+
+  /**
+   * Reverses segments of the intermediate points. The costs are asymmetric,
+   * so the costs of the reversed segment are calculated again.
+   */
+  private static boolean twoOpt(DistanceMatrix matrix, int[] order) {
+    boolean improved = false;
+    int last = order.length - 2;
+    for (int from = 1; from < last; from++) {
+      for (int to = from + 1; to <= last; to++) {
+        long before = costs(matrix, order[from - 1], order[from])
+            + costs(matrix, order[to], order[to + 1]);
+        long after = costs(matrix, order[from - 1], order[to])
+            + costs(matrix, order[from], order[to + 1]);
+        for (int i = from; i < to; i++) {
+          before += costs(matrix, order[i], order[i + 1]);
+          after += costs(matrix, order[i + 1], order[i]);
+        }
+        if (after < before) {
+          reverse(order, from, to);
+          improved = true;
+        }
+      }
+    }
+    return improved;
+  }
+
+  /**
+   * Moves segments of one to three intermediate points to a cheaper position.
+   */
+  private static boolean orOpt(DistanceMatrix matrix, int[] order) {
+    boolean improved = false;
+    int last = order.length - 2;
+    for (int segment = 1; segment <= 3; segment++) {
+      for (int from = 1; from + segment - 1 <= last; from++) {
+        int to = from + segment - 1;
+        int first = order[from];
+        int end = order[to];
+        long removed = costs(matrix, order[from - 1], first) + costs(matrix, end, order[to + 1])
+            - costs(matrix, order[from - 1], order[to + 1]);
+        // the segment is inserted between order[gap - 1] and order[gap]
+        int bestGap = -1;
+        long bestGain = 0;
+        for (int gap = 1; gap <= last + 1; gap++) {
+          if (gap >= from && gap <= to + 1) {
+            continue;
+          }
+          long inserted = costs(matrix, order[gap - 1], first) + costs(matrix, end, order[gap])
+              - costs(matrix, order[gap - 1], order[gap]);
+          if (removed - inserted > bestGain) {
+            bestGain = removed - inserted;
+            bestGap = gap;
+          }
+        }
+        if (bestGap >= 0) {
+          move(order, from, to, bestGap);
+          improved = true;
+        }
+      }
+    }
+    return improved;
+  }
+
+  private static void reverse(int[] order, int from, int to) {
+    while (from < to) {
+      int swap = order[from];
+      order[from++] = order[to];
+      order[to--] = swap;
+    }
+  }
+
+  /**
+   * Moves order[from..to] in front of order[gap].
+   */
+  private static void move(int[] order, int from, int to, int gap) {
+    int[] segment = Arrays.copyOfRange(order, from, to + 1);
+    int length = segment.length;
+    if (gap < from) {
+      System.arraycopy(order, gap, order, gap + length, from - gap);
+      System.arraycopy(segment, 0, order, gap, length);
+    } else {
+      System.arraycopy(order, to + 1, order, from, gap - to - 1);
+      System.arraycopy(segment, 0, order, gap - length, length);
+    }
+  }
+}
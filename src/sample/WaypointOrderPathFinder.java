@@ -0,0 +1,134 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * PathFinder that visits the intermediate points in the cheapest order
+ * instead of the given one. The costs between the starting point, the
+ * intermediate points and the ending point are computed as a DistanceMatrix,
+ * WaypointOrder chooses the order and the path is searched by the wrapped
+ * PathFinder with the reordered intermediate points.
+ * @version 1.0
+ */
+public class WaypointOrderPathFinder implements PathFinder {
+
+  private final PathFinder pathFinder;
+  private final ForkJoinPool pool;
+  private int[] lastOrder = new int[0];
+
+  /**
+   * Constructor for class WaypointOrderPathFinder computing the distances on the common pool.
+   * @param pathFinder the PathFinder that searches the path in the chosen order
+   */
+  public WaypointOrderPathFinder(PathFinder pathFinder) {
+    this(pathFinder, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructor for class WaypointOrderPathFinder.
+   * @param pathFinder the PathFinder that searches the path in the chosen order
+   * @param pool the pool that computes the distances between the points
+   */
+  public WaypointOrderPathFinder(PathFinder pathFinder, ForkJoinPool pool) {
+    if (pathFinder == null || pool == null) {
+      throw new IllegalArgumentException("path finder and pool must not be null");
+    }
+    this.pathFinder = pathFinder;
+    this.pool = pool;
+  }
+
+  public PathFinder getPathFinder() {
+    return pathFinder;
+  }
+
+  @Override
+  public boolean isObservable() {
+    return pathFinder.isObservable();
+  }
+
+  /**
+   * Registers a listener at the wrapped PathFinder.
+   * The searches of the distance matrix are not reported, only the query over the ordered points.
+   * @param listener the listener to add
+   */
+  @Override
+  public void addSearchListener(SearchListener listener) {
+    pathFinder.addSearchListener(listener);
+  }
+
+  @Override
+  public void removeSearchListener(SearchListener listener) {
+    pathFinder.removeSearchListener(listener);
+  }
+
+  /**
+   * Getter for the order of the intermediate points of the last query.
+   * @return the indices of the intermediate points in the order they were visited
+   */
+  public int[] getLastOrder() {
+    return lastOrder.clone();
+  }
+
+  @Override
+  public Queue<Coordinate> getPath(TerrainMap terrainMap, Coordinate startingPoint,
+                                   Coordinate endingPoint, Options option) throws Exception {
+    lastOrder = new int[0];
+    return pathFinder.getPath(terrainMap, startingPoint, endingPoint, option);
+  }
+
+  @Override
+  public Queue<Coordinate> getPath(TerrainMap terrainMap, Coordinate startingPoint,
+                                   Coordinate endingPoint, List<Coordinate> intermediatePoints,
+                                   Options option) throws Exception {
+    return pathFinder.getPath(terrainMap, startingPoint, endingPoint,
+        order(terrainMap, startingPoint, endingPoint, intermediatePoints, option), option);
+  }
+
+  @Override
+  public Path calculatePath(TerrainMap terrainMap, Coordinate startingPoint,
+                            Coordinate endingPoint, Options option) throws Exception {
+    lastOrder = new int[0];
+    return pathFinder.calculatePath(terrainMap, startingPoint, endingPoint, option);
+  }
+
+  @Override
+  public Path calculatePath(TerrainMap terrainMap, Coordinate startingPoint,
+                            Coordinate endingPoint, List<Coordinate> intermediatePoints,
+                            Options option) throws Exception {
+    return pathFinder.calculatePath(terrainMap, startingPoint, endingPoint,
+        order(terrainMap, startingPoint, endingPoint, intermediatePoints, option), option);
+  }
+
+  /**
+   * Chooses the cheapest order of the intermediate points and remembers it.
+   * @return the intermediate points in the chosen order
+   */
+  private List<Coordinate> order(TerrainMap terrainMap, Coordinate startingPoint,
+                                 Coordinate endingPoint, List<Coordinate> intermediatePoints,
+                                 Options option) throws Exception {
+    int count = intermediatePoints.size();
+    lastOrder = new int[count];
+    for (int i = 0; i < count; i++) {
+      lastOrder[i] = i;
+    }
+    // with less than two intermediate points there is only one order
+    if (count < 2) {
+      return intermediatePoints;
+    }
+    List<Coordinate> points = new ArrayList<>(count + 2);
+    points.add(startingPoint);
+    points.addAll(intermediatePoints);
+    points.add(endingPoint);
+    DistanceMatrix matrix = DistanceMatrix.compute(terrainMap, points, option, pool);
+    int[] order = WaypointOrder.optimize(matrix);
+    List<Coordinate> orderedPoints = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      lastOrder[i] = order[i + 1] - 1;
+      orderedPoints.add(intermediatePoints.get(lastOrder[i]));
+    }
+    return orderedPoints;
+  }
+}
@@ -0,0 +1,139 @@
+package sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the chunk cache of ChunkedTerrainStorage.
+ * @version 1.0
+ */
+class ChunkedTerrainStorageTest {
+
+  @TempDir
+  File folder;
+
+  @Test
+  void evictedChunksAreWrittenBack() throws IOException {
+    TerrainMap map = randomMap(70, 50);
+    File file = new File(folder, "map.terrain");
+    TerrainFile.write(map, file);
+    Material sand = new Material("m", 3, false);
+    try (ChunkedTerrainStorage storage = new ChunkedTerrainStorage(file, 16, 2, true)) {
+      // one edit in every chunk, so every eviction has to write a chunk back
+      for (int y = 0; y < 50; y += 16) {
+        for (int x = 0; x < 70; x += 16) {
+          storage.setMaterial(x, y, sand);
+          map.setMaterialAtPoint(new Coordinate(x, y), sand);
+          assertTrue(storage.getCachedChunks() <= 2);
+        }
+      }
+      // chunks read again before their write back are copied from memory
+      for (int y = 0; y < 50; y++) {
+        for (int x = 0; x < 70; x++) {
+          assertEquals(map.getStorage().costsAt(x, y), storage.costsAt(x, y), x + ", " + y);
+        }
+      }
+      assertTrue(storage.getCachedChunks() <= 2);
+      storage.force();
+      assertEquals(5 * 4, storage.getWriteBacks());
+    }
+    // the chunks still cached were written by close
+    TerrainMap read = TerrainFile.read(file);
+    for (int y = 0; y < 50; y++) {
+      for (int x = 0; x < 70; x++) {
+        assertEquals(map.getStorage().costsAt(x, y), read.getStorage().costsAt(x, y), x + ", " + y);
+      }
+    }
+  }
+
+  @Test
+  void searchesFindTheCostsOfTheMapInMemory() throws Exception {
+    TerrainMap map = randomMap(90, 60);
+    File file = new File(folder, "search.terrain");
+    TerrainFile.write(map, file);
+    Coordinate start = new Coordinate(0, 0);
+    Coordinate end = new Coordinate(89, 59);
+    map.setMaterialAtPoint(start, new Material("m", 1, false));
+    map.setMaterialAtPoint(end, new Material("m", 1, false));
+    TerrainFile.write(map, file);
+    try (ChunkedTerrainStorage storage = new ChunkedTerrainStorage(file, 16, 3, false)) {
+      TerrainMap chunked = new TerrainMap(storage);
+      for (Options option : Options.values()) {
+        Path expected = new AStarPathFinder().calculatePath(map, start, end, option);
+        Path path = new AStarPathFinder().calculatePath(chunked, start, end, option);
+        assertEquals(expected.getCosts(), path.getCosts(), option.toString());
+        assertTrue(storage.getCachedChunks() <= 3);
+      }
+    }
+  }
+
+  @Test
+  void searchesPrefetchTheChunksAheadOfTheFrontier() throws Exception {
+    TerrainMap map = randomMap(600, 400);
+    Coordinate start = new Coordinate(10, 10);
+    Coordinate end = new Coordinate(590, 390);
+    map.setMaterialAtPoint(start, new Material("m", 1, false));
+    map.setMaterialAtPoint(end, new Material("m", 1, false));
+    File file = new File(folder, "prefetch.terrain");
+    TerrainFile.write(map, file);
+    Path expected = new PathFinderAlgorithm().calculatePath(map, start, end, Options.COSTS_ONLY);
+    try (ChunkedTerrainStorage storage = new ChunkedTerrainStorage(file, 32, 64, false)) {
+      Path path = new PathFinderAlgorithm().calculatePath(new TerrainMap(storage), start, end,
+          Options.COSTS_ONLY);
+      assertEquals(expected.getCosts(), path.getCosts());
+      // 19 * 13 chunks, the search reads most of them
+      assertTrue(storage.getLoads() > 64, Long.toString(storage.getLoads()));
+      assertTrue(storage.getPrefetchLoads() > 0);
+      assertTrue(storage.getCachedChunks() <= 64);
+    }
+  }
+
+  @Test
+  void closedStorageIsNotReadFromTheLastChunk() throws IOException {
+    File file = new File(folder, "closed.terrain");
+    TerrainFile.write(randomMap(40, 40), file);
+    ChunkedTerrainStorage storage = new ChunkedTerrainStorage(file, 16, 4, false);
+    storage.costsAt(3, 3);
+    storage.close();
+    assertThrows(IllegalStateException.class, () -> storage.costsAt(3, 3));
+  }
+
+  @Test
+  void mapsWithMoreCellsThanAnIntAreRejected() throws IOException {
+    File file = new File(folder, "huge.terrain");
+    TerrainFile.write(randomMap(4, 4), file);
+    try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+      // length and height follow magic, version and reserved
+      raw.seek(8);
+      raw.writeInt(50000);
+      raw.writeInt(50000);
+      raw.setLength(raw.length() + 2L * 50000 * 50000);
+    }
+    IOException exception = assertThrows(IOException.class,
+        () -> new ChunkedTerrainStorage(file, false));
+    assertTrue(exception.getMessage().contains("cells"), exception.getMessage());
+  }
+
+  /**
+   * Returns a map with random costs and about one obstacle in eight cells.
+   */
+  private static TerrainMap randomMap(int length, int height) {
+    Random random = new Random(length * 31 + height);
+    TerrainMap map = new TerrainMap(length, height);
+    for (int x = 0; x < length; x++) {
+      for (int y = 0; y < height; y++) {
+        map.setMaterialAtPoint(new Coordinate(x, y),
+            new Material("m", 1 + random.nextInt(9), random.nextInt(8) == 0));
+      }
+    }
+    return map;
+  }
+}
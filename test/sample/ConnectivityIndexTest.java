@@ -0,0 +1,129 @@
+package sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for ConnectivityIndex and the queries it rejects.
+ * @version 1.0
+ */
+class ConnectivityIndexTest {
+
+  @Test
+  void wallSeparatesAreasUntilItIsOpened() {
+    TerrainMap map = wallMap(20, 10, 10);
+    ConnectivityIndex index = map.getConnectivityIndex();
+    assertFalse(index.isConnected(new Coordinate(0, 0), new Coordinate(19, 9)));
+    assertTrue(index.isConnected(new Coordinate(0, 0), new Coordinate(9, 9)));
+    map.getMaterialAtPoint(new Coordinate(10, 4)).setObstacle(false);
+    assertTrue(index.isConnected(new Coordinate(0, 0), new Coordinate(19, 9)));
+    map.getMaterialAtPoint(new Coordinate(10, 4)).setObstacle(true);
+    assertFalse(index.isConnected(new Coordinate(0, 0), new Coordinate(19, 9)));
+  }
+
+  @Test
+  void obstaclesAreNeverConnected() {
+    TerrainMap map = wallMap(20, 10, 10);
+    ConnectivityIndex index = map.getConnectivityIndex();
+    assertEquals(ConnectivityIndex.OBSTACLE, index.getArea(10, 3));
+    assertFalse(index.isConnected(10, 3, 10, 3));
+  }
+
+  @Test
+  void separatedQueriesAreRejectedWithoutSearch() throws Exception {
+    TerrainMap map = wallMap(200, 200, 100);
+    SearchStatistics[] statistics = new SearchStatistics[1];
+    for (PathFinder pathFinder : Arrays.asList(new AStarPathFinder(), new PathFinderAlgorithm(),
+        new BidirectionalPathFinder(), new JumpPointPathFinder())) {
+      pathFinder.addSearchListener(finished -> statistics[0] = finished);
+      Path path = pathFinder.calculatePath(map, new Coordinate(0, 0), new Coordinate(199, 199),
+          Options.COSTS_ONLY);
+      assertFalse(path.isFound());
+      assertEquals(0, statistics[0].getExpandedNodes(), pathFinder.toString());
+      Path over = pathFinder.calculatePath(map, new Coordinate(0, 0), new Coordinate(99, 199),
+          Collections.singletonList(new Coordinate(150, 3)), Options.COSTS_ONLY);
+      assertFalse(over.isFound());
+      assertEquals(0, statistics[0].getExpandedNodes(), pathFinder.toString());
+    }
+  }
+
+  @Test
+  void areasFollowRandomEdits() {
+    Random random = new Random(11);
+    for (int round = 0; round < 40; round++) {
+      int length = 1 + random.nextInt(25);
+      int height = 1 + random.nextInt(25);
+      TerrainMap map = new TerrainMap(length, height);
+      ConnectivityIndex index = map.getConnectivityIndex();
+      for (int edit = 0; edit < 200; edit++) {
+        Coordinate cell = new Coordinate(random.nextInt(length), random.nextInt(height));
+        map.getMaterialAtPoint(cell).setObstacle(random.nextInt(5) < 2);
+        if (edit % 10 == 0) {
+          int[] areas = areas(map);
+          for (int cellA = 0; cellA < areas.length; cellA += 3) {
+            for (int cellB = 0; cellB < areas.length; cellB += 5) {
+              boolean expected = areas[cellA] >= 0 && areas[cellA] == areas[cellB];
+              assertEquals(expected, index.isConnected(cellA % length, cellA / length,
+                  cellB % length, cellB / length), "round " + round + " edit " + edit);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a map that is split into two areas by a wall from the top to the bottom.
+   */
+  private static TerrainMap wallMap(int length, int height, int wallX) {
+    TerrainMap map = new TerrainMap(length, height);
+    for (int y = 0; y < height; y++) {
+      map.getMaterialAtPoint(new Coordinate(wallX, y)).setObstacle(true);
+    }
+    return map;
+  }
+
+  /**
+   * Labels the areas of a map with a breadth-first search, obstacles get -1.
+   */
+  private static int[] areas(TerrainMap map) {
+    int length = map.getLength();
+    int height = map.getHeight();
+    int[] areas = new int[length * height];
+    Arrays.fill(areas, -2);
+    int area = 0;
+    ArrayDeque<Integer> open = new ArrayDeque<>();
+    for (int first = 0; first < areas.length; first++) {
+      if (areas[first] != -2) {
+        continue;
+      }
+      if (map.isObstacleAt(first % length, first / length)) {
+        areas[first] = -1;
+        continue;
+      }
+      areas[first] = area;
+      open.add(first);
+      while (!open.isEmpty()) {
+        int cell = open.poll();
+        int[] neighbours = {cell % length > 0 ? cell - 1 : -1,
+            cell % length + 1 < length ? cell + 1 : -1, cell - length, cell + length};
+        for (int neighbour : neighbours) {
+          if (neighbour >= 0 && neighbour < areas.length && areas[neighbour] == -2
+              && !map.isObstacleAt(neighbour % length, neighbour / length)) {
+            areas[neighbour] = area;
+            open.add(neighbour);
+          }
+        }
+      }
+      area++;
+    }
+    return areas;
+  }
+}
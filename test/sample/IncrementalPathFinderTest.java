@@ -0,0 +1,70 @@
+package sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the plans of IncrementalPathFinder.
+ * @version 1.0
+ */
+class IncrementalPathFinderTest {
+
+  @Test
+  void editsOnThePathFindTheCostsOfAFreshSearch() throws Exception {
+    Random random = new Random(7);
+    TerrainMap map = new TerrainMap(40, 30);
+    for (int x = 0; x < 40; x++) {
+      for (int y = 0; y < 30; y++) {
+        map.setMaterialAtPoint(new Coordinate(x, y),
+            new Material("m", 1 + random.nextInt(5), random.nextInt(6) == 0));
+      }
+    }
+    Coordinate start = new Coordinate(1, 1);
+    Coordinate end = new Coordinate(38, 28);
+    map.getMaterialAtPoint(start).setObstacle(false);
+    map.getMaterialAtPoint(end).setObstacle(false);
+    IncrementalPathFinder incremental = new IncrementalPathFinder();
+    for (Options option : Options.values()) {
+      for (int query = 0; query < 40; query++) {
+        Path path = incremental.calculatePath(map, start, end, option);
+        Path fresh = new AStarPathFinder().calculatePath(map, start, end, option);
+        assertEquals(fresh.getCosts(), path.getCosts(), option + " query " + query);
+        if (!path.isFound()) {
+          break;
+        }
+        // change cells in the middle of the current path
+        for (int edit = 0; edit < 3; edit++) {
+          int index = 1 + random.nextInt(Math.max(1, path.size() - 2));
+          if (index >= path.size() - 1) {
+            continue;
+          }
+          Material material = map.getMaterialAtPoint(path.getPoint(index));
+          if (random.nextInt(3) == 0) {
+            material.setObstacle(true);
+          } else {
+            material.setCosts(1 + random.nextInt(9));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void plansAreLimitedByTheirCells() throws Exception {
+    IncrementalPathFinder incremental = new IncrementalPathFinder(4, 2500);
+    TerrainMap first = new TerrainMap(40, 40);
+    TerrainMap second = new TerrainMap(40, 40);
+    incremental.calculatePath(first, new Coordinate(0, 0), new Coordinate(39, 39), Options.COSTS_ONLY);
+    assertEquals(1, incremental.getPlanCount());
+    incremental.calculatePath(second, new Coordinate(0, 0), new Coordinate(39, 39), Options.COSTS_ONLY);
+    assertEquals(1, incremental.getPlanCount());
+    TerrainMap small = new TerrainMap(20, 20);
+    Path path = incremental.calculatePath(small, new Coordinate(0, 0), new Coordinate(19, 19),
+        Options.COSTS_ONLY);
+    assertTrue(path.isFound());
+    assertEquals(2, incremental.getPlanCount());
+  }
+}
@@ -0,0 +1,115 @@
+package sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the palette of PaletteTerrainStorage.
+ * @version 1.0
+ */
+class PaletteTerrainStorageTest {
+
+  @Test
+  void editsBeyondPaletteSizeReuseUnusedEntries() {
+    TerrainMap map = new TerrainMap(10, 10);
+    for (int i = 0; i < 70000; i++) {
+      map.getMaterialAtPoint(new Coordinate(i % 10, (i / 10) % 10)).setCosts(i);
+    }
+    PaletteTerrainStorage storage = (PaletteTerrainStorage) map.getStorage();
+    assertTrue(storage.getPaletteSize() <= PaletteTerrainStorage.MAX_PALETTE_SIZE);
+    for (int i = 70000 - 100; i < 70000; i++) {
+      assertEquals(i, map.getMaterialAtPoint(new Coordinate(i % 10, (i / 10) % 10)).getCosts());
+    }
+    assertEquals(69900, storage.getMinCosts());
+    assertEquals(69999, storage.getMaxCosts());
+  }
+
+  @Test
+  void moreMaterialsThanPaletteSizeWidenCells() {
+    Material[][] materials = new Material[300][300];
+    for (int x = 0; x < 300; x++) {
+      for (int y = 0; y < 300; y++) {
+        materials[x][y] = new Material("m", 1 + x * 300 + y, x == 7 && y == 7);
+      }
+    }
+    TerrainMap map = new TerrainMap(1, 1);
+    map.setCompleteMap(materials);
+    PaletteTerrainStorage storage = (PaletteTerrainStorage) map.getStorage();
+    assertTrue(storage.getPaletteSize() > PaletteTerrainStorage.MAX_PALETTE_SIZE);
+    for (int x = 0; x < 300; x++) {
+      for (int y = 0; y < 300; y++) {
+        int costs = 1 + x * 300 + y;
+        assertEquals(x == 7 && y == 7 ? CostModel.OBSTACLE : costs, storage.costsAt(x, y));
+        assertEquals(costs, storage.getMaterial(x, y).getCosts());
+      }
+    }
+    assertEquals(1, storage.getMinCosts());
+    assertEquals(90000, storage.getMaxCosts());
+  }
+
+  @Test
+  void boundsOnlyCoverEntriesInUse() {
+    PaletteTerrainStorage storage = new PaletteTerrainStorage(4, 1, new Material("m", 5, false));
+    storage.setMaterial(0, 0, new Material("m", 1, false));
+    storage.setMaterial(1, 0, new Material("m", 9, false));
+    assertEquals(1, storage.getMinCosts());
+    assertEquals(9, storage.getMaxCosts());
+    storage.setMaterial(0, 0, new Material("m", 5, false));
+    storage.setMaterial(1, 0, new Material("m", 5, false));
+    assertEquals(5, storage.getMinCosts());
+    assertEquals(5, storage.getMaxCosts());
+    storage.setMaterial(2, 0, new Material("m", 3, true));
+    assertEquals(5, storage.getMaxCosts());
+  }
+
+  @Test
+  void fullPaletteFreesEntriesWithoutCells() {
+    PaletteTerrainStorage storage = new PaletteTerrainStorage(1, 1, new Material("m", 0, false));
+    for (int i = 1; i < PaletteTerrainStorage.MAX_PALETTE_SIZE; i++) {
+      storage.intern("m", i, false);
+    }
+    int index = storage.intern("new", 1, false);
+    assertEquals(PaletteTerrainStorage.MAX_PALETTE_SIZE, storage.getPaletteSize());
+    assertEquals("new", storage.getPaletteEntry(index).getName());
+    assertEquals(0, storage.getPaletteIndex(0, 0));
+    int freed = index == 1 ? 2 : 1;
+    assertNull(storage.getPaletteEntry(freed));
+  }
+
+  @Test
+  void freedEntriesAreWrittenAsPlaceholders(@TempDir File folder) throws IOException {
+    TerrainMap map = new TerrainMap(10, 10);
+    for (int i = 0; i < 70000; i++) {
+      map.getMaterialAtPoint(new Coordinate(i % 10, (i / 10) % 10)).setCosts(i);
+    }
+    File file = new File(folder, "edited.terrain");
+    TerrainFile.write(map, file);
+    TerrainMap read = TerrainFile.read(file);
+    for (int x = 0; x < 10; x++) {
+      for (int y = 0; y < 10; y++) {
+        assertEquals(map.getMaterialAtPoint(new Coordinate(x, y)).getCosts(),
+            read.getMaterialAtPoint(new Coordinate(x, y)).getCosts());
+      }
+    }
+  }
+
+  @Test
+  void widePaletteIsNotWrittenAsTerrainFile(@TempDir File folder) {
+    Material[][] materials = new Material[300][300];
+    for (int x = 0; x < 300; x++) {
+      for (int y = 0; y < 300; y++) {
+        materials[x][y] = new Material("m", x * 300 + y, false);
+      }
+    }
+    TerrainMap map = new TerrainMap(1, 1);
+    map.setCompleteMap(materials);
+    assertThrows(IOException.class, () -> TerrainFile.write(map, new File(folder, "wide.terrain")));
+  }
+}
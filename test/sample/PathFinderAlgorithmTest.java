@@ -0,0 +1,65 @@
+package sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for paths whose costs do not fit into an int.
+ * @version 1.0
+ */
+class PathFinderAlgorithmTest {
+
+  @Test
+  void pathsCostingMoreThanAnIntAreFound() throws Exception {
+    // a corridor has only one path, so its costs are known
+    TerrainMap corridor = new TerrainMap(6, 1);
+    for (int x = 0; x < 6; x++) {
+      corridor.setMaterialAtPoint(new Coordinate(x, 0), new Material("m", 1_000_000_000, false));
+    }
+    // Dial's buckets would need a bucket for every key up to the costs of a cell
+    for (QueueStrategy strategy : new QueueStrategy[] {QueueStrategy.AUTO,
+        QueueStrategy.D_ARY_HEAP, QueueStrategy.RADIX_HEAP}) {
+      for (AbstractPathFinder finder : finders(strategy)) {
+        Path path = finder.calculatePath(corridor, new Coordinate(0, 0), new Coordinate(5, 0),
+            Options.COSTS_ONLY);
+        assertEquals(5_000_000_000L, path.getCosts(), finder + " " + strategy);
+        assertEquals(6, path.size(), finder + " " + strategy);
+      }
+    }
+  }
+
+  @Test
+  void searchKeysDoNotWrapAroundWithTheRadialGradient() throws Exception {
+    TerrainMap map = new TerrainMap(2000, 3);
+    for (int x = 0; x < 2000; x++) {
+      for (int y = 0; y < 3; y++) {
+        map.setMaterialAtPoint(new Coordinate(x, y), new Material("m", 2000, false));
+      }
+    }
+    Coordinate start = new Coordinate(0, 0);
+    Coordinate end = new Coordinate(1999, 2);
+    for (QueueStrategy strategy : QueueStrategy.values()) {
+      // Dial's buckets scan every key up to the saturated costs, one finder is enough for them
+      AbstractPathFinder[] finders = strategy == QueueStrategy.DIAL_BUCKETS
+          ? new AbstractPathFinder[] {new PathFinderAlgorithm(strategy)} : finders(strategy);
+      for (AbstractPathFinder finder : finders) {
+        Path path = finder.calculatePath(map, start, end, Options.COSTS_AND_NUMBER_POINTS);
+        assertTrue(path.isFound(), finder + " " + strategy);
+        assertEquals(end, path.getPoint(path.size() - 1), finder + " " + strategy);
+        assertTrue(path.getCosts() > Integer.MAX_VALUE, finder + " " + strategy);
+      }
+    }
+  }
+
+  private static AbstractPathFinder[] finders(QueueStrategy strategy) {
+    AbstractPathFinder[] finders = {new PathFinderAlgorithm(), new AStarPathFinder(),
+        new BidirectionalPathFinder(), new JumpPointPathFinder(), new HierarchicalPathFinder(),
+        new AnytimePathFinder(), new IncrementalPathFinder()};
+    for (AbstractPathFinder finder : finders) {
+      finder.setQueueStrategy(strategy);
+    }
+    return finders;
+  }
+}
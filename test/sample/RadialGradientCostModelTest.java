@@ -0,0 +1,59 @@
+package sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the costs of RadialGradientCostModel.
+ * @version 1.0
+ */
+class RadialGradientCostModelTest {
+
+  @Test
+  void largeCostsAreClampedInsteadOfOverflowing() {
+    int costs = Integer.MAX_VALUE / 50;
+    TerrainMap map = new TerrainMap(200, 200);
+    map.setMaterialAtPoint(new Coordinate(199, 199), new Material("m", costs, false));
+    RadialGradientCostModel costModel = new RadialGradientCostModel(map, new Coordinate(0, 0));
+    assertEquals(Integer.MAX_VALUE, costModel.getMaxCosts());
+    assertEquals(Integer.MAX_VALUE, costModel.costsAt(199, 199));
+    assertEquals(2, costModel.costsAt(2, 0));
+    TerrainMap gradient = map.addRadialGradient(new Coordinate(0, 0));
+    assertEquals(Integer.MAX_VALUE, gradient.getMaterialAtPoint(new Coordinate(199, 199)).getCosts());
+  }
+
+  @Test
+  void searchWithClampedCostsCrossesThem() throws Exception {
+    // the only route crosses a hundred cells whose costs are clamped
+    TerrainMap map = new TerrainMap(200, 1);
+    for (int x = 100; x < 200; x++) {
+      map.setMaterialAtPoint(new Coordinate(x, 0), new Material("m", Integer.MAX_VALUE / 50, false));
+    }
+    RadialGradientCostModel costModel = new RadialGradientCostModel(map, new Coordinate(0, 0));
+    long expected = 0;
+    for (int x = 0; x < 199; x++) {
+      expected += costModel.costsAt(x, 0);
+    }
+    assertEquals(Integer.MAX_VALUE, costModel.costsAt(150, 0));
+    assertTrue(expected > Integer.MAX_VALUE);
+    for (QueueStrategy strategy : QueueStrategy.values()) {
+      AStarPathFinder pathFinder = new AStarPathFinder();
+      pathFinder.setQueueStrategy(strategy);
+      Path path = pathFinder.calculatePath(map, new Coordinate(0, 0), new Coordinate(199, 0),
+          Options.COSTS_AND_NUMBER_POINTS);
+      assertTrue(path.isFound(), strategy.toString());
+      assertEquals(expected, path.getCosts(), strategy.toString());
+    }
+  }
+
+  @Test
+  void overflowedKeyRangeIsNotGivenToBuckets() {
+    int capacity = 1 << 20;
+    assertEquals(QueueStrategy.RADIX_HEAP, QueueStrategy.AUTO.resolve(capacity, 1, -7));
+    assertEquals(QueueStrategy.RADIX_HEAP, QueueStrategy.DIAL_BUCKETS.resolve(capacity, 1, -7));
+    assertEquals(QueueStrategy.D_ARY_HEAP, QueueStrategy.D_ARY_HEAP.resolve(capacity, 1, -7));
+    assertEquals(QueueStrategy.DIAL_BUCKETS, QueueStrategy.AUTO.resolve(capacity, 1, 10));
+  }
+}
@@ -0,0 +1,89 @@
+package sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the paged state of SearchContext.
+ * @version 1.0
+ */
+class SearchContextTest {
+
+  @Test
+  void pagedSearchesFindTheCostsOfFlatSearches() {
+    Random random = new Random(11);
+    TerrainMap map = new TerrainMap(150, 90);
+    for (int x = 0; x < 150; x++) {
+      for (int y = 0; y < 90; y++) {
+        map.setMaterialAtPoint(new Coordinate(x, y),
+            new Material("m", 1 + random.nextInt(9), random.nextInt(7) == 0));
+      }
+    }
+    CostModel costModel = new TerrainCostModel(map);
+    SearchContext flat = new SearchContext();
+    // every map is paged, the same context is reused by all searches and
+    // the flat context uses the same heap, so both finish the same cells
+    SearchContext paged = new SearchContext(0);
+    for (int query = 0; query < 30; query++) {
+      int startingCell = random.nextInt(150 * 90);
+      int endingCell = random.nextInt(150 * 90);
+      AStarPathFinder.search(flat, QueueStrategy.D_ARY_HEAP, costModel, startingCell, endingCell);
+      AStarPathFinder.search(paged, QueueStrategy.AUTO, costModel, startingCell, endingCell);
+      assertEquals(flat.getCosts(startingCell), paged.getCosts(startingCell), "query " + query);
+      for (int cell = 0; cell < 150 * 90; cell++) {
+        assertEquals(flat.isClosed(cell), paged.isClosed(cell), "query " + query + " cell " + cell);
+      }
+    }
+  }
+
+  @Test
+  void pagesOfEarlierSearchesAreEmpty() {
+    SearchContext context = new SearchContext(0);
+    context.reset(20000, QueueStrategy.AUTO, 1, 10);
+    context.setCosts(12345, 7, 12344);
+    context.close(12345);
+    context.getOpenSet().insert(12346, 8);
+    assertEquals(7, context.getCosts(12345));
+    assertTrue(context.isClosed(12345));
+    assertTrue(context.getOpenSet().contains(12346));
+    context.reset(20000, QueueStrategy.AUTO, 1, 10);
+    assertEquals(SearchContext.INFINITE, context.getCosts(12345));
+    assertEquals(SearchContext.NONE, context.getPredecessor(12345));
+    assertFalse(context.isClosed(12345));
+    assertFalse(context.getOpenSet().contains(12346));
+    assertEquals(0, context.getOpenSet().size());
+  }
+
+  @Test
+  void pagedHeapExtractsKeysInOrder() {
+    Random random = new Random(5);
+    SearchContext context = new SearchContext(0);
+    context.reset(1 << 20, QueueStrategy.AUTO, 1, 10);
+    OpenSet openSet = context.getOpenSet();
+    int[] keys = new int[1 << 20];
+    for (int i = 0; i < 5000; i++) {
+      int node = random.nextInt(1 << 20);
+      int key = random.nextInt(100000);
+      if (!openSet.contains(node)) {
+        keys[node] = key;
+        openSet.insert(node, key);
+      } else if (key < keys[node]) {
+        keys[node] = key;
+        openSet.decreaseKey(node, key);
+      }
+    }
+    int last = Integer.MIN_VALUE;
+    while (!openSet.isEmpty()) {
+      int key = openSet.getMinKey();
+      int node = openSet.extractMin();
+      assertEquals(keys[node], key);
+      assertTrue(key >= last);
+      assertFalse(openSet.contains(node));
+      last = key;
+    }
+  }
+}
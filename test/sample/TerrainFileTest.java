@@ -0,0 +1,123 @@
+package sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips of maps through the terrain, cost grid and heightmap files.
+ * @version 1.0
+ */
+class TerrainFileTest {
+
+  @TempDir
+  File folder;
+
+  @Test
+  void terrainFileKeepsAllMaterials() throws IOException {
+    TerrainMap map = randomMap(37, 23, 200);
+    map.setMaterialAtPoint(new Coordinate(3, 4), new Material("sand", 7, false));
+    map.setMaterialAtPoint(new Coordinate(5, 6), new Material(null, 2, true));
+    File file = new File(folder, "map.terrain");
+    TerrainFile.write(map, file);
+    TerrainMap read = TerrainFile.read(file);
+    TerrainMap mapped = TerrainFile.map(file, false);
+    for (int x = 0; x < 37; x++) {
+      for (int y = 0; y < 23; y++) {
+        Material expected = map.getStorage().getMaterial(x, y);
+        for (TerrainMap copy : new TerrainMap[] {read, mapped}) {
+          Material material = copy.getStorage().getMaterial(x, y);
+          assertEquals(expected.getName(), material.getName());
+          assertEquals(expected.getCosts(), material.getCosts());
+          assertEquals(expected.isObstacle(), material.isObstacle());
+        }
+      }
+    }
+  }
+
+  @Test
+  void costGridKeepsCostsAndObstacles() throws IOException {
+    TerrainMap map = randomMap(41, 17, 100000);
+    File file = new File(folder, "map.csv");
+    CsvTerrainFile.write(map, file);
+    assertSameCosts(map, CsvTerrainFile.read(file));
+  }
+
+  @Test
+  void heightmapsKeepCostsAndObstacles() throws IOException {
+    TerrainMap small = randomMap(30, 20, 200);
+    TerrainMap large = randomMap(30, 20, 60000);
+    for (TerrainMap map : new TerrainMap[] {small, large}) {
+      File pgm = new File(folder, "map.pgm");
+      HeightmapFile.writePgm(map, pgm);
+      assertSameCosts(map, HeightmapFile.readPgm(pgm));
+      File png = new File(folder, "map.png");
+      HeightmapFile.writePng(map, png);
+      assertSameCosts(map, HeightmapFile.readPng(png));
+    }
+  }
+
+  @Test
+  void emptyMapsAreReadBack() throws IOException {
+    TerrainMap map = new TerrainMap(0, 0);
+    File file = new File(folder, "empty.terrain");
+    TerrainFile.write(map, file);
+    assertEquals(0, TerrainFile.read(file).getLength());
+  }
+
+  @Test
+  void tooManyDistinctCostsAreRejectedWithTheLimit() throws IOException {
+    StringBuilder grid = new StringBuilder();
+    for (int y = 0; y < 300; y++) {
+      for (int x = 0; x < 300; x++) {
+        grid.append(y * 300 + x).append(x + 1 < 300 ? ',' : '\n');
+      }
+    }
+    File file = new File(folder, "distinct.csv");
+    Files.write(file.toPath(), grid.toString().getBytes(StandardCharsets.US_ASCII));
+    IOException exception = assertThrows(IOException.class, () -> CsvTerrainFile.read(file));
+    assertTrue(exception.getMessage().contains(Integer.toString(PaletteTerrainStorage.MAX_PALETTE_SIZE)),
+        exception.getMessage());
+  }
+
+  @Test
+  void corruptTerrainFileIsRejected() throws IOException {
+    File file = new File(folder, "corrupt.terrain");
+    Files.write(file.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    assertThrows(IOException.class, () -> TerrainFile.read(file));
+  }
+
+  /**
+   * Returns a map with random costs below maxCosts and about one obstacle in eight cells.
+   */
+  private static TerrainMap randomMap(int length, int height, int maxCosts) {
+    Random random = new Random(length * 31 + maxCosts);
+    TerrainMap map = new TerrainMap(length, height);
+    for (int x = 0; x < length; x++) {
+      for (int y = 0; y < height; y++) {
+        map.setMaterialAtPoint(new Coordinate(x, y),
+            new Material("m", random.nextInt(maxCosts), random.nextInt(8) == 0));
+      }
+    }
+    return map;
+  }
+
+  private static void assertSameCosts(TerrainMap expected, TerrainMap actual) {
+    assertEquals(expected.getLength(), actual.getLength());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int x = 0; x < expected.getLength(); x++) {
+      for (int y = 0; y < expected.getHeight(); y++) {
+        assertEquals(expected.getStorage().costsAt(x, y), actual.getStorage().costsAt(x, y),
+            x + ", " + y);
+      }
+    }
+  }
+}